@@ -0,0 +1,159 @@
+package es.upm.etsisi.cf4j.data;
+
+import es.upm.etsisi.cf4j.data.types.CompressedRatingMatrix;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Auxiliary class used by the DataModel to build its compacted ratings in bulk. Ratings are
+ * collected as &lt;row, column, rating&gt; triplets in the order provided by the DataSet. Once all
+ * of them are collected, the degree of each row is counted, exact size arrays are allocated and
+ * filled, and each row is sorted once.
+ */
+class CompactRatingsBuilder {
+
+  /** Row of each collected rating */
+  private int[] rows;
+
+  /** Column of each collected rating */
+  private int[] columns;
+
+  /** Value of each collected rating */
+  private double[] ratings;
+
+  /** Number of collected ratings */
+  private int size;
+
+  /**
+   * Creates an empty builder.
+   *
+   * @param expectedSize Expected number of ratings. Arrays grow if it is exceeded
+   */
+  CompactRatingsBuilder(int expectedSize) {
+    int capacity = Math.max(expectedSize, 16);
+    this.rows = new int[capacity];
+    this.columns = new int[capacity];
+    this.ratings = new double[capacity];
+    this.size = 0;
+  }
+
+  /**
+   * Collects a rating.
+   *
+   * @param row Row of the rating
+   * @param column Column of the rating
+   * @param rating Rating value
+   */
+  void add(int row, int column, double rating) {
+    if (this.size == this.rows.length) {
+      int capacity = this.size + (this.size >> 1);
+      this.rows = Arrays.copyOf(this.rows, capacity);
+      this.columns = Arrays.copyOf(this.columns, capacity);
+      this.ratings = Arrays.copyOf(this.ratings, capacity);
+    }
+    this.rows[this.size] = row;
+    this.columns[this.size] = column;
+    this.ratings[this.size] = rating;
+    this.size++;
+  }
+
+  /**
+   * Computes the minimum, maximum and average rating of each row or column. Ratings are visited in
+   * the order in which they were collected using the same incremental formulas of
+   * User.addRating(...) and Item.addRating(...), so the results are identical.
+   *
+   * @param byRow true to compute the statistics of the rows, false to compute those of the columns
+   * @param min Array where the minimum rating is stored
+   * @param max Array where the maximum rating is stored
+   * @param average Array where the average rating is stored
+   */
+  void computeStatistics(boolean byRow, double[] min, double[] max, double[] average) {
+    int[] count = new int[min.length];
+
+    Arrays.fill(min, Double.MAX_VALUE);
+    Arrays.fill(max, Double.MIN_VALUE);
+    Arrays.fill(average, 0.0);
+
+    for (int r = 0; r < this.size; r++) {
+      int k = byRow ? this.rows[r] : this.columns[r];
+      double rating = this.ratings[r];
+
+      count[k]++;
+      min[k] = Math.min(rating, min[k]);
+      max[k] = Math.max(rating, max[k]);
+      average[k] = (count[k] <= 1) ? rating : ((average[k] * (count[k] - 1)) + rating) / count[k];
+    }
+  }
+
+  /**
+   * Builds a CompressedRatingMatrix whose rows are the rows of the collected ratings.
+   *
+   * @param numRows Number of rows of the matrix
+   * @param duplicatedRating Message of the IllegalArgumentException thrown when a row contains the
+   *     same column twice
+   * @return CompressedRatingMatrix with the collected ratings in double precision
+   */
+  CompressedRatingMatrix build(int numRows, IntFunction<String> duplicatedRating) {
+    int[] offsets = new int[numRows + 1];
+    for (int r = 0; r < this.size; r++) {
+      offsets[this.rows[r] + 1]++;
+    }
+
+    int maxLength = 0;
+    for (int row = 0; row < numRows; row++) {
+      maxLength = Math.max(maxLength, offsets[row + 1]);
+      offsets[row + 1] += offsets[row];
+    }
+
+    int[] cursor = Arrays.copyOf(offsets, numRows);
+    int[] indexes = new int[this.size];
+    double[] values = new double[this.size];
+    for (int r = 0; r < this.size; r++) {
+      int pos = cursor[this.rows[r]]++;
+      indexes[pos] = this.columns[r];
+      values[pos] = this.ratings[r];
+    }
+
+    long[] keys = new long[maxLength];
+    double[] aux = new double[maxLength];
+    for (int row = 0; row < numRows; row++) {
+      if (!sortRow(indexes, values, offsets[row], offsets[row + 1], keys, aux))
+        throw new IllegalArgumentException(duplicatedRating.apply(row));
+    }
+
+    return new CompressedRatingMatrix(offsets, indexes, values);
+  }
+
+  /**
+   * Sorts a segment of the matrix by index. Each index is packed together with its position into
+   * a long, so a single primitive sort moves both of them.
+   *
+   * @return false if the segment contains a duplicated index, true otherwise
+   */
+  private static boolean sortRow(
+      int[] indexes, double[] values, int from, int to, long[] keys, double[] aux) {
+    boolean sorted = true;
+    for (int pos = from + 1; pos < to && sorted; pos++) {
+      sorted = indexes[pos - 1] < indexes[pos];
+    }
+    if (sorted) return true;
+
+    int length = to - from;
+    for (int p = 0; p < length; p++) {
+      keys[p] = ((long) indexes[from + p] << 32) | p;
+    }
+    Arrays.sort(keys, 0, length);
+
+    for (int p = 0; p < length; p++) {
+      indexes[from + p] = (int) (keys[p] >>> 32);
+      aux[p] = values[from + (int) keys[p]];
+    }
+    System.arraycopy(aux, 0, values, from, length);
+
+    for (int pos = from + 1; pos < to; pos++) {
+      if (indexes[pos - 1] == indexes[pos]) return false;
+    }
+    return true;
+  }
+}
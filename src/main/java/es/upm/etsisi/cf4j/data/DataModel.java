@@ -1,10 +1,14 @@
 package es.upm.etsisi.cf4j.data;
 
+import es.upm.etsisi.cf4j.data.types.CompressedRatingMatrix;
 import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import es.upm.etsisi.cf4j.data.types.IdIndex;
 
 import java.io.*;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
 
 /**
  * This class manages all the information related with a collaborative filtering based recommender
@@ -54,6 +58,18 @@ public class DataModel implements Serializable {
   /** DataBank to store heterogeneous information */
   private DataBank dataBank;
 
+  /** Index of the users ids */
+  private IdIndex userIdIndex;
+
+  /** Index of the test users ids */
+  private IdIndex testUserIdIndex;
+
+  /** Index of the items ids */
+  private IdIndex itemIdIndex;
+
+  /** Index of the test items ids */
+  private IdIndex testItemIdIndex;
+
   /**
    * This constructor initializes the DataModel with the contents of the given DataSet. Data
    * contained in the DataSet is stored in 4 different arrays: user, testUser, item and testItems.
@@ -64,9 +80,119 @@ public class DataModel implements Serializable {
    * @param dataset DataSet to be added to the DataModel.
    */
   public DataModel(DataSet dataset) {
+    this(dataset, false);
+  }
 
+  /**
+   * This constructor initializes the DataModel with the contents of the given DataSet. See
+   * DataModel(DataSet).
+   *
+   * <p>If compact is true, the DataModel is built in bulk: the ids of each DataSet entry are
+   * resolved once, the number of ratings of each user and item is counted, exact size arrays are
+   * filled and the ratings of each user are sorted once. The result is a DataModel compacted in
+   * double precision (see compact()) with the same users, items, indexes and statistics than the
+   * one built with compact set to false. This mode is much faster for large DataSets since it
+   * avoids inserting each rating in a sorted list.
+   *
+   * @param dataset DataSet to be added to the DataModel.
+   * @param compact true to build the DataModel in bulk with compacted ratings, false to build it
+   *     inserting the ratings one by one
+   */
+  public DataModel(DataSet dataset, boolean compact) {
     this.dataBank = new DataBank();
 
+    if (compact) {
+      this.bulkLoad(dataset);
+    } else {
+      this.load(dataset);
+      this.buildIdIndexes();
+    }
+  }
+
+  /**
+   * Creates a DataModel from its already built users and items. This constructor is used to read
+   * DataModel files (see loadBinary(String)).
+   */
+  DataModel(
+      User[] users,
+      TestUser[] testUsers,
+      Item[] items,
+      TestItem[] testItems,
+      int numberOfRatings,
+      double minRating,
+      double maxRating,
+      double ratingAverage,
+      int numberOfTestRatings,
+      double minTestRating,
+      double maxTestRating,
+      double testRatingAverage) {
+    this.dataBank = new DataBank();
+    this.users = users;
+    this.testUsers = testUsers;
+    this.items = items;
+    this.testItems = testItems;
+    this.numberOfRatings = numberOfRatings;
+    this.minRating = minRating;
+    this.maxRating = maxRating;
+    this.ratingAverage = ratingAverage;
+    this.numberOfTestRatings = numberOfTestRatings;
+    this.minTestRating = minTestRating;
+    this.maxTestRating = maxTestRating;
+    this.testRatingAverage = testRatingAverage;
+  }
+
+  /** Builds the indexes used to find users and items by their ids. */
+  private void buildIdIndexes() {
+    String[] ids = new String[this.users.length];
+    for (int u = 0; u < ids.length; u++) ids[u] = this.users[u].getId();
+    this.userIdIndex = new IdIndex(ids);
+
+    ids = new String[this.testUsers.length];
+    for (int u = 0; u < ids.length; u++) ids[u] = this.testUsers[u].getId();
+    this.testUserIdIndex = new IdIndex(ids);
+
+    ids = new String[this.items.length];
+    for (int i = 0; i < ids.length; i++) ids[i] = this.items[i].getId();
+    this.itemIdIndex = new IdIndex(ids);
+
+    ids = new String[this.testItems.length];
+    for (int i = 0; i < ids.length; i++) ids[i] = this.testItems[i].getId();
+    this.testItemIdIndex = new IdIndex(ids);
+  }
+
+  /** Sets the indexes used to find users and items by their ids. */
+  void setIdIndexes(
+      IdIndex userIdIndex, IdIndex testUserIdIndex, IdIndex itemIdIndex, IdIndex testItemIdIndex) {
+    this.userIdIndex = userIdIndex;
+    this.testUserIdIndex = testUserIdIndex;
+    this.itemIdIndex = itemIdIndex;
+    this.testItemIdIndex = testItemIdIndex;
+  }
+
+  /**
+   * Gets the indexes used to find users and items by their ids.
+   *
+   * @return Indexes of users, test users, items and test items ids
+   */
+  IdIndex[] getIdIndexes() {
+    return new IdIndex[] {
+      this.userIdIndex, this.testUserIdIndex, this.itemIdIndex, this.testItemIdIndex
+    };
+  }
+
+  /** DataModels serialized before the ids indexes existed are indexed when they are loaded. */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    if (this.userIdIndex == null) this.buildIdIndexes();
+  }
+
+  /**
+   * Loads the DataSet inserting the ratings one by one into the users and items.
+   *
+   * @param dataset DataSet to be added to the DataModel.
+   */
+  private void load(DataSet dataset) {
+
     // Initializing the auxiliary arrays to the estimated initial size (taking into account the
     // DataSet entries)
     List<User> usersList = new ArrayList<>();
@@ -179,6 +305,149 @@ public class DataModel implements Serializable {
     this.testItems = testItemsLists.toArray(new TestItem[0]);
   }
 
+  /**
+   * Loads the DataSet in bulk building the compacted ratings of the users and items.
+   *
+   * @param dataset DataSet to be added to the DataModel.
+   */
+  private void bulkLoad(DataSet dataset) {
+    List<User> usersList = new ArrayList<>();
+    List<TestUser> testUsersList = new ArrayList<>();
+    List<Item> itemsList = new ArrayList<>();
+    List<TestItem> testItemsList = new ArrayList<>();
+
+    // Ids are resolved with the indexes used later to find users and items by their ids, so they
+    // are built once and no Integer is boxed for each entry
+    this.userIdIndex = new IdIndex();
+    this.testUserIdIndex = new IdIndex();
+    this.itemIdIndex = new IdIndex();
+    this.testItemIdIndex = new IdIndex();
+
+    // First pass: users and items are created in the same order than load(...) does and the
+    // ratings are collected as <row, column, rating> triplets
+
+    CompactRatingsBuilder testRatings = new CompactRatingsBuilder(dataset.getNumberOfTestRatings());
+
+    for (Iterator<DataSetEntry> it = dataset.getTestRatingsIterator(); it.hasNext(); ) {
+      DataSetEntry entry = it.next();
+
+      int testUserIndex = this.testUserIdIndex.add(entry.userId);
+      if (testUserIndex == testUsersList.size()) {
+        TestUser testUser =
+            new TestUser(entry.userId, this.userIdIndex.add(entry.userId), testUserIndex);
+        usersList.add(testUser);
+        testUsersList.add(testUser);
+      }
+
+      int testItemIndex = this.testItemIdIndex.add(entry.itemId);
+      if (testItemIndex == testItemsList.size()) {
+        TestItem testItem =
+            new TestItem(entry.itemId, this.itemIdIndex.add(entry.itemId), testItemIndex);
+        itemsList.add(testItem);
+        testItemsList.add(testItem);
+      }
+
+      testRatings.add(testUserIndex, testItemIndex, entry.rating);
+
+      this.minTestRating = Math.min(entry.rating, this.minTestRating);
+      this.maxTestRating = Math.max(entry.rating, this.maxTestRating);
+
+      this.numberOfTestRatings++;
+      this.testRatingAverage =
+          (this.testRatingAverage * (this.numberOfTestRatings - 1) + entry.rating)
+              / this.numberOfTestRatings;
+    }
+
+    CompactRatingsBuilder ratings = new CompactRatingsBuilder(dataset.getNumberOfRatings());
+
+    for (Iterator<DataSetEntry> it = dataset.getRatingsIterator(); it.hasNext(); ) {
+      DataSetEntry entry = it.next();
+
+      int userIndex = this.userIdIndex.add(entry.userId);
+      if (userIndex == usersList.size()) {
+        usersList.add(new User(entry.userId, userIndex));
+      }
+
+      int itemIndex = this.itemIdIndex.add(entry.itemId);
+      if (itemIndex == itemsList.size()) {
+        itemsList.add(new Item(entry.itemId, itemIndex));
+      }
+
+      ratings.add(userIndex, itemIndex, entry.rating);
+
+      this.minRating = Math.min(entry.rating, this.minRating);
+      this.maxRating = Math.max(entry.rating, this.maxRating);
+
+      this.numberOfRatings++;
+      this.ratingAverage =
+          (this.ratingAverage * (this.numberOfRatings - 1) + entry.rating) / this.numberOfRatings;
+    }
+
+    this.users = usersList.toArray(new User[0]);
+    this.testUsers = testUsersList.toArray(new TestUser[0]);
+    this.items = itemsList.toArray(new Item[0]);
+    this.testItems = testItemsList.toArray(new TestItem[0]);
+
+    // Second pass: users rows are built and sorted once and items rows are obtained transposing
+    // them
+
+    CompressedRatingMatrix usersMatrix =
+        ratings.build(
+            this.users.length,
+            row -> "Provided rating already exist in user: " + this.users[row].getId());
+    CompressedRatingMatrix itemsMatrix = usersMatrix.transpose(this.items.length);
+
+    CompressedRatingMatrix testUsersMatrix =
+        testRatings.build(
+            this.testUsers.length,
+            row -> "Provided rating already exist in user: " + this.testUsers[row].getId());
+    CompressedRatingMatrix testItemsMatrix = testUsersMatrix.transpose(this.testItems.length);
+
+    double[] min = new double[this.users.length];
+    double[] max = new double[this.users.length];
+    double[] average = new double[this.users.length];
+    ratings.computeStatistics(true, min, max, average);
+    for (User user : this.users) {
+      user.min = min[user.userIndex];
+      user.max = max[user.userIndex];
+      user.average = average[user.userIndex];
+      user.setCompactRatings(usersMatrix);
+    }
+
+    min = new double[this.items.length];
+    max = new double[this.items.length];
+    average = new double[this.items.length];
+    ratings.computeStatistics(false, min, max, average);
+    for (Item item : this.items) {
+      item.min = min[item.itemIndex];
+      item.max = max[item.itemIndex];
+      item.average = average[item.itemIndex];
+      item.setCompactRatings(itemsMatrix);
+    }
+
+    min = new double[this.testUsers.length];
+    max = new double[this.testUsers.length];
+    average = new double[this.testUsers.length];
+    testRatings.computeStatistics(true, min, max, average);
+    for (TestUser testUser : this.testUsers) {
+      testUser.minTest = min[testUser.testUserIndex];
+      testUser.maxTest = max[testUser.testUserIndex];
+      testUser.averageTest = average[testUser.testUserIndex];
+      testUser.setCompactTestRatings(testUsersMatrix);
+    }
+
+    min = new double[this.testItems.length];
+    max = new double[this.testItems.length];
+    average = new double[this.testItems.length];
+    testRatings.computeStatistics(false, min, max, average);
+    for (TestItem testItem : this.testItems) {
+      testItem.minTest = min[testItem.testItemIndex];
+      testItem.maxTest = max[testItem.testItemIndex];
+      testItem.averageTest = average[testItem.testItemIndex];
+      testItem.setCompactTestRatings(testItemsMatrix);
+    }
+  }
+
   /**
    * Saves the content of the DataModel in a serialized file.
    *
@@ -214,6 +483,147 @@ public class DataModel implements Serializable {
     return dataModel;
   }
 
+  /**
+   * Saves the content of the DataModel in a binary columnar file. Unlike save(String), the file
+   * can be opened with loadBinary(String) without deserializing it. Ratings are stored in float
+   * precision if the DataModel has been compacted in float precision (see compact(boolean)) and
+   * in double precision otherwise. DataBanks are not stored.
+   *
+   * @param filePath Path where the file will be stored, filename and extension should be included
+   *     in the path.
+   * @throws IOException When the file is not accessible by the system with write permissions.
+   */
+  public void saveBinary(String filePath) throws IOException {
+    DataModelFile.write(this, filePath);
+    System.out.println("Binary DataModel is saved in " + filePath + ".");
+  }
+
+  /**
+   * Loads a DataModel from a previously saved binary file (see saveBinary(String)). The ratings are
+   * memory-mapped from the file instead of being read, so the DataModel is available almost
+   * instantaneously regardless of its size and the pages of the file are shared through the page
+   * cache by all the JVMs that load it. The loaded DataModel is compacted (see compact()).
+   *
+   * @param filePath Path where the file will be loaded, filename and extension should be included
+   *     in the path.
+   * @return If te file was successfully loaded, this method returns the DataModel.
+   * @throws IOException When the file is not accessible by the system with reading permissions or
+   *     it is not a valid binary DataModel file.
+   */
+  public static DataModel loadBinary(String filePath) throws IOException {
+    return DataModelFile.read(filePath);
+  }
+
+  /**
+   * Compacts the ratings of the DataModel storing them in double precision. See compact(boolean).
+   */
+  public void compact() {
+    this.compact(false);
+  }
+
+  /**
+   * Compacts the ratings of the DataModel. By default, each rating is stored twice as a Rating
+   * object: once in the SortedRatingList of the user and once in the SortedRatingList of the item.
+   * Compacting the DataModel moves all the ratings to flat primitive arrays: a compressed sparse row
+   * matrix for the users and a compressed sparse column matrix for the items (and the same for the
+   * test ratings). This drastically reduces the memory footprint and the garbage collector load of
+   * large datasets, and improves the locality of the rating accesses.
+   *
+   * <p>Compacted ratings are accessed through the same methods of User, TestUser, Item and TestItem,
+   * so recommenders and similarity metrics work without changes. If a new rating is added after
+   * compacting, the ratings of the affected user and item are moved back to a SortedRatingList.
+   *
+   * @param floatRatings true to store the rating values in float precision, false to use double
+   *     precision. Float precision halves the memory used by the rating values, but it is only
+   *     lossless if the ratings can be represented as a float (e.g. 1, 2.5, 4...)
+   */
+  public void compact(boolean floatRatings) {
+    CompressedRatingMatrix usersMatrix =
+        compactRows(
+            this.users.length,
+            floatRatings,
+            u -> this.users[u].getNumberOfRatings(),
+            (u, pos) -> this.users[u].getItemAt(pos),
+            (u, pos) -> this.users[u].getRatingAt(pos));
+
+    CompressedRatingMatrix itemsMatrix =
+        compactRows(
+            this.items.length,
+            floatRatings,
+            i -> this.items[i].getNumberOfRatings(),
+            (i, pos) -> this.items[i].getUserAt(pos),
+            (i, pos) -> this.items[i].getRatingAt(pos));
+
+    CompressedRatingMatrix testUsersMatrix =
+        compactRows(
+            this.testUsers.length,
+            floatRatings,
+            u -> this.testUsers[u].getNumberOfTestRatings(),
+            (u, pos) -> this.testUsers[u].getTestItemAt(pos),
+            (u, pos) -> this.testUsers[u].getTestRatingAt(pos));
+
+    CompressedRatingMatrix testItemsMatrix =
+        compactRows(
+            this.testItems.length,
+            floatRatings,
+            i -> this.testItems[i].getNumberOfTestRatings(),
+            (i, pos) -> this.testItems[i].getTestUserAt(pos),
+            (i, pos) -> this.testItems[i].getTestRatingAt(pos));
+
+    for (User user : this.users) user.setCompactRatings(usersMatrix);
+    for (Item item : this.items) item.setCompactRatings(itemsMatrix);
+    for (TestUser testUser : this.testUsers) testUser.setCompactTestRatings(testUsersMatrix);
+    for (TestItem testItem : this.testItems) testItem.setCompactTestRatings(testItemsMatrix);
+  }
+
+  /**
+   * Copies the rows of a rating matrix into a new CompressedRatingMatrix.
+   *
+   * @param numRows Number of rows
+   * @param floatRatings true to store the rating values in float precision
+   * @param length Returns the number of ratings of a row
+   * @param index Returns the index of the rating at a given row and position
+   * @param rating Returns the rating value at a given row and position
+   * @return CompressedRatingMatrix containing the rows
+   */
+  private static CompressedRatingMatrix compactRows(
+      int numRows,
+      boolean floatRatings,
+      IntUnaryOperator length,
+      IntBinaryOperator index,
+      RatingGetter rating) {
+
+    int[] offsets = new int[numRows + 1];
+    for (int row = 0; row < numRows; row++) {
+      offsets[row + 1] = offsets[row] + length.applyAsInt(row);
+    }
+
+    int numRatings = offsets[numRows];
+    int[] indexes = new int[numRatings];
+    double[] doubleRatings = floatRatings ? null : new double[numRatings];
+    float[] floatValues = floatRatings ? new float[numRatings] : null;
+
+    for (int row = 0; row < numRows; row++) {
+      for (int pos = 0, offset = offsets[row]; offset < offsets[row + 1]; pos++, offset++) {
+        indexes[offset] = index.applyAsInt(row, pos);
+        if (floatRatings) {
+          floatValues[offset] = (float) rating.get(row, pos);
+        } else {
+          doubleRatings[offset] = rating.get(row, pos);
+        }
+      }
+    }
+
+    return floatRatings
+        ? new CompressedRatingMatrix(offsets, indexes, floatValues)
+        : new CompressedRatingMatrix(offsets, indexes, doubleRatings);
+  }
+
+  /** Auxiliary functional interface to read the rating values of a row */
+  private interface RatingGetter {
+    double get(int row, int pos);
+  }
+
   /**
    * Adds a single test rating to the DataModel.
    *
@@ -334,12 +744,7 @@ public class DataModel implements Serializable {
    * @return userIndex if the User exists or -1 if doesn't.
    */
   public int findUserIndex(String userId) {
-    for (int i = 0; i < this.users.length; i++) {
-      if (this.users[i].getId().equals(userId)) {
-        return i;
-      }
-    }
-    return -1;
+    return this.userIdIndex.get(userId);
   }
 
   /**
@@ -368,12 +773,7 @@ public class DataModel implements Serializable {
    * @return testUserIndex if the TestUser exists or -1 if doesn't.
    */
   public int findTestUserIndex(String userId) {
-    for (int i = 0; i < this.testUsers.length; i++) {
-      if (this.testUsers[i].getId().equals(userId)) {
-        return i;
-      }
-    }
-    return -1;
+    return this.testUserIdIndex.get(userId);
   }
 
   /**
@@ -402,12 +802,7 @@ public class DataModel implements Serializable {
    * @return itemIndex if the Item exists or -1 if doesn't.
    */
   public int findItemIndex(String itemId) {
-    for (int i = 0; i < this.items.length; i++) {
-      if (this.items[i].getId().equals(itemId)) {
-        return i;
-      }
-    }
-    return -1;
+    return this.itemIdIndex.get(itemId);
   }
 
   /**
@@ -436,12 +831,7 @@ public class DataModel implements Serializable {
    * @return testItemIndex if the TestItem exists or -1 if doesn't.
    */
   public int findTestItemIndex(String itemId) {
-    for (int i = 0; i < this.testItems.length; i++) {
-      if (this.testItems[i].getId().equals(itemId)) {
-        return i;
-      }
-    }
-    return -1;
+    return this.testItemIdIndex.get(itemId);
   }
 
   /**
@@ -0,0 +1,558 @@
+package es.upm.etsisi.cf4j.data;
+
+import es.upm.etsisi.cf4j.data.types.CompressedRatingMatrix;
+import es.upm.etsisi.cf4j.data.types.IdIndex;
+import es.upm.etsisi.cf4j.data.types.MappedRatingMatrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes DataModels using a versioned binary columnar format. All the values are stored
+ * in little endian byte order. The file contains:
+ *
+ * <ul>
+ *   <li>A header with the magic number, the version, the flags, the sizes and the statistics of
+ *       the DataModel, followed by a table with the position of each section.
+ *   <li>The id dictionaries of users and items: the UTF-8 bytes of the ids and the offset of each
+ *       of them.
+ *   <li>The user index of each test user and the item index of each test item.
+ *   <li>The minimum, maximum and average rating of each user, item, test user and test item.
+ *   <li>The ratings of users, items, test users and test items as compressed rating matrices
+ *       (offsets, indexes and ratings arrays).
+ *   <li>The slots of the ids indexes of users, test users, items and test items (see IdIndex).
+ * </ul>
+ *
+ * <p>Every section starts at a position multiple of 8 bytes. When a file is read, the rating
+ * matrices are memory-mapped (see MappedRatingMatrix), so only the ids and the statistics are
+ * loaded into the Java heap. DataBanks are not stored.
+ */
+class DataModelFile {
+
+  /** Magic number that identifies the files: "CF4J" in ASCII */
+  private static final int MAGIC = 0x43463446;
+
+  /** Current version of the format */
+  private static final int VERSION = 1;
+
+  /** Flag that indicates that ratings are stored in float precision */
+  private static final int FLOAT_RATINGS = 1;
+
+  private static final int USER_ID_OFFSETS = 0;
+  private static final int USER_IDS = 1;
+  private static final int ITEM_ID_OFFSETS = 2;
+  private static final int ITEM_IDS = 3;
+  private static final int TEST_USERS = 4;
+  private static final int TEST_ITEMS = 5;
+  private static final int USER_STATS = 6;
+  private static final int ITEM_STATS = 7;
+  private static final int TEST_USER_STATS = 8;
+  private static final int TEST_ITEM_STATS = 9;
+  private static final int USERS_RATINGS = 10;
+  private static final int ITEMS_RATINGS = 13;
+  private static final int TEST_USERS_RATINGS = 16;
+  private static final int TEST_ITEMS_RATINGS = 19;
+  private static final int ID_INDEXES = 22;
+
+  /** Number of sections. Each rating matrix takes three of them and ids indexes take four */
+  private static final int NUM_SECTIONS = 26;
+
+  /** Size of the header, excluding the section table */
+  private static final int HEADER_SIZE = 4 * 10 + 8 * 6;
+
+  /**
+   * Writes a DataModel into a file. Ratings are stored in float precision only if the DataModel
+   * has been compacted in float precision (see DataModel.compact(boolean)).
+   *
+   * @param dataModel DataModel to be written
+   * @param filePath Path of the file
+   * @throws IOException When the file is not accessible by the system with write permissions.
+   */
+  static void write(DataModel dataModel, String filePath) throws IOException {
+    boolean floatRatings = hasFloatRatings(dataModel);
+
+    User[] users = dataModel.getUsers();
+    Item[] items = dataModel.getItems();
+    TestUser[] testUsers = dataModel.getTestUsers();
+    TestItem[] testItems = dataModel.getTestItems();
+
+    long[] sections = new long[NUM_SECTIONS];
+
+    try (FileChannel channel =
+        FileChannel.open(
+            Paths.get(filePath),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+
+      Writer out = new Writer(channel);
+      out.skip(HEADER_SIZE + 8 * NUM_SECTIONS);
+
+      // Id dictionaries
+      byte[][] userIds = new byte[users.length][];
+      for (int u = 0; u < users.length; u++) {
+        userIds[u] = users[u].getId().getBytes(StandardCharsets.UTF_8);
+      }
+      writeDictionary(out, userIds, sections, USER_ID_OFFSETS);
+
+      byte[][] itemIds = new byte[items.length][];
+      for (int i = 0; i < items.length; i++) {
+        itemIds[i] = items[i].getId().getBytes(StandardCharsets.UTF_8);
+      }
+      writeDictionary(out, itemIds, sections, ITEM_ID_OFFSETS);
+
+      // Test users and test items
+      sections[TEST_USERS] = out.align();
+      for (TestUser testUser : testUsers) {
+        out.putInt(testUser.getUserIndex());
+      }
+
+      sections[TEST_ITEMS] = out.align();
+      for (TestItem testItem : testItems) {
+        out.putInt(testItem.getItemIndex());
+      }
+
+      // Statistics
+      sections[USER_STATS] = out.align();
+      for (User user : users) {
+        out.putDouble(user.getMinRating());
+        out.putDouble(user.getMaxRating());
+        out.putDouble(user.getRatingAverage());
+      }
+
+      sections[ITEM_STATS] = out.align();
+      for (Item item : items) {
+        out.putDouble(item.getMinRating());
+        out.putDouble(item.getMaxRating());
+        out.putDouble(item.getRatingAverage());
+      }
+
+      sections[TEST_USER_STATS] = out.align();
+      for (TestUser testUser : testUsers) {
+        out.putDouble(testUser.getMinTestRating());
+        out.putDouble(testUser.getMaxTestRating());
+        out.putDouble(testUser.getTestRatingAverage());
+      }
+
+      sections[TEST_ITEM_STATS] = out.align();
+      for (TestItem testItem : testItems) {
+        out.putDouble(testItem.getMinTestRating());
+        out.putDouble(testItem.getMaxTestRating());
+        out.putDouble(testItem.getTestRatingAverage());
+      }
+
+      // Rating matrices
+      sections[USERS_RATINGS] = out.align();
+      out.putInt(0);
+      for (int u = 0, offset = 0; u < users.length; u++) {
+        offset += users[u].getNumberOfRatings();
+        out.putInt(offset);
+      }
+      sections[USERS_RATINGS + 1] = out.align();
+      for (User user : users) {
+        for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
+          out.putInt(user.getItemAt(pos));
+        }
+      }
+      sections[USERS_RATINGS + 2] = out.align();
+      for (User user : users) {
+        for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
+          out.putRating(user.getRatingAt(pos), floatRatings);
+        }
+      }
+
+      sections[ITEMS_RATINGS] = out.align();
+      out.putInt(0);
+      for (int i = 0, offset = 0; i < items.length; i++) {
+        offset += items[i].getNumberOfRatings();
+        out.putInt(offset);
+      }
+      sections[ITEMS_RATINGS + 1] = out.align();
+      for (Item item : items) {
+        for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
+          out.putInt(item.getUserAt(pos));
+        }
+      }
+      sections[ITEMS_RATINGS + 2] = out.align();
+      for (Item item : items) {
+        for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
+          out.putRating(item.getRatingAt(pos), floatRatings);
+        }
+      }
+
+      sections[TEST_USERS_RATINGS] = out.align();
+      out.putInt(0);
+      for (int u = 0, offset = 0; u < testUsers.length; u++) {
+        offset += testUsers[u].getNumberOfTestRatings();
+        out.putInt(offset);
+      }
+      sections[TEST_USERS_RATINGS + 1] = out.align();
+      for (TestUser testUser : testUsers) {
+        for (int pos = 0; pos < testUser.getNumberOfTestRatings(); pos++) {
+          out.putInt(testUser.getTestItemAt(pos));
+        }
+      }
+      sections[TEST_USERS_RATINGS + 2] = out.align();
+      for (TestUser testUser : testUsers) {
+        for (int pos = 0; pos < testUser.getNumberOfTestRatings(); pos++) {
+          out.putRating(testUser.getTestRatingAt(pos), floatRatings);
+        }
+      }
+
+      sections[TEST_ITEMS_RATINGS] = out.align();
+      out.putInt(0);
+      for (int i = 0, offset = 0; i < testItems.length; i++) {
+        offset += testItems[i].getNumberOfTestRatings();
+        out.putInt(offset);
+      }
+      sections[TEST_ITEMS_RATINGS + 1] = out.align();
+      for (TestItem testItem : testItems) {
+        for (int pos = 0; pos < testItem.getNumberOfTestRatings(); pos++) {
+          out.putInt(testItem.getTestUserAt(pos));
+        }
+      }
+      sections[TEST_ITEMS_RATINGS + 2] = out.align();
+      for (TestItem testItem : testItems) {
+        for (int pos = 0; pos < testItem.getNumberOfTestRatings(); pos++) {
+          out.putRating(testItem.getTestRatingAt(pos), floatRatings);
+        }
+      }
+
+      // Ids indexes. Slots are stored as they are, so they are not rebuilt when the file is read
+      IdIndex[] idIndexes = dataModel.getIdIndexes();
+      for (int k = 0; k < idIndexes.length; k++) {
+        sections[ID_INDEXES + k] = out.align();
+        for (int slot : idIndexes[k].getSlots()) {
+          out.putInt(slot);
+        }
+      }
+
+      out.flush();
+
+      // Header is written at the end, once the position of every section is known
+      ByteBuffer header =
+          ByteBuffer.allocate(HEADER_SIZE + 8 * NUM_SECTIONS).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(floatRatings ? FLOAT_RATINGS : 0);
+      header.putInt(NUM_SECTIONS);
+      header.putInt(users.length);
+      header.putInt(testUsers.length);
+      header.putInt(items.length);
+      header.putInt(testItems.length);
+      header.putInt(dataModel.getNumberOfRatings());
+      header.putInt(dataModel.getNumberOfTestRatings());
+      header.putDouble(dataModel.getMinRating());
+      header.putDouble(dataModel.getMaxRating());
+      header.putDouble(dataModel.getRatingAverage());
+      header.putDouble(dataModel.getMinTestRating());
+      header.putDouble(dataModel.getMaxTestRating());
+      header.putDouble(dataModel.getTestRatingAverage());
+      for (long section : sections) {
+        header.putLong(section);
+      }
+      header.flip();
+      channel.position(0);
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+    }
+  }
+
+  /**
+   * Reads a DataModel from a file. Rating matrices are memory-mapped, so they are not loaded into
+   * the Java heap. The returned DataModel is compacted (see DataModel.compact()).
+   *
+   * @param filePath Path of the file
+   * @return DataModel stored in the file
+   * @throws IOException When the file is not accessible by the system with reading permissions or
+   *     it is not a valid DataModel file.
+   */
+  static DataModel read(String filePath) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+
+      if (channel.size() < HEADER_SIZE)
+        throw new IOException("Invalid DataModel file: " + filePath);
+      ByteBuffer header = map(channel, 0, HEADER_SIZE);
+
+      if (header.getInt() != MAGIC)
+        throw new IOException("Invalid DataModel file: " + filePath);
+      int version = header.getInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported DataModel file version: " + version);
+
+      boolean floatRatings = (header.getInt() & FLOAT_RATINGS) != 0;
+      int numSections = header.getInt();
+      if (numSections != NUM_SECTIONS)
+        throw new IOException("Invalid DataModel file: " + filePath);
+
+      int numUsers = header.getInt();
+      int numTestUsers = header.getInt();
+      int numItems = header.getInt();
+      int numTestItems = header.getInt();
+      int numberOfRatings = header.getInt();
+      int numberOfTestRatings = header.getInt();
+
+      double minRating = header.getDouble();
+      double maxRating = header.getDouble();
+      double ratingAverage = header.getDouble();
+      double minTestRating = header.getDouble();
+      double maxTestRating = header.getDouble();
+      double testRatingAverage = header.getDouble();
+
+      long[] sections = new long[numSections];
+      ByteBuffer table = map(channel, HEADER_SIZE, 8L * numSections);
+      for (int s = 0; s < numSections; s++) {
+        sections[s] = table.getLong();
+      }
+
+      String[] userIds = readDictionary(channel, sections, USER_ID_OFFSETS, numUsers);
+      String[] itemIds = readDictionary(channel, sections, ITEM_ID_OFFSETS, numItems);
+
+      // Users and items. Test users and test items are instantiated as such
+
+      User[] users = new User[numUsers];
+      TestUser[] testUsers = new TestUser[numTestUsers];
+      ByteBuffer buffer = map(channel, sections[TEST_USERS], 4L * numTestUsers);
+      for (int t = 0; t < numTestUsers; t++) {
+        int userIndex = buffer.getInt();
+        testUsers[t] = new TestUser(userIds[userIndex], userIndex, t);
+        users[userIndex] = testUsers[t];
+      }
+      for (int u = 0; u < numUsers; u++) {
+        if (users[u] == null) users[u] = new User(userIds[u], u);
+      }
+
+      Item[] items = new Item[numItems];
+      TestItem[] testItems = new TestItem[numTestItems];
+      buffer = map(channel, sections[TEST_ITEMS], 4L * numTestItems);
+      for (int t = 0; t < numTestItems; t++) {
+        int itemIndex = buffer.getInt();
+        testItems[t] = new TestItem(itemIds[itemIndex], itemIndex, t);
+        items[itemIndex] = testItems[t];
+      }
+      for (int i = 0; i < numItems; i++) {
+        if (items[i] == null) items[i] = new Item(itemIds[i], i);
+      }
+
+      // Statistics and ratings
+
+      CompressedRatingMatrix matrix =
+          mapMatrix(channel, sections, USERS_RATINGS, numUsers, floatRatings);
+      buffer = map(channel, sections[USER_STATS], 24L * numUsers);
+      for (User user : users) {
+        user.min = buffer.getDouble();
+        user.max = buffer.getDouble();
+        user.average = buffer.getDouble();
+        user.setCompactRatings(matrix);
+      }
+
+      matrix = mapMatrix(channel, sections, ITEMS_RATINGS, numItems, floatRatings);
+      buffer = map(channel, sections[ITEM_STATS], 24L * numItems);
+      for (Item item : items) {
+        item.min = buffer.getDouble();
+        item.max = buffer.getDouble();
+        item.average = buffer.getDouble();
+        item.setCompactRatings(matrix);
+      }
+
+      matrix = mapMatrix(channel, sections, TEST_USERS_RATINGS, numTestUsers, floatRatings);
+      buffer = map(channel, sections[TEST_USER_STATS], 24L * numTestUsers);
+      for (TestUser testUser : testUsers) {
+        testUser.minTest = buffer.getDouble();
+        testUser.maxTest = buffer.getDouble();
+        testUser.averageTest = buffer.getDouble();
+        testUser.setCompactTestRatings(matrix);
+      }
+
+      matrix = mapMatrix(channel, sections, TEST_ITEMS_RATINGS, numTestItems, floatRatings);
+      buffer = map(channel, sections[TEST_ITEM_STATS], 24L * numTestItems);
+      for (TestItem testItem : testItems) {
+        testItem.minTest = buffer.getDouble();
+        testItem.maxTest = buffer.getDouble();
+        testItem.averageTest = buffer.getDouble();
+        testItem.setCompactTestRatings(matrix);
+      }
+
+      DataModel dataModel =
+          new DataModel(
+              users,
+              testUsers,
+              items,
+              testItems,
+              numberOfRatings,
+              minRating,
+              maxRating,
+              ratingAverage,
+              numberOfTestRatings,
+              minTestRating,
+              maxTestRating,
+              testRatingAverage);
+
+      String[] testUserIds = new String[numTestUsers];
+      for (int t = 0; t < numTestUsers; t++) testUserIds[t] = testUsers[t].getId();
+      String[] testItemIds = new String[numTestItems];
+      for (int t = 0; t < numTestItems; t++) testItemIds[t] = testItems[t].getId();
+
+      dataModel.setIdIndexes(
+          readIdIndex(channel, sections[ID_INDEXES], userIds),
+          readIdIndex(channel, sections[ID_INDEXES + 1], testUserIds),
+          readIdIndex(channel, sections[ID_INDEXES + 2], itemIds),
+          readIdIndex(channel, sections[ID_INDEXES + 3], testItemIds));
+
+      return dataModel;
+    }
+  }
+
+  /**
+   * Checks if the ratings of a DataModel must be stored in float precision.
+   *
+   * @param dataModel DataModel
+   * @return true if all the users ratings are compacted in float precision, false otherwise
+   */
+  private static boolean hasFloatRatings(DataModel dataModel) {
+    for (User user : dataModel.getUsers()) {
+      if (user.compactItemsRatings == null || !user.compactItemsRatings.isFloatPrecision())
+        return false;
+    }
+    return dataModel.getNumberOfUsers() > 0;
+  }
+
+  private static void writeDictionary(Writer out, byte[][] ids, long[] sections, int section)
+      throws IOException {
+    sections[section] = out.align();
+    long offset = 0;
+    out.putInt(0);
+    for (byte[] id : ids) {
+      offset += id.length;
+      if (offset > Integer.MAX_VALUE)
+        throw new IOException("Ids exceed the maximum size of the DataModel file");
+      out.putInt((int) offset);
+    }
+
+    sections[section + 1] = out.align();
+    for (byte[] id : ids) {
+      out.putBytes(id);
+    }
+  }
+
+  private static String[] readDictionary(
+      FileChannel channel, long[] sections, int section, int length) throws IOException {
+    ByteBuffer offsets = map(channel, sections[section], 4L * (length + 1));
+    int[] bounds = new int[length + 1];
+    for (int k = 0; k <= length; k++) {
+      bounds[k] = offsets.getInt();
+    }
+
+    byte[] bytes = new byte[bounds[length]];
+    map(channel, sections[section + 1], bytes.length).get(bytes);
+
+    String[] ids = new String[length];
+    for (int k = 0; k < length; k++) {
+      ids[k] = new String(bytes, bounds[k], bounds[k + 1] - bounds[k], StandardCharsets.UTF_8);
+    }
+    return ids;
+  }
+
+  private static IdIndex readIdIndex(FileChannel channel, long position, String[] ids)
+      throws IOException {
+    int[] slots = new int[IdIndex.capacity(ids.length)];
+    map(channel, position, 4L * slots.length).asIntBuffer().get(slots);
+    return new IdIndex(ids, slots);
+  }
+
+  private static CompressedRatingMatrix mapMatrix(
+      FileChannel channel, long[] sections, int section, int numRows, boolean floatRatings)
+      throws IOException {
+    int numRatings = map(channel, sections[section] + 4L * numRows, 4).getInt();
+    return new MappedRatingMatrix(
+        channel,
+        sections[section],
+        sections[section + 1],
+        sections[section + 2],
+        numRows,
+        numRatings,
+        floatRatings);
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+    return channel
+        .map(FileChannel.MapMode.READ_ONLY, position, size)
+        .order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Buffered little endian writer over a FileChannel */
+  private static class Writer {
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    Writer(FileChannel channel) {
+      this.channel = channel;
+      this.buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    void skip(int bytes) throws IOException {
+      this.flush();
+      this.channel.position(this.channel.position() + bytes);
+    }
+
+    long align() throws IOException {
+      while (this.position() % 8 != 0) {
+        this.ensure(1);
+        this.buffer.put((byte) 0);
+      }
+      return this.position();
+    }
+
+    void putInt(int value) throws IOException {
+      this.ensure(Integer.BYTES);
+      this.buffer.putInt(value);
+    }
+
+    void putDouble(double value) throws IOException {
+      this.ensure(Double.BYTES);
+      this.buffer.putDouble(value);
+    }
+
+    void putRating(double rating, boolean floatPrecision) throws IOException {
+      if (floatPrecision) {
+        this.ensure(Float.BYTES);
+        this.buffer.putFloat((float) rating);
+      } else {
+        this.putDouble(rating);
+      }
+    }
+
+    void putBytes(byte[] bytes) throws IOException {
+      for (int from = 0; from < bytes.length; ) {
+        this.ensure(1);
+        int length = Math.min(bytes.length - from, this.buffer.remaining());
+        this.buffer.put(bytes, from, length);
+        from += length;
+      }
+    }
+
+    void flush() throws IOException {
+      this.buffer.flip();
+      while (this.buffer.hasRemaining()) {
+        this.channel.write(this.buffer);
+      }
+      this.buffer.clear();
+    }
+
+    private long position() throws IOException {
+      return this.channel.position() + this.buffer.position();
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (this.buffer.remaining() < bytes) this.flush();
+    }
+  }
+}
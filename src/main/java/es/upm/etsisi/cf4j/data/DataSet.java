@@ -14,6 +14,9 @@ public interface DataSet {
   /**
    * This method generates an iterator to navigate through the raw ratings stored in DataSetEntries.
    *
+   * <p>If the iterator implements AutoCloseable, it must be closed when it is not traversed until
+   * its end.
+   *
    * @return Iterator of ratings
    */
   Iterator<DataSetEntry> getRatingsIterator();
@@ -29,6 +32,9 @@ public interface DataSet {
    * This method generates an iterator to navigate through the raw test ratings stored in
    * DataSetEntries.
    *
+   * <p>If the iterator implements AutoCloseable, it must be closed when it is not traversed until
+   * its end.
+   *
    * @return Iterator of test ratings
    */
   Iterator<DataSetEntry> getTestRatingsIterator();
@@ -2,6 +2,7 @@ package es.upm.etsisi.cf4j.data;
 
 import java.io.Serializable;
 
+import es.upm.etsisi.cf4j.data.types.CompressedRatingMatrix;
 import es.upm.etsisi.cf4j.data.types.SortedRatingList;
 
 /**
@@ -38,9 +39,18 @@ public class Item implements Serializable {
   /** DataBank to store heterogeneous information */
   protected DataBank dataBank;
 
-  /** Users that have rated the item */
+  /** Users that have rated the item. It is null while ratings are stored in compactUsersRatings */
   protected SortedRatingList usersRatings;
 
+  /** Users that have rated the item when the DataModel has been compacted */
+  protected CompressedRatingMatrix compactUsersRatings;
+
+  /** Position of the first rating of the item inside compactUsersRatings */
+  protected int compactOffset;
+
+  /** Number of ratings of the item inside compactUsersRatings */
+  protected int compactLength;
+
   /**
    * Creates a new instance of an item. This constructor should not be used by developers.
    *
@@ -88,6 +98,8 @@ public class Item implements Serializable {
    * @return Index of the user in the Users' array of the DataModel
    */
   public int getUserAt(int pos) {
+    if (this.usersRatings == null)
+      return this.compactUsersRatings.getIndex(this.compactPosition(pos));
     return this.usersRatings.get(pos).getIndex();
   }
 
@@ -98,6 +110,8 @@ public class Item implements Serializable {
    * @return Rating at indicated position
    */
   public double getRatingAt(int pos) {
+    if (this.usersRatings == null)
+      return this.compactUsersRatings.getRating(this.compactPosition(pos));
     return this.usersRatings.get(pos).getRating();
   }
 
@@ -109,6 +123,8 @@ public class Item implements Serializable {
    * @return User position if the item has been rated by the user or -1 if do not
    */
   public int findUser(int userIndex) {
+    if (this.usersRatings == null)
+      return this.compactUsersRatings.find(this.compactOffset, this.compactLength, userIndex);
     return this.usersRatings.find(userIndex);
   }
 
@@ -118,7 +134,7 @@ public class Item implements Serializable {
    * @return Number of ratings
    */
   public int getNumberOfRatings() {
-    return this.usersRatings.size();
+    return (this.usersRatings == null) ? this.compactLength : this.usersRatings.size();
   }
 
   /**
@@ -130,6 +146,13 @@ public class Item implements Serializable {
    * @param rating Rating value
    */
   public void addRating(int userIndex, double rating) {
+    // Compacted ratings are read only: they are moved back to a SortedRatingList to be modified
+    if (this.usersRatings == null) {
+      this.usersRatings =
+          this.compactUsersRatings.toSortedRatingList(this.compactOffset, this.compactLength);
+      this.compactUsersRatings = null;
+    }
+
     if (!this.usersRatings.add(userIndex, rating))
       throw new IllegalArgumentException("Provided rating already exist in item: " + id);
 
@@ -141,6 +164,19 @@ public class Item implements Serializable {
             : ((average * (this.usersRatings.size() - 1)) + rating) / this.usersRatings.size();
   }
 
+  /**
+   * Replaces the ratings of the item by the row of a compressed rating matrix. The row of the item
+   * must match with its itemIndex. This method is used by DataModel.compact().
+   *
+   * @param matrix CompressedRatingMatrix whose rows are the items of the DataModel
+   */
+  void setCompactRatings(CompressedRatingMatrix matrix) {
+    this.compactUsersRatings = matrix;
+    this.compactOffset = matrix.getRowOffset(this.itemIndex);
+    this.compactLength = matrix.getRowLength(this.itemIndex);
+    this.usersRatings = null;
+  }
+
   /**
    * Gets the minimum rating received by the item.
    *
@@ -167,4 +203,17 @@ public class Item implements Serializable {
   public double getRatingAverage() {
     return average;
   }
+
+  /**
+   * Returns the position of a rating inside the compacted matrix, checking that it belongs to
+   * the item.
+   *
+   * @param pos Position
+   * @return Position inside compactUsersRatings
+   */
+  private int compactPosition(int pos) {
+    if (pos < 0 || pos >= this.compactLength)
+      throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + this.compactLength);
+    return this.compactOffset + pos;
+  }
 }
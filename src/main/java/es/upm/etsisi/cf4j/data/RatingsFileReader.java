@@ -0,0 +1,442 @@
+package es.upm.etsisi.cf4j.data;
+
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+import es.upm.etsisi.cf4j.util.process.Partible;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the ratings of a text file in parallel. Each line of the file must have the following
+ * format:
+ *
+ * <pre>&lt;userId&gt;&lt;separator&gt;&lt;itemId&gt;&lt;separator&gt;&lt;rating&gt;</pre>
+ *
+ * <p>The file is split into chunks of bytes whose boundaries are aligned to the end of the lines.
+ * Chunks are parsed in parallel and their ratings are merged in the order of the file, so the
+ * result is the same as reading the file line by line. Fields are delimited by scanning the bytes
+ * of the separator, unless the separator contains regular expression metacharacters. In that case,
+ * each line is split with String.split(separator). Ratings are parsed with an exact fast path for
+ * short decimal numbers, falling back to Double.parseDouble(String) otherwise.
+ *
+ * <p>The file is decoded with the default charset, which must be ASCII compatible (e.g. UTF-8 or
+ * ISO-8859-1).
+ */
+class RatingsFileReader {
+
+  /** Default size in bytes of each chunk */
+  private static final int CHUNK_SIZE = 8 << 20;
+
+  /** Characters that makes the separator to be a regular expression */
+  private static final String REGEX_METACHARACTERS = ".$|()[]{}^?*+\\";
+
+  /** Powers of ten that are exactly representable as doubles */
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /** Maximum number of digits of the fast path of parseDouble. 10^15 is lower than 2^53 */
+  private static final int MAX_FAST_DIGITS = 15;
+
+  /**
+   * Reads all the ratings of a file.
+   *
+   * @param filename File with the ratings
+   * @param separator Separator between the fields of each line
+   * @return List with the ratings in the order of the file
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  static List<DataSetEntry> read(String filename, String separator) throws IOException {
+    return read(filename, separator, CHUNK_SIZE);
+  }
+
+  /**
+   * Reads all the ratings of a file splitting it into chunks of a given size. Chunks are extended
+   * to the end of their last line, so the result does not depend on the chunk size.
+   *
+   * @param filename File with the ratings
+   * @param separator Separator between the fields of each line
+   * @param chunkSize Size in bytes of each chunk. It must be greater than 0
+   * @return List with the ratings in the order of the file
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  static List<DataSetEntry> read(String filename, String separator, int chunkSize)
+      throws IOException {
+    if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be greater than 0");
+
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+
+      // Chunks boundaries are moved forward to the beginning of the next line
+      List<Chunk> chunkList = new ArrayList<>();
+      long size = channel.size();
+      long from = 0;
+      while (from < size) {
+        long to = (size - from > chunkSize) ? nextLine(channel, from + chunkSize) : size;
+        chunkList.add(new Chunk(from, (int) (to - from)));
+        from = to;
+      }
+
+      Chunk[] chunks = chunkList.toArray(new Chunk[0]);
+      Parallelizer.exec(chunks, new ChunkParser(channel, separator));
+
+      int numRatings = 0;
+      for (Chunk chunk : chunks) {
+        if (chunk.error instanceof IOException) throw (IOException) chunk.error;
+        if (chunk.error instanceof RuntimeException) throw (RuntimeException) chunk.error;
+        numRatings += chunk.entries.size();
+      }
+
+      List<DataSetEntry> entries = new ArrayList<>(numRatings);
+      for (Chunk chunk : chunks) {
+        entries.addAll(chunk.entries);
+      }
+      return entries;
+    }
+  }
+
+  /**
+   * Returns an iterator that reads the ratings of a file lazily, so they are not stored in memory.
+   * The file is closed when the iterator reaches its end or fails. Callers that stop iterating
+   * before the end must close the iterator.
+   *
+   * @param filename File with the ratings
+   * @param separator Separator between the fields of each line
+   * @return Iterator over the ratings in the order of the file
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  static CloseableIterator<DataSetEntry> iterator(String filename, String separator)
+      throws IOException {
+    return new LazyIterator(new FileInputStream(filename), separator);
+  }
+
+  /**
+   * Iterator that holds an open resource until it reaches its end or it is closed. Closing it more
+   * than once has no effect.
+   *
+   * @param <T> Type of the elements
+   */
+  interface CloseableIterator<T> extends Iterator<T>, Closeable {}
+
+  /**
+   * Finds the beginning of the line that follows a position of the file.
+   *
+   * @param channel FileChannel of the file
+   * @param position Position of the file
+   * @return Position of the first byte after the next '\n' or the size of the file
+   * @throws IOException When the file can not be read
+   */
+  private static long nextLine(FileChannel channel, long position) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    while (true) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) return channel.size();
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') return position + i + 1;
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * Parses a decimal number. Numbers with at most 15 digits, an optional sign, an optional decimal
+   * point and no exponent are computed as an integer divided by a power of ten. Both operands are
+   * exactly representable, so the correctly rounded division returns the same value than
+   * Double.parseDouble(String). Any other number is parsed by Double.parseDouble(String).
+   *
+   * @param bytes Array that contains the number
+   * @param from Position of the first character of the number
+   * @param to Position after the last character of the number
+   * @return Parsed number
+   * @throws NumberFormatException If the bytes do not contain a parsable number
+   */
+  static double parseDouble(byte[] bytes, int from, int to) {
+    int pos = from;
+    boolean negative = false;
+    if (pos < to && (bytes[pos] == '-' || bytes[pos] == '+')) {
+      negative = bytes[pos] == '-';
+      pos++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int decimals = 0;
+    boolean point = false;
+    for (; pos < to; pos++) {
+      byte b = bytes[pos];
+      if (b >= '0' && b <= '9') {
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (point) decimals++;
+      } else if (b == '.' && !point) {
+        point = true;
+      } else {
+        break;
+      }
+    }
+
+    if (pos < to || digits == 0 || digits > MAX_FAST_DIGITS) {
+      return Double.parseDouble(new String(bytes, from, to - from, Charset.defaultCharset()));
+    }
+
+    double value = (double) mantissa / POWERS_OF_TEN[decimals];
+    return negative ? -value : value;
+  }
+
+  /** Segment of the file parsed by a thread */
+  private static class Chunk {
+
+    private final long position;
+
+    private final int length;
+
+    private List<DataSetEntry> entries;
+
+    private Exception error;
+
+    Chunk(long position, int length) {
+      this.position = position;
+      this.length = length;
+    }
+  }
+
+  /** Partible that parses the lines of each chunk */
+  private static class ChunkParser implements Partible<Chunk> {
+
+    private final FileChannel channel;
+
+    private final LineParser parser;
+
+    ChunkParser(FileChannel channel, String separator) {
+      this.channel = channel;
+      this.parser = new LineParser(separator);
+    }
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(Chunk chunk) {
+      try {
+        byte[] bytes = new byte[chunk.length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+          int read = this.channel.read(buffer, chunk.position + buffer.position());
+          if (read < 0) throw new IOException("Unexpected end of file");
+        }
+
+        chunk.entries = new ArrayList<>(chunk.length / 16);
+
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+          int lineEnd = lineStart;
+          while (lineEnd < bytes.length && bytes[lineEnd] != '\n') lineEnd++;
+
+          chunk.entries.add(this.parser.parseLine(bytes, lineStart, lineEnd));
+          lineStart = lineEnd + 1;
+        }
+      } catch (Exception e) {
+        chunk.error = e;
+      }
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+
+  /** Iterator that reads the ratings of a file lazily */
+  private static class LazyIterator implements CloseableIterator<DataSetEntry> {
+
+    private final InputStream in;
+
+    private final LineParser parser;
+
+    /** Bytes read from the file. It grows if a line does not fit in it */
+    private byte[] buffer;
+
+    /** Position of the first byte of the buffer that has not been parsed */
+    private int position;
+
+    /** Number of bytes stored in the buffer */
+    private int limit;
+
+    /** Next entry to be returned or null if the end of the file has been reached */
+    private DataSetEntry next;
+
+    /** Flag that indicates that the whole file has been read */
+    private boolean eof;
+
+    LazyIterator(InputStream in, String separator) throws IOException {
+      this.in = in;
+      this.parser = new LineParser(separator);
+      this.buffer = new byte[1 << 16];
+      this.next = this.readEntry();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next != null;
+    }
+
+    @Override
+    public DataSetEntry next() {
+      if (this.next == null) throw new NoSuchElementException();
+      DataSetEntry entry = this.next;
+      try {
+        this.next = this.readEntry();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.next = null;
+      this.eof = true;
+      this.in.close();
+    }
+
+    /**
+     * Reads the next entry of the file. The file is closed if its end is reached or if the entry
+     * can not be read.
+     *
+     * @return Next entry or null if the end of the file has been reached
+     * @throws IOException When the file can not be read
+     */
+    private DataSetEntry readEntry() throws IOException {
+      try {
+        return this.readLine();
+      } catch (IOException | RuntimeException e) {
+        try {
+          this.close();
+        } catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+        throw e;
+      }
+    }
+
+    private DataSetEntry readLine() throws IOException {
+      int lineEnd = this.position;
+      while (true) {
+        while (lineEnd < this.limit && this.buffer[lineEnd] != '\n') lineEnd++;
+        if (lineEnd < this.limit) break;
+
+        // The line is not complete: unparsed bytes are moved to the beginning of the buffer
+        int pending = this.limit - this.position;
+        if (this.eof) {
+          if (pending == 0) return null;
+          break; // Last line without line break
+        }
+
+        if (pending == this.buffer.length) this.buffer = Arrays.copyOf(this.buffer, 2 * pending);
+        System.arraycopy(this.buffer, this.position, this.buffer, 0, pending);
+        this.position = 0;
+        this.limit = pending;
+        lineEnd = pending;
+
+        int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (read < 0) {
+          this.in.close();
+          this.eof = true;
+        } else {
+          this.limit += read;
+        }
+      }
+
+      DataSetEntry entry = this.parser.parseLine(this.buffer, this.position, lineEnd);
+      this.position = Math.min(lineEnd + 1, this.limit);
+      return entry;
+    }
+  }
+
+  /** Parser of the fields of a line */
+  private static class LineParser {
+
+    private final String separator;
+
+    private final byte[] separatorBytes;
+
+    private final Charset charset;
+
+    LineParser(String separator) {
+      this.separator = separator;
+      this.charset = Charset.defaultCharset();
+
+      boolean literal = !separator.isEmpty();
+      for (char c : separator.toCharArray()) {
+        if (REGEX_METACHARACTERS.indexOf(c) >= 0) literal = false;
+      }
+      this.separatorBytes = literal ? separator.getBytes(this.charset) : null;
+    }
+
+    /**
+     * Parses a line.
+     *
+     * @param bytes Array that contains the line
+     * @param from Position of the first character of the line
+     * @param to Position of the line break or the end of the array
+     * @return Entry of the line
+     */
+    DataSetEntry parseLine(byte[] bytes, int from, int to) {
+      if (to > from && bytes[to - 1] == '\r') to--;
+
+      if (this.separatorBytes == null) {
+        String[] s = new String(bytes, from, to - from, this.charset).split(this.separator);
+        if (s.length < 3) throw invalidLine(bytes, from, to);
+        return new DataSetEntry(s[0], s[1], Double.parseDouble(s[2]));
+      }
+
+      int userEnd = this.indexOfSeparator(bytes, from, to);
+      if (userEnd < 0) throw invalidLine(bytes, from, to);
+      int itemStart = userEnd + this.separatorBytes.length;
+
+      int itemEnd = this.indexOfSeparator(bytes, itemStart, to);
+      if (itemEnd < 0) throw invalidLine(bytes, from, to);
+      int ratingStart = itemEnd + this.separatorBytes.length;
+
+      int ratingEnd = this.indexOfSeparator(bytes, ratingStart, to);
+      if (ratingEnd < 0) ratingEnd = to;
+
+      String userId = new String(bytes, from, userEnd - from, this.charset);
+      String itemId = new String(bytes, itemStart, itemEnd - itemStart, this.charset);
+      double rating = parseDouble(bytes, ratingStart, ratingEnd);
+
+      return new DataSetEntry(userId, itemId, rating);
+    }
+
+    private int indexOfSeparator(byte[] bytes, int from, int to) {
+      byte first = this.separatorBytes[0];
+      int last = to - this.separatorBytes.length;
+      for (int i = from; i <= last; i++) {
+        if (bytes[i] == first) {
+          int k = 1;
+          while (k < this.separatorBytes.length && bytes[i + k] == this.separatorBytes[k]) k++;
+          if (k == this.separatorBytes.length) return i;
+        }
+      }
+      return -1;
+    }
+
+    private IllegalArgumentException invalidLine(byte[] bytes, int from, int to) {
+      String line = new String(bytes, from, to - from, this.charset);
+      return new IllegalArgumentException("Invalid ratings line: " + line);
+    }
+  }
+}
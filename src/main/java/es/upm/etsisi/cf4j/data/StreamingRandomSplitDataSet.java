@@ -0,0 +1,248 @@
+package es.upm.etsisi.cf4j.data;
+
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * This class implements the DataSet interface by random splitting the collaborative filtering
+ * ratings allocated in a text file without storing them in memory. Each line of the ratings file
+ * must have the following format:
+ *
+ * <pre>&lt;userId&gt;&lt;separator&gt;&lt;itemId&gt;&lt;separator&gt;&lt;rating&gt;</pre>
+ *
+ * <p>Where &lt;separator&gt; is an special character that delimits ratings fields (semicolon by
+ * default).
+ *
+ * <p>Training and test ratings are selected in the same way than RandomSplitDataSet, so both
+ * classes return the same ratings for the same seed. The file is read once to select the test
+ * users and test items, and it is read again each time an iterator is requested. Only the ids of
+ * the test users and test items are kept in memory. The file must not be modified while the
+ * DataSet is in use.
+ */
+public class StreamingRandomSplitDataSet implements DataSet {
+
+  protected static final String DEFAULT_SEPARATOR = ";";
+
+  /** File with the ratings */
+  protected String filename;
+
+  /** Separator between file fields */
+  protected String separator;
+
+  /** Ids of the test users */
+  protected Set<String> testUsers;
+
+  /** Ids of the test items */
+  protected Set<String> testItems;
+
+  /** Number of (training) ratings */
+  protected int numberOfRatings;
+
+  /** Number of test ratings */
+  protected int numberOfTestRatings;
+
+  /**
+   * Generates a DataSet form a text file. The DataSet is loaded without test items and test users.
+   *
+   * @param filename File with the ratings.
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  public StreamingRandomSplitDataSet(String filename) throws IOException {
+    this(filename, 0.0, 0.0);
+  }
+
+  /**
+   * Generates a DataSet form a text file. The DataSet is loaded with a specific percentage of test
+   * items and test users.
+   *
+   * @param filename File with the ratings.
+   * @param testUsersPercent Percentage of users that will be of test.
+   * @param testItemsPercent Percentage of items that will be of test.
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  public StreamingRandomSplitDataSet(
+      String filename, double testUsersPercent, double testItemsPercent) throws IOException {
+    this(filename, testUsersPercent, testItemsPercent, DEFAULT_SEPARATOR);
+  }
+
+  /**
+   * Generates a DataSet form a text file. The DataSet is loaded with a specific percentage of test
+   * items and test users. This constructor allows to define an specific random seed to ensure the
+   * reproducibility of the experiments.
+   *
+   * @param filename File with the ratings.
+   * @param testUsersPercent Percentage of users that will be of test.
+   * @param testItemsPercent Percentage of items that will be of test.
+   * @param seed Seed applied to the random number generator.
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  public StreamingRandomSplitDataSet(
+      String filename, double testUsersPercent, double testItemsPercent, long seed)
+      throws IOException {
+    this(filename, testUsersPercent, testItemsPercent, DEFAULT_SEPARATOR, seed);
+  }
+
+  /**
+   * Generates a DataSet form a text file. The DataSet is loaded with a specific percentage of test
+   * items and test users.
+   *
+   * @param filename File with the ratings.
+   * @param testUsersPercent Percentage of users that will be of test.
+   * @param testItemsPercent Percentage of items that will be of test.
+   * @param separator Separator char between file fields.
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  public StreamingRandomSplitDataSet(
+      String filename, double testUsersPercent, double testItemsPercent, String separator)
+      throws IOException {
+    this(filename, testUsersPercent, testItemsPercent, separator, System.currentTimeMillis());
+  }
+
+  /**
+   * Generates a DataSet form a text file. The DataSet is loaded without test items and test users.
+   *
+   * @param filename File with the ratings.
+   * @param separator Separator char between file fields.
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  public StreamingRandomSplitDataSet(String filename, String separator) throws IOException {
+    this(filename, 0.0, 0.0, separator, System.currentTimeMillis());
+  }
+
+  /**
+   * Generates a DataSet form a text file. The DataSet is loaded with a specific percentage of test
+   * items and test users. This constructor allows to define an specific random seed to ensure the
+   * reproducibility of the experiments.
+   *
+   * @param filename File with the ratings.
+   * @param testUsersPercent Percentage of users that will be of test.
+   * @param testItemsPercent Percentage of items that will be of test.
+   * @param seed Seed applied to the random number generator.
+   * @param separator Separator char between file fields.
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  public StreamingRandomSplitDataSet(
+      String filename,
+      double testUsersPercent,
+      double testItemsPercent,
+      String separator,
+      long seed)
+      throws IOException {
+
+    this.filename = filename;
+    this.separator = separator;
+
+    Random rand = new Random(seed);
+
+    this.testUsers = new HashSet<>();
+    this.testItems = new HashSet<>();
+
+    System.out.println("\nLoading dataset...");
+
+    // Users and items already seen. They are discarded once the test ones have been selected
+    Set<String> users = new HashSet<>();
+    Set<String> items = new HashSet<>();
+
+    try (RatingsFileReader.CloseableIterator<DataSetEntry> it =
+        RatingsFileReader.iterator(filename, separator)) {
+      while (it.hasNext()) {
+        DataSetEntry entry = it.next();
+
+        // Filtering entries in the same order than RandomSplitDataSet
+        if (users.add(entry.userId) && rand.nextFloat() <= testUsersPercent) {
+          this.testUsers.add(entry.userId);
+        }
+
+        if (items.add(entry.itemId) && rand.nextFloat() <= testItemsPercent) {
+          this.testItems.add(entry.itemId);
+        }
+
+        if (this.isTest(entry)) {
+          this.numberOfTestRatings++;
+        } else {
+          this.numberOfRatings++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks if a rating belongs to the test set.
+   *
+   * @param entry Rating
+   * @return true if both the user and the item of the rating are of test
+   */
+  protected boolean isTest(DataSetEntry entry) {
+    return this.testUsers.contains(entry.userId) && this.testItems.contains(entry.itemId);
+  }
+
+  @Override
+  public Iterator<DataSetEntry> getRatingsIterator() {
+    return new SplitIterator(false);
+  }
+
+  @Override
+  public Iterator<DataSetEntry> getTestRatingsIterator() {
+    return new SplitIterator(true);
+  }
+
+  @Override
+  public int getNumberOfRatings() {
+    return this.numberOfRatings;
+  }
+
+  @Override
+  public int getNumberOfTestRatings() {
+    return this.numberOfTestRatings;
+  }
+
+  /** Iterator that reads the file and returns either the training or the test ratings */
+  private class SplitIterator implements RatingsFileReader.CloseableIterator<DataSetEntry> {
+
+    private final RatingsFileReader.CloseableIterator<DataSetEntry> iterator;
+
+    private final boolean test;
+
+    private DataSetEntry next;
+
+    SplitIterator(boolean test) {
+      try {
+        this.iterator = RatingsFileReader.iterator(filename, separator);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.test = test;
+      this.next = this.findNext();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next != null;
+    }
+
+    @Override
+    public DataSetEntry next() {
+      if (this.next == null) throw new NoSuchElementException();
+      DataSetEntry entry = this.next;
+      this.next = this.findNext();
+      return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.next = null;
+      this.iterator.close();
+    }
+
+    private DataSetEntry findNext() {
+      while (this.iterator.hasNext()) {
+        DataSetEntry entry = this.iterator.next();
+        if (isTest(entry) == this.test) return entry;
+      }
+      return null;
+    }
+  }
+}
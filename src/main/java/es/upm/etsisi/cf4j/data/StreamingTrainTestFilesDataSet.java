@@ -0,0 +1,114 @@
+package es.upm.etsisi.cf4j.data;
+
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+/**
+ * This class implements the DataSet interface by reading training and test ratings from separated
+ * text files without storing them in memory. Each line of the ratings files must have the
+ * following format:
+ *
+ * <pre>&lt;userId&gt;&lt;separator&gt;&lt;itemId&gt;&lt;separator&gt;&lt;rating&gt;</pre>
+ *
+ * <p>Where &lt;separator&gt; is an special character that delimits ratings fields (semicolon by
+ * default).
+ *
+ * <p>Files are read once to count their ratings, and they are read again each time an iterator is
+ * requested. The files must not be modified while the DataSet is in use.
+ */
+public class StreamingTrainTestFilesDataSet implements DataSet {
+
+  protected static final String DEFAULT_SEPARATOR = ";";
+
+  /** File with the (training) ratings */
+  protected String trainingFileName;
+
+  /** File with the test ratings */
+  protected String testFileName;
+
+  /** Separator between file fields */
+  protected String separator;
+
+  /** Number of (training) ratings */
+  protected int numberOfRatings;
+
+  /** Number of test ratings */
+  protected int numberOfTestRatings;
+
+  /**
+   * Generates a DataSet form training and test ratings files. Semicolon is used as separator.
+   *
+   * @param trainingFileName File with the (training) ratings.
+   * @param testFileName File with the test ratings.
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  public StreamingTrainTestFilesDataSet(String trainingFileName, String testFileName)
+      throws IOException {
+    this(trainingFileName, testFileName, DEFAULT_SEPARATOR);
+  }
+
+  /**
+   * Generates a DataSet form training and test ratings files.
+   *
+   * @param trainingFileName File with the (training) ratings.
+   * @param testFileName File with the test ratings.
+   * @param separator Separator char between ratings fields.
+   * @throws IOException When the file is not accessible by the system with read permissions.
+   */
+  public StreamingTrainTestFilesDataSet(
+      String trainingFileName, String testFileName, String separator) throws IOException {
+
+    this.trainingFileName = trainingFileName;
+    this.testFileName = testFileName;
+    this.separator = separator;
+
+    System.out.println("\nLoading " + trainingFileName + "...");
+    this.numberOfRatings = count(trainingFileName, separator);
+
+    System.out.println("\nLoading " + testFileName + "...");
+    this.numberOfTestRatings = count(testFileName, separator);
+  }
+
+  private static int count(String filename, String separator) throws IOException {
+    int count = 0;
+    try (RatingsFileReader.CloseableIterator<DataSetEntry> it =
+        RatingsFileReader.iterator(filename, separator)) {
+      while (it.hasNext()) {
+        it.next();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public Iterator<DataSetEntry> getRatingsIterator() {
+    try {
+      return RatingsFileReader.iterator(this.trainingFileName, this.separator);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public Iterator<DataSetEntry> getTestRatingsIterator() {
+    try {
+      return RatingsFileReader.iterator(this.testFileName, this.separator);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public int getNumberOfRatings() {
+    return this.numberOfRatings;
+  }
+
+  @Override
+  public int getNumberOfTestRatings() {
+    return this.numberOfTestRatings;
+  }
+}
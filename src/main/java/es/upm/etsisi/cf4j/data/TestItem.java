@@ -1,5 +1,6 @@
 package es.upm.etsisi.cf4j.data;
 
+import es.upm.etsisi.cf4j.data.types.CompressedRatingMatrix;
 import es.upm.etsisi.cf4j.data.types.SortedRatingList;
 
 /**
@@ -29,9 +30,18 @@ public class TestItem extends Item {
   /** Average test rating */
   protected double averageTest = 0.0;
 
-  /** Array of test users that have rated this test item */
+  /** Test users that have rated this test item. It is null while compactTestUsersRatings is used */
   protected SortedRatingList testUsersRatings;
 
+  /** Test users that have rated this test item when the DataModel has been compacted */
+  protected CompressedRatingMatrix compactTestUsersRatings;
+
+  /** Position of the first test rating of the item inside compactTestUsersRatings */
+  protected int compactTestOffset;
+
+  /** Number of test ratings of the item inside compactTestUsersRatings */
+  protected int compactTestLength;
+
   /**
    * Creates a new instance of a test item. This constructor should not be used by developers.
    *
@@ -61,6 +71,8 @@ public class TestItem extends Item {
    * @return Index of the test user in the TestUsers' array of the DataModel
    */
   public int getTestUserAt(int pos) {
+    if (this.testUsersRatings == null)
+      return this.compactTestUsersRatings.getIndex(this.compactTestPosition(pos));
     return this.testUsersRatings.get(pos).getIndex();
   }
 
@@ -71,6 +83,8 @@ public class TestItem extends Item {
    * @return Test rating at indicated position
    */
   public double getTestRatingAt(int pos) {
+    if (this.testUsersRatings == null)
+      return this.compactTestUsersRatings.getRating(this.compactTestPosition(pos));
     return this.testUsersRatings.get(pos).getRating();
   }
 
@@ -82,6 +96,9 @@ public class TestItem extends Item {
    * @return TestUser position if the test item has been rated by the test user or -1 if do not
    */
   public int findTestUser(int testUserIndex) {
+    if (this.testUsersRatings == null)
+      return this.compactTestUsersRatings.find(
+          this.compactTestOffset, this.compactTestLength, testUserIndex);
     return this.testUsersRatings.find(testUserIndex);
   }
 
@@ -91,7 +108,7 @@ public class TestItem extends Item {
    * @return Number of test ratings
    */
   public int getNumberOfTestRatings() {
-    return this.testUsersRatings.size();
+    return (this.testUsersRatings == null) ? this.compactTestLength : this.testUsersRatings.size();
   }
 
   /**
@@ -103,6 +120,14 @@ public class TestItem extends Item {
    * @param rating Rating value
    */
   public void addTestRating(int testUserIndex, double rating) {
+    // Compacted ratings are read only: they are moved back to a SortedRatingList to be modified
+    if (this.testUsersRatings == null) {
+      this.testUsersRatings =
+          this.compactTestUsersRatings.toSortedRatingList(
+              this.compactTestOffset, this.compactTestLength);
+      this.compactTestUsersRatings = null;
+    }
+
     if (!this.testUsersRatings.add(testUserIndex, rating))
       throw new IllegalArgumentException("Provided rating already exist in test item: " + id);
 
@@ -115,6 +140,19 @@ public class TestItem extends Item {
                 / this.testUsersRatings.size();
   }
 
+  /**
+   * Replaces the test ratings of the item by the row of a compressed rating matrix. The row of the
+   * item must match with its testItemIndex. This method is used by DataModel.compact().
+   *
+   * @param matrix CompressedRatingMatrix whose rows are the test items of the DataModel
+   */
+  void setCompactTestRatings(CompressedRatingMatrix matrix) {
+    this.compactTestUsersRatings = matrix;
+    this.compactTestOffset = matrix.getRowOffset(this.testItemIndex);
+    this.compactTestLength = matrix.getRowLength(this.testItemIndex);
+    this.testUsersRatings = null;
+  }
+
   /**
    * Gets the minimum test rating received by the item
    *
@@ -141,4 +179,17 @@ public class TestItem extends Item {
   public double getTestRatingAverage() {
     return averageTest;
   }
+
+  /**
+   * Returns the position of a test rating inside the compacted matrix, checking that it belongs to
+   * the test item.
+   *
+   * @param pos Position
+   * @return Position inside compactTestUsersRatings
+   */
+  private int compactTestPosition(int pos) {
+    if (pos < 0 || pos >= this.compactTestLength)
+      throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + this.compactTestLength);
+    return this.compactTestOffset + pos;
+  }
 }
@@ -1,5 +1,6 @@
 package es.upm.etsisi.cf4j.data;
 
+import es.upm.etsisi.cf4j.data.types.CompressedRatingMatrix;
 import es.upm.etsisi.cf4j.data.types.SortedRatingList;
 
 /**
@@ -29,9 +30,18 @@ public class TestUser extends User {
   /** Average test rating */
   protected double averageTest = 0.0;
 
-  /** TestItems rated by the user */
+  /** TestItems rated by the user. It is null while ratings are stored in compactTestItemsRatings */
   protected SortedRatingList testItemsRatings;
 
+  /** TestItems rated by the user when the DataModel has been compacted */
+  protected CompressedRatingMatrix compactTestItemsRatings;
+
+  /** Position of the first test rating of the user inside compactTestItemsRatings */
+  protected int compactTestOffset;
+
+  /** Number of test ratings of the user inside compactTestItemsRatings */
+  protected int compactTestLength;
+
   /**
    * Creates a new instance of a test user. This constructor should not be used by developers.
    *
@@ -61,6 +71,8 @@ public class TestUser extends User {
    * @return Index of the test item in the TestItems' array of the DataModel
    */
   public int getTestItemAt(int pos) {
+    if (this.testItemsRatings == null)
+      return this.compactTestItemsRatings.getIndex(this.compactTestPosition(pos));
     return this.testItemsRatings.get(pos).getIndex();
   }
 
@@ -71,6 +83,8 @@ public class TestUser extends User {
    * @return Test rating at indicated position
    */
   public double getTestRatingAt(int pos) {
+    if (this.testItemsRatings == null)
+      return this.compactTestItemsRatings.getRating(this.compactTestPosition(pos));
     return this.testItemsRatings.get(pos).getRating();
   }
 
@@ -81,6 +95,9 @@ public class TestUser extends User {
    * @return TestItem position if the test item has been rated by the test user or -1 if do not
    */
   public int findTestItem(int testItemIndex) {
+    if (this.testItemsRatings == null)
+      return this.compactTestItemsRatings.find(
+          this.compactTestOffset, this.compactTestLength, testItemIndex);
     return testItemsRatings.find(testItemIndex);
   }
 
@@ -90,7 +107,7 @@ public class TestUser extends User {
    * @return Number of test ratings
    */
   public int getNumberOfTestRatings() {
-    return this.testItemsRatings.size();
+    return (this.testItemsRatings == null) ? this.compactTestLength : this.testItemsRatings.size();
   }
 
   /**
@@ -102,6 +119,14 @@ public class TestUser extends User {
    * @param rating Rating value
    */
   public void addTestRating(int testItemIndex, double rating) {
+    // Compacted ratings are read only: they are moved back to a SortedRatingList to be modified
+    if (this.testItemsRatings == null) {
+      this.testItemsRatings =
+          this.compactTestItemsRatings.toSortedRatingList(
+              this.compactTestOffset, this.compactTestLength);
+      this.compactTestItemsRatings = null;
+    }
+
     if (!this.testItemsRatings.add(testItemIndex, rating))
       throw new IllegalArgumentException("Provided rating already exist in user: " + id);
 
@@ -114,6 +139,19 @@ public class TestUser extends User {
                 / this.testItemsRatings.size();
   }
 
+  /**
+   * Replaces the test ratings of the user by the row of a compressed rating matrix. The row of the
+   * user must match with his or her testUserIndex. This method is used by DataModel.compact().
+   *
+   * @param matrix CompressedRatingMatrix whose rows are the test users of the DataModel
+   */
+  void setCompactTestRatings(CompressedRatingMatrix matrix) {
+    this.compactTestItemsRatings = matrix;
+    this.compactTestOffset = matrix.getRowOffset(this.testUserIndex);
+    this.compactTestLength = matrix.getRowLength(this.testUserIndex);
+    this.testItemsRatings = null;
+  }
+
   /**
    * Gets the minimum test rating of the user
    *
@@ -140,4 +178,17 @@ public class TestUser extends User {
   public double getTestRatingAverage() {
     return averageTest;
   }
+
+  /**
+   * Returns the position of a test rating inside the compacted matrix, checking that it belongs to
+   * the test user.
+   *
+   * @param pos Position
+   * @return Position inside compactTestItemsRatings
+   */
+  private int compactTestPosition(int pos) {
+    if (pos < 0 || pos >= this.compactTestLength)
+      throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + this.compactTestLength);
+    return this.compactTestOffset + pos;
+  }
 }
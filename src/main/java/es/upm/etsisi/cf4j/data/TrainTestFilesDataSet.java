@@ -2,8 +2,7 @@ package es.upm.etsisi.cf4j.data;
 
 import es.upm.etsisi.cf4j.data.types.DataSetEntry;
 
-import java.io.*;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 
@@ -52,48 +51,13 @@ public class TrainTestFilesDataSet implements DataSet {
 
     System.out.println("\nLoading " + trainingFileName + "...");
 
-    BufferedReader datasetFile = new BufferedReader(new FileReader(new File(trainingFileName)));
-    this.ratings = new ArrayList<>();
-
-    String line;
-    int numLines = 0;
-    while ((line = datasetFile.readLine()) != null) {
-      numLines++;
-      if (numLines % 1000000 == 0) System.out.print(".");
-      if (numLines % 10000000 == 0) System.out.println(numLines + " ratings");
-
-      String[] s = line.split(separator);
-      String userId = s[0];
-      String itemId = s[1];
-      double rating = Double.parseDouble(s[2]);
-
-      this.ratings.add(new DataSetEntry(userId, itemId, rating));
-    }
-
-    datasetFile.close();
+    this.ratings = RatingsFileReader.read(trainingFileName, separator);
 
     // Load test file
 
     System.out.println("\nLoading " + testFileName + "...");
 
-    BufferedReader testDatasetFile = new BufferedReader(new FileReader(new File(testFileName)));
-    this.testRatings = new ArrayList<>();
-
-    numLines = 0;
-    while ((line = testDatasetFile.readLine()) != null) {
-      numLines++;
-      if (numLines % 1000000 == 0) System.out.print(".");
-      if (numLines % 10000000 == 0) System.out.println(numLines + " ratings");
-
-      String[] s = line.split(separator);
-      String userId = s[0];
-      String itemId = s[1];
-      double rating = Double.parseDouble(s[2]);
-
-      this.testRatings.add(new DataSetEntry(userId, itemId, rating));
-    }
-
-    testDatasetFile.close();
+    this.testRatings = RatingsFileReader.read(testFileName, separator);
   }
 
   @Override
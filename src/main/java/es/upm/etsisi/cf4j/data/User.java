@@ -2,6 +2,7 @@ package es.upm.etsisi.cf4j.data;
 
 import java.io.Serializable;
 
+import es.upm.etsisi.cf4j.data.types.CompressedRatingMatrix;
 import es.upm.etsisi.cf4j.data.types.SortedRatingList;
 
 /**
@@ -38,9 +39,18 @@ public class User implements Serializable {
   /** DataBank to store heterogeneous information */
   protected DataBank dataBank;
 
-  /** Items rated by the user */
+  /** Items rated by the user. It is null while the ratings are stored in compactItemsRatings */
   protected SortedRatingList itemsRatings;
 
+  /** Items rated by the user when the DataModel has been compacted */
+  protected CompressedRatingMatrix compactItemsRatings;
+
+  /** Position of the first rating of the user inside compactItemsRatings */
+  protected int compactOffset;
+
+  /** Number of ratings of the user inside compactItemsRatings */
+  protected int compactLength;
+
   /**
    * Creates a new instance of an user. This constructor should not be used by developers.
    *
@@ -88,6 +98,8 @@ public class User implements Serializable {
    * @return Index of the item in the Items' array of the DataModel
    */
   public int getItemAt(int pos) {
+    if (this.itemsRatings == null)
+      return this.compactItemsRatings.getIndex(this.compactPosition(pos));
     return this.itemsRatings.get(pos).getIndex();
   }
 
@@ -98,6 +110,8 @@ public class User implements Serializable {
    * @return Rating at indicated position
    */
   public double getRatingAt(int pos) {
+    if (this.itemsRatings == null)
+      return this.compactItemsRatings.getRating(this.compactPosition(pos));
     return this.itemsRatings.get(pos).getRating();
   }
 
@@ -108,6 +122,8 @@ public class User implements Serializable {
    * @return Item position if the item has been rated by the user or -1 if do not
    */
   public int findItem(int itemIndex) {
+    if (this.itemsRatings == null)
+      return this.compactItemsRatings.find(this.compactOffset, this.compactLength, itemIndex);
     return itemsRatings.find(itemIndex);
   }
 
@@ -117,7 +133,7 @@ public class User implements Serializable {
    * @return Number of ratings
    */
   public int getNumberOfRatings() {
-    return this.itemsRatings.size();
+    return (this.itemsRatings == null) ? this.compactLength : this.itemsRatings.size();
   }
 
   /**
@@ -129,6 +145,13 @@ public class User implements Serializable {
    * @param rating Rating value
    */
   public void addRating(int itemIndex, double rating) {
+    // Compacted ratings are read only: they are moved back to a SortedRatingList to be modified
+    if (this.itemsRatings == null) {
+      this.itemsRatings =
+          this.compactItemsRatings.toSortedRatingList(this.compactOffset, this.compactLength);
+      this.compactItemsRatings = null;
+    }
+
     if (!this.itemsRatings.add(itemIndex, rating))
       throw new IllegalArgumentException("Provided rating already exist in user: " + id);
 
@@ -137,6 +160,19 @@ public class User implements Serializable {
     average = (average * (this.itemsRatings.size() - 1) + rating) / this.itemsRatings.size();
   }
 
+  /**
+   * Replaces the ratings of the user by the row of a compressed rating matrix. The row of the user
+   * must match with his or her userIndex. This method is used by DataModel.compact().
+   *
+   * @param matrix CompressedRatingMatrix whose rows are the users of the DataModel
+   */
+  void setCompactRatings(CompressedRatingMatrix matrix) {
+    this.compactItemsRatings = matrix;
+    this.compactOffset = matrix.getRowOffset(this.userIndex);
+    this.compactLength = matrix.getRowLength(this.userIndex);
+    this.itemsRatings = null;
+  }
+
   /**
    * Gets the minimum rating of the user
    *
@@ -163,4 +199,17 @@ public class User implements Serializable {
   public double getRatingAverage() {
     return average;
   }
+
+  /**
+   * Returns the position of a rating inside the compacted matrix, checking that it belongs to
+   * the user.
+   *
+   * @param pos Position
+   * @return Position inside compactItemsRatings
+   */
+  private int compactPosition(int pos) {
+    if (pos < 0 || pos >= this.compactLength)
+      throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + this.compactLength);
+    return this.compactOffset + pos;
+  }
 }
@@ -0,0 +1,229 @@
+package es.upm.etsisi.cf4j.data.types;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * CompressedRatingMatrix stores a sparse rating matrix using flat primitive arrays. Each row of the
+ * matrix is a contiguous segment of the arrays, delimited by the offsets array, that contains the
+ * &lt;index, rating&gt; pairs of the row sorted by index. When the rows are users this layout is
+ * known as compressed sparse row (CSR), and when the rows are items it is known as compressed
+ * sparse column (CSC).
+ *
+ * <p>This class is used by the structural classes User, TestUser, Item and TestItem when the
+ * DataModel has been compacted. Developers do not need to manipulate this class.
+ */
+public class CompressedRatingMatrix implements Serializable {
+
+  private static final long serialVersionUID = 20200314L;
+
+  /** Position of the first rating of each row. Its length is the number of rows plus one */
+  private final int[] offsets;
+
+  /** Indexes (column of the matrix) of the ratings */
+  private final int[] indexes;
+
+  /** Rating values stored in double precision. It is null if float precision is used */
+  private final double[] ratings;
+
+  /** Rating values stored in float precision. It is null if double precision is used */
+  private final float[] floatRatings;
+
+  /**
+   * Creates a new CompressedRatingMatrix whose ratings are stored in double precision.
+   *
+   * @param offsets Position of the first rating of each row. Its length must be the number of rows
+   *     plus one, being the last element the number of ratings
+   * @param indexes Indexes of the ratings. The indexes of each row must be sorted
+   * @param ratings Rating values
+   */
+  public CompressedRatingMatrix(int[] offsets, int[] indexes, double[] ratings) {
+    this(offsets, indexes, ratings, null);
+  }
+
+  /**
+   * Creates a new CompressedRatingMatrix whose ratings are stored in float precision.
+   *
+   * @param offsets Position of the first rating of each row. Its length must be the number of rows
+   *     plus one, being the last element the number of ratings
+   * @param indexes Indexes of the ratings. The indexes of each row must be sorted
+   * @param ratings Rating values
+   */
+  public CompressedRatingMatrix(int[] offsets, int[] indexes, float[] ratings) {
+    this(offsets, indexes, null, ratings);
+  }
+
+  /**
+   * Constructor for subclasses that store the matrix outside the Java heap. Subclasses must
+   * override every accessor of this class.
+   */
+  protected CompressedRatingMatrix() {
+    this.offsets = null;
+    this.indexes = null;
+    this.ratings = null;
+    this.floatRatings = null;
+  }
+
+  private CompressedRatingMatrix(
+      int[] offsets, int[] indexes, double[] ratings, float[] floatRatings) {
+    int numRatings = (ratings != null) ? ratings.length : floatRatings.length;
+    if (offsets.length == 0 || offsets[offsets.length - 1] != numRatings)
+      throw new IllegalArgumentException("Offsets do not match with the number of ratings");
+    if (indexes.length != numRatings)
+      throw new IllegalArgumentException("Indexes and ratings must have the same length");
+
+    this.offsets = offsets;
+    this.indexes = indexes;
+    this.ratings = ratings;
+    this.floatRatings = floatRatings;
+  }
+
+  /**
+   * Gets the number of rows of the matrix.
+   *
+   * @return Number of rows
+   */
+  public int getNumberOfRows() {
+    return this.offsets.length - 1;
+  }
+
+  /**
+   * Gets the number of ratings stored in the matrix.
+   *
+   * @return Number of ratings
+   */
+  public int getNumberOfRatings() {
+    return this.indexes.length;
+  }
+
+  /**
+   * Checks if the ratings are stored in float precision.
+   *
+   * @return true if the ratings are stored in float precision, false if double precision is used
+   */
+  public boolean isFloatPrecision() {
+    return this.floatRatings != null;
+  }
+
+  /**
+   * Gets the position of the first rating of a row.
+   *
+   * @param row Row of the matrix
+   * @return Position of the first rating of the row
+   */
+  public int getRowOffset(int row) {
+    return this.offsets[row];
+  }
+
+  /**
+   * Gets the number of ratings of a row.
+   *
+   * @param row Row of the matrix
+   * @return Number of ratings of the row
+   */
+  public int getRowLength(int row) {
+    return this.offsets[row + 1] - this.offsets[row];
+  }
+
+  /**
+   * Gets the index stored at an absolute position of the matrix.
+   *
+   * @param offset Absolute position, i.e. the row offset plus the position inside the row
+   * @return Index
+   */
+  public int getIndex(int offset) {
+    return this.indexes[offset];
+  }
+
+  /**
+   * Gets the rating stored at an absolute position of the matrix.
+   *
+   * @param offset Absolute position, i.e. the row offset plus the position inside the row
+   * @return Rating value
+   */
+  public double getRating(int offset) {
+    return (this.ratings != null) ? this.ratings[offset] : this.floatRatings[offset];
+  }
+
+  /**
+   * Finds the position of an index inside a segment of the matrix.
+   *
+   * @param offset Absolute position of the first rating of the segment
+   * @param length Number of ratings of the segment
+   * @param index Index to be found
+   * @return Position of the index relative to offset or -1 if it does not exist
+   */
+  public int find(int offset, int length, int index) {
+    int low = offset, high = offset + length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midIndex = this.indexes[mid];
+      if (midIndex > index) {
+        high = mid - 1;
+      } else if (midIndex < index) {
+        low = mid + 1;
+      } else {
+        return mid - offset;
+      }
+    }
+    return -1; // If it doesn't exist.
+  }
+
+  /**
+   * Builds the transposed matrix, i.e. the compressed sparse column matrix of a compressed sparse
+   * row matrix and vice versa. Since rows are traversed in order, the indexes of each row of the
+   * transposed matrix are sorted without additional work.
+   *
+   * @param numColumns Number of columns of the matrix, i.e. number of rows of the transposed one
+   * @return Transposed CompressedRatingMatrix with the same precision
+   */
+  public CompressedRatingMatrix transpose(int numColumns) {
+    int numRows = this.getNumberOfRows();
+    int numRatings = this.getNumberOfRatings();
+
+    int[] transposedOffsets = new int[numColumns + 1];
+    for (int offset = 0; offset < numRatings; offset++) {
+      transposedOffsets[this.getIndex(offset) + 1]++;
+    }
+    for (int column = 0; column < numColumns; column++) {
+      transposedOffsets[column + 1] += transposedOffsets[column];
+    }
+
+    int[] cursor = Arrays.copyOf(transposedOffsets, numColumns);
+    int[] transposedIndexes = new int[numRatings];
+    double[] transposedRatings = this.isFloatPrecision() ? null : new double[numRatings];
+    float[] transposedFloatRatings = this.isFloatPrecision() ? new float[numRatings] : null;
+
+    for (int row = 0; row < numRows; row++) {
+      int end = this.getRowOffset(row) + this.getRowLength(row);
+      for (int offset = this.getRowOffset(row); offset < end; offset++) {
+        int pos = cursor[this.getIndex(offset)]++;
+        transposedIndexes[pos] = row;
+        if (transposedRatings != null) {
+          transposedRatings[pos] = this.getRating(offset);
+        } else {
+          transposedFloatRatings[pos] = (float) this.getRating(offset);
+        }
+      }
+    }
+
+    return new CompressedRatingMatrix(
+        transposedOffsets, transposedIndexes, transposedRatings, transposedFloatRatings);
+  }
+
+  /**
+   * Copies a segment of the matrix into a new SortedRatingList.
+   *
+   * @param offset Absolute position of the first rating of the segment
+   * @param length Number of ratings of the segment
+   * @return SortedRatingList with the ratings of the segment
+   */
+  public SortedRatingList toSortedRatingList(int offset, int length) {
+    SortedRatingList list = new SortedRatingList();
+    list.ensureCapacity(length);
+    for (int pos = offset; pos < offset + length; pos++) {
+      list.add(new Rating(this.getIndex(pos), this.getRating(pos)));
+    }
+    return list;
+  }
+}
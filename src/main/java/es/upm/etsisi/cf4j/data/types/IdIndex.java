@@ -0,0 +1,162 @@
+package es.upm.etsisi.cf4j.data.types;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * IdIndex maps the ids of the users or items of a DataModel to their indexes in constant time. It
+ * is an open addressing hash table with linear probing whose slots store the index of the id plus
+ * one (zero means empty slot). The table is at most half full. Since String.hashCode() is
+ * specified by the Java language, the slots can be stored and reused by other JVMs.
+ *
+ * <p>This class is used by the DataModel. Developers do not need to manipulate this class.
+ */
+public class IdIndex implements Serializable {
+
+  private static final long serialVersionUID = 20200314L;
+
+  /** Ids sorted by index */
+  private String[] ids;
+
+  /** Index plus one of the id stored in each slot or zero if the slot is empty */
+  private int[] slots;
+
+  /** Number of ids of the index */
+  private int size;
+
+  /** Builds an empty index. Ids can be added with add(String). */
+  public IdIndex() {
+    this(new String[0]);
+  }
+
+  /**
+   * Builds the index of an array of ids.
+   *
+   * @param ids Ids sorted by index. Ids can not be repeated
+   */
+  public IdIndex(String[] ids) {
+    this.ids = ids;
+    this.size = ids.length;
+    this.slots = new int[capacity(ids.length)];
+
+    int mask = this.slots.length - 1;
+    for (int index = 0; index < ids.length; index++) {
+      int slot = hash(ids[index]) & mask;
+      while (this.slots[slot] != 0) {
+        if (ids[this.slots[slot] - 1].equals(ids[index]))
+          throw new IllegalArgumentException("Repeated id: " + ids[index]);
+        slot = (slot + 1) & mask;
+      }
+      this.slots[slot] = index + 1;
+    }
+  }
+
+  /**
+   * Restores a previously built index (see getSlots()).
+   *
+   * @param ids Ids sorted by index
+   * @param slots Slots of the index built for the same ids
+   */
+  public IdIndex(String[] ids, int[] slots) {
+    if (slots.length != capacity(ids.length))
+      throw new IllegalArgumentException("Slots do not match with the number of ids");
+    this.ids = ids;
+    this.size = ids.length;
+    this.slots = slots;
+  }
+
+  /**
+   * Gets the number of slots of the index of a given number of ids: the lowest power of two that
+   * is, at least, twice the number of ids.
+   *
+   * @param numIds Number of ids
+   * @return Number of slots
+   */
+  public static int capacity(int numIds) {
+    int capacity = 2;
+    while (capacity < 2L * numIds) capacity <<= 1;
+    return capacity;
+  }
+
+  /**
+   * Gets the index of an id.
+   *
+   * @param id Id to be found
+   * @return Index of the id or -1 if it does not exist
+   */
+  public int get(String id) {
+    int mask = this.slots.length - 1;
+    for (int slot = hash(id) & mask; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+      int index = this.slots[slot] - 1;
+      if (this.ids[index].equals(id)) return index;
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the index of an id, adding it to the index if it does not exist. New ids get consecutive
+   * indexes starting at the number of ids of the index, so the DataModel can build its users and
+   * items while it finds their indexes.
+   *
+   * @param id Id to be found or added
+   * @return Index of the id
+   */
+  public int add(String id) {
+    int mask = this.slots.length - 1;
+    int slot = hash(id) & mask;
+    for (; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+      int index = this.slots[slot] - 1;
+      if (this.ids[index].equals(id)) return index;
+    }
+
+    if (this.size == this.ids.length) {
+      this.ids = Arrays.copyOf(this.ids, Math.max(1, this.size * 2));
+    }
+    this.ids[this.size] = id;
+
+    if (2L * (this.size + 1) > this.slots.length) {
+      this.rehash(this.slots.length * 2);
+      mask = this.slots.length - 1;
+      slot = hash(id) & mask;
+      while (this.slots[slot] != 0) slot = (slot + 1) & mask;
+    }
+    this.slots[slot] = ++this.size;
+
+    return this.size - 1;
+  }
+
+  /**
+   * Gets the number of ids of the index.
+   *
+   * @return Number of ids
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Gets the slots of the table. They can be stored to restore the index without rebuilding it.
+   *
+   * @return Slots of the table
+   */
+  public int[] getSlots() {
+    return this.slots;
+  }
+
+  /** Moves the ids to a table with a new number of slots */
+  private void rehash(int capacity) {
+    this.slots = new int[capacity];
+    int mask = capacity - 1;
+    for (int index = 0; index < this.size; index++) {
+      int slot = hash(this.ids[index]) & mask;
+      while (this.slots[slot] != 0) slot = (slot + 1) & mask;
+      this.slots[slot] = index + 1;
+    }
+  }
+
+  /** Spreads the bits of String.hashCode() since the table is indexed by its lowest bits */
+  private static int hash(String id) {
+    int h = id.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,201 @@
+package es.upm.etsisi.cf4j.data.types;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * CompressedRatingMatrix whose arrays are memory-mapped from a file instead of being loaded into
+ * the Java heap. The file is read lazily by the operating system, so opening a matrix is almost
+ * instantaneous and its pages are shared through the page cache by all the JVMs that map the same
+ * file. Each array is mapped in chunks to overcome the 2GB limit of the mapped buffers.
+ *
+ * <p>Arrays must be stored in little endian byte order. The matrix is read only and, when it is
+ * serialized, it is replaced by a heap copy.
+ */
+public class MappedRatingMatrix extends CompressedRatingMatrix {
+
+  private static final long serialVersionUID = 20200314L;
+
+  /** Log2 of the number of elements of each mapped chunk */
+  private static final int CHUNK_SHIFT = 27;
+
+  /** Mask to get the position of an element inside its chunk */
+  private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+  /** Number of rows of the matrix */
+  private final int numRows;
+
+  /** Number of ratings of the matrix */
+  private final int numRatings;
+
+  /** Position of the first rating of each row */
+  private final transient IntBuffer[] offsets;
+
+  /** Indexes (column of the matrix) of the ratings */
+  private final transient IntBuffer[] indexes;
+
+  /** Rating values stored in double precision. It is null if float precision is used */
+  private final transient DoubleBuffer[] ratings;
+
+  /** Rating values stored in float precision. It is null if double precision is used */
+  private final transient FloatBuffer[] floatRatings;
+
+  /**
+   * Maps a CompressedRatingMatrix stored in a file.
+   *
+   * @param channel FileChannel of the file. It can be closed once the matrix has been mapped
+   * @param offsetsPosition Position in the file of the offsets array (numRows + 1 ints)
+   * @param indexesPosition Position in the file of the indexes array (numRatings ints)
+   * @param ratingsPosition Position in the file of the ratings array (numRatings doubles or floats)
+   * @param numRows Number of rows of the matrix
+   * @param numRatings Number of ratings of the matrix
+   * @param floatPrecision true if ratings are stored as floats, false if they are stored as doubles
+   * @throws IOException If the file can not be mapped
+   */
+  public MappedRatingMatrix(
+      FileChannel channel,
+      long offsetsPosition,
+      long indexesPosition,
+      long ratingsPosition,
+      int numRows,
+      int numRatings,
+      boolean floatPrecision)
+      throws IOException {
+    this.numRows = numRows;
+    this.numRatings = numRatings;
+
+    this.offsets = new IntBuffer[numChunks(numRows + 1)];
+    for (int c = 0; c < this.offsets.length; c++) {
+      this.offsets[c] =
+          map(channel, offsetsPosition, Integer.BYTES, c, numRows + 1).asIntBuffer();
+    }
+
+    this.indexes = new IntBuffer[numChunks(numRatings)];
+    for (int c = 0; c < this.indexes.length; c++) {
+      this.indexes[c] = map(channel, indexesPosition, Integer.BYTES, c, numRatings).asIntBuffer();
+    }
+
+    if (floatPrecision) {
+      this.ratings = null;
+      this.floatRatings = new FloatBuffer[numChunks(numRatings)];
+      for (int c = 0; c < this.floatRatings.length; c++) {
+        this.floatRatings[c] =
+            map(channel, ratingsPosition, Float.BYTES, c, numRatings).asFloatBuffer();
+      }
+    } else {
+      this.floatRatings = null;
+      this.ratings = new DoubleBuffer[numChunks(numRatings)];
+      for (int c = 0; c < this.ratings.length; c++) {
+        this.ratings[c] =
+            map(channel, ratingsPosition, Double.BYTES, c, numRatings).asDoubleBuffer();
+      }
+    }
+
+    if (this.getRowOffset(numRows) != numRatings)
+      throw new IllegalArgumentException("Offsets do not match with the number of ratings");
+  }
+
+  private static int numChunks(int length) {
+    return Math.max(1, (int) ((length + (long) CHUNK_MASK) >>> CHUNK_SHIFT));
+  }
+
+  private static ByteBuffer map(
+      FileChannel channel, long position, int elementBytes, int chunk, int length)
+      throws IOException {
+    long first = (long) chunk << CHUNK_SHIFT;
+    long count = Math.min(length - first, 1L << CHUNK_SHIFT);
+    return channel
+        .map(FileChannel.MapMode.READ_ONLY, position + first * elementBytes, count * elementBytes)
+        .order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  @Override
+  public int getNumberOfRows() {
+    return this.numRows;
+  }
+
+  @Override
+  public int getNumberOfRatings() {
+    return this.numRatings;
+  }
+
+  @Override
+  public boolean isFloatPrecision() {
+    return this.floatRatings != null;
+  }
+
+  @Override
+  public int getRowOffset(int row) {
+    return this.offsets[row >>> CHUNK_SHIFT].get(row & CHUNK_MASK);
+  }
+
+  @Override
+  public int getRowLength(int row) {
+    return this.getRowOffset(row + 1) - this.getRowOffset(row);
+  }
+
+  @Override
+  public int getIndex(int offset) {
+    return this.indexes[offset >>> CHUNK_SHIFT].get(offset & CHUNK_MASK);
+  }
+
+  @Override
+  public double getRating(int offset) {
+    return (this.ratings != null)
+        ? this.ratings[offset >>> CHUNK_SHIFT].get(offset & CHUNK_MASK)
+        : this.floatRatings[offset >>> CHUNK_SHIFT].get(offset & CHUNK_MASK);
+  }
+
+  @Override
+  public int find(int offset, int length, int index) {
+    int low = offset, high = offset + length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midIndex = this.getIndex(mid);
+      if (midIndex > index) {
+        high = mid - 1;
+      } else if (midIndex < index) {
+        low = mid + 1;
+      } else {
+        return mid - offset;
+      }
+    }
+    return -1; // If it doesn't exist.
+  }
+
+  /**
+   * Serializes a heap copy of the matrix since mapped buffers are not serializable.
+   *
+   * @return CompressedRatingMatrix with the same contents
+   */
+  private Object writeReplace() {
+    int[] heapOffsets = new int[this.numRows + 1];
+    for (int row = 0; row <= this.numRows; row++) {
+      heapOffsets[row] = this.getRowOffset(row);
+    }
+
+    int[] heapIndexes = new int[this.numRatings];
+    for (int offset = 0; offset < this.numRatings; offset++) {
+      heapIndexes[offset] = this.getIndex(offset);
+    }
+
+    if (this.isFloatPrecision()) {
+      float[] heapRatings = new float[this.numRatings];
+      for (int offset = 0; offset < this.numRatings; offset++) {
+        heapRatings[offset] = (float) this.getRating(offset);
+      }
+      return new CompressedRatingMatrix(heapOffsets, heapIndexes, heapRatings);
+    } else {
+      double[] heapRatings = new double[this.numRatings];
+      for (int offset = 0; offset < this.numRatings; offset++) {
+        heapRatings[offset] = this.getRating(offset);
+      }
+      return new CompressedRatingMatrix(heapOffsets, heapIndexes, heapRatings);
+    }
+  }
+}
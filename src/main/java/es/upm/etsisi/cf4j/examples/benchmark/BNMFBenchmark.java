@@ -0,0 +1,79 @@
+package es.upm.etsisi.cf4j.examples.benchmark;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.ManualDataSet;
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.BNMF;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * In this example we measure how the fit of BNMF scales with the number of threads. BNMF is
+ * parallelized over the items, but each rating updates the gamma of its user, so popular users are
+ * updated from many threads at the same time. A synthetic dataset is generated whose number of
+ * ratings per user and popularity of items follow power laws. The fit is repeated for 1, 2, 4, ...
+ * threads up to the number of available processors, or up to the number of threads provided as
+ * first argument.
+ */
+public class BNMFBenchmark {
+
+  private static final int NUM_RATINGS = 1_000_000;
+  private static final int NUM_USERS = 20_000;
+  private static final int NUM_ITEMS = 5_000;
+  private static final int NUM_FACTORS = 10;
+  private static final int NUM_ITERS = 5;
+  private static final int NUM_REPETITIONS = 3;
+
+  public static void main(String[] args) {
+
+    int maxThreads =
+        (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+    DataModel datamodel = new DataModel(new ManualDataSet(generateRatings(43), new ArrayList<>()));
+    System.out.println(datamodel);
+
+    long baseTime = 0;
+    for (int numThreads = 1; numThreads <= maxThreads; numThreads *= 2) {
+      long time = Long.MAX_VALUE;
+      for (int i = 0; i < NUM_REPETITIONS; i++) {
+        BNMF bnmf = new BNMF(datamodel, NUM_FACTORS, NUM_ITERS, 0.2, 1, 43);
+        long start = System.nanoTime();
+        Parallelizer.runWithNumThreads(numThreads, bnmf::fit);
+        time = Math.min(time, System.nanoTime() - start);
+      }
+      if (numThreads == 1) baseTime = time;
+
+      System.out.printf(
+          "%nThreads: %d. Fit time: %.3f s. Speedup: %.2fx%n",
+          numThreads, time / 1e9, (double) baseTime / time);
+    }
+  }
+
+  /**
+   * Generates ratings whose number of ratings per user and popularity of items follow power law
+   * distributions.
+   *
+   * @param seed Seed for random numbers generation
+   * @return List of ratings
+   */
+  private static List<DataSetEntry> generateRatings(long seed) {
+    Random rand = new Random(seed);
+
+    List<DataSetEntry> ratings = new ArrayList<>(NUM_RATINGS);
+    Set<Long> pairs = new HashSet<>();
+    while (ratings.size() < NUM_RATINGS) {
+      int user = (int) (NUM_USERS * Math.pow(rand.nextDouble(), 3));
+      int item = (int) (NUM_ITEMS * Math.pow(rand.nextDouble(), 2));
+      if (pairs.add((long) user * NUM_ITEMS + item)) {
+        double rating = 1 + rand.nextInt(5);
+        ratings.add(new DataSetEntry("user" + user, "item" + item, rating));
+      }
+    }
+    return ratings;
+  }
+}
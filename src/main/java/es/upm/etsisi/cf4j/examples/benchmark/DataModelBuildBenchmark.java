@@ -0,0 +1,106 @@
+package es.upm.etsisi.cf4j.examples.benchmark;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.DataSet;
+import es.upm.etsisi.cf4j.data.RandomSplitDataSet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * In this example we compare the time required to build a DataModel inserting the ratings one by
+ * one against the time required to build it in bulk. The ratings file can be provided as first
+ * argument. Otherwise, a synthetic file with about 10M ratings is generated. The number of ratings
+ * per user and the popularity of items follow power laws, so that there are users with thousands
+ * of ratings. Note that a large heap (e.g. -Xmx8g) is required to hold both DataModels.
+ */
+public class DataModelBuildBenchmark {
+
+  private static final int NUM_RATINGS = 10_000_000;
+  private static final int NUM_USERS = 100_000;
+  private static final int NUM_ITEMS = 20_000;
+  private static final int NUM_REPETITIONS = 3;
+
+  public static void main(String[] args) throws IOException {
+
+    String filename;
+    if (args.length > 0) {
+      filename = args[0];
+    } else {
+      File file = File.createTempFile("cf4j-ratings-", ".csv");
+      file.deleteOnExit();
+      generateRatings(file, 43);
+      filename = file.getAbsolutePath();
+    }
+
+    DataSet dataset = new RandomSplitDataSet(filename, 0.2, 0.2, 43);
+
+    long insertionTime = Long.MAX_VALUE;
+    long bulkTime = Long.MAX_VALUE;
+
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      long start = System.nanoTime();
+      DataModel datamodel = new DataModel(dataset, false);
+      insertionTime = Math.min(insertionTime, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      DataModel bulkDatamodel = new DataModel(dataset, true);
+      bulkTime = Math.min(bulkTime, System.nanoTime() - start);
+
+      if (datamodel.getNumberOfRatings() != bulkDatamodel.getNumberOfRatings())
+        throw new IllegalStateException("Both DataModels must contain the same ratings");
+    }
+
+    System.out.println(new DataModel(dataset, true));
+    System.out.printf("%nInsertion build: %.3f s%n", insertionTime / 1e9);
+    System.out.printf("Bulk build: %.3f s%n", bulkTime / 1e9);
+    System.out.printf("Speedup: %.2fx%n", (double) insertionTime / bulkTime);
+  }
+
+  /**
+   * Writes a ratings file whose number of ratings per user and popularity of items follow power law
+   * distributions.
+   *
+   * @param file File where the ratings are written
+   * @param seed Seed for random numbers generation
+   * @throws IOException When the file is not accessible by the system with write permissions.
+   */
+  private static void generateRatings(File file, long seed) throws IOException {
+    Random rand = new Random(seed);
+
+    double[] weights = new double[NUM_USERS];
+    double sum = 0;
+    for (int user = 0; user < NUM_USERS; user++) {
+      weights[user] = 1.0 / Math.pow(user + 1, 0.7);
+      sum += weights[user];
+    }
+
+    boolean[] rated = new boolean[NUM_ITEMS];
+    int[] items = new int[NUM_ITEMS];
+
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+      for (int user = 0; user < NUM_USERS; user++) {
+        int numRatings = (int) Math.round(NUM_RATINGS * weights[user] / sum);
+        numRatings = Math.max(1, Math.min(NUM_ITEMS / 2, numRatings));
+
+        for (int i = 0; i < numRatings; i++) {
+          int item;
+          do {
+            item = (int) (NUM_ITEMS * Math.pow(rand.nextDouble(), 2));
+          } while (rated[item]);
+          rated[item] = true;
+          items[i] = item;
+
+          writer.write(user + ";" + item + ";" + (1 + rand.nextInt(5)) + "\n");
+        }
+
+        for (int i = 0; i < numRatings; i++) {
+          rated[items[i]] = false;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package es.upm.etsisi.cf4j.examples.benchmark;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.ManualDataSet;
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.index.HNSWIndex;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.index.InnerProductModel;
+import es.upm.etsisi.cf4j.util.Search;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * In this example we compare the retrieval of the top-N items of a user by computing the inner
+ * product of every item (a full scan) with the retrieval using an HNSWIndex. The embeddings of a
+ * synthetic catalog are generated around random topics with different norms, as the embeddings of
+ * a matrix factorization model, and the recall of the index with respect to the full scan is
+ * reported for different values of ef. The number of items can be provided as first argument.
+ * Otherwise, a catalog of one million items is used.
+ */
+public class HNSWIndexBenchmark {
+
+  private static final int NUM_FACTORS = 32;
+  private static final int NUM_TOPICS = 1_000;
+  private static final int NUM_USERS = 1_000;
+  private static final int N = 10;
+  private static final int[] EF_VALUES = {20, 40, 80, 160, 320};
+
+  public static void main(String[] args) {
+
+    int numItems = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+
+    SyntheticModel model = new SyntheticModel(numItems, 43);
+
+    HNSWIndex index = new HNSWIndex(model, 16, 100, 43);
+    long start = System.nanoTime();
+    index.fit();
+    long buildTime = System.nanoTime() - start;
+    System.out.printf("%d items: %s built in %.2f s%n", numItems, index, buildTime / 1e9);
+
+    // Full scan: compute the score of every item and select the top-N ones
+    int[][] exact = new int[NUM_USERS][];
+    double[] scores = new double[numItems];
+    start = System.nanoTime();
+    for (int userIndex = 0; userIndex < NUM_USERS; userIndex++) {
+      double[] user = model.getUserEmbedding(userIndex);
+      for (int itemIndex = 0; itemIndex < numItems; itemIndex++) {
+        double[] item = model.getItemEmbedding(itemIndex);
+        double score = 0;
+        for (int k = 0; k < NUM_FACTORS; k++) score += user[k] * item[k];
+        scores[itemIndex] = score;
+      }
+      exact[userIndex] = Search.findTopN(scores, N);
+    }
+    long scanTime = System.nanoTime() - start;
+    System.out.printf("Full scan: %.3f ms per user%n", scanTime / 1e6 / NUM_USERS);
+
+    for (int ef : EF_VALUES) {
+      index.setEf(ef);
+
+      // Warm up
+      for (int userIndex = 0; userIndex < NUM_USERS; userIndex++) index.recommend(userIndex, N);
+
+      int hits = 0;
+      start = System.nanoTime();
+      int[][] recommendations = new int[NUM_USERS][];
+      for (int userIndex = 0; userIndex < NUM_USERS; userIndex++) {
+        recommendations[userIndex] = index.recommend(userIndex, N);
+      }
+      long time = System.nanoTime() - start;
+
+      for (int userIndex = 0; userIndex < NUM_USERS; userIndex++) {
+        Set<Integer> expected = new HashSet<>();
+        for (int itemIndex : exact[userIndex]) expected.add(itemIndex);
+        for (int itemIndex : recommendations[userIndex]) {
+          if (expected.contains(itemIndex)) hits++;
+        }
+      }
+
+      System.out.printf(
+          "ef=%d: %.3f ms per user, recall@%d %.3f%n",
+          ef, time / 1e6 / NUM_USERS, N, (double) hits / (NUM_USERS * N));
+    }
+  }
+
+  /** InnerProductModel with synthetic user and item embeddings */
+  private static class SyntheticModel implements InnerProductModel {
+
+    private final DataModel datamodel;
+    private final double[][] userEmbeddings;
+    private final double[][] itemEmbeddings;
+
+    private SyntheticModel(int numItems, long seed) {
+      Random rand = new Random(seed);
+
+      double[][] topics = new double[NUM_TOPICS][NUM_FACTORS];
+      for (double[] topic : topics) {
+        for (int k = 0; k < NUM_FACTORS; k++) topic[k] = rand.nextGaussian();
+      }
+
+      // The norm of the items emulates their popularity
+      this.itemEmbeddings = new double[numItems][NUM_FACTORS];
+      List<DataSetEntry> ratings = new ArrayList<>(numItems);
+      for (int itemIndex = 0; itemIndex < numItems; itemIndex++) {
+        double[] topic = topics[rand.nextInt(NUM_TOPICS)];
+        double norm = 0.5 + rand.nextDouble();
+        for (int k = 0; k < NUM_FACTORS; k++) {
+          this.itemEmbeddings[itemIndex][k] = norm * (topic[k] + 0.5 * rand.nextGaussian());
+        }
+        ratings.add(new DataSetEntry("user", "item" + itemIndex, 1.0));
+      }
+
+      // Only the number of items of the DataModel is used by the index
+      this.datamodel = new DataModel(new ManualDataSet(ratings, new ArrayList<>()));
+
+      this.userEmbeddings = new double[NUM_USERS][NUM_FACTORS];
+      for (double[] user : this.userEmbeddings) {
+        double[] topic = topics[rand.nextInt(NUM_TOPICS)];
+        for (int k = 0; k < NUM_FACTORS; k++) user[k] = topic[k] + rand.nextGaussian();
+      }
+    }
+
+    @Override
+    public DataModel getDataModel() {
+      return this.datamodel;
+    }
+
+    @Override
+    public double[] getUserEmbedding(int userIndex) {
+      return this.userEmbeddings[userIndex];
+    }
+
+    @Override
+    public double[] getItemEmbedding(int itemIndex) {
+      return this.itemEmbeddings[itemIndex];
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package es.upm.etsisi.cf4j.examples.benchmark;
+
+import es.upm.etsisi.cf4j.util.process.ExecutionMetrics;
+import es.upm.etsisi.cf4j.util.process.IntPartible;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+import es.upm.etsisi.cf4j.util.process.Partible;
+
+/**
+ * In this example we measure the overhead that Parallelizer adds to each iteration of an iterative
+ * algorithm. Matrix factorization models call Parallelizer.exec(...) twice per iteration (once to
+ * update the users and once to update the items), so we emulate NUM_ITERATIONS iterations with a
+ * cheap amount of work per object. The elapsed time is compared against the time required by the
+ * former implementation of Parallelizer, that created and started new threads on each call. The
+ * number of threads can be provided as first argument. Otherwise, all the available processors
+ * are used.
+ *
+ * <p>We also measure the balance of the workload between the threads when the cost of the objects
+ * follows a power law, as the number of ratings of the users, with and without cost hints.
+ *
+ * <p>Finally, we compare a kernel over a flat array run through an array of boxed indexes against
+ * the same kernel run through an IntPartible over an interval of indexes.
+ */
+public class ParallelizerBenchmark {
+
+  private static final int NUM_ITERATIONS = 500;
+  private static final int NUM_USERS = 10_000;
+  private static final int NUM_ITEMS = 5_000;
+  private static final int NUM_REPETITIONS = 3;
+
+  public static void main(String[] args) {
+
+    int numThreads = (args.length > 0) ? Integer.parseInt(args[0]) : -1;
+    Parallelizer.setNumThreads(numThreads);
+    numThreads = Parallelizer.getNumThreads();
+
+    Integer[] users = indexes(NUM_USERS);
+    Integer[] items = indexes(NUM_ITEMS);
+    Work work = new Work();
+
+    long threadsTime = Long.MAX_VALUE;
+    long poolTime = Long.MAX_VALUE;
+
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      long start = System.nanoTime();
+      for (int iter = 0; iter < NUM_ITERATIONS; iter++) {
+        execWithNewThreads(users, work, numThreads);
+        execWithNewThreads(items, work, numThreads);
+      }
+      threadsTime = Math.min(threadsTime, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      for (int iter = 0; iter < NUM_ITERATIONS; iter++) {
+        Parallelizer.exec(users, work);
+        Parallelizer.exec(items, work);
+      }
+      poolTime = Math.min(poolTime, System.nanoTime() - start);
+    }
+
+    System.out.printf("Threads: %d%n", numThreads);
+    System.out.printf(
+        "%nNew threads per call: %.3f s (%.1f us per iteration)%n",
+        threadsTime / 1e9, threadsTime / 1e3 / NUM_ITERATIONS);
+    System.out.printf(
+        "Persistent worker pool: %.3f s (%.1f us per iteration)%n",
+        poolTime / 1e9, poolTime / 1e3 / NUM_ITERATIONS);
+    System.out.printf("Speedup: %.2fx%n", (double) threadsTime / poolTime);
+
+    Integer[] powerLawUsers = indexes(NUM_USERS);
+    PowerLawWork powerLawWork = new PowerLawWork();
+
+    ExecutionMetrics uniformMetrics = null;
+    ExecutionMetrics costMetrics = null;
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      uniformMetrics = Parallelizer.execWithMetrics(powerLawUsers, powerLawWork, numThreads, null);
+      costMetrics =
+          Parallelizer.execWithMetrics(
+              powerLawUsers, powerLawWork, numThreads, user -> PowerLawWork.cost((Integer) user));
+    }
+
+    System.out.println("\nPower law workload without cost hints: " + uniformMetrics);
+    System.out.println("Power law workload with cost hints: " + costMetrics);
+
+    double[] values = new double[NUM_USERS * 100];
+    for (int i = 0; i < values.length; i++) values[i] = i % 7;
+    Integer[] valueIndexes = indexes(values.length);
+    ScaleObjects scaleObjects = new ScaleObjects(values);
+    ScaleRanges scaleRanges = new ScaleRanges(values);
+
+    long objectsTime = Long.MAX_VALUE;
+    long rangesTime = Long.MAX_VALUE;
+    for (int i = 0; i < NUM_REPETITIONS; i++) {
+      long start = System.nanoTime();
+      for (int iter = 0; iter < NUM_ITERATIONS / 10; iter++) {
+        Parallelizer.exec(valueIndexes, scaleObjects);
+      }
+      objectsTime = Math.min(objectsTime, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      for (int iter = 0; iter < NUM_ITERATIONS / 10; iter++) {
+        Parallelizer.exec(0, values.length, scaleRanges);
+      }
+      rangesTime = Math.min(rangesTime, System.nanoTime() - start);
+    }
+
+    System.out.printf("%nFlat array kernel over boxed indexes: %.3f s%n", objectsTime / 1e9);
+    System.out.printf("Flat array kernel over index ranges: %.3f s%n", rangesTime / 1e9);
+    System.out.printf("Speedup: %.2fx%n", (double) objectsTime / rangesTime);
+
+    System.out.println("Checksum: " + (work.checksum + powerLawWork.checksum + values[1]));
+  }
+
+  /**
+   * Creates an array with the first n indexes
+   *
+   * @param n Number of indexes
+   * @return Array of indexes
+   */
+  private static Integer[] indexes(int n) {
+    Integer[] indexes = new Integer[n];
+    for (int i = 0; i < n; i++) indexes[i] = i;
+    return indexes;
+  }
+
+  /**
+   * Former implementation of Parallelizer.exec(...): new threads are created and started on each
+   * call and the objects are assigned to them by stride.
+   *
+   * @param objects Array of objects to be executed in parallel
+   * @param partible Partible to be executed for each object of the array
+   * @param numThreads Number of threads to be launched in parallel
+   * @param <T> Type of the objects
+   */
+  private static <T> void execWithNewThreads(T[] objects, Partible<T> partible, int numThreads) {
+    partible.beforeRun();
+
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      int threadIndex = t;
+      threads[t] =
+          new Thread(
+              () -> {
+                for (int i = threadIndex; i < objects.length; i += numThreads) {
+                  partible.run(objects[i]);
+                }
+              });
+      threads[t].start();
+    }
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+
+    partible.afterRun();
+  }
+
+  /**
+   * Work per object whose cost follows a power law, similar to update the latent factors of the
+   * users sorted by their number of ratings
+   */
+  private static class PowerLawWork implements Partible<Integer> {
+
+    private volatile double checksum;
+
+    /**
+     * Gets the cost of an object, as the number of ratings of the user at a given position of the
+     * ranking of users sorted by their number of ratings
+     *
+     * @param index Index of the object
+     * @return Cost of the object
+     */
+    private static long cost(int index) {
+      return 1 + (long) (50_000 / Math.pow(index + 1, 0.7));
+    }
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(Integer index) {
+      double value = index;
+      for (long k = cost(index); k > 0; k--) {
+        value = value * 0.999 + k;
+      }
+      if (value < 0) checksum += value;
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+
+  /** Kernel that scales each value of a flat array, run object by object */
+  private static class ScaleObjects implements Partible<Integer> {
+
+    private final double[] values;
+
+    private ScaleObjects(double[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(Integer index) {
+      this.values[index] = this.values[index] * 0.5 + 1.0;
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+
+  /** Kernel that scales each value of a flat array, run range by range */
+  private static class ScaleRanges implements IntPartible {
+
+    private final double[] values;
+
+    private ScaleRanges(double[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(int from, int to) {
+      for (int i = from; i < to; i++) {
+        this.values[i] = this.values[i] * 0.5 + 1.0;
+      }
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+
+  /** Cheap work per object, similar to update the latent factors of a user with few ratings */
+  private static class Work implements Partible<Integer> {
+
+    private volatile double checksum;
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(Integer index) {
+      double value = index;
+      for (int k = 0; k < 50; k++) {
+        value = value * 0.999 + k;
+      }
+      if (value < 0) checksum += value;
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+}
@@ -0,0 +1,196 @@
+package es.upm.etsisi.cf4j.examples.benchmark;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.ManualDataSet;
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import es.upm.etsisi.cf4j.recommender.knn.lsh.LSH;
+import es.upm.etsisi.cf4j.recommender.knn.lsh.MinHashLSH;
+import es.upm.etsisi.cf4j.recommender.knn.lsh.SimHashLSH;
+import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.Correlation;
+import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.Cosine;
+import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.Jaccard;
+import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.UserSimilarityMetric;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * In this example we compare the exact search of the neighbors of UserKNN with the approximate
+ * search using locality sensitive hashing (LSH). A synthetic dataset is generated whose users
+ * belong to communities that mostly rate the same items. For each similarity metric and LSH
+ * configuration, the time to search the neighbors, the average number of candidates of each user
+ * and the recall with respect to the exact neighbors are reported. An approximate neighbor is a hit
+ * if its similarity is greater than or equal to the similarity of the last exact neighbor, so ties
+ * do not reduce the recall.
+ *
+ * <p>The speedup is measured with respect to the exact search that compares each pair of users. The
+ * time of the exact search using the inverted index is also reported, since it only compares the
+ * users that share at least one item.
+ */
+public class UserKNNLSHBenchmark {
+
+  private static final int NUM_USERS = 10_000;
+  private static final int NUM_ITEMS = 10_000;
+  private static final int NUM_COMMUNITIES = 100;
+  private static final int COMMUNITY_ITEMS = 100;
+  private static final int NUM_NEIGHBORS = 20;
+
+  public static void main(String[] args) {
+
+    DataModel datamodel = new DataModel(new ManualDataSet(generateRatings(43), new ArrayList<>()));
+    System.out.println(datamodel);
+
+    benchmark(
+        datamodel,
+        Jaccard::new,
+        new MinHashLSH(datamodel, 10, 1, 43),
+        new MinHashLSH(datamodel, 20, 2, 43),
+        new MinHashLSH(datamodel, 40, 3, 43));
+
+    benchmark(
+        datamodel,
+        Cosine::new,
+        new SimHashLSH(datamodel, 20, 8, false, 43),
+        new SimHashLSH(datamodel, 40, 10, false, 43),
+        new SimHashLSH(datamodel, 80, 12, false, 43));
+
+    benchmark(
+        datamodel,
+        Correlation::new,
+        new SimHashLSH(datamodel, 20, 8, true, 43),
+        new SimHashLSH(datamodel, 40, 10, true, 43),
+        new SimHashLSH(datamodel, 80, 12, true, 43));
+  }
+
+  /**
+   * Searches the neighbors exactly, comparing each pair of users and using the inverted index, and
+   * approximately with each LSH instance, and prints the time and the recall
+   *
+   * @param datamodel DataModel instance
+   * @param metricSupplier Supplier of new instances of the similarity metric
+   * @param lshs LSH instances used to search the neighbors approximately
+   */
+  private static void benchmark(
+      DataModel datamodel, Supplier<UserSimilarityMetric> metricSupplier, LSH... lshs) {
+
+    UserSimilarityMetric exact = metricSupplier.get();
+    exact.setDatamodel(datamodel, NUM_NEIGHBORS);
+    long start = System.nanoTime();
+    Parallelizer.exec(datamodel.getUsers(), exact);
+    long exactTime = System.nanoTime() - start;
+
+    UserSimilarityMetric invertedIndex = metricSupplier.get();
+    invertedIndex.setDatamodel(datamodel, NUM_NEIGHBORS);
+    invertedIndex.setInvertedIndex(true);
+    start = System.nanoTime();
+    Parallelizer.exec(datamodel.getUsers(), invertedIndex);
+    long invertedIndexTime = System.nanoTime() - start;
+
+    System.out.printf(
+        "%n%s: exact %.2f s, exact using the inverted index %.2f s%n",
+        exact, exactTime / 1e9, invertedIndexTime / 1e9);
+
+    for (LSH lsh : lshs) {
+      benchmark(datamodel, metricSupplier, lsh, exact, exactTime);
+    }
+  }
+
+  /**
+   * Searches the neighbors approximately and prints the time and the recall
+   *
+   * @param datamodel DataModel instance
+   * @param metricSupplier Supplier of new instances of the similarity metric
+   * @param lsh LSH instance used to search the neighbors approximately
+   * @param exact Similarity metric that contains the exact neighbors
+   * @param exactTime Time to search the exact neighbors in nanoseconds
+   */
+  private static void benchmark(
+      DataModel datamodel,
+      Supplier<UserSimilarityMetric> metricSupplier,
+      LSH lsh,
+      UserSimilarityMetric exact,
+      long exactTime) {
+
+    UserSimilarityMetric approximate = metricSupplier.get();
+    approximate.setDatamodel(datamodel, NUM_NEIGHBORS, lsh);
+    long start = System.nanoTime();
+    lsh.fit();
+    Parallelizer.exec(datamodel.getUsers(), approximate);
+    long approximateTime = System.nanoTime() - start;
+
+    long numCandidates = 0;
+    long numExact = 0;
+    long numHits = 0;
+    for (int userIndex = 0; userIndex < datamodel.getNumberOfUsers(); userIndex++) {
+      numCandidates += lsh.getCandidates(userIndex).length;
+
+      int[] exactNeighbors = exact.getNeighbors(userIndex);
+      int count = 0;
+      while (count < exactNeighbors.length && exactNeighbors[count] != -1) count++;
+      if (count == 0) continue;
+
+      double minSimilarity = exact.getNeighborSimilarities(userIndex)[count - 1];
+      int[] neighbors = approximate.getNeighbors(userIndex);
+      double[] similarities = approximate.getNeighborSimilarities(userIndex);
+      int hits = 0;
+      for (int n = 0; n < neighbors.length && neighbors[n] != -1; n++) {
+        if (similarities[n] >= minSimilarity) hits++;
+      }
+
+      numExact += count;
+      numHits += Math.min(hits, count);
+    }
+
+    System.out.printf(
+        "%s: %.2f s (%.1fx faster), %.0f candidates per user, recall %.3f%n",
+        lsh,
+        approximateTime / 1e9,
+        (double) exactTime / approximateTime,
+        (double) numCandidates / datamodel.getNumberOfUsers(),
+        (double) numHits / numExact);
+  }
+
+  /**
+   * Generates ratings of users that belong to communities. Most of the ratings of a user are given
+   * to the items of its community, and the rating depends on the affinity of the community with the
+   * item.
+   *
+   * @param seed Seed for random numbers generation
+   * @return List of ratings
+   */
+  private static List<DataSetEntry> generateRatings(long seed) {
+    Random rand = new Random(seed);
+
+    int[][] communityItems = new int[NUM_COMMUNITIES][COMMUNITY_ITEMS];
+    for (int c = 0; c < NUM_COMMUNITIES; c++) {
+      for (int i = 0; i < COMMUNITY_ITEMS; i++) {
+        communityItems[c][i] = rand.nextInt(NUM_ITEMS);
+      }
+    }
+
+    List<DataSetEntry> ratings = new ArrayList<>();
+    for (int user = 0; user < NUM_USERS; user++) {
+      int community = rand.nextInt(NUM_COMMUNITIES);
+      int numRatings = 20 + rand.nextInt(80);
+
+      Set<Integer> items = new HashSet<>();
+      while (items.size() < numRatings) {
+        int item =
+            (rand.nextDouble() < 0.9)
+                ? communityItems[community][rand.nextInt(COMMUNITY_ITEMS)]
+                : rand.nextInt(NUM_ITEMS);
+        if (items.add(item)) {
+          int affinity = (item * 31 + community * 17) % 5;
+          double rating = Math.max(1, Math.min(5, 1 + affinity + rand.nextInt(3) - 1));
+          ratings.add(new DataSetEntry("user" + user, "item" + item, rating));
+        }
+      }
+    }
+    return ratings;
+  }
+}
@@ -0,0 +1,2 @@
+/** This package contains examples that measure the performance of the CF4J internals. */
+package es.upm.etsisi.cf4j.examples.benchmark;
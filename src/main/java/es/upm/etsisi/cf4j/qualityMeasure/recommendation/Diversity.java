@@ -1,10 +1,11 @@
 package es.upm.etsisi.cf4j.qualityMeasure.recommendation;
 
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.Item;
 import es.upm.etsisi.cf4j.qualityMeasure.QualityMeasure;
 import es.upm.etsisi.cf4j.recommender.Recommender;
 import es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric.Cosine;
 import es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric.ItemSimilarityMetric;
-import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import es.upm.etsisi.cf4j.data.TestUser;
 import es.upm.etsisi.cf4j.util.Search;
 
@@ -22,7 +23,7 @@ public class Diversity extends QualityMeasure {
   private final int numberOfRecommendations;
 
   /** Similarity between items */
-  ItemSimilarityMetric itemSimilarityMetric;
+  private final ItemSimilarityMetric itemSimilarityMetric;
 
   /**
    * Constructor from a Map object with the quality measure parameters. Map object must contains the
@@ -40,7 +41,8 @@ public class Diversity extends QualityMeasure {
   }
 
   /**
-   * Constructor of Diversity
+   * Constructor of Diversity. The similarity between each pair of recommended items is computed
+   * when the recommendations are scored, so no similarity matrix between items is stored.
    *
    * @param recommender Recommender instance for which the precision are going to be computed
    * @param numberOfRecommendations Number of recommendations. It must be greater than 1
@@ -48,11 +50,7 @@ public class Diversity extends QualityMeasure {
   public Diversity(Recommender recommender, int numberOfRecommendations) {
     super(recommender);
     this.numberOfRecommendations = numberOfRecommendations;
-
-    // Compute similarity between items
     this.itemSimilarityMetric = new Cosine();
-    this.itemSimilarityMetric.setDatamodel(super.recommender.getDataModel());
-    Parallelizer.exec(recommender.getDataModel().getItems(), this.itemSimilarityMetric);
   }
 
   @Override
@@ -63,22 +61,22 @@ public class Diversity extends QualityMeasure {
     double sum = 0;
     int count = 0;
 
+    DataModel datamodel = super.recommender.getDataModel();
+
     for (int iPos : recommendations) {
       if (iPos == -1) break;
 
       int iTestItemIndex = testUser.getTestItemAt(iPos);
-      int iItemIndex = super.recommender.getDataModel().getTestItem(iTestItemIndex).getItemIndex();
-
-      double[] similarities = this.itemSimilarityMetric.getSimilarities(iItemIndex);
+      Item item = datamodel.getItem(datamodel.getTestItem(iTestItemIndex).getItemIndex());
 
       for (int jPos : recommendations) {
         if (jPos == -1) break;
 
         if (iPos != jPos) {
           int jTestItemIndex = testUser.getTestItemAt(jPos);
-          int jItemIndex = super.recommender.getDataModel().getTestItem(jTestItemIndex).getItemIndex();
+          Item otherItem = datamodel.getItem(datamodel.getTestItem(jTestItemIndex).getItemIndex());
 
-          double sim = similarities[jItemIndex];
+          double sim = this.itemSimilarityMetric.similarity(item, otherItem);
 
           // Ignore items without common ratings (sim == Double.NEGATIVE_INFINITY)
           if (!Double.isInfinite(sim)) {
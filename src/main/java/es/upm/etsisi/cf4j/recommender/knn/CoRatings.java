@@ -0,0 +1,148 @@
+package es.upm.etsisi.cf4j.recommender.knn;
+
+/**
+ * This class accumulates the statistics of the ratings that a user (item) shares with the other
+ * users (items) of the DataModel. The co-ratings are accumulated walking the posting lists of the
+ * DataModel: the raters of each item rated by the user, or the items rated by each rater of the
+ * item. So, only the pairs that have at least one co-rating are visited and the cost is
+ * proportional to the number of co-ratings instead of to the square of the number of users (items).
+ *
+ * <p>Each co-rating is added using add(int index, double x, double y), where index is the index of
+ * the other user (item), x is the rating of the active user (item) and y is the rating of the other
+ * one. For each other user (item), the PairStatistics of their co-ratings are stored and can be
+ * retrieved using getStatistics(int index, PairStatistics statistics).
+ *
+ * <p>A CoRatings instance is not thread safe, so each thread must use its own instance. The method
+ * clear() must be called before accumulating the co-ratings of a new user (item).
+ */
+public class CoRatings {
+
+  /** Indexes of the users (items) that have at least one co-rating */
+  private final int[] indexes;
+
+  /** Number of users (items) that have at least one co-rating */
+  private int size;
+
+  /** Number of co-ratings of each user (item) */
+  private final int[] count;
+
+  /** Sum of the ratings of the active user (item) */
+  private final double[] sumX;
+
+  /** Sum of the ratings of each user (item) */
+  private final double[] sumY;
+
+  /** Sum of the squared ratings of the active user (item) */
+  private final double[] sumXX;
+
+  /** Sum of the squared ratings of each user (item) */
+  private final double[] sumYY;
+
+  /** Sum of the products of the ratings of the active user (item) and each user (item) */
+  private final double[] sumXY;
+
+  /** Sum of the squared differences between the ratings of the active user (item) and each one */
+  private final double[] sumSquaredDiff;
+
+  /**
+   * Creates an empty CoRatings instance
+   *
+   * @param capacity Number of users (items) of the DataModel
+   */
+  public CoRatings(int capacity) {
+    this.indexes = new int[capacity];
+    this.size = 0;
+    this.count = new int[capacity];
+    this.sumX = new double[capacity];
+    this.sumY = new double[capacity];
+    this.sumXX = new double[capacity];
+    this.sumYY = new double[capacity];
+    this.sumXY = new double[capacity];
+    this.sumSquaredDiff = new double[capacity];
+  }
+
+  /**
+   * Adds a co-rating
+   *
+   * @param index Index of the other user (item)
+   * @param x Rating of the active user (item)
+   * @param y Rating of the other user (item)
+   */
+  public void add(int index, double x, double y) {
+    double diff = x - y;
+    if (this.count[index] == 0) {
+      this.indexes[this.size] = index;
+      this.size++;
+    }
+    this.count[index]++;
+    this.sumX[index] += x;
+    this.sumY[index] += y;
+    this.sumXX[index] += x * x;
+    this.sumYY[index] += y * y;
+    this.sumXY[index] += x * y;
+    this.sumSquaredDiff[index] += diff * diff;
+  }
+
+  /** Removes all the co-ratings. Only the statistics of the added users (items) are reset. */
+  public void clear() {
+    for (int i = 0; i < this.size; i++) {
+      int index = this.indexes[i];
+      this.count[index] = 0;
+      this.sumX[index] = 0;
+      this.sumY[index] = 0;
+      this.sumXX[index] = 0;
+      this.sumYY[index] = 0;
+      this.sumXY[index] = 0;
+      this.sumSquaredDiff[index] = 0;
+    }
+    this.size = 0;
+  }
+
+  /**
+   * Returns the number of users (items) that have at least one co-rating
+   *
+   * @return Number of users (items) with co-ratings
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the index of a user (item) that has at least one co-rating. The users (items) are
+   * stored in the order in which their first co-rating was added.
+   *
+   * @param pos Position of the user (item) between 0 and size() - 1
+   * @return Index of the user (item)
+   */
+  public int getIndexAt(int pos) {
+    return this.indexes[pos];
+  }
+
+  /**
+   * Returns the number of co-ratings with a user (item)
+   *
+   * @param index Index of the user (item)
+   * @return Number of co-ratings
+   */
+  public int getCount(int index) {
+    return this.count[index];
+  }
+
+  /**
+   * Copies the statistics of the co-ratings with a user (item) into a PairStatistics instance
+   *
+   * @param index Index of the user (item)
+   * @param statistics PairStatistics instance to be filled
+   * @return The statistics instance passed as parameter
+   */
+  public PairStatistics getStatistics(int index, PairStatistics statistics) {
+    statistics.count = this.count[index];
+    statistics.sumX = this.sumX[index];
+    statistics.sumY = this.sumY[index];
+    statistics.sumXX = this.sumXX[index];
+    statistics.sumYY = this.sumYY[index];
+    statistics.sumXY = this.sumXY[index];
+    statistics.sumSquaredDiff = this.sumSquaredDiff[index];
+    return statistics;
+  }
+}
@@ -32,6 +32,12 @@ public class ItemKNN extends Recommender {
   /** Contains the neighbors indexes of each item */
   protected int[][] neighbors;
 
+  /** Contains the similarity of each item with each of its neighbors */
+  protected double[][] neighborSimilarities;
+
+  /** Only the similarities with the neighbors are stored instead of the full similarity matrix */
+  protected boolean topKSimilarities;
+
   /**
    * Recommender constructor from a Map containing the recommender's hyper-parameters values. Map
    * object must contains the following keys:
@@ -42,6 +48,8 @@ public class ItemKNN extends Recommender {
    *       similarity between two items.
    *   <li><b>aggregationApproach</b>: ItemKNN.AggregationApproach instance with the aggregation
    *       approach used to aggregate k-nearest neighbors ratings.
+   *   <li><b><em>topKSimilarities</em></b> (optional): boolean value that indicates if only the
+   *       similarities of each item with its neighbors are stored. If missing, it is set to false.
    * </ul>
    *
    * @param datamodel DataModel instance
@@ -52,7 +60,8 @@ public class ItemKNN extends Recommender {
         datamodel,
         (int) params.get("numberOfNeighbors"),
         (ItemSimilarityMetric) params.get("metric"),
-        (ItemKNN.AggregationApproach) params.get("aggregationApproach"));
+        (ItemKNN.AggregationApproach) params.get("aggregationApproach"),
+        params.containsKey("topKSimilarities") && (boolean) params.get("topKSimilarities"));
   }
 
   /**
@@ -68,15 +77,45 @@ public class ItemKNN extends Recommender {
       int numberOfNeighbors,
       ItemSimilarityMetric metric,
       AggregationApproach aggregationApproach) {
+    this(datamodel, numberOfNeighbors, metric, aggregationApproach, false);
+  }
+
+  /**
+   * Recommender constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of neighbors (k)
+   * @param metric Similarity metric to compute the similarity between two items
+   * @param aggregationApproach Aggregation approach used to aggregate k-nearest neighbors ratings
+   * @param topKSimilarities true to store only the similarities of each item with its neighbors,
+   *     which requires memory proportional to the number of items instead of to its square. false
+   *     to store the similarity between each pair of items
+   */
+  public ItemKNN(
+      DataModel datamodel,
+      int numberOfNeighbors,
+      ItemSimilarityMetric metric,
+      AggregationApproach aggregationApproach,
+      boolean topKSimilarities) {
     super(datamodel);
 
     this.numberOfNeighbors = numberOfNeighbors;
 
     int numItems = this.datamodel.getNumberOfItems();
-    this.neighbors = new int[numItems][numberOfNeighbors];
+    // Rows are replaced by the ones computed when the recommender is fitted
+    this.neighbors = new int[numItems][];
 
     this.metric = metric;
-    this.metric.setDatamodel(this.datamodel);
+    this.topKSimilarities = topKSimilarities;
+
+    // The similarities with the neighbors are copied only if the full matrix is stored
+    this.neighborSimilarities =
+        topKSimilarities ? new double[numItems][] : new double[numItems][numberOfNeighbors];
+    if (topKSimilarities) {
+      this.metric.setDatamodel(this.datamodel, numberOfNeighbors);
+    } else {
+      this.metric.setDatamodel(this.datamodel);
+    }
 
     this.aggregationApproach = aggregationApproach;
   }
@@ -84,7 +123,11 @@ public class ItemKNN extends Recommender {
   @Override
   public void fit() {
     System.out.println("\nFitting " + this.toString());
-    Parallelizer.exec(this.datamodel.getItems(), this.metric);
+    Parallelizer.exec(
+        this.datamodel.getItems(),
+        this.metric,
+        Parallelizer.getNumThreads(),
+        this.metric.getCostHint());
     Parallelizer.exec(this.datamodel.getItems(), new ItemNeighbors());
   }
 
@@ -142,18 +185,20 @@ public class ItemKNN extends Recommender {
   private double predictWeightedMean(int userIndex, int itemIndex) {
     User user = this.datamodel.getUser(userIndex);
 
-    double[] similarities = metric.getSimilarities(itemIndex);
+    double[] similarities = this.neighborSimilarities[itemIndex];
 
     double num = 0;
     double den = 0;
 
-    for (int neighborIndex : this.neighbors[itemIndex]) {
+    int[] neighbors = this.neighbors[itemIndex];
+    for (int n = 0; n < neighbors.length; n++) {
+      int neighborIndex = neighbors[n];
       if (neighborIndex == -1)
         break; // Neighbors array are filled with -1 when no more neighbors exists
 
       int pos = user.findItem(neighborIndex);
       if (pos != -1) {
-        double similarity = similarities[neighborIndex];
+        double similarity = similarities[n];
         double rating = user.getRatingAt(pos);
         num += similarity * rating;
         den += similarity;
@@ -188,8 +233,17 @@ public class ItemKNN extends Recommender {
     @Override
     public void run(Item item) {
       int itemIndex = item.getItemIndex();
-      double[] similarities = metric.getSimilarities(itemIndex);
-      neighbors[itemIndex] = Search.findTopN(similarities, numberOfNeighbors);
+      if (topKSimilarities) {
+        neighbors[itemIndex] = metric.getNeighbors(itemIndex);
+        neighborSimilarities[itemIndex] = metric.getNeighborSimilarities(itemIndex);
+      } else {
+        double[] similarities = metric.getSimilarities(itemIndex);
+        int[] indexes = Search.findTopN(similarities, numberOfNeighbors);
+        for (int n = 0; n < indexes.length && indexes[n] != -1; n++) {
+          neighborSimilarities[itemIndex][n] = similarities[indexes[n]];
+        }
+        neighbors[itemIndex] = indexes;
+      }
     }
 
     @Override
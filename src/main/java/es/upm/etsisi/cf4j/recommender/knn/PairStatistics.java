@@ -0,0 +1,127 @@
+package es.upm.etsisi.cf4j.recommender.knn;
+
+/**
+ * This class contains the sufficient statistics of the co-ratings of a pair of users (items), i.e.
+ * the ratings of both users to the items that they have rated in common (or the ratings of both
+ * items by the users that have rated both of them). Being x the ratings of the active user (item)
+ * and y the ratings of the other one, the statistics are: the number of co-ratings, Σx, Σy, Σx²,
+ * Σy², Σxy and Σ(x-y)².
+ *
+ * <p>Similarity metrics that can be computed from these statistics implement similarity(User user,
+ * User otherUser, PairStatistics statistics), so that they can be driven by any engine that
+ * accumulates the co-ratings.
+ */
+public class PairStatistics {
+
+  /** Number of co-ratings */
+  int count;
+
+  /** Sum of the ratings of the active user (item) */
+  double sumX;
+
+  /** Sum of the ratings of the other user (item) */
+  double sumY;
+
+  /** Sum of the squared ratings of the active user (item) */
+  double sumXX;
+
+  /** Sum of the squared ratings of the other user (item) */
+  double sumYY;
+
+  /** Sum of the products of the ratings of both users (items) */
+  double sumXY;
+
+  /** Sum of the squared differences between the ratings of both users (items) */
+  double sumSquaredDiff;
+
+  /**
+   * Adds a co-rating
+   *
+   * @param x Rating of the active user (item)
+   * @param y Rating of the other user (item)
+   */
+  public void add(double x, double y) {
+    double diff = x - y;
+    this.count++;
+    this.sumX += x;
+    this.sumY += y;
+    this.sumXX += x * x;
+    this.sumYY += y * y;
+    this.sumXY += x * y;
+    this.sumSquaredDiff += diff * diff;
+  }
+
+  /** Removes all the co-ratings */
+  public void clear() {
+    this.count = 0;
+    this.sumX = 0;
+    this.sumY = 0;
+    this.sumXX = 0;
+    this.sumYY = 0;
+    this.sumXY = 0;
+    this.sumSquaredDiff = 0;
+  }
+
+  /**
+   * Returns the number of co-ratings
+   *
+   * @return Number of co-ratings
+   */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the sum of the ratings of the active user (item)
+   *
+   * @return Σx
+   */
+  public double getSumX() {
+    return this.sumX;
+  }
+
+  /**
+   * Returns the sum of the ratings of the other user (item)
+   *
+   * @return Σy
+   */
+  public double getSumY() {
+    return this.sumY;
+  }
+
+  /**
+   * Returns the sum of the squared ratings of the active user (item)
+   *
+   * @return Σx²
+   */
+  public double getSumXX() {
+    return this.sumXX;
+  }
+
+  /**
+   * Returns the sum of the squared ratings of the other user (item)
+   *
+   * @return Σy²
+   */
+  public double getSumYY() {
+    return this.sumYY;
+  }
+
+  /**
+   * Returns the sum of the products of the ratings of both users (items)
+   *
+   * @return Σxy
+   */
+  public double getSumXY() {
+    return this.sumXY;
+  }
+
+  /**
+   * Returns the sum of the squared differences between the ratings of both users (items)
+   *
+   * @return Σ(x-y)²
+   */
+  public double getSumSquaredDiff() {
+    return this.sumSquaredDiff;
+  }
+}
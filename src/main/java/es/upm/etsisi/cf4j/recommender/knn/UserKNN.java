@@ -5,6 +5,7 @@ import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.User;
 import es.upm.etsisi.cf4j.util.process.Partible;
 import es.upm.etsisi.cf4j.recommender.Recommender;
+import es.upm.etsisi.cf4j.recommender.knn.lsh.LSH;
 import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.UserSimilarityMetric;
 import es.upm.etsisi.cf4j.util.Search;
 
@@ -32,6 +33,15 @@ public class UserKNN extends Recommender {
   /** Contains the neighbors indexes of each user */
   protected int[][] neighbors;
 
+  /** Contains the similarity of each user with each of its neighbors */
+  protected double[][] neighborSimilarities;
+
+  /** Only the similarities with the neighbors are stored instead of the full similarity matrix */
+  protected boolean topKSimilarities;
+
+  /** LSH used to search the neighbors approximately, or null to compare each pair of users */
+  protected LSH lsh;
+
   /**
    * Recommender constructor from a Map containing the recommender's hyper-parameters values. Map
    * object must contains the following keys:
@@ -42,6 +52,10 @@ public class UserKNN extends Recommender {
    *       similarity between two users.
    *   <li><b>aggregationApproach</b>: UserKNN.AggregationApproach instance with the aggregation
    *       approach used to aggregate k-nearest neighbors ratings.
+   *   <li><b><em>topKSimilarities</em></b> (optional): boolean value that indicates if only the
+   *       similarities of each user with its neighbors are stored. If missing, it is set to false.
+   *   <li><b><em>lsh</em></b> (optional): LSH instance used to search the neighbors
+   *       approximately. If missing, each pair of users is compared.
    * </ul>
    *
    * @param datamodel DataModel instance
@@ -52,7 +66,9 @@ public class UserKNN extends Recommender {
         datamodel,
         (int) params.get("numberOfNeighbors"),
         (UserSimilarityMetric) params.get("metric"),
-        (AggregationApproach) params.get("aggregationApproach"));
+        (AggregationApproach) params.get("aggregationApproach"),
+        params.containsKey("topKSimilarities") && (boolean) params.get("topKSimilarities"),
+        (LSH) params.get("lsh"));
   }
 
   /**
@@ -68,15 +84,92 @@ public class UserKNN extends Recommender {
       int numberOfNeighbors,
       UserSimilarityMetric metric,
       AggregationApproach aggregationApproach) {
+    this(datamodel, numberOfNeighbors, metric, aggregationApproach, false);
+  }
+
+  /**
+   * Recommender constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of neighbors (k)
+   * @param metric Similarity metric to compute the similarity between two users
+   * @param aggregationApproach Aggregation approach used to aggregate k-nearest neighbors ratings
+   * @param topKSimilarities true to store only the similarities of each user with its neighbors,
+   *     which requires memory proportional to the number of users instead of to its square. false
+   *     to store the similarity between each pair of users
+   */
+  public UserKNN(
+      DataModel datamodel,
+      int numberOfNeighbors,
+      UserSimilarityMetric metric,
+      AggregationApproach aggregationApproach,
+      boolean topKSimilarities) {
+    this(datamodel, numberOfNeighbors, metric, aggregationApproach, topKSimilarities, null);
+  }
+
+  /**
+   * Recommender constructor. The neighbors of each user are searched approximately: each user is
+   * only compared with the candidates returned by the LSH instance, and only the similarities with
+   * the neighbors are stored.
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of neighbors (k)
+   * @param metric Similarity metric to compute the similarity between two users
+   * @param aggregationApproach Aggregation approach used to aggregate k-nearest neighbors ratings
+   * @param lsh LSH instance used to find the candidates to be the neighbors of each user. It is
+   *     fitted when the recommender is fitted
+   */
+  public UserKNN(
+      DataModel datamodel,
+      int numberOfNeighbors,
+      UserSimilarityMetric metric,
+      AggregationApproach aggregationApproach,
+      LSH lsh) {
+    this(datamodel, numberOfNeighbors, metric, aggregationApproach, true, lsh);
+  }
+
+  /**
+   * Recommender constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of neighbors (k)
+   * @param metric Similarity metric to compute the similarity between two users
+   * @param aggregationApproach Aggregation approach used to aggregate k-nearest neighbors ratings
+   * @param topKSimilarities true to store only the similarities of each user with its neighbors,
+   *     which requires memory proportional to the number of users instead of to its square. false
+   *     to store the similarity between each pair of users. It is ignored if lsh is not null
+   * @param lsh LSH instance used to search the neighbors approximately, or null to compare each
+   *     pair of users. It is fitted when the recommender is fitted
+   */
+  public UserKNN(
+      DataModel datamodel,
+      int numberOfNeighbors,
+      UserSimilarityMetric metric,
+      AggregationApproach aggregationApproach,
+      boolean topKSimilarities,
+      LSH lsh) {
     super(datamodel);
 
     this.numberOfNeighbors = numberOfNeighbors;
 
     int numUsers = this.datamodel.getNumberOfUsers();
-    this.neighbors = new int[numUsers][numberOfNeighbors];
+    // Rows are replaced by the ones computed when the recommender is fitted
+    this.neighbors = new int[numUsers][];
 
     this.metric = metric;
-    this.metric.setDatamodel(datamodel);
+    this.lsh = lsh;
+    this.topKSimilarities = topKSimilarities || lsh != null;
+
+    // The similarities with the neighbors are copied only if the full matrix is stored
+    this.neighborSimilarities =
+        this.topKSimilarities ? new double[numUsers][] : new double[numUsers][numberOfNeighbors];
+    if (lsh != null) {
+      this.metric.setDatamodel(datamodel, numberOfNeighbors, lsh);
+    } else if (topKSimilarities) {
+      this.metric.setDatamodel(datamodel, numberOfNeighbors);
+    } else {
+      this.metric.setDatamodel(datamodel);
+    }
 
     this.aggregationApproach = aggregationApproach;
   }
@@ -84,7 +177,14 @@ public class UserKNN extends Recommender {
   @Override
   public void fit() {
     System.out.println("\nFitting " + this.toString());
-    Parallelizer.exec(this.datamodel.getUsers(), this.metric);
+    if (this.lsh != null) {
+      this.lsh.fit();
+    }
+    Parallelizer.exec(
+        this.datamodel.getUsers(),
+        this.metric,
+        Parallelizer.getNumThreads(),
+        this.metric.getCostHint());
     Parallelizer.exec(this.datamodel.getUsers(), new UserNeighbors());
   }
 
@@ -142,12 +242,14 @@ public class UserKNN extends Recommender {
    * @return Ration prediction from the user to the item
    */
   private double predictWeightedMean(int userIndex, int itemIndex) {
-    double[] similarities = metric.getSimilarities(userIndex);
+    double[] similarities = this.neighborSimilarities[userIndex];
 
     double num = 0;
     double den = 0;
 
-    for (int neighborIndex : this.neighbors[userIndex]) {
+    int[] neighbors = this.neighbors[userIndex];
+    for (int n = 0; n < neighbors.length; n++) {
+      int neighborIndex = neighbors[n];
       if (neighborIndex == -1)
         break; // Neighbors array are filled with -1 when no more neighbors exists
 
@@ -155,7 +257,7 @@ public class UserKNN extends Recommender {
 
       int pos = neighbor.findItem(itemIndex);
       if (pos != -1) {
-        double similarity = similarities[neighborIndex];
+        double similarity = similarities[n];
         double rating = neighbor.getRatingAt(pos);
         num += similarity * rating;
         den += similarity;
@@ -174,12 +276,14 @@ public class UserKNN extends Recommender {
    */
   private double predictDeviationFromMean(int userIndex, int itemIndex) {
     User user = this.datamodel.getUser(userIndex);
-    double[] similarities = metric.getSimilarities(userIndex);
+    double[] similarities = this.neighborSimilarities[userIndex];
 
     double num = 0;
     double den = 0;
 
-    for (int neighborIndex : this.neighbors[userIndex]) {
+    int[] neighbors = this.neighbors[userIndex];
+    for (int n = 0; n < neighbors.length; n++) {
+      int neighborIndex = neighbors[n];
       if (neighborIndex == -1)
         break; // Neighbors array are filled with -1 when no more neighbors exists
 
@@ -187,7 +291,7 @@ public class UserKNN extends Recommender {
 
       int pos = neighbor.findItem(itemIndex);
       if (pos != -1) {
-        double similarity = similarities[neighborIndex];
+        double similarity = similarities[n];
         double rating = neighbor.getRatingAt(pos);
         double avg = neighbor.getRatingAverage();
 
@@ -224,8 +328,17 @@ public class UserKNN extends Recommender {
     @Override
     public void run(User user) {
       int userIndex = user.getUserIndex();
-      double[] similarities = metric.getSimilarities(userIndex);
-      neighbors[userIndex] = Search.findTopN(similarities, numberOfNeighbors);
+      if (topKSimilarities) {
+        neighbors[userIndex] = metric.getNeighbors(userIndex);
+        neighborSimilarities[userIndex] = metric.getNeighborSimilarities(userIndex);
+      } else {
+        double[] similarities = metric.getSimilarities(userIndex);
+        int[] indexes = Search.findTopN(similarities, numberOfNeighbors);
+        for (int n = 0; n < indexes.length && indexes[n] != -1; n++) {
+          neighborSimilarities[userIndex][n] = similarities[indexes[n]];
+        }
+        neighbors[userIndex] = indexes;
+      }
     }
 
     @Override
@@ -6,6 +6,11 @@ import es.upm.etsisi.cf4j.data.User;
 /** Implements traditional Adjusted Cosine as CF similarity metric for the items. */
 public class AdjustedCosine extends ItemSimilarityMetric {
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(Item item, Item otherItem) {
 
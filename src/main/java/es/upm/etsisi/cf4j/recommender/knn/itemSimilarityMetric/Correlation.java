@@ -1,9 +1,18 @@
 package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** This class Implements Pearson Correlation as CF similarity metric for the items. */
-public class Correlation extends ItemSimilarityMetric {
+public class Correlation extends StatisticsItemSimilarityMetric {
+
+  /** Relative tolerance of the denominator when the metric is computed from the co-ratings */
+  private static final double EPSILON = 1e-12;
+
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
 
   @Override
   public double similarity(Item item, Item otherItem) {
@@ -39,4 +48,34 @@ public class Correlation extends ItemSimilarityMetric {
     // Return similarity
     return num / Math.sqrt(denActive * denTarget);
   }
+
+  @Override
+  public double similarity(Item item, Item otherItem, PairStatistics statistics) {
+    int common = statistics.getCount();
+    double avg = item.getRatingAverage();
+    double otherAvg = otherItem.getRatingAverage();
+
+    // Expand the sums of the deviations of the ratings
+    double num =
+        statistics.getSumXY()
+            - (otherAvg * statistics.getSumX() + avg * statistics.getSumY())
+            + common * (avg * otherAvg);
+    double denActive =
+        statistics.getSumXX()
+            - 2d * avg * statistics.getSumX()
+            + common * (avg * avg);
+    double denTarget =
+        statistics.getSumYY()
+            - 2d * otherAvg * statistics.getSumY()
+            + common * (otherAvg * otherAvg);
+
+    // Denominator can not be zero. The expanded sums cancel out up to rounding errors, so they are
+    // compared with the magnitude of the sums of squares
+    if (denActive <= EPSILON * statistics.getSumXX()
+        || denTarget <= EPSILON * statistics.getSumYY()) {
+      return Double.NEGATIVE_INFINITY;
+    }
+
+    return num / Math.sqrt(denActive * denTarget);
+  }
 }
@@ -1,9 +1,10 @@
 package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** This class implements the Constrained Correlation as CF similarity metric for items. */
-public class CorrelationConstrained extends ItemSimilarityMetric {
+public class CorrelationConstrained extends StatisticsItemSimilarityMetric {
 
   /** Median of the ratings of the dataset */
   private final double median;
@@ -17,6 +18,11 @@ public class CorrelationConstrained extends ItemSimilarityMetric {
     this.median = median;
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(Item item, Item otherItem) {
 
@@ -52,6 +58,29 @@ public class CorrelationConstrained extends ItemSimilarityMetric {
     return num / Math.sqrt(denActive * denTarget);
   }
 
+  @Override
+  public double similarity(Item item, Item otherItem, PairStatistics statistics) {
+    int common = statistics.getCount();
+
+    // Expand the sums of the deviations of the ratings
+    double num =
+        statistics.getSumXY()
+            - this.median * (statistics.getSumX() + statistics.getSumY())
+            + common * (this.median * this.median);
+    double denActive =
+        statistics.getSumXX()
+            - 2d * this.median * statistics.getSumX()
+            + common * (this.median * this.median);
+    double denTarget =
+        statistics.getSumYY()
+            - 2d * this.median * statistics.getSumY()
+            + common * (this.median * this.median);
+
+    if (denActive <= 0 || denTarget <= 0) return Double.NEGATIVE_INFINITY;
+
+    return num / Math.sqrt(denActive * denTarget);
+  }
+
   @Override
   public String toString() {
     return super.toString() + "(median=" + this.median + ")";
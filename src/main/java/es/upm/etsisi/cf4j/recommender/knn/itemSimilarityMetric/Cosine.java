@@ -1,9 +1,15 @@
 package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements Cosine as CF similarity metric for the items. */
-public class Cosine extends ItemSimilarityMetric {
+public class Cosine extends StatisticsItemSimilarityMetric {
+
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
 
   @Override
   public double similarity(Item item, Item otherItem) {
@@ -32,4 +38,12 @@ public class Cosine extends ItemSimilarityMetric {
     // Return similarity
     return num / (Math.sqrt(denActive) * Math.sqrt(denTarget));
   }
+
+  @Override
+  public double similarity(Item item, Item otherItem, PairStatistics statistics) {
+    double num = statistics.getSumXY();
+    double denActive = statistics.getSumXX();
+    double denTarget = statistics.getSumYY();
+    return num / (Math.sqrt(denActive) * Math.sqrt(denTarget));
+  }
 }
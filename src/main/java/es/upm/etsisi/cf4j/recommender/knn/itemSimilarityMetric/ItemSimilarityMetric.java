@@ -2,7 +2,14 @@ package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.Item;
-import es.upm.etsisi.cf4j.util.process.Partible;
+import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.CoRatings;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
+import es.upm.etsisi.cf4j.util.Search;
+import es.upm.etsisi.cf4j.util.process.ContextPartible;
+
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
 
 /**
  * This class process the similarity measure between two items. To define your own similarity metric
@@ -11,8 +18,31 @@ import es.upm.etsisi.cf4j.util.process.Partible;
  *
  * <p>When the execution of the similarity metric is completed, the similarity of each item with
  * respect to another one can be retrieved using the getSimilarities(int itemIndex) method.
+ *
+ * <p>Storing the similarity between each pair of items requires memory proportional to the square
+ * of the number of items. If the DataModel is set using setDatamodel(DataModel datamodel, int
+ * numberOfNeighbors), only the most similar items of each item are stored. They can be retrieved
+ * using the getNeighbors(int itemIndex) and getNeighborSimilarities(int itemIndex) methods.
+ *
+ * <p>In both cases, the similarity between two items can be retrieved using the getSimilarity(int
+ * itemIndex, int otherItemIndex) method.
+ *
+ * <p>If the metric is symmetric (see isSymmetric()) and all the similarities are stored, each
+ * unordered pair of items is computed only once: the run of an item only computes its similarity
+ * with the items of greater index and writes it in both directions of the matrix.
+ *
+ * <p>Metrics that can be computed from the statistics of the co-rated users (see
+ * StatisticsItemSimilarityMetric) can use an inverted index instead of comparing each pair of
+ * items. If it is enabled using setInvertedIndex(true), the run of an item walks the posting lists
+ * of its users to accumulate the co-ratings with the items that share at least one user with it.
+ * The similarity with the rest of items is Double.NEGATIVE_INFINITY.
+ *
+ * <p>The scratch arrays required by these strategies are stored in a Buffers instance that the
+ * Parallelizer creates once for each thread of each execution (see ContextPartible), so they are
+ * released when the execution ends.
  */
-public abstract class ItemSimilarityMetric implements Partible<Item> {
+public abstract class ItemSimilarityMetric
+    implements ContextPartible<Item, ItemSimilarityMetric.Buffers>, Cloneable {
 
   /** DataModel for which de similarities must be computed */
   protected DataModel datamodel;
@@ -20,6 +50,21 @@ public abstract class ItemSimilarityMetric implements Partible<Item> {
   /** Matrix that contains the similarity between each pair of items */
   protected double[][] similarities;
 
+  /** Number of most similar items stored for each item. 0 if all the similarities are stored */
+  protected int numberOfNeighbors;
+
+  /** Minimum similarity of the most similar items stored for each item */
+  protected double threshold;
+
+  /** Contains the indexes of the most similar items of each item */
+  protected int[][] neighbors;
+
+  /** Contains the similarities of each item with its most similar items */
+  protected double[][] neighborSimilarities;
+
+  /** Use the inverted index to compute the similarities */
+  private boolean invertedIndex = false;
+
   /**
    * Sets the DataModel for which the similarity are going to be computed
    *
@@ -27,7 +72,52 @@ public abstract class ItemSimilarityMetric implements Partible<Item> {
    */
   public void setDatamodel(DataModel datamodel) {
     this.datamodel = datamodel;
-    this.similarities = new double[datamodel.getNumberOfItems()][datamodel.getNumberOfItems()];
+    this.numberOfNeighbors = 0;
+    this.allocate();
+  }
+
+  /**
+   * Sets the DataModel for which the similarity are going to be computed. Only the similarities of
+   * each item with its numberOfNeighbors most similar items are stored, so the memory required is
+   * proportional to the number of items instead of to its square.
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of most similar items to be stored for each item
+   */
+  public void setDatamodel(DataModel datamodel, int numberOfNeighbors) {
+    this.setDatamodel(datamodel, numberOfNeighbors, Double.NEGATIVE_INFINITY);
+  }
+
+  /**
+   * Sets the DataModel for which the similarity are going to be computed. Only the similarities of
+   * each item with its numberOfNeighbors most similar items whose similarity is greater than or
+   * equal to the threshold are stored.
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of most similar items to be stored for each item
+   * @param threshold Minimum similarity of the items to be stored
+   */
+  public void setDatamodel(DataModel datamodel, int numberOfNeighbors, double threshold) {
+    if (numberOfNeighbors <= 0)
+      throw new IllegalArgumentException("The number of neighbors must be greater than 0");
+    this.datamodel = datamodel;
+    this.numberOfNeighbors = numberOfNeighbors;
+    this.threshold = threshold;
+    this.allocate();
+  }
+
+  /** Allocates the structures that store the similarities */
+  private void allocate() {
+    int numItems = this.datamodel.getNumberOfItems();
+    if (this.numberOfNeighbors > 0) {
+      this.similarities = null;
+      this.neighbors = new int[numItems][];
+      this.neighborSimilarities = new double[numItems][];
+    } else {
+      this.similarities = new double[numItems][numItems];
+      this.neighbors = null;
+      this.neighborSimilarities = null;
+    }
   }
 
   /**
@@ -39,9 +129,136 @@ public abstract class ItemSimilarityMetric implements Partible<Item> {
    * @return Similarity of an item with other items of the DataModel instance
    */
   public double[] getSimilarities(int itemIndex) {
+    if (this.similarities == null)
+      throw new IllegalStateException(
+          "Only the most similar items are stored: use getNeighbors(int itemIndex) instead");
     return this.similarities[itemIndex];
   }
 
+  /**
+   * Returns the similarity between two items. If only the most similar items of each item are
+   * stored and otherItemIndex is not one of them, Double.NEGATIVE_INFINITY is returned.
+   *
+   * @param itemIndex Index of the item
+   * @param otherItemIndex Index of the other item
+   * @return Similarity between both items
+   */
+  public double getSimilarity(int itemIndex, int otherItemIndex) {
+    if (this.similarities != null) {
+      return this.similarities[itemIndex][otherItemIndex];
+    }
+
+    int[] neighbors = this.neighbors[itemIndex];
+    for (int n = 0; n < neighbors.length && neighbors[n] != -1; n++) {
+      if (neighbors[n] == otherItemIndex) {
+        return this.neighborSimilarities[itemIndex][n];
+      }
+    }
+    return Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Returns the indexes of the most similar items of an item, sorted from the most similar to the
+   * least similar one. Only available if the DataModel was set using setDatamodel(DataModel
+   * datamodel, int numberOfNeighbors). The array is filled with -1 when no more neighbors exist.
+   *
+   * @param itemIndex Index of the item
+   * @return Indexes of the most similar items
+   */
+  public int[] getNeighbors(int itemIndex) {
+    if (this.neighbors == null)
+      throw new IllegalStateException(
+          "All the similarities are stored: use getSimilarities(int itemIndex) instead");
+    return this.neighbors[itemIndex];
+  }
+
+  /**
+   * Returns the similarities of an item with its most similar items. Each position of the array
+   * contains the similarity with the item at the same position in the array returned by
+   * getNeighbors(int itemIndex).
+   *
+   * @param itemIndex Index of the item
+   * @return Similarities with the most similar items
+   */
+  public double[] getNeighborSimilarities(int itemIndex) {
+    if (this.neighborSimilarities == null)
+      throw new IllegalStateException(
+          "All the similarities are stored: use getSimilarities(int itemIndex) instead");
+    return this.neighborSimilarities[itemIndex];
+  }
+
+  /**
+   * Returns the number of most similar items stored for each item
+   *
+   * @return Number of most similar items, or 0 if the similarities between each pair of items are
+   *     stored
+   */
+  public int getNumberOfNeighbors() {
+    return this.numberOfNeighbors;
+  }
+
+  /**
+   * Enables or disables the inverted index to compute the similarities. It can only be enabled if
+   * the metric is computed from the statistics of the co-rated users (see
+   * StatisticsItemSimilarityMetric).
+   *
+   * @param invertedIndex true to use the inverted index, false to compare each pair of items
+   */
+  public void setInvertedIndex(boolean invertedIndex) {
+    if (invertedIndex && !(this instanceof StatisticsItemSimilarityMetric))
+      throw new IllegalArgumentException(
+          this.getClass().getSimpleName() + " can not be computed using the inverted index");
+    this.invertedIndex = invertedIndex;
+  }
+
+  /**
+   * Returns whether the inverted index is used to compute the similarities
+   *
+   * @return true if the inverted index is used, false otherwise
+   */
+  public boolean isInvertedIndex() {
+    return this.invertedIndex;
+  }
+
+  /**
+   * Returns whether the metric is symmetric, i.e., similarity(item, otherItem) returns exactly the
+   * same value as similarity(otherItem, item), including the rounding errors. Symmetric metrics
+   * compute each pair of items only once when all the similarities are stored. By default, metrics
+   * are not symmetric.
+   *
+   * @return true if the metric is symmetric, false otherwise
+   */
+  public boolean isSymmetric() {
+    return false;
+  }
+
+  /**
+   * Returns a hint of the cost of running this metric for each item, to be used as cost function
+   * of the exec method of the Parallelizer class. If each pair of items is computed only once, the
+   * item of index i computes the similarity with the items of index greater than i, so the cost
+   * decreases with the index. Otherwise, the cost is the number of ratings of the item.
+   *
+   * @return Cost hint of each Item
+   */
+  public ToLongFunction<Object> getCostHint() {
+    if (this.numberOfNeighbors > 0 || !this.isSymmetric()) {
+      return item -> ((Item) item).getNumberOfRatings();
+    }
+
+    // Comparing two items costs the sum of their number of ratings
+    int numItems = this.datamodel.getNumberOfItems();
+    long[] suffixRatings = new long[numItems + 1];
+    for (int i = numItems - 1; i >= 0; i--) {
+      suffixRatings[i] = suffixRatings[i + 1] + this.datamodel.getItem(i).getNumberOfRatings();
+    }
+
+    return item -> {
+      int index = ((Item) item).getItemIndex();
+      long numRatings = ((Item) item).getNumberOfRatings();
+      return (numItems - 1 - index) * numRatings + suffixRatings[index + 1];
+    };
+  }
+
   /**
    * This method must returns the similarity between two items.
    *
@@ -59,25 +276,192 @@ public abstract class ItemSimilarityMetric implements Partible<Item> {
   @Override
   public void beforeRun() {}
 
+  /**
+   * Creates the scratch arrays used by a thread to compute the similarities. Only the arrays
+   * required by the current configuration of the metric are allocated.
+   *
+   * @return Buffers of a thread
+   */
+  @Override
+  public Buffers createContext() {
+    Buffers buffers = new Buffers();
+    int numItems = this.datamodel.getNumberOfItems();
+    if (this.numberOfNeighbors > 0) {
+      buffers.similarities = new double[numItems];
+    }
+    if (this.invertedIndex) {
+      buffers.coRatings = new CoRatings(numItems);
+    }
+    return buffers;
+  }
+
   @Override
-  public void run(Item item) {
+  public void run(Item item, Buffers buffers) {
+    if (this.invertedIndex) {
+      this.runInvertedIndex(item, buffers);
+      return;
+    }
+
+    if (this.numberOfNeighbors == 0 && this.isSymmetric()) {
+      this.runSymmetric(item);
+      return;
+    }
+
     int itemIndex = item.getItemIndex();
 
+    double[] similarities =
+        (this.numberOfNeighbors > 0) ? buffers.similarities : this.similarities[itemIndex];
+
     for (int i = 0; i < this.datamodel.getNumberOfItems(); i++) {
       Item otherItem = this.datamodel.getItem(i);
       if (itemIndex == otherItem.getItemIndex()) {
-        similarities[itemIndex][i] = Double.NEGATIVE_INFINITY;
+        similarities[i] = Double.NEGATIVE_INFINITY;
       } else {
-        similarities[itemIndex][i] = this.similarity(item, otherItem);
+        similarities[i] = this.similarity(item, otherItem);
       }
     }
+
+    if (this.numberOfNeighbors > 0) {
+      this.storeNeighbors(itemIndex, similarities);
+    }
+  }
+
+  /**
+   * Computes the similarity of an item with the items of greater index and stores it in both
+   * directions of the similarity matrix. Each element of the matrix is written by only one run.
+   *
+   * @param item Item whose similarities must be computed
+   */
+  private void runSymmetric(Item item) {
+    int itemIndex = item.getItemIndex();
+    double[] similarities = this.similarities[itemIndex];
+
+    similarities[itemIndex] = Double.NEGATIVE_INFINITY;
+    for (int i = itemIndex + 1; i < this.datamodel.getNumberOfItems(); i++) {
+      double similarity = this.similarity(item, this.datamodel.getItem(i));
+      similarities[i] = similarity;
+      this.similarities[i][itemIndex] = similarity;
+    }
+  }
+
+  /**
+   * Computes the similarities of an item using the inverted index. Only the items that share at
+   * least one user with the item are compared. If the metric is symmetric and all the
+   * similarities are stored, only the items of greater index are compared and the similarity is
+   * stored in both directions of the similarity matrix.
+   *
+   * @param item Item whose similarities must be computed
+   * @param buffers Buffers of the current thread
+   */
+  private void runInvertedIndex(Item item, Buffers buffers) {
+    int itemIndex = item.getItemIndex();
+    int numItems = this.datamodel.getNumberOfItems();
+    boolean symmetric = this.numberOfNeighbors == 0 && this.isSymmetric();
+
+    StatisticsItemSimilarityMetric metric = (StatisticsItemSimilarityMetric) this;
+    CoRatings coRatings = buffers.coRatings;
+    coRatings.clear();
+    PairStatistics statistics = new PairStatistics();
+
+    for (int i = 0; i < item.getNumberOfRatings(); i++) {
+      User user = this.datamodel.getUser(item.getUserAt(i));
+      double rating = item.getRatingAt(i);
+      int from = symmetric ? user.findItem(itemIndex) + 1 : 0;
+      for (int j = from; j < user.getNumberOfRatings(); j++) {
+        int otherItemIndex = user.getItemAt(j);
+        if (otherItemIndex != itemIndex) {
+          coRatings.add(otherItemIndex, rating, user.getRatingAt(j));
+        }
+      }
+    }
+
+    double[] similarities =
+        (this.numberOfNeighbors > 0) ? buffers.similarities : this.similarities[itemIndex];
+
+    if (symmetric) {
+      for (int i = itemIndex; i < numItems; i++) {
+        similarities[i] = Double.NEGATIVE_INFINITY;
+        this.similarities[i][itemIndex] = Double.NEGATIVE_INFINITY;
+      }
+    } else {
+      Arrays.fill(similarities, Double.NEGATIVE_INFINITY);
+    }
+
+    for (int c = 0; c < coRatings.size(); c++) {
+      int otherItemIndex = coRatings.getIndexAt(c);
+      Item otherItem = this.datamodel.getItem(otherItemIndex);
+      coRatings.getStatistics(otherItemIndex, statistics);
+      double similarity = metric.similarity(item, otherItem, statistics);
+      similarities[otherItemIndex] = similarity;
+      if (symmetric) {
+        this.similarities[otherItemIndex][itemIndex] = similarity;
+      }
+    }
+
+    if (this.numberOfNeighbors > 0) {
+      this.storeNeighbors(itemIndex, similarities);
+    }
+  }
+
+  /**
+   * Stores the most similar items of an item whose similarity is greater than or equal to the
+   * threshold.
+   *
+   * @param itemIndex Index of the item
+   * @param similarities Similarities of the item with the rest of items
+   */
+  private void storeNeighbors(int itemIndex, double[] similarities) {
+    int[] indexes = Search.findTopN(similarities, this.numberOfNeighbors);
+    double[] values = new double[this.numberOfNeighbors];
+    for (int n = 0; n < indexes.length && indexes[n] != -1; n++) {
+      if (similarities[indexes[n]] < this.threshold) {
+        Arrays.fill(indexes, n, indexes.length, -1);
+        break;
+      }
+      values[n] = similarities[indexes[n]];
+    }
+    this.neighbors[itemIndex] = indexes;
+    this.neighborSimilarities[itemIndex] = values;
   }
 
   @Override
   public void afterRun() {}
 
+  /**
+   * Returns a copy of this metric with the same configuration but without DataModel nor
+   * similarities, so both metrics can be set to a DataModel and run concurrently. Fields declared
+   * by subclasses are copied shallowly, so they must not be modified once the metric is created
+   * unless they are reassigned in beforeRun().
+   *
+   * @return Copy of the metric
+   */
+  public ItemSimilarityMetric copy() {
+    try {
+      ItemSimilarityMetric copy = (ItemSimilarityMetric) super.clone();
+      copy.datamodel = null;
+      copy.similarities = null;
+      copy.neighbors = null;
+      copy.neighborSimilarities = null;
+      return copy;
+    } catch (CloneNotSupportedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
   @Override
   public String toString() {
     return this.getClass().getSimpleName();
   }
+
+  /** Scratch arrays used by a thread to compute the similarities of its items */
+  public static final class Buffers {
+
+    /** Similarities of an item if only the most similar items are stored */
+    private double[] similarities;
+
+    /** Accumulator of the co-ratings if the inverted index is used */
+    private CoRatings coRatings;
+
+    private Buffers() {}
+  }
 }
@@ -1,6 +1,7 @@
 package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /**
  * This class implements JMSD as the similarity metric for the items. The similarity metric is
@@ -8,7 +9,7 @@ import es.upm.etsisi.cf4j.data.Item;
  * filtering metric that improves the behavior of Recommender Systems, Knowledge-Based Systems, 23
  * (6), 520-528.
  */
-public class JMSD extends ItemSimilarityMetric {
+public class JMSD extends StatisticsItemSimilarityMetric {
 
   /** Maximum difference between the ratings */
   private double maxDiff;
@@ -19,6 +20,11 @@ public class JMSD extends ItemSimilarityMetric {
     this.maxDiff = super.datamodel.getMaxRating() - super.datamodel.getMinRating();
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(Item item, Item otherItem) {
     int u = 0, v = 0, intersection = 0;
@@ -46,4 +52,14 @@ public class JMSD extends ItemSimilarityMetric {
     double jaccard = intersection / union;
     return jaccard * (1d - (msd / intersection));
   }
+
+  @Override
+  public double similarity(Item item, Item otherItem, PairStatistics statistics) {
+    int intersection = statistics.getCount();
+    double msd = statistics.getSumSquaredDiff() / (this.maxDiff * this.maxDiff);
+    double union =
+        item.getNumberOfRatings() + (double) otherItem.getNumberOfRatings() - intersection;
+    double jaccard = intersection / union;
+    return jaccard * (1d - (msd / intersection));
+  }
 }
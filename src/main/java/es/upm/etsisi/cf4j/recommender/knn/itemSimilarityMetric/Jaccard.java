@@ -1,9 +1,15 @@
 package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** This class Implements Jaccard Index as CF similarity metric for the items. */
-public class Jaccard extends ItemSimilarityMetric {
+public class Jaccard extends StatisticsItemSimilarityMetric {
+
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
 
   @Override
   public double similarity(Item item, Item otherItem) {
@@ -27,4 +33,11 @@ public class Jaccard extends ItemSimilarityMetric {
     return (double) common
         / (double) (item.getNumberOfRatings() + otherItem.getNumberOfRatings() - common);
   }
+
+  @Override
+  public double similarity(Item item, Item otherItem, PairStatistics statistics) {
+    int common = statistics.getCount();
+    return (double) common
+        / (double) (item.getNumberOfRatings() + otherItem.getNumberOfRatings() - common);
+  }
 }
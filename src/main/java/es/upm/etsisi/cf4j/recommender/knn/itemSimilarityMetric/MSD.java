@@ -1,9 +1,10 @@
 package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements traditional MSD as CF similarity metric for items. The returned value is 1 - MSD. */
-public class MSD extends ItemSimilarityMetric {
+public class MSD extends StatisticsItemSimilarityMetric {
 
   /** Maximum difference between the ratings */
   private double maxDiff;
@@ -14,6 +15,11 @@ public class MSD extends ItemSimilarityMetric {
     this.maxDiff = super.datamodel.getMaxRating() - super.datamodel.getMinRating();
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(Item item, Item otherItem) {
 
@@ -41,4 +47,10 @@ public class MSD extends ItemSimilarityMetric {
     // Return similarity
     return 1d - (msd / common);
   }
+
+  @Override
+  public double similarity(Item item, Item otherItem, PairStatistics statistics) {
+    double msd = statistics.getSumSquaredDiff() / (this.maxDiff * this.maxDiff);
+    return 1d - (msd / statistics.getCount());
+  }
 }
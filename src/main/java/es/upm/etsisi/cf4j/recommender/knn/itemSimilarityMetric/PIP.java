@@ -27,6 +27,11 @@ public class PIP extends ItemSimilarityMetric {
     this.median = (this.max + this.min) / 2d;
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(Item item, Item otherItem) {
 
@@ -73,6 +73,11 @@ public class Singularities extends ItemSimilarityMetric {
     }
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(Item item, Item otherItem) {
 
@@ -1,9 +1,15 @@
 package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements traditional Spearman Rank as CF similarity metric for the items. */
-public class SpearmanRank extends ItemSimilarityMetric {
+public class SpearmanRank extends StatisticsItemSimilarityMetric {
+
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
 
   @Override
   public double similarity(Item item, Item otherItem) {
@@ -31,4 +37,11 @@ public class SpearmanRank extends ItemSimilarityMetric {
     // Return similarity
     return 1d - ((6d * num) / (common * ((common * common) - 1d)));
   }
+
+  @Override
+  public double similarity(Item item, Item otherItem, PairStatistics statistics) {
+    int common = statistics.getCount();
+    double num = statistics.getSumSquaredDiff();
+    return 1d - ((6d * num) / (common * ((common * common) - 1d)));
+  }
 }
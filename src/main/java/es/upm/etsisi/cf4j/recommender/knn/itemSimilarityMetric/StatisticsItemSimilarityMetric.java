@@ -0,0 +1,53 @@
+package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
+
+import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
+
+/**
+ * This class process a similarity metric that is computed from the sufficient statistics of the
+ * co-ratings of two items (see PairStatistics). To define your own metric of this kind, you must
+ * extend this class and override the method similarity(Item item, Item otherItem,
+ * PairStatistics statistics).
+ *
+ * <p>The similarity between two items is computed by merging their ratings to accumulate the
+ * statistics of their co-ratings. The inverted index can also be used to compute the similarities
+ * (see setInvertedIndex(boolean invertedIndex)) without implementing anything else.
+ */
+public abstract class StatisticsItemSimilarityMetric extends ItemSimilarityMetric {
+
+  @Override
+  public double similarity(Item item, Item otherItem) {
+    PairStatistics statistics = new PairStatistics();
+
+    int u = 0, v = 0;
+    while (u < item.getNumberOfRatings() && v < otherItem.getNumberOfRatings()) {
+      if (item.getUserAt(u) < otherItem.getUserAt(v)) {
+        u++;
+      } else if (item.getUserAt(u) > otherItem.getUserAt(v)) {
+        v++;
+      } else {
+        statistics.add(item.getRatingAt(u), otherItem.getRatingAt(v));
+        u++;
+        v++;
+      }
+    }
+
+    // If there is not ratings in common, similarity does not exists
+    if (statistics.getCount() == 0) return Double.NEGATIVE_INFINITY;
+
+    return this.similarity(item, otherItem, statistics);
+  }
+
+  /**
+   * Returns the similarity between two items from the sufficient statistics of their co-ratings,
+   * where x are the ratings of item and y the ratings of otherItem. Any engine that accumulates the
+   * co-ratings, such as the inverted index, can compute the metric through this method. It is only
+   * called for pairs of items that share at least one user.
+   *
+   * @param item A item
+   * @param otherItem Other item
+   * @param statistics Statistics of the co-ratings of item and otherItem
+   * @return Similarity between item and otherItem
+   */
+  public abstract double similarity(Item item, Item otherItem, PairStatistics statistics);
+}
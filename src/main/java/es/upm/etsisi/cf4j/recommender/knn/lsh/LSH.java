@@ -0,0 +1,219 @@
+package es.upm.etsisi.cf4j.recommender.knn.lsh;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+import es.upm.etsisi.cf4j.util.process.Partible;
+
+import java.util.Arrays;
+
+/**
+ * This class implements locality sensitive hashing (LSH) of the users of a DataModel. It is used to
+ * find the candidates to be the most similar users of each user without comparing each pair of
+ * users. To define your own LSH family, you must extend this class and override the method
+ * hash(User user, int[] bandKeys).
+ *
+ * <p>Each user is hashed into numBands buckets using the banding technique: the signature of the
+ * user is split into numBands bands of numRows values each, and each band is hashed into a bucket
+ * key. Two users are candidates if they share the bucket of at least one band. More bands increase
+ * the probability of finding the most similar users, and more rows per band reduce the number of
+ * candidates.
+ *
+ * <p>The method fit() must be called before retrieving the candidates using getCandidates(int
+ * userIndex). Users without ratings are not hashed, so they have no candidates.
+ */
+public abstract class LSH {
+
+  /** DataModel whose users are hashed */
+  protected final DataModel datamodel;
+
+  /** Number of bands of the signatures */
+  protected final int numBands;
+
+  /** Number of values of each band */
+  protected final int numRows;
+
+  /** Seed for random numbers generation */
+  protected final long seed;
+
+  /** Bucket key of each band of each user: keys[userIndex * numBands + band] */
+  private int[] keys;
+
+  /** Sorted entries (bucket key in the high bits and user index in the low bits) of each band */
+  private long[][] buckets;
+
+  /**
+   * LSH constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numBands Number of bands of the signatures
+   * @param numRows Number of values of each band
+   * @param seed Seed for random numbers generation
+   */
+  public LSH(DataModel datamodel, int numBands, int numRows, long seed) {
+    if (numBands <= 0)
+      throw new IllegalArgumentException("The number of bands must be greater than 0");
+    if (numRows <= 0)
+      throw new IllegalArgumentException("The number of rows must be greater than 0");
+
+    this.datamodel = datamodel;
+    this.numBands = numBands;
+    this.numRows = numRows;
+    this.seed = seed;
+  }
+
+  /** Hashes all the users of the DataModel into the buckets of each band */
+  public void fit() {
+    int numUsers = this.datamodel.getNumberOfUsers();
+    this.keys = new int[numUsers * this.numBands];
+    Parallelizer.exec(this.datamodel.getUsers(), new HashUsers());
+
+    int numHashedUsers = 0;
+    for (User user : this.datamodel.getUsers()) {
+      if (user.getNumberOfRatings() > 0) numHashedUsers++;
+    }
+
+    this.buckets = new long[this.numBands][numHashedUsers];
+    for (int band = 0; band < this.numBands; band++) {
+      long[] bucket = this.buckets[band];
+      int pos = 0;
+      for (User user : this.datamodel.getUsers()) {
+        if (user.getNumberOfRatings() > 0) {
+          int userIndex = user.getUserIndex();
+          bucket[pos++] = entry(this.keys[userIndex * this.numBands + band], userIndex);
+        }
+      }
+      Arrays.sort(bucket);
+    }
+  }
+
+  /**
+   * Returns the candidates to be the most similar users of a user, i.e. the users that share the
+   * bucket of at least one band with the user. The user is not included.
+   *
+   * @param userIndex Index of the user
+   * @return Sorted indexes of the candidates
+   */
+  public int[] getCandidates(int userIndex) {
+    if (this.buckets == null)
+      throw new IllegalStateException("LSH must be fitted before retrieving the candidates");
+
+    if (this.datamodel.getUser(userIndex).getNumberOfRatings() == 0) return new int[0];
+
+    int[] from = new int[this.numBands];
+    int[] to = new int[this.numBands];
+    int size = 0;
+
+    for (int band = 0; band < this.numBands; band++) {
+      long[] bucket = this.buckets[band];
+      int key = this.keys[userIndex * this.numBands + band];
+
+      // Entries of a bucket are contiguous and sorted by user index
+      int pos = Arrays.binarySearch(bucket, entry(key, 0));
+      from[band] = (pos < 0) ? -(pos + 1) : pos;
+      to[band] = from[band];
+      while (to[band] < bucket.length && (int) (bucket[to[band]] >> 32) == key) to[band]++;
+
+      size += to[band] - from[band];
+    }
+
+    int[] candidates = new int[size];
+    size = 0;
+    for (int band = 0; band < this.numBands; band++) {
+      for (int pos = from[band]; pos < to[band]; pos++) {
+        candidates[size++] = (int) this.buckets[band][pos];
+      }
+    }
+
+    // Remove duplicates and the user
+    Arrays.sort(candidates);
+    int numCandidates = 0;
+    for (int i = 0; i < candidates.length; i++) {
+      if (candidates[i] != userIndex && (i == 0 || candidates[i] != candidates[i - 1])) {
+        candidates[numCandidates++] = candidates[i];
+      }
+    }
+
+    return Arrays.copyOf(candidates, numCandidates);
+  }
+
+  /**
+   * Returns the number of bands of the signatures
+   *
+   * @return Number of bands
+   */
+  public int getNumBands() {
+    return this.numBands;
+  }
+
+  /**
+   * Returns the number of values of each band
+   *
+   * @return Number of rows per band
+   */
+  public int getNumRows() {
+    return this.numRows;
+  }
+
+  /**
+   * This method must compute the signature of a user and store the bucket key of each band in the
+   * bandKeys array. It is only called for users with at least one rating.
+   *
+   * @param user User to be hashed
+   * @param bandKeys Array of length numBands to store the bucket key of each band
+   */
+  protected abstract void hash(User user, int[] bandKeys);
+
+  /**
+   * Mixes the bits of a value, so that close values are mapped to unrelated values (finalizer of
+   * the SplitMix64 generator).
+   *
+   * @param value Value to be mixed
+   * @return Mixed value
+   */
+  protected static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+    value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+    return value ^ (value >>> 31);
+  }
+
+  /**
+   * Builds the entry of a user in the sorted array of a band
+   *
+   * @param key Bucket key of the user in the band
+   * @param userIndex Index of the user
+   * @return Entry of the user
+   */
+  private static long entry(int key, int userIndex) {
+    return ((long) key << 32) | userIndex;
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName()
+        + "(numBands="
+        + this.numBands
+        + "; numRows="
+        + this.numRows
+        + ")";
+  }
+
+  /** Auxiliary inner class to hash the users in parallel */
+  private class HashUsers implements Partible<User> {
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(User user) {
+      if (user.getNumberOfRatings() == 0) return;
+
+      int[] bandKeys = new int[numBands];
+      hash(user, bandKeys);
+      System.arraycopy(bandKeys, 0, keys, user.getUserIndex() * numBands, numBands);
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+}
@@ -0,0 +1,64 @@
+package es.upm.etsisi.cf4j.recommender.knn.lsh;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.User;
+
+import java.util.Random;
+
+/**
+ * Implements MinHash LSH over the sets of items rated by each user. The probability that two users
+ * share the value of a MinHash function is their Jaccard index, so this LSH is suitable to find the
+ * most similar users using Jaccard-like similarity metrics.
+ */
+public class MinHashLSH extends LSH {
+
+  /** Seed of each hash function */
+  private final long[] hashSeeds;
+
+  /**
+   * MinHashLSH constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numBands Number of bands of the signatures
+   * @param numRows Number of MinHash functions of each band
+   */
+  public MinHashLSH(DataModel datamodel, int numBands, int numRows) {
+    this(datamodel, numBands, numRows, System.currentTimeMillis());
+  }
+
+  /**
+   * MinHashLSH constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numBands Number of bands of the signatures
+   * @param numRows Number of MinHash functions of each band
+   * @param seed Seed for random numbers generation
+   */
+  public MinHashLSH(DataModel datamodel, int numBands, int numRows, long seed) {
+    super(datamodel, numBands, numRows, seed);
+
+    Random rand = new Random(seed);
+    this.hashSeeds = new long[numBands * numRows];
+    for (int h = 0; h < this.hashSeeds.length; h++) {
+      this.hashSeeds[h] = rand.nextLong();
+    }
+  }
+
+  @Override
+  protected void hash(User user, int[] bandKeys) {
+    for (int band = 0; band < this.numBands; band++) {
+      long key = band;
+      for (int row = 0; row < this.numRows; row++) {
+        long hashSeed = this.hashSeeds[band * this.numRows + row];
+
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < user.getNumberOfRatings(); i++) {
+          min = Math.min(min, mix(hashSeed + user.getItemAt(i)));
+        }
+
+        key = mix(key + min);
+      }
+      bandKeys[band] = (int) (key >>> 32);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package es.upm.etsisi.cf4j.recommender.knn.lsh;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.User;
+
+import java.util.Random;
+
+/**
+ * Implements SimHash (random hyperplanes) LSH over the rating vectors of the users. Each bit of the
+ * signature is the side of a random hyperplane in which the rating vector lies, so the probability
+ * that two users share a bit decreases with the angle between their rating vectors. This LSH is
+ * suitable to find the most similar users using Cosine. If the ratings are centered by the rating
+ * average of each user, it is suitable for Correlation.
+ *
+ * <p>The components of the random hyperplanes are +1 or -1 and are derived from a hash of the item
+ * index. They are packed as bits when the LSH is fitted, so each rating of a user only reads the
+ * signs of its item instead of hashing the item once per hyperplane.
+ */
+public class SimHashLSH extends LSH {
+
+  /** Center the ratings of each user by its rating average */
+  private final boolean centered;
+
+  /** Seed of each random hyperplane */
+  private final long[] hyperplaneSeeds;
+
+  /** Number of longs required to store the signs of all the hyperplanes of an item */
+  private final int numWords;
+
+  /** Signs of the hyperplanes of each item: bit h of signs[itemIndex * numWords + h / 64] */
+  private long[] signs;
+
+  /**
+   * SimHashLSH constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numBands Number of bands of the signatures
+   * @param numRows Number of random hyperplanes of each band
+   * @param centered true to center the ratings of each user by its rating average
+   */
+  public SimHashLSH(DataModel datamodel, int numBands, int numRows, boolean centered) {
+    this(datamodel, numBands, numRows, centered, System.currentTimeMillis());
+  }
+
+  /**
+   * SimHashLSH constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numBands Number of bands of the signatures
+   * @param numRows Number of random hyperplanes of each band
+   * @param centered true to center the ratings of each user by its rating average
+   * @param seed Seed for random numbers generation
+   */
+  public SimHashLSH(DataModel datamodel, int numBands, int numRows, boolean centered, long seed) {
+    super(datamodel, numBands, numRows, seed);
+
+    this.centered = centered;
+
+    Random rand = new Random(seed);
+    this.hyperplaneSeeds = new long[numBands * numRows];
+    for (int h = 0; h < this.hyperplaneSeeds.length; h++) {
+      this.hyperplaneSeeds[h] = rand.nextLong();
+    }
+    this.numWords = (this.hyperplaneSeeds.length + 63) / 64;
+  }
+
+  @Override
+  public void fit() {
+    int numItems = this.datamodel.getNumberOfItems();
+    this.signs = new long[numItems * this.numWords];
+    for (int itemIndex = 0; itemIndex < numItems; itemIndex++) {
+      for (int h = 0; h < this.hyperplaneSeeds.length; h++) {
+        if (mix(this.hyperplaneSeeds[h] + itemIndex) < 0) {
+          this.signs[itemIndex * this.numWords + (h >>> 6)] |= 1L << h;
+        }
+      }
+    }
+
+    super.fit();
+
+    // Signs are only required to hash the users
+    this.signs = null;
+  }
+
+  @Override
+  protected void hash(User user, int[] bandKeys) {
+    double[] projections = new double[this.hyperplaneSeeds.length];
+
+    double average = this.centered ? user.getRatingAverage() : 0d;
+    for (int i = 0; i < user.getNumberOfRatings(); i++) {
+      int offset = user.getItemAt(i) * this.numWords;
+      double rating = user.getRatingAt(i) - average;
+      for (int h = 0; h < projections.length; h++) {
+        // Branchless: the signs are random, so a branch would be mispredicted half the times
+        long bit = (this.signs[offset + (h >>> 6)] >>> h) & 1L;
+        projections[h] += (1 - 2 * bit) * rating;
+      }
+    }
+
+    for (int band = 0; band < this.numBands; band++) {
+      long key = band;
+      for (int row = 0; row < this.numRows; row++) {
+        key = mix(key + ((projections[band * this.numRows + row] >= 0) ? 1 : 0));
+      }
+      bandKeys[band] = (int) (key >>> 32);
+    }
+  }
+
+  /**
+   * Returns if the ratings of each user are centered by its rating average
+   *
+   * @return true if the ratings are centered, false otherwise
+   */
+  public boolean isCentered() {
+    return this.centered;
+  }
+
+  @Override
+  public String toString() {
+    return "SimHashLSH(numBands="
+        + this.numBands
+        + "; numRows="
+        + this.numRows
+        + "; centered="
+        + this.centered
+        + ")";
+  }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains locality sensitive hashing (LSH) implementations used to find the
+ * candidates to be the most similar users in the user-to-user knn based collaborative filtering
+ * algorithm without comparing each pair of users.
+ */
+package es.upm.etsisi.cf4j.recommender.knn.lsh;
@@ -6,6 +6,11 @@ import es.upm.etsisi.cf4j.data.User;
 /** Implements traditional Adjusted Cosine as CF similarity metric. */
 public class AdjustedCosine extends UserSimilarityMetric {
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(User user, User otherUser) {
 
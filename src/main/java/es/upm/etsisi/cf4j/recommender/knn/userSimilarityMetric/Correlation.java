@@ -1,9 +1,18 @@
 package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements traditional Pearson Correlation as CF similarity metric. */
-public class Correlation extends UserSimilarityMetric {
+public class Correlation extends StatisticsUserSimilarityMetric {
+
+  /** Relative tolerance of the denominator when the metric is computed from the co-ratings */
+  private static final double EPSILON = 1e-12;
+
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
 
   @Override
   public double similarity(User user, User otherUser) {
@@ -40,4 +49,35 @@ public class Correlation extends UserSimilarityMetric {
     double correlation = num / Math.sqrt(denActive * denTarget);
     return (correlation + 1.0) / 2.0;
   }
+
+  @Override
+  public double similarity(User user, User otherUser, PairStatistics statistics) {
+    int common = statistics.getCount();
+    double avg = user.getRatingAverage();
+    double otherAvg = otherUser.getRatingAverage();
+
+    // Expand the sums of the deviations of the ratings
+    double num =
+        statistics.getSumXY()
+            - (otherAvg * statistics.getSumX() + avg * statistics.getSumY())
+            + common * (avg * otherAvg);
+    double denActive =
+        statistics.getSumXX()
+            - 2d * avg * statistics.getSumX()
+            + common * (avg * avg);
+    double denTarget =
+        statistics.getSumYY()
+            - 2d * otherAvg * statistics.getSumY()
+            + common * (otherAvg * otherAvg);
+
+    // Denominator can not be zero. The expanded sums cancel out up to rounding errors, so they are
+    // compared with the magnitude of the sums of squares
+    if (denActive <= EPSILON * statistics.getSumXX()
+        || denTarget <= EPSILON * statistics.getSumYY()) {
+      return Double.NEGATIVE_INFINITY;
+    }
+
+    double correlation = num / Math.sqrt(denActive * denTarget);
+    return (correlation + 1.0) / 2.0;
+  }
 }
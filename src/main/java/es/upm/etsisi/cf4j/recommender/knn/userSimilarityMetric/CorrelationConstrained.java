@@ -1,9 +1,10 @@
 package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements traditional Pearson Correlation Constrained as CF similarity metric. */
-public class CorrelationConstrained extends UserSimilarityMetric {
+public class CorrelationConstrained extends StatisticsUserSimilarityMetric {
 
   /** Median of the ratings of the datamodel */
   private final double median;
@@ -17,6 +18,11 @@ public class CorrelationConstrained extends UserSimilarityMetric {
     this.median = median;
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(User user, User otherUser) {
 
@@ -52,6 +58,29 @@ public class CorrelationConstrained extends UserSimilarityMetric {
     return num / Math.sqrt(denActive * denTarget);
   }
 
+  @Override
+  public double similarity(User user, User otherUser, PairStatistics statistics) {
+    int common = statistics.getCount();
+
+    // Expand the sums of the deviations of the ratings
+    double num =
+        statistics.getSumXY()
+            - this.median * (statistics.getSumX() + statistics.getSumY())
+            + common * (this.median * this.median);
+    double denActive =
+        statistics.getSumXX()
+            - 2d * this.median * statistics.getSumX()
+            + common * (this.median * this.median);
+    double denTarget =
+        statistics.getSumYY()
+            - 2d * this.median * statistics.getSumY()
+            + common * (this.median * this.median);
+
+    if (denActive <= 0 || denTarget <= 0) return Double.NEGATIVE_INFINITY;
+
+    return num / Math.sqrt(denActive * denTarget);
+  }
+
   @Override
   public String toString() {
     return super.toString() + "(median=" + this.median + ")";
@@ -1,9 +1,15 @@
 package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements traditional Cosine as CF similarity metric. */
-public class Cosine extends UserSimilarityMetric {
+public class Cosine extends StatisticsUserSimilarityMetric {
+
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
 
   @Override
   public double similarity(User user, User otherUser) {
@@ -33,4 +39,12 @@ public class Cosine extends UserSimilarityMetric {
     // Return similarity
     return num / (Math.sqrt(denActive) * Math.sqrt(denTarget));
   }
+
+  @Override
+  public double similarity(User user, User otherUser, PairStatistics statistics) {
+    double num = statistics.getSumXY();
+    double denActive = statistics.getSumXX();
+    double denTarget = statistics.getSumYY();
+    return num / (Math.sqrt(denActive) * Math.sqrt(denTarget));
+  }
 }
@@ -1,13 +1,14 @@
 package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /**
  * Implements the following CF similarity metric: Bobadilla, J., Serradilla, F., &amp; Bernal, J.
  * (2010). A new collaborative filtering metric that improves the behavior of Recommender Systems,
  * Knowledge-Based Systems, 23 (6), 520-528.
  */
-public class JMSD extends UserSimilarityMetric {
+public class JMSD extends StatisticsUserSimilarityMetric {
 
   /** Maximum difference between the ratings */
   private double maxDiff;
@@ -18,6 +19,11 @@ public class JMSD extends UserSimilarityMetric {
     this.maxDiff = super.datamodel.getMaxRating() - super.datamodel.getMinRating();
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(User user, User otherUser) {
 
@@ -46,4 +52,14 @@ public class JMSD extends UserSimilarityMetric {
     double jaccard = intersection / union;
     return jaccard * (1d - (msd / intersection));
   }
+
+  @Override
+  public double similarity(User user, User otherUser, PairStatistics statistics) {
+    int intersection = statistics.getCount();
+    double msd = statistics.getSumSquaredDiff() / (this.maxDiff * this.maxDiff);
+    double union =
+        user.getNumberOfRatings() + (double) otherUser.getNumberOfRatings() - intersection;
+    double jaccard = intersection / union;
+    return jaccard * (1d - (msd / intersection));
+  }
 }
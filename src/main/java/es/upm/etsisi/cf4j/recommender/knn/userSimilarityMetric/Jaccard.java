@@ -1,9 +1,15 @@
 package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements traditional Jaccard Index as CF similarity metric. */
-public class Jaccard extends UserSimilarityMetric {
+public class Jaccard extends StatisticsUserSimilarityMetric {
+
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
 
   @Override
   public double similarity(User user, User otherUser) {
@@ -28,4 +34,11 @@ public class Jaccard extends UserSimilarityMetric {
     return (double) common
         / (double) (user.getNumberOfRatings() + otherUser.getNumberOfRatings() - common);
   }
+
+  @Override
+  public double similarity(User user, User otherUser, PairStatistics statistics) {
+    int common = statistics.getCount();
+    return (double) common
+        / (double) (user.getNumberOfRatings() + otherUser.getNumberOfRatings() - common);
+  }
 }
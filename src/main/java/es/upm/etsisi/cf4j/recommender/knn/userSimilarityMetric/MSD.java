@@ -1,9 +1,10 @@
 package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements traditional MSD as CF similarity metric. The returned value is 1 - MSD. */
-public class MSD extends UserSimilarityMetric {
+public class MSD extends StatisticsUserSimilarityMetric {
 
   /** Maximum difference between the ratings */
   private double maxDiff;
@@ -14,6 +15,11 @@ public class MSD extends UserSimilarityMetric {
     this.maxDiff = super.datamodel.getMaxRating() - super.datamodel.getMinRating();
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(User user, User otherUser) {
 
@@ -41,4 +47,10 @@ public class MSD extends UserSimilarityMetric {
     // Return similarity
     return 1d - (msd / common);
   }
+
+  @Override
+  public double similarity(User user, User otherUser, PairStatistics statistics) {
+    double msd = statistics.getSumSquaredDiff() / (this.maxDiff * this.maxDiff);
+    return 1d - (msd / statistics.getCount());
+  }
 }
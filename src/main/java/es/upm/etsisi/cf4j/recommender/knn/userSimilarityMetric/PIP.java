@@ -27,6 +27,11 @@ public class PIP extends UserSimilarityMetric {
     this.median = (this.max + this.min) / 2d;
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(User user, User otherUser) {
 
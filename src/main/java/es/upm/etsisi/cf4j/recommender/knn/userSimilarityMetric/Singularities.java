@@ -77,6 +77,11 @@ public class Singularities extends UserSimilarityMetric {
     }
   }
 
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
+
   @Override
   public double similarity(User user, User otherUser) {
 
@@ -1,9 +1,15 @@
 package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
 
 /** Implements traditional Spearman Rank as CF similarity metric. */
-public class SpearmanRank extends UserSimilarityMetric {
+public class SpearmanRank extends StatisticsUserSimilarityMetric {
+
+  @Override
+  public boolean isSymmetric() {
+    return true;
+  }
 
   @Override
   public double similarity(User user, User otherUser) {
@@ -31,4 +37,11 @@ public class SpearmanRank extends UserSimilarityMetric {
     // Return similarity
     return 1d - ((6d * num) / (common * ((common * common) - 1d)));
   }
+
+  @Override
+  public double similarity(User user, User otherUser, PairStatistics statistics) {
+    int common = statistics.getCount();
+    double num = statistics.getSumSquaredDiff();
+    return 1d - ((6d * num) / (common * ((common * common) - 1d)));
+  }
 }
@@ -0,0 +1,53 @@
+package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
+
+import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
+
+/**
+ * This class process a similarity metric that is computed from the sufficient statistics of the
+ * co-ratings of two users (see PairStatistics). To define your own metric of this kind, you must
+ * extend this class and override the method similarity(User user, User otherUser,
+ * PairStatistics statistics).
+ *
+ * <p>The similarity between two users is computed by merging their ratings to accumulate the
+ * statistics of their co-ratings. The inverted index can also be used to compute the similarities
+ * (see setInvertedIndex(boolean invertedIndex)) without implementing anything else.
+ */
+public abstract class StatisticsUserSimilarityMetric extends UserSimilarityMetric {
+
+  @Override
+  public double similarity(User user, User otherUser) {
+    PairStatistics statistics = new PairStatistics();
+
+    int i = 0, j = 0;
+    while (i < user.getNumberOfRatings() && j < otherUser.getNumberOfRatings()) {
+      if (user.getItemAt(i) < otherUser.getItemAt(j)) {
+        i++;
+      } else if (user.getItemAt(i) > otherUser.getItemAt(j)) {
+        j++;
+      } else {
+        statistics.add(user.getRatingAt(i), otherUser.getRatingAt(j));
+        i++;
+        j++;
+      }
+    }
+
+    // If there is not ratings in common, similarity does not exists
+    if (statistics.getCount() == 0) return Double.NEGATIVE_INFINITY;
+
+    return this.similarity(user, otherUser, statistics);
+  }
+
+  /**
+   * Returns the similarity between two users from the sufficient statistics of their co-ratings,
+   * where x are the ratings of user and y the ratings of otherUser. Any engine that accumulates the
+   * co-ratings, such as the inverted index, can compute the metric through this method. It is only
+   * called for pairs of users that share at least one item.
+   *
+   * @param user A user
+   * @param otherUser Other user
+   * @param statistics Statistics of the co-ratings of user and otherUser
+   * @return Similarity between user and otherUser
+   */
+  public abstract double similarity(User user, User otherUser, PairStatistics statistics);
+}
@@ -1,9 +1,17 @@
 package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 
 import es.upm.etsisi.cf4j.data.User;
-import es.upm.etsisi.cf4j.util.process.Partible;
+import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.CoRatings;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
+import es.upm.etsisi.cf4j.recommender.knn.lsh.LSH;
+import es.upm.etsisi.cf4j.util.Search;
+import es.upm.etsisi.cf4j.util.process.ContextPartible;
 import es.upm.etsisi.cf4j.data.DataModel;
 
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
 /**
  * This class process the similarity measure between two users. To define your own similarity metric
  * implementation, you must extend this class and overrides the method similarity(User user, User
@@ -11,8 +19,35 @@ import es.upm.etsisi.cf4j.data.DataModel;
  *
  * <p>When the execution of the similarity metric is completed, the similarity of each user with
  * respect to another one can be retrieved using the getSimilarities(int userIndex) method.
+ *
+ * <p>Storing the similarity between each pair of users requires memory proportional to the square
+ * of the number of users. If the DataModel is set using setDatamodel(DataModel datamodel, int
+ * numberOfNeighbors), only the most similar users of each user are stored. They can be retrieved
+ * using the getNeighbors(int userIndex) and getNeighborSimilarities(int userIndex) methods.
+ *
+ * <p>In both cases, the similarity between two users can be retrieved using the getSimilarity(int
+ * userIndex, int otherUserIndex) method.
+ *
+ * <p>If the metric is symmetric (see isSymmetric()) and all the similarities are stored, each
+ * unordered pair of users is computed only once: the run of a user only computes its similarity
+ * with the users of greater index and writes it in both directions of the matrix.
+ *
+ * <p>Metrics that can be computed from the statistics of the co-rated items (see
+ * StatisticsUserSimilarityMetric) can use an inverted index instead of comparing each pair of
+ * users. If it is enabled using setInvertedIndex(true), the run of a user walks the posting lists
+ * of its items to accumulate the co-ratings with the users that share at least one item with it.
+ * The similarity with the rest of users is Double.NEGATIVE_INFINITY.
+ *
+ * <p>If the DataModel is set using setDatamodel(DataModel datamodel, int numberOfNeighbors, LSH
+ * lsh), the most similar users are searched approximately: each user is only compared with the
+ * candidates returned by the LSH instance.
+ *
+ * <p>The scratch arrays required by these strategies are stored in a Buffers instance that the
+ * Parallelizer creates once for each thread of each execution (see ContextPartible), so they are
+ * released when the execution ends.
  */
-public abstract class UserSimilarityMetric implements Partible<User> {
+public abstract class UserSimilarityMetric
+    implements ContextPartible<User, UserSimilarityMetric.Buffers>, Cloneable {
 
   /** DataModel for which de similarities must be computed */
   protected DataModel datamodel;
@@ -20,6 +55,24 @@ public abstract class UserSimilarityMetric implements Partible<User> {
   /** Matrix that contains the similarity between each pair of users */
   protected double[][] similarities;
 
+  /** Number of most similar users stored for each user. 0 if all the similarities are stored */
+  protected int numberOfNeighbors;
+
+  /** Minimum similarity of the most similar users stored for each user */
+  protected double threshold;
+
+  /** Contains the indexes of the most similar users of each user */
+  protected int[][] neighbors;
+
+  /** Contains the similarities of each user with its most similar users */
+  protected double[][] neighborSimilarities;
+
+  /** Use the inverted index to compute the similarities */
+  private boolean invertedIndex = false;
+
+  /** LSH used to find the candidates to be the most similar users, or null to compare all */
+  private LSH lsh;
+
   /**
    * Sets the DataModel for which the similarity are going to be computed
    *
@@ -27,7 +80,69 @@ public abstract class UserSimilarityMetric implements Partible<User> {
    */
   public void setDatamodel(DataModel datamodel) {
     this.datamodel = datamodel;
-    this.similarities = new double[datamodel.getNumberOfUsers()][datamodel.getNumberOfUsers()];
+    this.numberOfNeighbors = 0;
+    this.lsh = null;
+    this.allocate();
+  }
+
+  /**
+   * Sets the DataModel for which the similarity are going to be computed. Only the similarities of
+   * each user with its numberOfNeighbors most similar users are stored, so the memory required is
+   * proportional to the number of users instead of to its square.
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of most similar users to be stored for each user
+   */
+  public void setDatamodel(DataModel datamodel, int numberOfNeighbors) {
+    this.setDatamodel(datamodel, numberOfNeighbors, Double.NEGATIVE_INFINITY);
+  }
+
+  /**
+   * Sets the DataModel for which the similarity are going to be computed. Only the similarities of
+   * each user with its numberOfNeighbors most similar users whose similarity is greater than or
+   * equal to the threshold are stored.
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of most similar users to be stored for each user
+   * @param threshold Minimum similarity of the users to be stored
+   */
+  public void setDatamodel(DataModel datamodel, int numberOfNeighbors, double threshold) {
+    if (numberOfNeighbors <= 0)
+      throw new IllegalArgumentException("The number of neighbors must be greater than 0");
+    this.datamodel = datamodel;
+    this.numberOfNeighbors = numberOfNeighbors;
+    this.threshold = threshold;
+    this.lsh = null;
+    this.allocate();
+  }
+
+  /**
+   * Sets the DataModel for which the similarity are going to be computed. The numberOfNeighbors
+   * most similar users of each user are searched approximately: each user is only compared with the
+   * candidates returned by getCandidates(int userIndex) of the LSH instance, which must be fitted
+   * before running the similarity metric.
+   *
+   * @param datamodel DataModel instance
+   * @param numberOfNeighbors Number of most similar users to be stored for each user
+   * @param lsh LSH instance used to find the candidates to be the most similar users
+   */
+  public void setDatamodel(DataModel datamodel, int numberOfNeighbors, LSH lsh) {
+    this.setDatamodel(datamodel, numberOfNeighbors);
+    this.lsh = lsh;
+  }
+
+  /** Allocates the structures that store the similarities */
+  private void allocate() {
+    int numUsers = this.datamodel.getNumberOfUsers();
+    if (this.numberOfNeighbors > 0) {
+      this.similarities = null;
+      this.neighbors = new int[numUsers][];
+      this.neighborSimilarities = new double[numUsers][];
+    } else {
+      this.similarities = new double[numUsers][numUsers];
+      this.neighbors = null;
+      this.neighborSimilarities = null;
+    }
   }
 
   /**
@@ -39,9 +154,136 @@ public abstract class UserSimilarityMetric implements Partible<User> {
    * @return Similarity of an user with other users of the DataModel instance
    */
   public double[] getSimilarities(int userIndex) {
+    if (this.similarities == null)
+      throw new IllegalStateException(
+          "Only the most similar users are stored: use getNeighbors(int userIndex) instead");
     return this.similarities[userIndex];
   }
 
+  /**
+   * Returns the similarity between two users. If only the most similar users of each user are
+   * stored and otherUserIndex is not one of them, Double.NEGATIVE_INFINITY is returned.
+   *
+   * @param userIndex Index of the user
+   * @param otherUserIndex Index of the other user
+   * @return Similarity between both users
+   */
+  public double getSimilarity(int userIndex, int otherUserIndex) {
+    if (this.similarities != null) {
+      return this.similarities[userIndex][otherUserIndex];
+    }
+
+    int[] neighbors = this.neighbors[userIndex];
+    for (int n = 0; n < neighbors.length && neighbors[n] != -1; n++) {
+      if (neighbors[n] == otherUserIndex) {
+        return this.neighborSimilarities[userIndex][n];
+      }
+    }
+    return Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Returns the indexes of the most similar users of an user, sorted from the most similar to the
+   * least similar one. Only available if the DataModel was set using setDatamodel(DataModel
+   * datamodel, int numberOfNeighbors). The array is filled with -1 when no more neighbors exist.
+   *
+   * @param userIndex Index of the user
+   * @return Indexes of the most similar users
+   */
+  public int[] getNeighbors(int userIndex) {
+    if (this.neighbors == null)
+      throw new IllegalStateException(
+          "All the similarities are stored: use getSimilarities(int userIndex) instead");
+    return this.neighbors[userIndex];
+  }
+
+  /**
+   * Returns the similarities of an user with its most similar users. Each position of the array
+   * contains the similarity with the user at the same position in the array returned by
+   * getNeighbors(int userIndex).
+   *
+   * @param userIndex Index of the user
+   * @return Similarities with the most similar users
+   */
+  public double[] getNeighborSimilarities(int userIndex) {
+    if (this.neighborSimilarities == null)
+      throw new IllegalStateException(
+          "All the similarities are stored: use getSimilarities(int userIndex) instead");
+    return this.neighborSimilarities[userIndex];
+  }
+
+  /**
+   * Returns the number of most similar users stored for each user
+   *
+   * @return Number of most similar users, or 0 if the similarities between each pair of users are
+   *     stored
+   */
+  public int getNumberOfNeighbors() {
+    return this.numberOfNeighbors;
+  }
+
+  /**
+   * Enables or disables the inverted index to compute the similarities. It can only be enabled if
+   * the metric is computed from the statistics of the co-rated items (see
+   * StatisticsUserSimilarityMetric).
+   *
+   * @param invertedIndex true to use the inverted index, false to compare each pair of users
+   */
+  public void setInvertedIndex(boolean invertedIndex) {
+    if (invertedIndex && !(this instanceof StatisticsUserSimilarityMetric))
+      throw new IllegalArgumentException(
+          this.getClass().getSimpleName() + " can not be computed using the inverted index");
+    this.invertedIndex = invertedIndex;
+  }
+
+  /**
+   * Returns whether the inverted index is used to compute the similarities
+   *
+   * @return true if the inverted index is used, false otherwise
+   */
+  public boolean isInvertedIndex() {
+    return this.invertedIndex;
+  }
+
+  /**
+   * Returns whether the metric is symmetric, i.e., similarity(user, otherUser) returns exactly the
+   * same value as similarity(otherUser, user), including the rounding errors. Symmetric metrics
+   * compute each pair of users only once when all the similarities are stored. By default, metrics
+   * are not symmetric.
+   *
+   * @return true if the metric is symmetric, false otherwise
+   */
+  public boolean isSymmetric() {
+    return false;
+  }
+
+  /**
+   * Returns a hint of the cost of running this metric for each user, to be used as cost function
+   * of the exec method of the Parallelizer class. If each pair of users is computed only once, the
+   * user of index i computes the similarity with the users of index greater than i, so the cost
+   * decreases with the index. Otherwise, the cost is the number of ratings of the user.
+   *
+   * @return Cost hint of each User
+   */
+  public ToLongFunction<Object> getCostHint() {
+    if (this.numberOfNeighbors > 0 || !this.isSymmetric()) {
+      return user -> ((User) user).getNumberOfRatings();
+    }
+
+    // Comparing two users costs the sum of their number of ratings
+    int numUsers = this.datamodel.getNumberOfUsers();
+    long[] suffixRatings = new long[numUsers + 1];
+    for (int i = numUsers - 1; i >= 0; i--) {
+      suffixRatings[i] = suffixRatings[i + 1] + this.datamodel.getUser(i).getNumberOfRatings();
+    }
+
+    return user -> {
+      int index = ((User) user).getUserIndex();
+      long numRatings = ((User) user).getNumberOfRatings();
+      return (numUsers - 1 - index) * numRatings + suffixRatings[index + 1];
+    };
+  }
+
   /**
    * This method must returns the similarity between two users.
    *
@@ -59,25 +301,264 @@ public abstract class UserSimilarityMetric implements Partible<User> {
   @Override
   public void beforeRun() {}
 
+  /**
+   * Creates the scratch arrays used by a thread to compute the similarities. Only the arrays
+   * required by the current configuration of the metric are allocated.
+   *
+   * @return Buffers of a thread
+   */
+  @Override
+  public Buffers createContext() {
+    Buffers buffers = new Buffers();
+    if (this.lsh != null) {
+      if (this instanceof StatisticsUserSimilarityMetric) {
+        buffers.itemRatings = new double[this.datamodel.getNumberOfItems()];
+        Arrays.fill(buffers.itemRatings, Double.NaN);
+      }
+      return buffers;
+    }
+
+    int numUsers = this.datamodel.getNumberOfUsers();
+    if (this.numberOfNeighbors > 0) {
+      buffers.similarities = new double[numUsers];
+    }
+    if (this.invertedIndex) {
+      buffers.coRatings = new CoRatings(numUsers);
+    }
+    return buffers;
+  }
+
   @Override
-  public void run(User user) {
+  public void run(User user, Buffers buffers) {
+    if (this.lsh != null) {
+      this.runCandidates(user, buffers);
+      return;
+    }
+
+    if (this.invertedIndex) {
+      this.runInvertedIndex(user, buffers);
+      return;
+    }
+
+    if (this.numberOfNeighbors == 0 && this.isSymmetric()) {
+      this.runSymmetric(user);
+      return;
+    }
+
     int userIndex = user.getUserIndex();
 
+    double[] similarities =
+        (this.numberOfNeighbors > 0) ? buffers.similarities : this.similarities[userIndex];
+
     for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
       User otherUser = datamodel.getUser(u);
       if (userIndex == otherUser.getUserIndex()) {
-        similarities[userIndex][u] = Double.NEGATIVE_INFINITY;
+        similarities[u] = Double.NEGATIVE_INFINITY;
       } else {
-        similarities[userIndex][u] = this.similarity(user, otherUser);
+        similarities[u] = this.similarity(user, otherUser);
       }
     }
+
+    if (this.numberOfNeighbors > 0) {
+      this.storeNeighbors(userIndex, similarities);
+    }
+  }
+
+  /**
+   * Computes the similarity of a user with the users of greater index and stores it in both
+   * directions of the similarity matrix. Each element of the matrix is written by only one run.
+   *
+   * @param user User whose similarities must be computed
+   */
+  private void runSymmetric(User user) {
+    int userIndex = user.getUserIndex();
+    double[] similarities = this.similarities[userIndex];
+
+    similarities[userIndex] = Double.NEGATIVE_INFINITY;
+    for (int i = userIndex + 1; i < this.datamodel.getNumberOfUsers(); i++) {
+      double similarity = this.similarity(user, this.datamodel.getUser(i));
+      similarities[i] = similarity;
+      this.similarities[i][userIndex] = similarity;
+    }
+  }
+
+  /**
+   * Computes the similarities of a user using the inverted index. Only the users that share at
+   * least one item with the user are compared. If the metric is symmetric and all the
+   * similarities are stored, only the users of greater index are compared and the similarity is
+   * stored in both directions of the similarity matrix.
+   *
+   * @param user User whose similarities must be computed
+   * @param buffers Buffers of the current thread
+   */
+  private void runInvertedIndex(User user, Buffers buffers) {
+    int userIndex = user.getUserIndex();
+    int numUsers = this.datamodel.getNumberOfUsers();
+    boolean symmetric = this.numberOfNeighbors == 0 && this.isSymmetric();
+
+    StatisticsUserSimilarityMetric metric = (StatisticsUserSimilarityMetric) this;
+    CoRatings coRatings = buffers.coRatings;
+    coRatings.clear();
+    PairStatistics statistics = new PairStatistics();
+
+    for (int i = 0; i < user.getNumberOfRatings(); i++) {
+      Item item = this.datamodel.getItem(user.getItemAt(i));
+      double rating = user.getRatingAt(i);
+      int from = symmetric ? item.findUser(userIndex) + 1 : 0;
+      for (int j = from; j < item.getNumberOfRatings(); j++) {
+        int otherUserIndex = item.getUserAt(j);
+        if (otherUserIndex != userIndex) {
+          coRatings.add(otherUserIndex, rating, item.getRatingAt(j));
+        }
+      }
+    }
+
+    double[] similarities =
+        (this.numberOfNeighbors > 0) ? buffers.similarities : this.similarities[userIndex];
+
+    if (symmetric) {
+      for (int i = userIndex; i < numUsers; i++) {
+        similarities[i] = Double.NEGATIVE_INFINITY;
+        this.similarities[i][userIndex] = Double.NEGATIVE_INFINITY;
+      }
+    } else {
+      Arrays.fill(similarities, Double.NEGATIVE_INFINITY);
+    }
+
+    for (int c = 0; c < coRatings.size(); c++) {
+      int otherUserIndex = coRatings.getIndexAt(c);
+      User otherUser = this.datamodel.getUser(otherUserIndex);
+      coRatings.getStatistics(otherUserIndex, statistics);
+      double similarity = metric.similarity(user, otherUser, statistics);
+      similarities[otherUserIndex] = similarity;
+      if (symmetric) {
+        this.similarities[otherUserIndex][userIndex] = similarity;
+      }
+    }
+
+    if (this.numberOfNeighbors > 0) {
+      this.storeNeighbors(userIndex, similarities);
+    }
+  }
+
+  /**
+   * Computes the similarities of a user only with the candidates returned by the LSH instance and
+   * stores its most similar users. If the metric is computed from the statistics of the co-rated
+   * items, the ratings of the user are indexed by item, so the co-ratings with each candidate are
+   * accumulated walking only the ratings of the candidate.
+   *
+   * @param user User whose similarities must be computed
+   * @param buffers Buffers of the current thread
+   */
+  private void runCandidates(User user, Buffers buffers) {
+    int userIndex = user.getUserIndex();
+    int[] candidates = this.lsh.getCandidates(userIndex);
+
+    double[] similarities = new double[candidates.length];
+    if (this instanceof StatisticsUserSimilarityMetric) {
+      StatisticsUserSimilarityMetric metric = (StatisticsUserSimilarityMetric) this;
+      double[] ratings = buffers.itemRatings;
+      for (int i = 0; i < user.getNumberOfRatings(); i++) {
+        ratings[user.getItemAt(i)] = user.getRatingAt(i);
+      }
+
+      PairStatistics statistics = new PairStatistics();
+      for (int c = 0; c < candidates.length; c++) {
+        User otherUser = this.datamodel.getUser(candidates[c]);
+        statistics.clear();
+        for (int j = 0; j < otherUser.getNumberOfRatings(); j++) {
+          double rating = ratings[otherUser.getItemAt(j)];
+          if (!Double.isNaN(rating)) {
+            statistics.add(rating, otherUser.getRatingAt(j));
+          }
+        }
+        similarities[c] =
+            (statistics.getCount() == 0)
+                ? Double.NEGATIVE_INFINITY
+                : metric.similarity(user, otherUser, statistics);
+      }
+
+      for (int i = 0; i < user.getNumberOfRatings(); i++) {
+        ratings[user.getItemAt(i)] = Double.NaN;
+      }
+    } else {
+      for (int c = 0; c < candidates.length; c++) {
+        similarities[c] = this.similarity(user, this.datamodel.getUser(candidates[c]));
+      }
+    }
+
+    this.storeNeighbors(userIndex, similarities);
+
+    // Neighbors are positions of the candidates array
+    int[] neighbors = this.neighbors[userIndex];
+    for (int n = 0; n < neighbors.length && neighbors[n] != -1; n++) {
+      neighbors[n] = candidates[neighbors[n]];
+    }
+  }
+
+  /**
+   * Stores the most similar users of a user whose similarity is greater than or equal to the
+   * threshold.
+   *
+   * @param userIndex Index of the user
+   * @param similarities Similarities of the user with the rest of users
+   */
+  private void storeNeighbors(int userIndex, double[] similarities) {
+    int[] indexes = Search.findTopN(similarities, this.numberOfNeighbors);
+    double[] values = new double[this.numberOfNeighbors];
+    for (int n = 0; n < indexes.length && indexes[n] != -1; n++) {
+      if (similarities[indexes[n]] < this.threshold) {
+        Arrays.fill(indexes, n, indexes.length, -1);
+        break;
+      }
+      values[n] = similarities[indexes[n]];
+    }
+    this.neighbors[userIndex] = indexes;
+    this.neighborSimilarities[userIndex] = values;
   }
 
   @Override
   public void afterRun() {}
 
+  /**
+   * Returns a copy of this metric with the same configuration but without DataModel nor
+   * similarities, so both metrics can be set to a DataModel and run concurrently. Fields declared
+   * by subclasses are copied shallowly, so they must not be modified once the metric is created
+   * unless they are reassigned in beforeRun().
+   *
+   * @return Copy of the metric
+   */
+  public UserSimilarityMetric copy() {
+    try {
+      UserSimilarityMetric copy = (UserSimilarityMetric) super.clone();
+      copy.datamodel = null;
+      copy.similarities = null;
+      copy.neighbors = null;
+      copy.neighborSimilarities = null;
+      copy.lsh = null;
+      return copy;
+    } catch (CloneNotSupportedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
   @Override
   public String toString() {
     return this.getClass().getSimpleName();
   }
+
+  /** Scratch arrays used by a thread to compute the similarities of its users */
+  public static final class Buffers {
+
+    /** Similarities of a user if only the most similar users are stored */
+    private double[] similarities;
+
+    /** Accumulator of the co-ratings if the inverted index is used */
+    private CoRatings coRatings;
+
+    /** Ratings of a user indexed by item (NaN if not rated) if a LSH instance is used */
+    private double[] itemRatings;
+
+    private Buffers() {}
+  }
 }
@@ -1,16 +1,17 @@
 package es.upm.etsisi.cf4j.recommender.matrixFactorization;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.locks.ReentrantLock;
 
 import es.upm.etsisi.cf4j.util.process.Parallelizer;
-import es.upm.etsisi.cf4j.util.process.Partible;
+import es.upm.etsisi.cf4j.util.process.ContextPartible;
+import es.upm.etsisi.cf4j.util.process.IntPartible;
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.Item;
 import es.upm.etsisi.cf4j.recommender.Recommender;
-import es.upm.etsisi.cf4j.util.Maths;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.index.InnerProductModel;
 
 import org.apache.commons.math3.special.Gamma;
 
@@ -19,24 +20,24 @@ import org.apache.commons.math3.special.Gamma;
  * factorization for collaborative filtering recommender systems on a Bayesian probabilistic model.
  * Knowledge-Based Systems, 97, 188-202.
  */
-public class BNMF extends Recommender {
+public class BNMF extends Recommender implements InnerProductModel {
 
   protected static final double DEFAULT_R = 4;
 
   /** User factors */
-  protected double[][] a;
+  protected FactorMatrix a;
 
   /** Item factors */
-  protected double[][] b;
+  protected FactorMatrix b;
 
   /** Gamma parameters */
-  protected double[][] gamma;
+  protected FactorMatrix gamma;
 
   /** Epsilon+ parameters */
-  protected double[][] epsilonPlus;
+  protected FactorMatrix epsilonPlus;
 
   /** Epsilon- parameters */
-  protected double[][] epsilonMinus;
+  protected FactorMatrix epsilonMinus;
 
   /**
    * This hyper-parameter is related to the possibility of obtaining overlapping groups of users
@@ -72,6 +73,10 @@ public class BNMF extends Recommender {
    *       of evidences that the algorithm requires to deduce that a group of users likes an item.
    *   <li><b><em>seed</em></b> (optional): random seed for generating random numbers. If missing,
    *       random value is used.
+   *   <li><b><em>floatFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored in float precision. If missing, it is set to false.
+   *   <li><b><em>offHeapFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored off heap. If missing, it is set to false.
    * </ul>
    *
    * @param datamodel DataModel instance
@@ -85,7 +90,10 @@ public class BNMF extends Recommender {
         (double) params.get("alpha"),
         (double) params.get("beta"),
         params.containsKey("r") ? (double) params.get("r") : DEFAULT_R,
-        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis());
+        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis(),
+        FactorStorage.of(
+            params.containsKey("floatFactors") && (boolean) params.get("floatFactors"),
+            params.containsKey("offHeapFactors") && (boolean) params.get("offHeapFactors")));
   }
 
   /**
@@ -141,6 +149,69 @@ public class BNMF extends Recommender {
       double beta,
       double r,
       long seed) {
+    this(datamodel, numFactors, numIters, alpha, beta, r, seed, false);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of factors
+   * @param numIters Number of iterations
+   * @param alpha This parameter is related to the possibility of obtaining overlapping groups of
+   *     users sharing the same tastes
+   * @param beta Amount of evidences that the algorithm requires to deduce that a group of users
+   *     likes an item
+   * @param r Parameter of the binomial distribution (fixed to 4)
+   * @param seed Seed for random numbers generation
+   * @param floatFactors true to store the latent factors and the gamma and epsilon parameters in
+   *     float precision, which halves the memory used by the model. false to store them in double
+   *     precision
+   */
+  public BNMF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double alpha,
+      double beta,
+      double r,
+      long seed,
+      boolean floatFactors) {
+    this(
+        datamodel,
+        numFactors,
+        numIters,
+        alpha,
+        beta,
+        r,
+        seed,
+        floatFactors ? FactorStorage.FLOAT : FactorStorage.DOUBLE);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of factors
+   * @param numIters Number of iterations
+   * @param alpha This parameter is related to the possibility of obtaining overlapping groups of
+   *     users sharing the same tastes
+   * @param beta Amount of evidences that the algorithm requires to deduce that a group of users
+   *     likes an item
+   * @param r Parameter of the binomial distribution (fixed to 4)
+   * @param seed Seed for random numbers generation
+   * @param factorStorage Storage of the latent factors: their precision and whether they are
+   *     stored in the heap or off heap
+   */
+  public BNMF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double alpha,
+      double beta,
+      double r,
+      long seed,
+      FactorStorage factorStorage) {
     super(datamodel);
 
     this.numFactors = numFactors;
@@ -152,20 +223,21 @@ public class BNMF extends Recommender {
     Random rand = new Random(seed);
 
     // Users initialization
-    this.gamma = new double[datamodel.getNumberOfUsers()][numFactors];
+    this.gamma = FactorMatrix.create(datamodel.getNumberOfUsers(), numFactors, factorStorage);
     for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
       for (int k = 0; k < numFactors; k++) {
-        this.gamma[u][k] = rand.nextDouble();
+        this.gamma.set(u, k, rand.nextDouble());
       }
     }
 
     // Items initialization
-    this.epsilonPlus = new double[datamodel.getNumberOfItems()][numFactors];
-    this.epsilonMinus = new double[datamodel.getNumberOfItems()][numFactors];
+    int numItems = datamodel.getNumberOfItems();
+    this.epsilonPlus = FactorMatrix.create(numItems, numFactors, factorStorage);
+    this.epsilonMinus = FactorMatrix.create(numItems, numFactors, factorStorage);
     for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
       for (int k = 0; k < numFactors; k++) {
-        this.epsilonPlus[i][k] = rand.nextDouble();
-        this.epsilonMinus[i][k] = rand.nextDouble();
+        this.epsilonPlus.set(i, k, rand.nextDouble());
+        this.epsilonMinus.set(i, k, rand.nextDouble());
       }
     }
   }
@@ -215,6 +287,25 @@ public class BNMF extends Recommender {
     return this.r;
   }
 
+  /**
+   * Check if the latent factors are stored in float precision
+   *
+   * @return true if the latent factors are stored as floats, false if they are stored as doubles
+   */
+  public boolean isFloatFactors() {
+    return this.gamma.isFloatPrecision();
+  }
+
+  /**
+   * Check if the latent factors are stored off heap
+   *
+   * @return true if the latent factors are stored in direct buffers, false if they are stored in
+   *     the heap
+   */
+  public boolean isOffHeapFactors() {
+    return this.gamma.isOffHeap();
+  }
+
   /**
    * Get the gamma vector of an user
    *
@@ -222,7 +313,7 @@ public class BNMF extends Recommender {
    * @return User's gamma vector
    */
   public double[] getGamma(int userIndex) {
-    return this.gamma[userIndex];
+    return this.gamma.getRow(userIndex);
   }
 
   /**
@@ -232,7 +323,7 @@ public class BNMF extends Recommender {
    * @return Item's epsilon+ vector
    */
   public double[] getEpsilonPlus(int itemIndex) {
-    return this.epsilonPlus[itemIndex];
+    return this.epsilonPlus.getRow(itemIndex);
   }
 
   /**
@@ -242,7 +333,7 @@ public class BNMF extends Recommender {
    * @return Item's epsilon- vector
    */
   public double[] getEpsilonMinus(int itemIndex) {
-    return this.epsilonMinus[itemIndex];
+    return this.epsilonMinus.getRow(itemIndex);
   }
 
   /**
@@ -252,7 +343,7 @@ public class BNMF extends Recommender {
    * @return Latent factors vector
    */
   public double[] getUserFactors(int userIndex) {
-    return this.a[userIndex];
+    return this.a.getRow(userIndex);
   }
 
   /**
@@ -262,46 +353,61 @@ public class BNMF extends Recommender {
    * @return Latent factors vector
    */
   public double[] getItemFactors(int itemIndex) {
-    return this.b[itemIndex];
+    return this.b.getRow(itemIndex);
+  }
+
+  @Override
+  public double[] getUserEmbedding(int userIndex) {
+    return this.getUserFactors(userIndex);
+  }
+
+  @Override
+  public double[] getItemEmbedding(int itemIndex) {
+    return this.getItemFactors(itemIndex);
   }
 
   @Override
   public void fit() {
     System.out.println("\nFitting " + this.toString());
 
+    UpdateModel updateModel = new UpdateModel();
     for (int iter = 1; iter <= this.numIters; iter++) {
-      Parallelizer.exec(datamodel.getItems(), new UpdateModel());
+      Parallelizer.exec(datamodel.getItems(), updateModel);
       if ((iter % 10) == 0) System.out.print(".");
       if ((iter % 100) == 0) System.out.println(iter + " iterations");
     }
 
     // set user factors
-    this.a = new double[this.datamodel.getNumberOfUsers()][this.numFactors];
+    int numUsers = this.datamodel.getNumberOfUsers();
+    this.a = FactorMatrix.create(numUsers, this.numFactors, this.gamma.getStorage());
     for (int userIndex = 0; userIndex < this.datamodel.getNumberOfUsers(); userIndex++) {
       double sum = 0;
       for (int k = 0; k < this.numFactors; k++) {
-        sum += this.gamma[userIndex][k];
+        sum += this.gamma.get(userIndex, k);
       }
 
       for (int k = 0; k < this.numFactors; k++) {
-        this.a[userIndex][k] = this.gamma[userIndex][k] / sum;
+        this.a.set(userIndex, k, this.gamma.get(userIndex, k) / sum);
       }
     }
 
     // set item factors
-    this.b = new double[this.datamodel.getNumberOfItems()][this.numFactors];
+    int numItems = this.datamodel.getNumberOfItems();
+    this.b = FactorMatrix.create(numItems, this.numFactors, this.gamma.getStorage());
     for (int itemIndex = 0; itemIndex < this.datamodel.getNumberOfItems(); itemIndex++) {
       for (int k = 0; k < this.numFactors; k++) {
-        this.b[itemIndex][k] =
-            this.epsilonPlus[itemIndex][k]
-                / (this.epsilonPlus[itemIndex][k] + this.epsilonMinus[itemIndex][k]);
+        this.b.set(
+            itemIndex,
+            k,
+            this.epsilonPlus.get(itemIndex, k)
+                / (this.epsilonPlus.get(itemIndex, k) + this.epsilonMinus.get(itemIndex, k)));
       }
     }
   }
 
   @Override
   public double predict(int userIndex, int itemIndex) {
-    double prob = Maths.dotProduct(this.a[userIndex], this.b[itemIndex]);
+    double prob = this.a.dotProduct(userIndex, this.b, itemIndex);
     prob = Math.max(prob, 1E-10);
     return Math.ceil(prob * (super.datamodel.getMaxRating() - super.datamodel.getMinRating() + 1));
   }
@@ -322,60 +428,91 @@ public class BNMF extends Recommender {
     return str.toString();
   }
 
-  /** Auxiliary inner class to parallelize model update */
-  private class UpdateModel implements Partible<Item> {
+  /**
+   * Auxiliary inner class to parallelize model update. The same instance is executed in every
+   * iteration, so the matrices of each iteration and the accumulators of the threads are allocated
+   * once per fit.
+   */
+  private class UpdateModel implements ContextPartible<Item, UpdateModel.Accumulator> {
 
-    private static final int NUM_LOCKS = 100;
+    private FactorMatrix gamma;
 
-    private final ReentrantLock[] locks;
+    private FactorMatrix epsilonPlus;
 
-    private final double[][] gamma;
+    private FactorMatrix epsilonMinus;
 
-    private final double[][] epsilonPlus;
+    /** Accumulators of the threads that have taken part in the current update */
+    private final List<Accumulator> accumulators = new ArrayList<>();
 
-    private final double[][] epsilonMinus;
+    /** Gamma matrices of the threads after the first one, reused in every iteration */
+    private final List<FactorMatrix> partialGammas = new ArrayList<>();
 
     public UpdateModel() {
-
-      // Locks avoid problem while users gammas are updated in different threads
-      this.locks = new ReentrantLock[NUM_LOCKS];
-      for (int i = 0; i < NUM_LOCKS; i++) {
-        this.locks[i] = new ReentrantLock();
-      }
-
-      this.gamma = new double[datamodel.getNumberOfUsers()][numFactors];
-      this.epsilonPlus = new double[datamodel.getNumberOfItems()][numFactors];
-      this.epsilonMinus = new double[datamodel.getNumberOfItems()][numFactors];
+      FactorStorage factorStorage = BNMF.this.gamma.getStorage();
+      int numUsers = datamodel.getNumberOfUsers();
+      int numItems = datamodel.getNumberOfItems();
+      this.gamma = FactorMatrix.create(numUsers, numFactors, factorStorage);
+      this.epsilonPlus = FactorMatrix.create(numItems, numFactors, factorStorage);
+      this.epsilonMinus = FactorMatrix.create(numItems, numFactors, factorStorage);
     }
 
     @Override
     public void beforeRun() {
+      this.accumulators.clear();
+
       // Init gamma
-      for (double[] row : this.gamma) {
-        Arrays.fill(row, alpha);
-      }
+      this.gamma.fill(alpha);
 
       // Init epsilon+
-      for (double[] row : this.epsilonPlus) {
-        Arrays.fill(row, beta);
-      }
+      this.epsilonPlus.fill(beta);
 
       // Init epsilon-
-      for (double[] row : this.epsilonMinus) {
-        Arrays.fill(row, beta);
+      this.epsilonMinus.fill(beta);
+    }
+
+    /**
+     * Users' gammas are updated from different threads, so each thread accumulates its updates in
+     * its own matrix. The first thread uses the gamma matrix, and the remaining ones are added to
+     * it in afterRun(). The matrices of the remaining threads are created by the first iteration
+     * that uses them and zeroed by the following ones.
+     */
+    @Override
+    public Accumulator createContext() {
+      FactorMatrix gamma;
+      Accumulator accumulator;
+      boolean reused;
+      synchronized (this) {
+        int thread = this.accumulators.size();
+        reused = thread > 0 && thread <= this.partialGammas.size();
+        if (thread == 0) {
+          gamma = this.gamma;
+        } else if (reused) {
+          gamma = this.partialGammas.get(thread - 1);
+        } else {
+          gamma =
+              FactorMatrix.create(
+                  datamodel.getNumberOfUsers(), numFactors, this.gamma.getStorage());
+          this.partialGammas.add(gamma);
+        }
+        accumulator = new Accumulator(gamma);
+        this.accumulators.add(accumulator);
       }
+
+      // Each thread zeroes its own matrix
+      if (reused) gamma.fill(0);
+
+      return accumulator;
     }
 
     @Override
-    public void run(Item item) {
+    public void run(Item item, Accumulator accumulator) {
       int itemIndex = item.getItemIndex();
+      double[] lambda = accumulator.lambda;
 
       for (int u = 0; u < item.getNumberOfRatings(); u++) {
 
         int userIndex = item.getUserAt(u);
 
-        double[] lambda = new double[BNMF.this.numFactors];
-
         double rating =
             (item.getRatingAt(u) - datamodel.getMinRating())
                 / (datamodel.getMaxRating() - datamodel.getMinRating());
@@ -386,15 +523,17 @@ public class BNMF extends Recommender {
         for (int k = 0; k < BNMF.this.numFactors; k++) {
           lambda[k] =
               Math.exp(
-                  Gamma.digamma(BNMF.this.gamma[userIndex][k])
-                      + BNMF.this.r * rating * Gamma.digamma(BNMF.this.epsilonPlus[itemIndex][k])
+                  Gamma.digamma(BNMF.this.gamma.get(userIndex, k))
+                      + BNMF.this.r
+                          * rating
+                          * Gamma.digamma(BNMF.this.epsilonPlus.get(itemIndex, k))
                       + BNMF.this.r
                           * (1 - rating)
-                          * Gamma.digamma(BNMF.this.epsilonMinus[itemIndex][k])
+                          * Gamma.digamma(BNMF.this.epsilonMinus.get(itemIndex, k))
                       - BNMF.this.r
                           * Gamma.digamma(
-                              BNMF.this.epsilonPlus[itemIndex][k]
-                                  + BNMF.this.epsilonMinus[itemIndex][k]));
+                              BNMF.this.epsilonPlus.get(itemIndex, k)
+                                  + BNMF.this.epsilonMinus.get(itemIndex, k)));
 
           sum += lambda[k];
         }
@@ -405,23 +544,67 @@ public class BNMF extends Recommender {
           double l = lambda[k] / sum;
 
           // Update E+ & E-
-          this.epsilonPlus[itemIndex][k] += l * BNMF.this.r * rating;
-          this.epsilonMinus[itemIndex][k] += l * BNMF.this.r * (1 - rating);
-
-          // Update gamma: user must be block to avoid concurrency problems
-          int lockIndex = userIndex % this.locks.length;
-          this.locks[lockIndex].lock();
-          this.gamma[userIndex][k] += l;
-          this.locks[lockIndex].unlock();
+          this.epsilonPlus.add(itemIndex, k, l * BNMF.this.r * rating);
+          this.epsilonMinus.add(itemIndex, k, l * BNMF.this.r * (1 - rating));
+
+          // Update gamma in the accumulator of the thread
+          accumulator.gamma.add(userIndex, k, l);
         }
       }
     }
 
     @Override
     public void afterRun() {
+      if (this.accumulators.size() > 1) {
+        Parallelizer.exec(0, datamodel.getNumberOfUsers(), new MergeAccumulators());
+      }
+
+      // The matrices of the previous iteration are overwritten by the next one
+      FactorMatrix gamma = BNMF.this.gamma;
       BNMF.this.gamma = this.gamma;
+      this.gamma = gamma;
+
+      FactorMatrix epsilonPlus = BNMF.this.epsilonPlus;
       BNMF.this.epsilonPlus = this.epsilonPlus;
+      this.epsilonPlus = epsilonPlus;
+
+      FactorMatrix epsilonMinus = BNMF.this.epsilonMinus;
       BNMF.this.epsilonMinus = this.epsilonMinus;
+      this.epsilonMinus = epsilonMinus;
+    }
+
+    /** Updates of the users' gammas computed by a thread */
+    private class Accumulator {
+
+      private final double[] lambda = new double[numFactors];
+
+      private final FactorMatrix gamma;
+
+      private Accumulator(FactorMatrix gamma) {
+        this.gamma = gamma;
+      }
+    }
+
+    /** Adds the gammas accumulated by the threads to the gamma matrix */
+    private class MergeAccumulators implements IntPartible {
+
+      @Override
+      public void beforeRun() {}
+
+      @Override
+      public void run(int from, int to) {
+        for (int i = 1; i < accumulators.size(); i++) {
+          FactorMatrix partialGamma = accumulators.get(i).gamma;
+          for (int userIndex = from; userIndex < to; userIndex++) {
+            for (int k = 0; k < numFactors; k++) {
+              gamma.add(userIndex, k, partialGamma.get(userIndex, k));
+            }
+          }
+        }
+      }
+
+      @Override
+      public void afterRun() {}
     }
   }
 }
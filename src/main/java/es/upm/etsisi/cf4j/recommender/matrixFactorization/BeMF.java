@@ -6,7 +6,7 @@ import es.upm.etsisi.cf4j.data.User;
 import es.upm.etsisi.cf4j.recommender.Recommender;
 import es.upm.etsisi.cf4j.util.Maths;
 import es.upm.etsisi.cf4j.util.process.Parallelizer;
-import es.upm.etsisi.cf4j.util.process.Partible;
+import es.upm.etsisi.cf4j.util.process.ContextPartible;
 
 import java.util.Arrays;
 import java.util.Map;
@@ -34,10 +34,10 @@ public class BeMF extends Recommender {
     private final double[] ratings;
 
     /** Users factors **/
-    private final double[][][] U;
+    private final FactorMatrix[] U;
 
     /** Items factors **/
-    private final double[][][] V;
+    private final FactorMatrix[] V;
 
     /**
      * Model constructor from a Map containing the model's hyper-parameters values. Map object must
@@ -51,6 +51,10 @@ public class BeMF extends Recommender {
      *   <li><b>ratings</b>: discrete ratings values.</li>
      *   <li><b><em>seed</em></b> (optional): random seed for random numbers generation. If missing,
      *       random value is used.
+     *   <li><b><em>floatFactors</em></b> (optional): boolean value that indicates if the latent
+     *       factors are stored in float precision. If missing, it is set to false.
+     *   <li><b><em>offHeapFactors</em></b> (optional): boolean value that indicates if the latent
+     *       factors are stored off heap. If missing, it is set to false.
      * </ul>
      *
      * @param datamodel DataModel instance
@@ -64,7 +68,10 @@ public class BeMF extends Recommender {
                 (double) params.get("learningRate"),
                 (double) params.get("regularization"),
                 (double[]) params.get("ratings"),
-                params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis()
+                params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis(),
+                FactorStorage.of(
+                        params.containsKey("floatFactors") && (boolean) params.get("floatFactors"),
+                        params.containsKey("offHeapFactors") && (boolean) params.get("offHeapFactors"))
         );
     }
 
@@ -94,6 +101,40 @@ public class BeMF extends Recommender {
      * @param seed Seed for random numbers generation
      */
     public BeMF(DataModel datamodel, int numFactors, int numIters, double learningRate, double regularization, double[] ratings, long seed) {
+        this(datamodel, numFactors, numIters, learningRate, regularization, ratings, seed, false);
+    }
+
+    /**
+     * Model constructor
+     *
+     * @param datamodel DataModel instance
+     * @param numFactors Number of latent factors
+     * @param numIters Number of iterations
+     * @param learningRate Learning rate
+     * @param regularization Regularization
+     * @param ratings Discrete ratings values
+     * @param seed Seed for random numbers generation
+     * @param floatFactors true to store the latent factors in float precision, which halves the
+     *     memory used by the model. false to store them in double precision
+     */
+    public BeMF(DataModel datamodel, int numFactors, int numIters, double learningRate, double regularization, double[] ratings, long seed, boolean floatFactors) {
+        this(datamodel, numFactors, numIters, learningRate, regularization, ratings, seed, floatFactors ? FactorStorage.FLOAT : FactorStorage.DOUBLE);
+    }
+
+    /**
+     * Model constructor
+     *
+     * @param datamodel DataModel instance
+     * @param numFactors Number of latent factors
+     * @param numIters Number of iterations
+     * @param learningRate Learning rate
+     * @param regularization Regularization
+     * @param ratings Discrete ratings values
+     * @param seed Seed for random numbers generation
+     * @param factorStorage Storage of the latent factors: their precision and whether they are
+     *     stored in the heap or off heap
+     */
+    public BeMF(DataModel datamodel, int numFactors, int numIters, double learningRate, double regularization, double[] ratings, long seed, FactorStorage factorStorage) {
         super(datamodel);
 
         this.numFactors = numFactors;
@@ -104,20 +145,22 @@ public class BeMF extends Recommender {
 
         Random rand = new Random(seed);
 
-        this.U = new double[ratings.length][datamodel.getNumberOfUsers()][numFactors];
+        this.U = new FactorMatrix[ratings.length];
         for (int r = 0; r < ratings.length; r++) {
+            this.U[r] = FactorMatrix.create(datamodel.getNumberOfUsers(), numFactors, factorStorage);
             for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
                 for (int k = 0; k < numFactors; k++) {
-                    this.U[r][u][k] = rand.nextDouble();
+                    this.U[r].set(u, k, rand.nextDouble());
                 }
             }
         }
 
-        this.V = new double[ratings.length][datamodel.getNumberOfItems()][numFactors];
+        this.V = new FactorMatrix[ratings.length];
         for (int r = 0; r < ratings.length; r++) {
+            this.V[r] = FactorMatrix.create(datamodel.getNumberOfItems(), numFactors, factorStorage);
             for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
                 for (int k = 0; k < numFactors; k++) {
-                    this.V[r][i][k] = rand.nextDouble();
+                    this.V[r].set(i, k, rand.nextDouble());
                 }
             }
         }
@@ -168,6 +211,25 @@ public class BeMF extends Recommender {
         return ratings;
     }
 
+    /**
+     * Check if the latent factors are stored in float precision
+     *
+     * @return true if the latent factors are stored as floats, false if they are stored as doubles
+     */
+    public boolean isFloatFactors() {
+        return this.U[0].isFloatPrecision();
+    }
+
+    /**
+     * Check if the latent factors are stored off heap
+     *
+     * @return true if the latent factors are stored in direct buffers, false if they are stored in
+     *     the heap
+     */
+    public boolean isOffHeapFactors() {
+        return this.U[0].isOffHeap();
+    }
+
     @Override
     public void fit() {
         System.out.println("\nFitting " + this.toString());
@@ -208,11 +270,11 @@ public class BeMF extends Recommender {
      * @return Prediction probability
      */
     private double getProbability(int userIndex, int itemIndex, int r) {
-        double dot = Maths.logistic(Maths.dotProduct(this.U[r][userIndex], this.V[r][itemIndex]));
+        double dot = Maths.logistic(this.U[r].dotProduct(userIndex, this.V[r], itemIndex));
 
         double sum = 0;
         for (int i = 0; i < this.ratings.length; i++) {
-            sum += Maths.logistic(Maths.dotProduct(this.U[i][userIndex], this.V[i][itemIndex]));
+            sum += Maths.logistic(this.U[i].dotProduct(userIndex, this.V[i], itemIndex));
         }
 
         return dot / sum;
@@ -255,15 +317,15 @@ public class BeMF extends Recommender {
     /**
      * Auxiliary inner class to parallelize user factors computation
      */
-    private class UpdateUsersFactors implements Partible<User> {
+    private class UpdateUsersFactors implements ContextPartible<User, double[]> {
 
         private final double rating;
 
-        private final double[][] U;
+        private final FactorMatrix U;
 
-        private final double[][] V;
+        private final FactorMatrix V;
 
-        public UpdateUsersFactors(double[][] U, double[][] V, double rating) {
+        public UpdateUsersFactors(FactorMatrix U, FactorMatrix V, double rating) {
             this.U = U;
             this.V = V;
             this.rating = rating;
@@ -273,28 +335,33 @@ public class BeMF extends Recommender {
         public void beforeRun() { }
 
         @Override
-        public void run(User user) {
+        public double[] createContext() {
+            return new double[numFactors];
+        }
+
+        @Override
+        public void run(User user, double[] gradient) {
             int userIndex = user.getUserIndex();
 
-            double[] gradient = new double[numFactors];
+            Arrays.fill(gradient, 0);
 
             for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
                 boolean oneHot = user.getRatingAt(pos) == rating;
 
                 int itemIndex = user.getItemAt(pos);
-                double dot = Maths.dotProduct(U[userIndex], V[itemIndex]);
+                double dot = U.dotProduct(userIndex, V, itemIndex);
 
                 for (int k = 0; k < numFactors; k++) {
                     if (oneHot) {
-                        gradient[k] += (1 - Maths.logistic(dot)) * V[itemIndex][k];
+                        gradient[k] += (1 - Maths.logistic(dot)) * V.get(itemIndex, k);
                     } else {
-                        gradient[k] -= Maths.logistic(dot) * V[itemIndex][k];
+                        gradient[k] -= Maths.logistic(dot) * V.get(itemIndex, k);
                     }
                 }
             }
 
             for (int k = 0; k < numFactors; k++) {
-                U[userIndex][k] += learningRate * (gradient[k] - regularization * U[userIndex][k]);
+                U.add(userIndex, k, learningRate * (gradient[k] - regularization * U.get(userIndex, k)));
             }
         }
 
@@ -305,15 +372,15 @@ public class BeMF extends Recommender {
     /**
      * Auxiliary inner class to parallelize item factors computation
      */
-    private class UpdateItemsFactors implements Partible<Item> {
+    private class UpdateItemsFactors implements ContextPartible<Item, double[]> {
 
         private final  double rating;
 
-        private final  double[][] U;
+        private final  FactorMatrix U;
 
-        private final  double[][] V;
+        private final  FactorMatrix V;
 
-        public UpdateItemsFactors(double[][] U, double[][] V, double rating) {
+        public UpdateItemsFactors(FactorMatrix U, FactorMatrix V, double rating) {
             this.U = U;
             this.V = V;
             this.rating = rating;
@@ -323,28 +390,33 @@ public class BeMF extends Recommender {
         public void beforeRun() { }
 
         @Override
-        public void run(Item item) {
+        public double[] createContext() {
+            return new double[numFactors];
+        }
+
+        @Override
+        public void run(Item item, double[] gradient) {
             int itemIndex = item.getItemIndex();
 
-            double[] gradient = new double[numFactors];
+            Arrays.fill(gradient, 0);
 
             for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
                 boolean oneHot = item.getRatingAt(pos) == rating;
 
                 int userIndex = item.getUserAt(pos);
-                double dot = Maths.dotProduct(U[userIndex], V[itemIndex]);
+                double dot = U.dotProduct(userIndex, V, itemIndex);
 
                 for (int k = 0; k < numFactors; k++) {
                     if (oneHot) {
-                        gradient[k] += (1 - Maths.logistic(dot)) * U[userIndex][k];
+                        gradient[k] += (1 - Maths.logistic(dot)) * U.get(userIndex, k);
                     } else {
-                        gradient[k] -= Maths.logistic(dot) * U[userIndex][k];
+                        gradient[k] -= Maths.logistic(dot) * U.get(userIndex, k);
                     }
                 }
             }
 
             for (int k = 0; k < numFactors; k++) {
-                V[itemIndex][k] += learningRate * (gradient[k] - regularization * V[itemIndex][k]);
+                V.add(itemIndex, k, learningRate * (gradient[k] - regularization * V.get(itemIndex, k)));
             }
         }
 
@@ -6,8 +6,9 @@ import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.Item;
 import es.upm.etsisi.cf4j.data.User;
 import es.upm.etsisi.cf4j.recommender.Recommender;
-import es.upm.etsisi.cf4j.util.Maths;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.index.InnerProductModel;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
 
@@ -15,16 +16,16 @@ import java.util.Random;
  * Implements Koren, Y., Bell, R., &amp; Volinsky, C. (2009). Matrix factorization techniques for
  * recommender systems. Computer, (8), 30-37.
  */
-public class BiasedMF extends Recommender {
+public class BiasedMF extends Recommender implements InnerProductModel {
 
   protected static final double DEFAULT_GAMMA = 0.01;
   protected static final double DEFAULT_LAMBDA = 0.1;
 
   /** User factors */
-  protected final double[][] p;
+  protected final FactorMatrix p;
 
   /** Item factors */
-  protected final double[][] q;
+  protected final FactorMatrix q;
 
   /** User bias */
   protected final double[] bu;
@@ -57,6 +58,10 @@ public class BiasedMF extends Recommender {
    *       If missing, it is set to 0.05.
    *   <li><b><em>seed</em></b> (optional): random seed for random numbers generation. If missing,
    *       random value is used.
+   *   <li><b><em>floatFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored in float precision. If missing, it is set to false.
+   *   <li><b><em>offHeapFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored off heap. If missing, it is set to false.
    * </ul>
    *
    * @param datamodel DataModel instance
@@ -69,7 +74,10 @@ public class BiasedMF extends Recommender {
         (int) params.get("numIters"),
         params.containsKey("lambda") ? (double) params.get("lambda") : DEFAULT_LAMBDA,
         params.containsKey("gamma") ? (double) params.get("gamma") : DEFAULT_GAMMA,
-        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis());
+        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis(),
+        FactorStorage.of(
+            params.containsKey("floatFactors") && (boolean) params.get("floatFactors"),
+            params.containsKey("offHeapFactors") && (boolean) params.get("offHeapFactors")));
   }
 
   /**
@@ -132,6 +140,59 @@ public class BiasedMF extends Recommender {
    */
   public BiasedMF(
       DataModel datamodel, int numFactors, int numIters, double lambda, double gamma, long seed) {
+    this(datamodel, numFactors, numIters, lambda, gamma, seed, false);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of factors
+   * @param numIters Number of iterations
+   * @param lambda Regularization parameter
+   * @param gamma Learning rate parameter
+   * @param seed Seed for random numbers generation
+   * @param floatFactors true to store the latent factors in float precision, which halves the
+   *     memory used by the model. false to store them in double precision
+   */
+  public BiasedMF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double lambda,
+      double gamma,
+      long seed,
+      boolean floatFactors) {
+    this(
+        datamodel,
+        numFactors,
+        numIters,
+        lambda,
+        gamma,
+        seed,
+        floatFactors ? FactorStorage.FLOAT : FactorStorage.DOUBLE);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of factors
+   * @param numIters Number of iterations
+   * @param lambda Regularization parameter
+   * @param gamma Learning rate parameter
+   * @param seed Seed for random numbers generation
+   * @param factorStorage Storage of the latent factors: their precision and whether they are
+   *     stored in the heap or off heap
+   */
+  public BiasedMF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double lambda,
+      double gamma,
+      long seed,
+      FactorStorage factorStorage) {
     super(datamodel);
 
     this.numFactors = numFactors;
@@ -142,22 +203,22 @@ public class BiasedMF extends Recommender {
     Random rand = new Random(seed);
 
     // Users initialization
-    this.p = new double[datamodel.getNumberOfUsers()][numFactors];
+    this.p = FactorMatrix.create(datamodel.getNumberOfUsers(), numFactors, factorStorage);
     this.bu = new double[datamodel.getNumberOfUsers()];
     for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
       this.bu[u] = rand.nextDouble() * 2 - 1;
       for (int k = 0; k < numFactors; k++) {
-        this.p[u][k] = rand.nextDouble() * 2 - 1;
+        this.p.set(u, k, rand.nextDouble() * 2 - 1);
       }
     }
 
     // Items initialization
-    this.q = new double[datamodel.getNumberOfItems()][numFactors];
+    this.q = FactorMatrix.create(datamodel.getNumberOfItems(), numFactors, factorStorage);
     this.bi = new double[datamodel.getNumberOfItems()];
     for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
       this.bi[i] = rand.nextDouble() * 2 - 1;
       for (int k = 0; k < numFactors; k++) {
-        this.q[i][k] = rand.nextDouble() * 2 - 1;
+        this.q.set(i, k, rand.nextDouble() * 2 - 1);
       }
     }
   }
@@ -198,6 +259,25 @@ public class BiasedMF extends Recommender {
     return this.gamma;
   }
 
+  /**
+   * Check if the latent factors are stored in float precision
+   *
+   * @return true if the latent factors are stored as floats, false if they are stored as doubles
+   */
+  public boolean isFloatFactors() {
+    return this.p.isFloatPrecision();
+  }
+
+  /**
+   * Check if the latent factors are stored off heap
+   *
+   * @return true if the latent factors are stored in direct buffers, false if they are stored in
+   *     the heap
+   */
+  public boolean isOffHeapFactors() {
+    return this.p.isOffHeap();
+  }
+
   /**
    * Get the latent factors vector of a user (pu)
    *
@@ -205,7 +285,7 @@ public class BiasedMF extends Recommender {
    * @return Latent factors vector
    */
   public double[] getUserFactors(int userIndex) {
-    return this.p[userIndex];
+    return this.p.getRow(userIndex);
   }
 
   /**
@@ -225,7 +305,7 @@ public class BiasedMF extends Recommender {
    * @return Latent factors vector
    */
   public double[] getItemFactors(int itemIndex) {
-    return this.q[itemIndex];
+    return this.q.getRow(itemIndex);
   }
 
   /**
@@ -238,6 +318,21 @@ public class BiasedMF extends Recommender {
     return this.bi[itemIndex];
   }
 
+  @Override
+  public double[] getUserEmbedding(int userIndex) {
+    // The rating average and the user bias do not change the ranking of the items of a user
+    double[] embedding = Arrays.copyOf(this.p.getRow(userIndex), this.numFactors + 1);
+    embedding[this.numFactors] = 1;
+    return embedding;
+  }
+
+  @Override
+  public double[] getItemEmbedding(int itemIndex) {
+    double[] embedding = Arrays.copyOf(this.q.getRow(itemIndex), this.numFactors + 1);
+    embedding[this.numFactors] = this.bi[itemIndex];
+    return embedding;
+  }
+
   @Override
   public void fit() {
 
@@ -255,12 +350,10 @@ public class BiasedMF extends Recommender {
 
   @Override
   public double predict(int userIndex, int itemIndex) {
-    double[] pu = this.p[userIndex];
-    double[] qi = this.q[itemIndex];
     return datamodel.getRatingAverage()
         + this.bu[userIndex]
         + this.bi[itemIndex]
-        + Maths.dotProduct(pu, qi);
+        + this.p.dotProduct(userIndex, this.q, itemIndex);
   }
 
   @Override
@@ -292,9 +385,7 @@ public class BiasedMF extends Recommender {
 
         bu[userIndex] += gamma * (error - lambda * bu[userIndex]);
 
-        for (int k = 0; k < numFactors; k++) {
-          p[userIndex][k] += gamma * (error * q[itemIndex][k] - lambda * p[userIndex][k]);
-        }
+        p.gradientStep(userIndex, q, itemIndex, error, gamma, lambda);
       }
     }
 
@@ -317,9 +408,7 @@ public class BiasedMF extends Recommender {
 
         bi[itemIndex] += gamma * (error - lambda * bi[itemIndex]);
 
-        for (int k = 0; k < numFactors; k++) {
-          q[itemIndex][k] += gamma * (error * p[userIndex][k] - lambda * q[itemIndex][k]);
-        }
+        q.gradientStep(itemIndex, p, userIndex, error, gamma, lambda);
       }
     }
 
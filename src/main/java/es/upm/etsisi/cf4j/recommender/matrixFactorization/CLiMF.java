@@ -2,14 +2,16 @@ package es.upm.etsisi.cf4j.recommender.matrixFactorization;
 
 import es.upm.etsisi.cf4j.recommender.Recommender;
 import es.upm.etsisi.cf4j.util.Maths;
+import es.upm.etsisi.cf4j.util.process.ContextPartible;
 import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import es.upm.etsisi.cf4j.util.process.Partible;
 import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.Item;
 import es.upm.etsisi.cf4j.data.User;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements Shi, Y., Karatzoglou, A., Baltrunas, L., Larson, M., Oliver, N., &amp; Hanjalic, A.
@@ -198,8 +200,17 @@ public class CLiMF extends Recommender {
   public void fit() {
     System.out.println("\nFitting " + this.toString());
 
+    // gradients of the items rated by each user, reused by all the iterations
+    int maxRatings = 0;
+    double[][] itemsGradients = new double[super.datamodel.getNumberOfUsers()][];
+    for (User user : super.datamodel.getUsers()) {
+      itemsGradients[user.getUserIndex()] = new double[user.getNumberOfRatings() * this.numFactors];
+      maxRatings = Math.max(maxRatings, user.getNumberOfRatings());
+    }
+
     for (int iter = 1; iter <= this.numIters; iter++) {
-      Parallelizer.exec(super.datamodel.getUsers(), new UpdateModel());
+      Parallelizer.exec(super.datamodel.getUsers(), new UpdateUsers(itemsGradients, maxRatings));
+      Parallelizer.exec(super.datamodel.getItems(), new UpdateItems(itemsGradients));
       if ((iter % 10) == 0) System.out.print(".");
       if ((iter % 100) == 0) System.out.println(iter + " iterations");
     }
@@ -240,80 +251,139 @@ public class CLiMF extends Recommender {
     return Maths.logistic(x) * Maths.logistic(-x);
   }
 
-  /** Auxiliary inner class to parallelize model update */
-  private class UpdateModel implements Partible<User> {
-    private final double[][] usersGradients;
-    private final Map<Integer, double[][]> itemsGradients;
+  /**
+   * Auxiliary inner class to parallelize the computation of the gradients. The users factors are
+   * updated as soon as their gradients are computed, because they are only used to compute the
+   * gradients of their own user. The gradients of the rated items are stored until all the users
+   * have been processed.
+   */
+  private class UpdateUsers implements ContextPartible<User, UpdateUsers.Buffers> {
+
+    private final double[][] itemsGradients;
+
+    private final int maxRatings;
 
-    public UpdateModel() {
-      this.usersGradients = new double[datamodel.getNumberOfUsers()][numFactors];
-      this.itemsGradients = new ConcurrentHashMap<>();
+    public UpdateUsers(double[][] itemsGradients, int maxRatings) {
+      this.itemsGradients = itemsGradients;
+      this.maxRatings = maxRatings;
     }
 
     @Override
     public void beforeRun() {}
 
     @Override
-    public void run(User user) {
+    public Buffers createContext() {
+      return new Buffers(this.maxRatings);
+    }
+
+    @Override
+    public void run(User user, Buffers buffers) {
       int userIndex = user.getUserIndex();
 
-      double[] userGradients = new double[numFactors];
-      double[][] ratedItemsGradients = new double[user.getNumberOfRatings()][numFactors];
+      double[] userGradients = buffers.userGradients;
+      double[] ratedItemsGradients = this.itemsGradients[userIndex];
+      Arrays.fill(userGradients, 0);
+      Arrays.fill(ratedItemsGradients, 0);
+
+      // predictions are computed once per rated item
+      double[] predictions = buffers.predictions;
+      for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
+        predictions[pos] = predict(userIndex, user.getItemAt(pos));
+      }
 
       for (int jPos = 0; jPos < user.getNumberOfRatings(); jPos++) {
         double jRating = user.getRatingAt(jPos);
         if (jRating >= threshold) {
           int j = user.getItemAt(jPos);
-          double jPred = predict(userIndex, j);
+          double jPred = predictions[jPos];
+          int jOffset = jPos * numFactors;
 
+          double jLogistic = Maths.logistic(-jPred);
           for (int f = 0; f < numFactors; f++) {
-            userGradients[f] += Maths.logistic(-jPred) * V[j][f];
-            ratedItemsGradients[jPos][f] = Maths.logistic(-jPred) * U[userIndex][f];
-
-            for (int kPos = 0; kPos < user.getNumberOfRatings(); kPos++) {
-              double kRating = user.getRatingAt(kPos);
-              if (jPos != kPos && kRating >= threshold) {
-                int k = user.getItemAt(kPos);
-                double kPred = predict(userIndex, k);
-
-                double diff = kPred - jPred;
-
-                userGradients[f] +=
-                    logisticGradientValue(diff)
-                        * (V[j][f] - V[k][f])
-                        / (1.0 - Maths.logistic(diff));
-                ratedItemsGradients[jPos][f] +=
-                    logisticGradientValue(-diff)
-                        * ((1.0 / (1.0 - Maths.logistic(diff)))
-                            - (1.0 / (1.0 - Maths.logistic(-diff))))
-                        * U[userIndex][f];
+            userGradients[f] += jLogistic * V[j][f];
+            ratedItemsGradients[jOffset + f] = jLogistic * U[userIndex][f];
+          }
+
+          for (int kPos = 0; kPos < user.getNumberOfRatings(); kPos++) {
+            double kRating = user.getRatingAt(kPos);
+            if (jPos != kPos && kRating >= threshold) {
+              int k = user.getItemAt(kPos);
+              double kPred = predictions[kPos];
+
+              double diff = kPred - jPred;
+
+              double userGradient = logisticGradientValue(diff);
+              double userDivisor = 1.0 - Maths.logistic(diff);
+              double itemGradient =
+                  logisticGradientValue(-diff)
+                      * ((1.0 / (1.0 - Maths.logistic(diff)))
+                          - (1.0 / (1.0 - Maths.logistic(-diff))));
+
+              for (int f = 0; f < numFactors; f++) {
+                userGradients[f] += userGradient * (V[j][f] - V[k][f]) / userDivisor;
+                ratedItemsGradients[jOffset + f] += itemGradient * U[userIndex][f];
               }
             }
           }
         }
       }
 
-      this.usersGradients[userIndex] = userGradients;
-      this.itemsGradients.put(userIndex, ratedItemsGradients);
+      for (int f = 0; f < numFactors; f++) {
+        U[userIndex][f] += gamma * (userGradients[f] - lambda * U[userIndex][f]);
+      }
     }
 
     @Override
-    public void afterRun() {
-      for (int userIndex = 0; userIndex < datamodel.getNumberOfUsers(); userIndex++) {
+    public void afterRun() {}
+
+    /** Buffers of a thread */
+    private class Buffers {
+
+      private final double[] userGradients = new double[numFactors];
+
+      private final double[] predictions;
+
+      private Buffers(int maxRatings) {
+        this.predictions = new double[maxRatings];
+      }
+    }
+  }
+
+  /**
+   * Auxiliary inner class to parallelize the update of the items factors. Each item applies the
+   * gradients computed by its users in the order of the users, so the result is the same as if the
+   * gradients were applied sequentially user by user.
+   */
+  private class UpdateItems implements Partible<Item> {
+
+    private final double[][] itemsGradients;
+
+    public UpdateItems(double[][] itemsGradients) {
+      this.itemsGradients = itemsGradients;
+    }
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(Item item) {
+      int itemIndex = item.getItemIndex();
+
+      for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
+        int userIndex = item.getUserAt(pos);
         User user = datamodel.getUser(userIndex);
 
-        double[][] ratedItemsGradients = this.itemsGradients.get(userIndex);
+        double[] ratedItemsGradients = this.itemsGradients[userIndex];
+        int offset = user.findItem(itemIndex) * numFactors;
 
         for (int f = 0; f < numFactors; f++) {
-          U[userIndex][f] += gamma * (this.usersGradients[userIndex][f] - lambda * U[userIndex][f]);
-
-          for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
-            int itemIndex = user.getItemAt(pos);
-            V[itemIndex][f] += gamma * (ratedItemsGradients[pos][f] - lambda * V[itemIndex][f]);
-          }
+          V[itemIndex][f] += gamma * (ratedItemsGradients[offset + f] - lambda * V[itemIndex][f]);
         }
       }
     }
+
+    @Override
+    public void afterRun() {}
   }
 
   /**
@@ -35,10 +35,10 @@ public class DirMF extends Recommender {
     private double[] ratings;
 
     /** Users factors **/
-    private double[][][] P;
+    private FactorMatrix[] P;
 
     /** Items factors **/
-    private double[][][] Q;
+    private FactorMatrix[] Q;
 
     /**
      * Model constructor from a Map containing the model's hyper-parameters values. Map object must
@@ -52,6 +52,10 @@ public class DirMF extends Recommender {
      *   <li><b>ratings</b>: discrete ratings values.</li>
      *   <li><b><em>seed</em></b> (optional): random seed for random numbers generation. If missing,
      *       random value is used.
+     *   <li><b><em>floatFactors</em></b> (optional): boolean value that indicates if the latent
+     *       factors are stored in float precision. If missing, it is set to false.
+     *   <li><b><em>offHeapFactors</em></b> (optional): boolean value that indicates if the latent
+     *       factors are stored off heap. If missing, it is set to false.
      * </ul>
      *
      * @param datamodel DataModel instance
@@ -65,7 +69,10 @@ public class DirMF extends Recommender {
                 (double) params.get("learningRate"),
                 (double) params.get("regularization"),
                 (double[]) params.get("ratings"),
-                params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis()
+                params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis(),
+                FactorStorage.of(
+                        params.containsKey("floatFactors") && (boolean) params.get("floatFactors"),
+                        params.containsKey("offHeapFactors") && (boolean) params.get("offHeapFactors"))
         );
     }
 
@@ -95,6 +102,40 @@ public class DirMF extends Recommender {
      * @param seed Seed for random numbers generation
      */
     public DirMF(DataModel datamodel, int numFactors, int numIters, double learningRate, double regularization, double[] ratings, long seed) {
+        this(datamodel, numFactors, numIters, learningRate, regularization, ratings, seed, false);
+    }
+
+    /**
+     * Model constructor
+     *
+     * @param datamodel DataModel instance
+     * @param numFactors Number of latent factors
+     * @param numIters Number of iterations
+     * @param learningRate Learning rate
+     * @param regularization Regularization
+     * @param ratings Discrete ratings values
+     * @param seed Seed for random numbers generation
+     * @param floatFactors true to store the latent factors in float precision, which halves the
+     *     memory used by the model. false to store them in double precision
+     */
+    public DirMF(DataModel datamodel, int numFactors, int numIters, double learningRate, double regularization, double[] ratings, long seed, boolean floatFactors) {
+        this(datamodel, numFactors, numIters, learningRate, regularization, ratings, seed, floatFactors ? FactorStorage.FLOAT : FactorStorage.DOUBLE);
+    }
+
+    /**
+     * Model constructor
+     *
+     * @param datamodel DataModel instance
+     * @param numFactors Number of latent factors
+     * @param numIters Number of iterations
+     * @param learningRate Learning rate
+     * @param regularization Regularization
+     * @param ratings Discrete ratings values
+     * @param seed Seed for random numbers generation
+     * @param factorStorage Storage of the latent factors: their precision and whether they are
+     *     stored in the heap or off heap
+     */
+    public DirMF(DataModel datamodel, int numFactors, int numIters, double learningRate, double regularization, double[] ratings, long seed, FactorStorage factorStorage) {
         super(datamodel);
 
         this.numFactors = numFactors;
@@ -105,20 +146,22 @@ public class DirMF extends Recommender {
 
         Random rand = new Random(seed);
 
-        this.P = new double[ratings.length][datamodel.getNumberOfUsers()][numFactors];
+        this.P = new FactorMatrix[ratings.length];
         for (int r = 0; r < ratings.length; r++) {
+            this.P[r] = FactorMatrix.create(datamodel.getNumberOfUsers(), numFactors, factorStorage);
             for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
                 for (int k = 0; k < numFactors; k++) {
-                    this.P[r][u][k] = rand.nextDouble();
+                    this.P[r].set(u, k, rand.nextDouble());
                 }
             }
         }
 
-        this.Q = new double[ratings.length][datamodel.getNumberOfItems()][numFactors];
+        this.Q = new FactorMatrix[ratings.length];
         for (int r = 0; r < ratings.length; r++) {
+            this.Q[r] = FactorMatrix.create(datamodel.getNumberOfItems(), numFactors, factorStorage);
             for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
                 for (int k = 0; k < numFactors; k++) {
-                    this.Q[r][i][k] = rand.nextDouble();
+                    this.Q[r].set(i, k, rand.nextDouble());
                 }
             }
         }
@@ -167,6 +210,25 @@ public class DirMF extends Recommender {
         return ratings;
     }
 
+    /**
+     * Check if the latent factors are stored in float precision
+     *
+     * @return true if the latent factors are stored as floats, false if they are stored as doubles
+     */
+    public boolean isFloatFactors() {
+        return this.P[0].isFloatPrecision();
+    }
+
+    /**
+     * Check if the latent factors are stored off heap
+     *
+     * @return true if the latent factors are stored in direct buffers, false if they are stored in
+     *     the heap
+     */
+    public boolean isOffHeapFactors() {
+        return this.P[0].isOffHeap();
+    }
+
     @Override
     public void fit() {
         System.out.println("\nFitting " + this.toString());
@@ -205,11 +267,11 @@ public class DirMF extends Recommender {
      * @return Prediction probability
      */
     private double getProbability(int userIndex, int itemIndex, int r) {
-        double dot = Maths.logistic(Maths.dotProduct(this.P[r][userIndex], this.Q[r][itemIndex]));
+        double dot = Maths.logistic(this.P[r].dotProduct(userIndex, this.Q[r], itemIndex));
 
         double sum = 0;
         for (int i = 0; i < this.ratings.length; i++) {
-            sum += Maths.logistic(Maths.dotProduct(this.P[i][userIndex], this.Q[i][itemIndex]));
+            sum += Maths.logistic(this.P[i].dotProduct(userIndex, this.Q[i], itemIndex));
         }
 
         return dot / sum;
@@ -266,7 +328,7 @@ public class DirMF extends Recommender {
 
                 double sum = 0;
                 for (int s = 0; s < ratings.length; s++) {
-                    double dot = Maths.dotProduct(P[s][userIndex], Q[s][itemIndex]);
+                    double dot = P[s].dotProduct(userIndex, Q[s], itemIndex);
                     sum += Maths.logistic(dot);
                 }
 
@@ -274,12 +336,12 @@ public class DirMF extends Recommender {
                     double rating = user.getRatingAt(pos);
                     double r_ui = (rating == ratings[s] ? Math.exp(rating) : 1) / (ratings.length - 1 + Math.exp(rating));
 
-                    double dot = Maths.dotProduct(P[s][userIndex], Q[s][itemIndex]);
+                    double dot = P[s].dotProduct(userIndex, Q[s], itemIndex);
                     double logit = Maths.logistic(dot);
 
                     for (int k = 0; k < numFactors; k++) {
-                        double gradient = Q[s][itemIndex][k] * logit * (1 - logit) * (Gamma.digamma(logit) - Gamma.digamma(sum) - Math.log(r_ui));
-                        P[s][userIndex][k] -= learningRate * (gradient + regularization * P[s][userIndex][k]);
+                        double gradient = Q[s].get(itemIndex, k) * logit * (1 - logit) * (Gamma.digamma(logit) - Gamma.digamma(sum) - Math.log(r_ui));
+                        P[s].add(userIndex, k, -learningRate * (gradient + regularization * P[s].get(userIndex, k)));
                     }
                 }
             }
@@ -306,7 +368,7 @@ public class DirMF extends Recommender {
 
                 double sum = 0;
                 for (int s = 0; s < ratings.length; s++) {
-                    double dot = Maths.dotProduct(P[s][userIndex], Q[s][itemIndex]);
+                    double dot = P[s].dotProduct(userIndex, Q[s], itemIndex);
                     sum += Maths.logistic(dot);
                 }
 
@@ -314,12 +376,12 @@ public class DirMF extends Recommender {
                     double rating = item.getRatingAt(pos);
                     double r_ui = (rating == ratings[s] ? Math.exp(rating) : 1) / (ratings.length - 1 + Math.exp(rating));
 
-                    double dot = Maths.dotProduct(P[s][userIndex], Q[s][itemIndex]);
+                    double dot = P[s].dotProduct(userIndex, Q[s], itemIndex);
                     double logit = Maths.logistic(dot);
 
                     for (int k = 0; k < numFactors; k++) {
-                        double gradient = P[s][userIndex][k] * logit * (1 - logit) * (Gamma.digamma(logit) - Gamma.digamma(sum) - Math.log(r_ui));
-                        Q[s][itemIndex][k] -= learningRate * (gradient + regularization * Q[s][itemIndex][k]);
+                        double gradient = P[s].get(userIndex, k) * logit * (1 - logit) * (Gamma.digamma(logit) - Gamma.digamma(sum) - Math.log(r_ui));
+                        Q[s].add(itemIndex, k, -learningRate * (gradient + regularization * Q[s].get(itemIndex, k)));
                     }
                 }
             }
@@ -0,0 +1,557 @@
+package es.upm.etsisi.cf4j.recommender.matrixFactorization;
+
+import es.upm.etsisi.cf4j.util.Maths;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Dense matrix that stores the latent factors (or any other per user or per item parameters) of a
+ * matrix factorization model. Each row contains the factors of a user or an item.
+ *
+ * <p>Matrices created with create(int, int, boolean) store each row in its own array in the heap,
+ * which lets the JIT compiler vectorize the row operations (dot products and gradient steps).
+ * Matrices created with createOffHeap(int, int, boolean) store the values contiguously in
+ * row-major order in direct buffers, out of the heap and out of the reach of the garbage collector.
+ * The matrix factorization models use them if they are created with an off heap FactorStorage.
+ *
+ * <p>Values can be stored in double or float precision. Float precision halves the memory used by
+ * the model, at the cost of rounding each stored value to the nearest float. Values are always
+ * read and written as doubles and dot products are accumulated in double precision, so only
+ * gradientStep(...) operates with floats. Using double precision, the results are exactly the same
+ * as operating with a double[][] array.
+ */
+public abstract class FactorMatrix implements Serializable {
+
+  private static final long serialVersionUID = 20200314L;
+
+  /** Number of rows */
+  protected final int numRows;
+
+  /** Number of columns */
+  protected final int numColumns;
+
+  /**
+   * Initializes the size of the matrix
+   *
+   * @param numRows Number of rows
+   * @param numColumns Number of columns
+   */
+  protected FactorMatrix(int numRows, int numColumns) {
+    if (numRows < 0 || numColumns < 0)
+      throw new IllegalArgumentException("The size of the matrix can not be negative");
+    this.numRows = numRows;
+    this.numColumns = numColumns;
+  }
+
+  /**
+   * Creates a matrix filled with zeros whose values are stored in the heap
+   *
+   * @param numRows Number of rows
+   * @param numColumns Number of columns
+   * @param floatPrecision true to store the values as floats, false to store them as doubles
+   * @return FactorMatrix instance
+   */
+  public static FactorMatrix create(int numRows, int numColumns, boolean floatPrecision) {
+    return floatPrecision
+        ? new FloatFactorMatrix(numRows, numColumns)
+        : new DoubleFactorMatrix(numRows, numColumns);
+  }
+
+  /**
+   * Creates a matrix filled with zeros whose values are stored off heap, in direct buffers. These
+   * matrices do not count against the maximum heap size and do not increase the garbage collection
+   * times, but their values are slower to access.
+   *
+   * @param numRows Number of rows
+   * @param numColumns Number of columns
+   * @param floatPrecision true to store the values as floats, false to store them as doubles
+   * @return FactorMatrix instance
+   */
+  public static FactorMatrix createOffHeap(int numRows, int numColumns, boolean floatPrecision) {
+    return new OffHeapFactorMatrix(numRows, numColumns, floatPrecision);
+  }
+
+  /**
+   * Creates a matrix filled with zeros whose values are stored as indicated by a FactorStorage
+   *
+   * @param numRows Number of rows
+   * @param numColumns Number of columns
+   * @param storage Precision of the values and whether they are stored off heap (see
+   *     createOffHeap(int, int, boolean)) or in the heap (see create(int, int, boolean))
+   * @return FactorMatrix instance
+   */
+  public static FactorMatrix create(int numRows, int numColumns, FactorStorage storage) {
+    return storage.isOffHeap()
+        ? createOffHeap(numRows, numColumns, storage.isFloatPrecision())
+        : create(numRows, numColumns, storage.isFloatPrecision());
+  }
+
+  /**
+   * Gets the number of rows of the matrix
+   *
+   * @return Number of rows
+   */
+  public int getNumberOfRows() {
+    return this.numRows;
+  }
+
+  /**
+   * Gets the number of columns of the matrix
+   *
+   * @return Number of columns
+   */
+  public int getNumberOfColumns() {
+    return this.numColumns;
+  }
+
+  /**
+   * Checks if the values are stored in float precision
+   *
+   * @return true if the values are stored as floats, false if they are stored as doubles
+   */
+  public abstract boolean isFloatPrecision();
+
+  /**
+   * Checks if the values are stored off heap
+   *
+   * @return true if the values are stored in direct buffers, false if they are stored in the heap
+   */
+  public boolean isOffHeap() {
+    return false;
+  }
+
+  /**
+   * Gets the storage of the values
+   *
+   * @return FactorStorage of the matrix
+   */
+  public FactorStorage getStorage() {
+    return FactorStorage.of(this.isFloatPrecision(), this.isOffHeap());
+  }
+
+  /**
+   * Gets a value of the matrix
+   *
+   * @param row Row of the value
+   * @param column Column of the value
+   * @return Value stored at the given position
+   */
+  public abstract double get(int row, int column);
+
+  /**
+   * Sets a value of the matrix
+   *
+   * @param row Row of the value
+   * @param column Column of the value
+   * @param value Value to be stored
+   */
+  public abstract void set(int row, int column, double value);
+
+  /**
+   * Adds an amount to a value of the matrix
+   *
+   * @param row Row of the value
+   * @param column Column of the value
+   * @param amount Amount to be added to the stored value
+   */
+  public void add(int row, int column, double amount) {
+    this.set(row, column, this.get(row, column) + amount);
+  }
+
+  /**
+   * Gets a copy of a row of the matrix
+   *
+   * @param row Row of the matrix
+   * @return New array with the values of the row
+   */
+  public double[] getRow(int row) {
+    return this.getRow(row, new double[this.numColumns]);
+  }
+
+  /**
+   * Copies a row of the matrix into an existing array, so that the array can be reused
+   *
+   * @param row Row of the matrix
+   * @param values Array of at least getNumberOfColumns() length where the row is copied
+   * @return The values array
+   */
+  public double[] getRow(int row, double[] values) {
+    for (int k = 0; k < this.numColumns; k++) {
+      values[k] = this.get(row, k);
+    }
+    return values;
+  }
+
+  /**
+   * Replaces the values of a row of the matrix
+   *
+   * @param row Row of the matrix
+   * @param values Values to be copied into the row
+   */
+  public void setRow(int row, double[] values) {
+    for (int k = 0; k < this.numColumns; k++) {
+      this.set(row, k, values[k]);
+    }
+  }
+
+  /**
+   * Sets all the values of the matrix
+   *
+   * @param value Value to be stored in every position
+   */
+  public void fill(double value) {
+    for (int row = 0; row < this.numRows; row++) {
+      for (int k = 0; k < this.numColumns; k++) {
+        this.set(row, k, value);
+      }
+    }
+  }
+
+  /**
+   * Applies a regularized stochastic gradient descent step to a row of this matrix using a row of
+   * another matrix with the same number of columns:
+   *
+   * <pre>this[row] += learningRate * (error * other[otherRow] - regularization * this[row])</pre>
+   *
+   * <p>When both matrices store floats in the heap, the step is computed in float precision so
+   * that it can be vectorized by the JIT compiler.
+   *
+   * @param row Row of this matrix
+   * @param other Other matrix
+   * @param otherRow Row of the other matrix
+   * @param error Prediction error
+   * @param learningRate Learning rate
+   * @param regularization Regularization
+   */
+  public void gradientStep(
+      int row,
+      FactorMatrix other,
+      int otherRow,
+      double error,
+      double learningRate,
+      double regularization) {
+    for (int k = 0; k < this.numColumns; k++) {
+      this.add(
+          row,
+          k,
+          learningRate * (error * other.get(otherRow, k) - regularization * this.get(row, k)));
+    }
+  }
+
+  /**
+   * Dot product between a row of this matrix and a row of another matrix with the same number of
+   * columns
+   *
+   * @param row Row of this matrix
+   * @param other Other matrix
+   * @param otherRow Row of the other matrix
+   * @return dot_product(this[row], other[otherRow])
+   */
+  public double dotProduct(int row, FactorMatrix other, int otherRow) {
+    double r = 0;
+    for (int k = 0; k < this.numColumns; k++) {
+      r += this.get(row, k) * other.get(otherRow, k);
+    }
+    return r;
+  }
+
+  /**
+   * Dot product between a row of this matrix and a vector with the same number of columns
+   *
+   * @param row Row of this matrix
+   * @param vector Vector
+   * @return dot_product(this[row], vector)
+   */
+  public double dotProduct(int row, double[] vector) {
+    double r = 0;
+    for (int k = 0; k < vector.length; k++) {
+      r += this.get(row, k) * vector[k];
+    }
+    return r;
+  }
+
+  /** FactorMatrix that stores each row in an array of doubles */
+  private static class DoubleFactorMatrix extends FactorMatrix {
+
+    private static final long serialVersionUID = 20200314L;
+
+    private final double[][] values;
+
+    DoubleFactorMatrix(int numRows, int numColumns) {
+      super(numRows, numColumns);
+      this.values = new double[numRows][numColumns];
+    }
+
+    @Override
+    public boolean isFloatPrecision() {
+      return false;
+    }
+
+    @Override
+    public double get(int row, int column) {
+      return this.values[row][column];
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+      this.values[row][column] = value;
+    }
+
+    @Override
+    public void add(int row, int column, double amount) {
+      this.values[row][column] += amount;
+    }
+
+    @Override
+    public double[] getRow(int row) {
+      return this.values[row].clone();
+    }
+
+    @Override
+    public double[] getRow(int row, double[] values) {
+      System.arraycopy(this.values[row], 0, values, 0, this.values[row].length);
+      return values;
+    }
+
+    @Override
+    public void setRow(int row, double[] values) {
+      System.arraycopy(values, 0, this.values[row], 0, this.values[row].length);
+    }
+
+    @Override
+    public void fill(double value) {
+      for (double[] row : this.values) {
+        Arrays.fill(row, value);
+      }
+    }
+
+    @Override
+    public void gradientStep(
+        int row,
+        FactorMatrix other,
+        int otherRow,
+        double error,
+        double learningRate,
+        double regularization) {
+      if (other instanceof DoubleFactorMatrix) {
+        double[] target = this.values[row];
+        double[] source = ((DoubleFactorMatrix) other).values[otherRow];
+        for (int k = 0; k < target.length; k++) {
+          target[k] += learningRate * (error * source[k] - regularization * target[k]);
+        }
+      } else {
+        super.gradientStep(row, other, otherRow, error, learningRate, regularization);
+      }
+    }
+
+    @Override
+    public double dotProduct(int row, FactorMatrix other, int otherRow) {
+      if (other instanceof DoubleFactorMatrix) {
+        return Maths.dotProduct(this.values[row], ((DoubleFactorMatrix) other).values[otherRow]);
+      }
+      return super.dotProduct(row, other, otherRow);
+    }
+
+    @Override
+    public double dotProduct(int row, double[] vector) {
+      return Maths.dotProduct(this.values[row], vector);
+    }
+  }
+
+  /** FactorMatrix that stores each row in an array of floats */
+  private static class FloatFactorMatrix extends FactorMatrix {
+
+    private static final long serialVersionUID = 20200314L;
+
+    private final float[][] values;
+
+    FloatFactorMatrix(int numRows, int numColumns) {
+      super(numRows, numColumns);
+      this.values = new float[numRows][numColumns];
+    }
+
+    @Override
+    public boolean isFloatPrecision() {
+      return true;
+    }
+
+    @Override
+    public double get(int row, int column) {
+      return this.values[row][column];
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+      this.values[row][column] = (float) value;
+    }
+
+    @Override
+    public void add(int row, int column, double amount) {
+      this.values[row][column] = (float) (this.values[row][column] + amount);
+    }
+
+    @Override
+    public double[] getRow(int row) {
+      return this.getRow(row, new double[this.numColumns]);
+    }
+
+    @Override
+    public double[] getRow(int row, double[] values) {
+      float[] source = this.values[row];
+      for (int k = 0; k < source.length; k++) {
+        values[k] = source[k];
+      }
+      return values;
+    }
+
+    @Override
+    public void setRow(int row, double[] values) {
+      float[] target = this.values[row];
+      for (int k = 0; k < target.length; k++) {
+        target[k] = (float) values[k];
+      }
+    }
+
+    @Override
+    public void fill(double value) {
+      for (float[] row : this.values) {
+        Arrays.fill(row, (float) value);
+      }
+    }
+
+    @Override
+    public void gradientStep(
+        int row,
+        FactorMatrix other,
+        int otherRow,
+        double error,
+        double learningRate,
+        double regularization) {
+      if (other instanceof FloatFactorMatrix) {
+        float[] target = this.values[row];
+        float[] source = ((FloatFactorMatrix) other).values[otherRow];
+        float floatError = (float) error;
+        float floatLearningRate = (float) learningRate;
+        float floatRegularization = (float) regularization;
+        for (int k = 0; k < target.length; k++) {
+          target[k] +=
+              floatLearningRate * (floatError * source[k] - floatRegularization * target[k]);
+        }
+      } else {
+        super.gradientStep(row, other, otherRow, error, learningRate, regularization);
+      }
+    }
+
+    @Override
+    public double dotProduct(int row, FactorMatrix other, int otherRow) {
+      if (other instanceof FloatFactorMatrix) {
+        return Maths.dotProduct(this.values[row], ((FloatFactorMatrix) other).values[otherRow]);
+      }
+      return super.dotProduct(row, other, otherRow);
+    }
+  }
+
+  /**
+   * FactorMatrix that stores the values in direct buffers. Each buffer contains as many whole rows
+   * as fit into 1GB.
+   */
+  private static class OffHeapFactorMatrix extends FactorMatrix {
+
+    private static final long serialVersionUID = 20200314L;
+
+    /** Maximum size in bytes of each buffer */
+    private static final int MAX_BUFFER_SIZE = 1 << 30;
+
+    private final boolean floatPrecision;
+
+    /** Size in bytes of each value */
+    private final int valueSize;
+
+    /** Number of rows stored in each buffer */
+    private final int rowsPerBuffer;
+
+    private transient ByteBuffer[] buffers;
+
+    OffHeapFactorMatrix(int numRows, int numColumns, boolean floatPrecision) {
+      super(numRows, numColumns);
+      this.floatPrecision = floatPrecision;
+      this.valueSize = floatPrecision ? Float.BYTES : Double.BYTES;
+      this.rowsPerBuffer = Math.max(1, MAX_BUFFER_SIZE / Math.max(1, numColumns * this.valueSize));
+      this.allocate();
+    }
+
+    private void allocate() {
+      int numBuffers = (this.numRows + this.rowsPerBuffer - 1) / this.rowsPerBuffer;
+      this.buffers = new ByteBuffer[numBuffers];
+      for (int b = 0; b < numBuffers; b++) {
+        int rows = Math.min(this.rowsPerBuffer, this.numRows - b * this.rowsPerBuffer);
+        this.buffers[b] =
+            ByteBuffer.allocateDirect(rows * this.numColumns * this.valueSize)
+                .order(ByteOrder.nativeOrder());
+      }
+    }
+
+    /** Position in bytes of a value inside its buffer */
+    private int position(int row, int column) {
+      return ((row % this.rowsPerBuffer) * this.numColumns + column) * this.valueSize;
+    }
+
+    @Override
+    public boolean isFloatPrecision() {
+      return this.floatPrecision;
+    }
+
+    @Override
+    public boolean isOffHeap() {
+      return true;
+    }
+
+    @Override
+    public double get(int row, int column) {
+      ByteBuffer buffer = this.buffers[row / this.rowsPerBuffer];
+      return this.floatPrecision
+          ? buffer.getFloat(this.position(row, column))
+          : buffer.getDouble(this.position(row, column));
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+      ByteBuffer buffer = this.buffers[row / this.rowsPerBuffer];
+      if (this.floatPrecision) {
+        buffer.putFloat(this.position(row, column), (float) value);
+      } else {
+        buffer.putDouble(this.position(row, column), value);
+      }
+    }
+
+    /** Serializes the values after the default fields since direct buffers are not serializable */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      for (int row = 0; row < this.numRows; row++) {
+        for (int k = 0; k < this.numColumns; k++) {
+          if (this.floatPrecision) {
+            out.writeFloat((float) this.get(row, k));
+          } else {
+            out.writeDouble(this.get(row, k));
+          }
+        }
+      }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      this.allocate();
+      for (int row = 0; row < this.numRows; row++) {
+        for (int k = 0; k < this.numColumns; k++) {
+          this.set(row, k, this.floatPrecision ? in.readFloat() : in.readDouble());
+        }
+      }
+    }
+  }
+}
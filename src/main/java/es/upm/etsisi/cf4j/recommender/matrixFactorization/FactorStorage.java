@@ -0,0 +1,65 @@
+package es.upm.etsisi.cf4j.recommender.matrixFactorization;
+
+/**
+ * Storage of the values of a FactorMatrix: their precision and whether they are stored in the heap
+ * or off heap. The matrix factorization models receive it to choose how their latent factors are
+ * stored.
+ */
+public enum FactorStorage {
+
+  /** Values stored as doubles in the heap */
+  DOUBLE(false, false),
+
+  /** Values stored as floats in the heap, which halves the memory used */
+  FLOAT(true, false),
+
+  /** Values stored as doubles off heap, in direct buffers */
+  DOUBLE_OFF_HEAP(false, true),
+
+  /** Values stored as floats off heap, in direct buffers */
+  FLOAT_OFF_HEAP(true, true);
+
+  /** true if the values are stored as floats, false if they are stored as doubles */
+  private final boolean floatPrecision;
+
+  /** true if the values are stored off heap, false if they are stored in the heap */
+  private final boolean offHeap;
+
+  FactorStorage(boolean floatPrecision, boolean offHeap) {
+    this.floatPrecision = floatPrecision;
+    this.offHeap = offHeap;
+  }
+
+  /**
+   * Returns the storage with a given precision and location
+   *
+   * @param floatPrecision true to store the values as floats, false to store them as doubles
+   * @param offHeap true to store the values off heap, false to store them in the heap
+   * @return FactorStorage value
+   */
+  public static FactorStorage of(boolean floatPrecision, boolean offHeap) {
+    if (offHeap) {
+      return floatPrecision ? FLOAT_OFF_HEAP : DOUBLE_OFF_HEAP;
+    } else {
+      return floatPrecision ? FLOAT : DOUBLE;
+    }
+  }
+
+  /**
+   * Checks if the values are stored in float precision
+   *
+   * @return true if the values are stored as floats, false if they are stored as doubles
+   */
+  public boolean isFloatPrecision() {
+    return this.floatPrecision;
+  }
+
+  /**
+   * Checks if the values are stored off heap
+   *
+   * @return true if the values are stored in direct buffers, false if they are stored in the heap
+   */
+  public boolean isOffHeap() {
+    return this.offHeap;
+  }
+}
@@ -1,9 +1,8 @@
 package es.upm.etsisi.cf4j.recommender.matrixFactorization;
 
 import es.upm.etsisi.cf4j.recommender.Recommender;
-import es.upm.etsisi.cf4j.util.Maths;
 import es.upm.etsisi.cf4j.util.process.Parallelizer;
-import es.upm.etsisi.cf4j.util.process.Partible;
+import es.upm.etsisi.cf4j.util.process.ContextPartible;
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.Item;
 import es.upm.etsisi.cf4j.data.User;
@@ -40,14 +39,14 @@ public class HPF extends Recommender {
   protected final double dPrime;
 
   // Model parameters
-  protected final double[][] gamma;
-  protected final double[][] gammaShp;
-  protected final double[][] gammaRte;
+  protected final FactorMatrix gamma;
+  protected final FactorMatrix gammaShp;
+  protected final FactorMatrix gammaRte;
   protected final double kappaShp;
   protected final double[] kappaRte;
-  protected final double[][] lambda;
-  protected final double[][] lambdaShp;
-  protected final double[][] lambdaRte;
+  protected final FactorMatrix lambda;
+  protected final FactorMatrix lambdaShp;
+  protected final FactorMatrix lambdaRte;
   protected final double tauShp;
   protected final double[] tauRte;
 
@@ -72,6 +71,10 @@ public class HPF extends Recommender {
    *       it is set to 1.0.
    *   <li><b><em>seed</em></b> (optional): random seed for random numbers generation. If missing,
    *       random value is used.
+   *   <li><b><em>floatFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored in float precision. If missing, it is set to false.
+   *   <li><b><em>offHeapFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored off heap. If missing, it is set to false.
    * </ul>
    *
    * @param datamodel DataModel instance
@@ -88,7 +91,10 @@ public class HPF extends Recommender {
         params.containsKey("c") ? (double) params.get("c") : DEFAULT_C,
         params.containsKey("cPrime") ? (double) params.get("cPrime") : DEFAULT_C_PRIME,
         params.containsKey("dPrime") ? (double) params.get("dPrime") : DEFAULT_D_PRIME,
-        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis());
+        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis(),
+        FactorStorage.of(
+            params.containsKey("floatFactors") && (boolean) params.get("floatFactors"),
+            params.containsKey("offHeapFactors") && (boolean) params.get("offHeapFactors")));
   }
 
   /**
@@ -197,6 +203,92 @@ public class HPF extends Recommender {
       double cPrime,
       double dPrime,
       long seed) {
+    this(datamodel, numFactors, numIters, a, aPrime, bPrime, c, cPrime, dPrime, seed, false);
+  }
+
+  /**
+   * Models constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of latent factors
+   * @param numIters Number of iterations
+   * @param a Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param aPrime Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param bPrime Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param c Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param cPrime Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param dPrime Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param seed Seed for random numbers generation
+   * @param floatFactors true to store the latent factors and their shape and rate parameters in
+   *     float precision, which halves the memory used by the model. false to store them in double
+   *     precision
+   */
+  public HPF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double a,
+      double aPrime,
+      double bPrime,
+      double c,
+      double cPrime,
+      double dPrime,
+      long seed,
+      boolean floatFactors) {
+    this(
+        datamodel,
+        numFactors,
+        numIters,
+        a,
+        aPrime,
+        bPrime,
+        c,
+        cPrime,
+        dPrime,
+        seed,
+        floatFactors ? FactorStorage.FLOAT : FactorStorage.DOUBLE);
+  }
+
+  /**
+   * Models constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of latent factors
+   * @param numIters Number of iterations
+   * @param a Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param aPrime Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param bPrime Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param c Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param cPrime Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param dPrime Model hyper-parameter. Read the paper for more information related to this
+   *     hyper-parameter.
+   * @param seed Seed for random numbers generation
+   * @param factorStorage Storage of the latent factors: their precision and whether they are
+   *     stored in the heap or off heap
+   */
+  public HPF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double a,
+      double aPrime,
+      double bPrime,
+      double c,
+      double cPrime,
+      double dPrime,
+      long seed,
+      FactorStorage factorStorage) {
     super(datamodel);
 
     this.numFactors = numFactors;
@@ -218,29 +310,29 @@ public class HPF extends Recommender {
 
     Random generator = new Random(seed);
 
-    this.gamma = new double[numUsers][numFactors];
-    this.gammaShp = new double[numUsers][numFactors];
-    this.gammaRte = new double[numUsers][numFactors];
+    this.gamma = FactorMatrix.create(numUsers, numFactors, factorStorage);
+    this.gammaShp = FactorMatrix.create(numUsers, numFactors, factorStorage);
+    this.gammaRte = FactorMatrix.create(numUsers, numFactors, factorStorage);
     this.kappaRte = new double[numUsers];
 
     for (int u = 0; u < numUsers; u++) {
       this.kappaRte[u] = generator.nextDouble();
       for (int f = 0; f < numFactors; f++) {
-        this.gammaShp[u][f] = generator.nextDouble();
-        this.gammaRte[u][f] = generator.nextDouble();
+        this.gammaShp.set(u, f, generator.nextDouble());
+        this.gammaRte.set(u, f, generator.nextDouble());
       }
     }
 
-    this.lambda = new double[numItems][numFactors];
-    this.lambdaShp = new double[numItems][numFactors];
-    this.lambdaRte = new double[numItems][numFactors];
+    this.lambda = FactorMatrix.create(numItems, numFactors, factorStorage);
+    this.lambdaShp = FactorMatrix.create(numItems, numFactors, factorStorage);
+    this.lambdaRte = FactorMatrix.create(numItems, numFactors, factorStorage);
     this.tauRte = new double[numItems];
 
     for (int i = 0; i < numItems; i++) {
       this.tauRte[i] = generator.nextDouble();
       for (int f = 0; f < numFactors; f++) {
-        this.lambdaShp[i][f] = generator.nextDouble();
-        this.lambdaRte[i][f] = generator.nextDouble();
+        this.lambdaShp.set(i, f, generator.nextDouble());
+        this.lambdaRte.set(i, f, generator.nextDouble());
       }
     }
   }
@@ -249,9 +341,18 @@ public class HPF extends Recommender {
   public void fit() {
     System.out.println("\nFitting " + this.toString());
 
+    int maxUserRatings = 0;
+    for (User user : this.datamodel.getUsers()) {
+      maxUserRatings = Math.max(maxUserRatings, user.getNumberOfRatings());
+    }
+    int maxItemRatings = 0;
+    for (Item item : this.datamodel.getItems()) {
+      maxItemRatings = Math.max(maxItemRatings, item.getNumberOfRatings());
+    }
+
     for (int iter = 1; iter <= numIters; iter++) {
-      Parallelizer.exec(super.datamodel.getUsers(), new UpdateUsersFactors());
-      Parallelizer.exec(super.datamodel.getItems(), new UpdateItemsFactors());
+      Parallelizer.exec(super.datamodel.getUsers(), new UpdateUsersFactors(maxUserRatings));
+      Parallelizer.exec(super.datamodel.getItems(), new UpdateItemsFactors(maxItemRatings));
 
       if ((iter % 10) == 0) System.out.print(".");
       if ((iter % 100) == 0) System.out.println(iter + " iterations");
@@ -260,7 +361,7 @@ public class HPF extends Recommender {
 
   @Override
   public double predict(int userIndex, int itemIndex) {
-    double dot = Maths.dotProduct(this.gamma[userIndex], this.lambda[itemIndex]);
+    double dot = this.gamma.dotProduct(userIndex, this.lambda, itemIndex);
     return 1 - Math.exp(-1 * dot);
   }
 
@@ -287,44 +388,56 @@ public class HPF extends Recommender {
   }
 
   /** Inner class to parallelize users' update */
-  private class UpdateUsersFactors implements Partible<User> {
+  private class UpdateUsersFactors implements ContextPartible<User, double[]> {
+
+    /** Maximum number of ratings of a user */
+    private final int maxRatings;
+
+    public UpdateUsersFactors(int maxRatings) {
+      this.maxRatings = maxRatings;
+    }
 
     @Override
     public void beforeRun() {}
 
     @Override
-    public void run(User user) {
+    public double[] createContext() {
+      // phi values of the ratings of a user, stored by rows
+      return new double[this.maxRatings * numFactors];
+    }
+
+    @Override
+    public void run(User user, double[] phi) {
       int userIndex = user.getUserIndex();
 
-      double[][] phi = new double[user.getNumberOfRatings()][numFactors];
       for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
         int itemIndex = user.getItemAt(pos);
         for (int k = 0; k < numFactors; k++) {
-          phi[pos][k] =
+          phi[pos * numFactors + k] =
               Math.exp(
-                  Gamma.digamma(gammaShp[userIndex][k])
-                      - Math.log(gammaRte[userIndex][k])
-                      + Gamma.digamma(lambdaShp[itemIndex][k])
-                      - Math.log(lambdaRte[itemIndex][k]));
+                  Gamma.digamma(gammaShp.get(userIndex, k))
+                      - Math.log(gammaRte.get(userIndex, k))
+                      + Gamma.digamma(lambdaShp.get(itemIndex, k))
+                      - Math.log(lambdaRte.get(itemIndex, k)));
         }
       }
 
       for (int k = 0; k < numFactors; k++) {
-        gammaShp[userIndex][k] = a;
-        gammaRte[userIndex][k] = kappaShp / kappaRte[userIndex];
+        gammaShp.set(userIndex, k, a);
+        gammaRte.set(userIndex, k, kappaShp / kappaRte[userIndex]);
 
         for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
           int itemIndex = user.getItemAt(pos);
           double rating = user.getRatingAt(pos);
 
-          gammaShp[userIndex][k] += rating * phi[pos][k];
-          gammaRte[userIndex][k] += lambdaShp[itemIndex][k] / lambdaRte[itemIndex][k];
+          gammaShp.add(userIndex, k, rating * phi[pos * numFactors + k]);
+          gammaRte.add(userIndex, k, lambdaShp.get(itemIndex, k) / lambdaRte.get(itemIndex, k));
         }
       }
 
       kappaRte[userIndex] = aPrime / bPrime;
       for (int k = 0; k < numFactors; k++) {
-        kappaRte[userIndex] += gammaShp[userIndex][k] / gammaRte[userIndex][k];
+        kappaRte[userIndex] += gammaShp.get(userIndex, k) / gammaRte.get(userIndex, k);
       }
     }
 
@@ -332,51 +445,63 @@ public class HPF extends Recommender {
     public void afterRun() {
       for (int userIndex = 0; userIndex < datamodel.getNumberOfUsers(); userIndex++) {
         for (int k = 0; k < numFactors; k++) {
-          gamma[userIndex][k] = gammaShp[userIndex][k] / gammaRte[userIndex][k];
+          gamma.set(userIndex, k, gammaShp.get(userIndex, k) / gammaRte.get(userIndex, k));
         }
       }
     }
   }
 
   /** Inner class to parallelize items' update */
-  private class UpdateItemsFactors implements Partible<Item> {
+  private class UpdateItemsFactors implements ContextPartible<Item, double[]> {
+
+    /** Maximum number of ratings of an item */
+    private final int maxRatings;
+
+    public UpdateItemsFactors(int maxRatings) {
+      this.maxRatings = maxRatings;
+    }
 
     @Override
     public void beforeRun() {}
 
     @Override
-    public void run(Item item) {
+    public double[] createContext() {
+      // phi values of the ratings of an item, stored by rows
+      return new double[this.maxRatings * numFactors];
+    }
+
+    @Override
+    public void run(Item item, double[] phi) {
       int itemIndex = item.getItemIndex();
 
-      double[][] phi = new double[item.getNumberOfRatings()][numFactors];
       for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
         int userIndex = item.getUserAt(pos);
         for (int k = 0; k < numFactors; k++) {
-          phi[pos][k] =
+          phi[pos * numFactors + k] =
               Math.exp(
-                  Gamma.digamma(gammaShp[userIndex][k])
-                      - Math.log(gammaRte[userIndex][k])
-                      + Gamma.digamma(lambdaShp[itemIndex][k])
-                      - Math.log(lambdaRte[itemIndex][k]));
+                  Gamma.digamma(gammaShp.get(userIndex, k))
+                      - Math.log(gammaRte.get(userIndex, k))
+                      + Gamma.digamma(lambdaShp.get(itemIndex, k))
+                      - Math.log(lambdaRte.get(itemIndex, k)));
         }
       }
 
       for (int k = 0; k < numFactors; k++) {
-        lambdaShp[itemIndex][k] = c;
-        lambdaRte[itemIndex][k] = tauShp / tauRte[itemIndex];
+        lambdaShp.set(itemIndex, k, c);
+        lambdaRte.set(itemIndex, k, tauShp / tauRte[itemIndex]);
 
         for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
           int userIndex = item.getUserAt(pos);
           double rating = item.getRatingAt(pos);
 
-          lambdaShp[itemIndex][k] += rating * phi[pos][k];
-          lambdaRte[itemIndex][k] += gammaShp[userIndex][k] / gammaRte[userIndex][k];
+          lambdaShp.add(itemIndex, k, rating * phi[pos * numFactors + k]);
+          lambdaRte.add(itemIndex, k, gammaShp.get(userIndex, k) / gammaRte.get(userIndex, k));
         }
       }
 
       tauRte[itemIndex] = cPrime / dPrime;
       for (int k = 0; k < numFactors; k++) {
-        tauRte[itemIndex] += lambdaShp[itemIndex][k] / lambdaRte[itemIndex][k];
+        tauRte[itemIndex] += lambdaShp.get(itemIndex, k) / lambdaRte.get(itemIndex, k);
       }
     }
 
@@ -384,7 +509,7 @@ public class HPF extends Recommender {
     public void afterRun() {
       for (int itemIndex = 0; itemIndex < datamodel.getNumberOfItems(); itemIndex++) {
         for (int k = 0; k < numFactors; k++) {
-          lambda[itemIndex][k] = lambdaShp[itemIndex][k] / lambdaRte[itemIndex][k];
+          lambda.set(itemIndex, k, lambdaShp.get(itemIndex, k) / lambdaRte.get(itemIndex, k));
         }
       }
     }
@@ -407,4 +532,23 @@ public class HPF extends Recommender {
   public int getNumIters() {
     return this.numIters;
   }
+
+  /**
+   * Check if the latent factors are stored in float precision
+   *
+   * @return true if the latent factors are stored as floats, false if they are stored as doubles
+   */
+  public boolean isFloatFactors() {
+    return this.gamma.isFloatPrecision();
+  }
+
+  /**
+   * Check if the latent factors are stored off heap
+   *
+   * @return true if the latent factors are stored in direct buffers, false if they are stored in
+   *     the heap
+   */
+  public boolean isOffHeapFactors() {
+    return this.gamma.isOffHeap();
+  }
 }
@@ -1,12 +1,12 @@
 package es.upm.etsisi.cf4j.recommender.matrixFactorization;
 
 import es.upm.etsisi.cf4j.util.process.Parallelizer;
-import es.upm.etsisi.cf4j.util.process.Partible;
+import es.upm.etsisi.cf4j.util.process.ContextPartible;
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.Item;
 import es.upm.etsisi.cf4j.data.User;
 import es.upm.etsisi.cf4j.recommender.Recommender;
-import es.upm.etsisi.cf4j.util.Maths;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.index.InnerProductModel;
 
 import java.util.Map;
 import java.util.Random;
@@ -15,13 +15,13 @@ import java.util.Random;
  * Implements Lee, D. D., &amp; Seung, H. S. (2001). Algorithms for non-negative matrix
  * factorization. In Advances in neural information processing systems (pp. 556-562).
  */
-public class NMF extends Recommender {
+public class NMF extends Recommender implements InnerProductModel {
 
   /** User factors */
-  protected final double[][] w;
+  protected final FactorMatrix w;
 
   /** Item factors */
-  protected final double[][] h;
+  protected final FactorMatrix h;
 
   /** Number of factors */
   protected final int numFactors;
@@ -38,6 +38,10 @@ public class NMF extends Recommender {
    *   <li><b>numIters:</b>: int value with the number of iterations.
    *   <li><b><em>seed</em></b> (optional): random seed for random numbers generation. If missing,
    *       random value is used.
+   *   <li><b><em>floatFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored in float precision. If missing, it is set to false.
+   *   <li><b><em>offHeapFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored off heap. If missing, it is set to false.
    * </ul>
    *
    * @param datamodel DataModel instance
@@ -48,7 +52,10 @@ public class NMF extends Recommender {
         datamodel,
         (int) params.get("numFactors"),
         (int) params.get("numIters"),
-        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis());
+        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis(),
+        FactorStorage.of(
+            params.containsKey("floatFactors") && (boolean) params.get("floatFactors"),
+            params.containsKey("offHeapFactors") && (boolean) params.get("offHeapFactors")));
   }
 
   /**
@@ -71,6 +78,44 @@ public class NMF extends Recommender {
    * @param seed Seed for random numbers generation
    */
   public NMF(DataModel datamodel, int numFactors, int numIters, long seed) {
+    this(datamodel, numFactors, numIters, seed, false);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of factors
+   * @param numIters Number of iterations
+   * @param seed Seed for random numbers generation
+   * @param floatFactors true to store the latent factors in float precision, which halves the
+   *     memory used by the model. false to store them in double precision
+   */
+  public NMF(DataModel datamodel, int numFactors, int numIters, long seed, boolean floatFactors) {
+    this(
+        datamodel,
+        numFactors,
+        numIters,
+        seed,
+        floatFactors ? FactorStorage.FLOAT : FactorStorage.DOUBLE);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of factors
+   * @param numIters Number of iterations
+   * @param seed Seed for random numbers generation
+   * @param factorStorage Storage of the latent factors: their precision and whether they are
+   *     stored in the heap or off heap
+   */
+  public NMF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      long seed,
+      FactorStorage factorStorage) {
     super(datamodel);
 
     this.numFactors = numFactors;
@@ -79,18 +124,18 @@ public class NMF extends Recommender {
     Random rand = new Random(seed);
 
     // Users initialization
-    this.w = new double[datamodel.getNumberOfUsers()][numFactors];
+    this.w = FactorMatrix.create(datamodel.getNumberOfUsers(), numFactors, factorStorage);
     for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
       for (int k = 0; k < numFactors; k++) {
-        this.w[u][k] = 1 - rand.nextDouble();
+        this.w.set(u, k, 1 - rand.nextDouble());
       }
     }
 
     // Items initialization
-    this.h = new double[datamodel.getNumberOfItems()][numFactors];
+    this.h = FactorMatrix.create(datamodel.getNumberOfItems(), numFactors, factorStorage);
     for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
       for (int k = 0; k < numFactors; k++) {
-        this.h[i][k] = 1 - rand.nextDouble();
+        this.h.set(i, k, 1 - rand.nextDouble());
       }
     }
   }
@@ -113,13 +158,71 @@ public class NMF extends Recommender {
     return this.numIters;
   }
 
+  /**
+   * Check if the latent factors are stored in float precision
+   *
+   * @return true if the latent factors are stored as floats, false if they are stored as doubles
+   */
+  public boolean isFloatFactors() {
+    return this.w.isFloatPrecision();
+  }
+
+  /**
+   * Check if the latent factors are stored off heap
+   *
+   * @return true if the latent factors are stored in direct buffers, false if they are stored in
+   *     the heap
+   */
+  public boolean isOffHeapFactors() {
+    return this.w.isOffHeap();
+  }
+
+  /**
+   * Get the latent factors vector of a user (wu)
+   *
+   * @param userIndex User index
+   * @return Latent factors vector
+   */
+  public double[] getUserFactors(int userIndex) {
+    return this.w.getRow(userIndex);
+  }
+
+  /**
+   * Get the latent factors vector of an item (hi)
+   *
+   * @param itemIndex Item index
+   * @return Latent factors vector
+   */
+  public double[] getItemFactors(int itemIndex) {
+    return this.h.getRow(itemIndex);
+  }
+
+  @Override
+  public double[] getUserEmbedding(int userIndex) {
+    return this.getUserFactors(userIndex);
+  }
+
+  @Override
+  public double[] getItemEmbedding(int itemIndex) {
+    return this.getItemFactors(itemIndex);
+  }
+
   @Override
   public void fit() {
     System.out.println("\nFitting " + this.toString());
 
+    int maxUserRatings = 0;
+    for (User user : this.datamodel.getUsers()) {
+      maxUserRatings = Math.max(maxUserRatings, user.getNumberOfRatings());
+    }
+    int maxItemRatings = 0;
+    for (Item item : this.datamodel.getItems()) {
+      maxItemRatings = Math.max(maxItemRatings, item.getNumberOfRatings());
+    }
+
     for (int iter = 1; iter <= this.numIters; iter++) {
-      Parallelizer.exec(this.datamodel.getUsers(), new UpdateUsersFactors());
-      Parallelizer.exec(this.datamodel.getItems(), new UpdateItemsFactors());
+      Parallelizer.exec(this.datamodel.getUsers(), new UpdateUsersFactors(maxUserRatings));
+      Parallelizer.exec(this.datamodel.getItems(), new UpdateItemsFactors(maxItemRatings));
 
       if ((iter % 10) == 0) System.out.print(".");
       if ((iter % 100) == 0) System.out.println(iter + " iterations");
@@ -128,7 +231,7 @@ public class NMF extends Recommender {
 
   @Override
   public double predict(int userIndex, int itemIndex) {
-    return Maths.dotProduct(this.w[userIndex], this.h[itemIndex]);
+    return this.w.dotProduct(userIndex, this.h, itemIndex);
   }
 
   @Override
@@ -142,18 +245,28 @@ public class NMF extends Recommender {
   }
 
   /** Auxiliary inner class to parallelize user factors computation */
-  private class UpdateUsersFactors implements Partible<User> {
+  private class UpdateUsersFactors implements ContextPartible<User, double[]> {
+
+    /** Maximum number of ratings of a user */
+    private final int maxRatings;
+
+    public UpdateUsersFactors(int maxRatings) {
+      this.maxRatings = maxRatings;
+    }
 
     @Override
     public void beforeRun() {}
 
     @Override
-    public void run(User user) {
-      int userIndex = user.getUserIndex();
+    public double[] createContext() {
+      // predictions of the ratings of a user
+      return new double[this.maxRatings];
+    }
 
-      double[] wu = w[userIndex];
+    @Override
+    public void run(User user, double[] predictions) {
+      int userIndex = user.getUserIndex();
 
-      double[] predictions = new double[user.getNumberOfRatings()];
       for (int i = 0; i < user.getNumberOfRatings(); i++) {
         int itemIndex = user.getItemAt(i);
         predictions[i] = predict(userIndex, itemIndex);
@@ -166,12 +279,11 @@ public class NMF extends Recommender {
 
         for (int i = 0; i < user.getNumberOfRatings(); i++) {
           int itemIndex = user.getItemAt(i);
-          double[] hi = h[itemIndex];
-          sumRatings += hi[k] * user.getRatingAt(i);
-          sumPredictions += hi[k] * predictions[i];
+          sumRatings += h.get(itemIndex, k) * user.getRatingAt(i);
+          sumPredictions += h.get(itemIndex, k) * predictions[i];
         }
 
-        wu[k] = wu[k] * sumRatings / (sumPredictions + 1E-10);
+        w.set(userIndex, k, w.get(userIndex, k) * sumRatings / (sumPredictions + 1E-10));
       }
     }
 
@@ -180,18 +292,28 @@ public class NMF extends Recommender {
   }
 
   /** Auxiliary inner class to parallelize item factors computation */
-  private class UpdateItemsFactors implements Partible<Item> {
+  private class UpdateItemsFactors implements ContextPartible<Item, double[]> {
+
+    /** Maximum number of ratings of an item */
+    private final int maxRatings;
+
+    public UpdateItemsFactors(int maxRatings) {
+      this.maxRatings = maxRatings;
+    }
 
     @Override
     public void beforeRun() {}
 
     @Override
-    public void run(Item item) {
-      int itemIndex = item.getItemIndex();
+    public double[] createContext() {
+      // predictions of the ratings of an item
+      return new double[this.maxRatings];
+    }
 
-      double[] hi = h[itemIndex];
+    @Override
+    public void run(Item item, double[] predictions) {
+      int itemIndex = item.getItemIndex();
 
-      double[] predictions = new double[item.getNumberOfRatings()];
       for (int u = 0; u < item.getNumberOfRatings(); u++) {
         int userIndex = item.getUserAt(u);
         predictions[u] = predict(userIndex, itemIndex);
@@ -204,12 +326,11 @@ public class NMF extends Recommender {
 
         for (int u = 0; u < item.getNumberOfRatings(); u++) {
           int userIndex = item.getUserAt(u);
-          double[] wu = w[userIndex];
-          sumRatings += wu[k] * item.getRatingAt(u);
-          sumPredictions += wu[k] * predictions[u];
+          sumRatings += w.get(userIndex, k) * item.getRatingAt(u);
+          sumPredictions += w.get(userIndex, k) * predictions[u];
         }
 
-        hi[k] = hi[k] * sumRatings / (sumPredictions + 1E-10);
+        h.set(itemIndex, k, h.get(itemIndex, k) * sumRatings / (sumPredictions + 1E-10));
       }
     }
 
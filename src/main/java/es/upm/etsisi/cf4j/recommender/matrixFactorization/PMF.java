@@ -6,7 +6,7 @@ import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.Item;
 import es.upm.etsisi.cf4j.data.User;
 import es.upm.etsisi.cf4j.recommender.Recommender;
-import es.upm.etsisi.cf4j.util.Maths;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.index.InnerProductModel;
 
 import java.util.Map;
 import java.util.Random;
@@ -15,16 +15,16 @@ import java.util.Random;
  * Implements Mnih, A., &amp; Salakhutdinov, R. R. (2008). Probabilistic matrix factorization. In
  * Advances in neural information processing systems (pp. 1257-1264).
  */
-public class PMF extends Recommender {
+public class PMF extends Recommender implements InnerProductModel {
 
   protected static final double DEFAULT_GAMMA = 0.01;
   protected static final double DEFAULT_LAMBDA = 0.05;
 
   /** User factors */
-  protected final double[][] p;
+  protected final FactorMatrix p;
 
   /** Item factors */
-  protected final double[][] q;
+  protected final FactorMatrix q;
 
   /** Learning rate */
   protected final double gamma;
@@ -51,6 +51,10 @@ public class PMF extends Recommender {
    *       If missing, it is set to 0.05.
    *   <li><b><em>seed</em></b> (optional): random seed for random numbers generation. If missing,
    *       random value is used.
+   *   <li><b><em>floatFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored in float precision. If missing, it is set to false.
+   *   <li><b><em>offHeapFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored off heap. If missing, it is set to false.
    * </ul>
    *
    * @param datamodel DataModel instance
@@ -63,7 +67,10 @@ public class PMF extends Recommender {
         (int) params.get("numIters"),
         params.containsKey("lambda") ? (double) params.get("lambda") : DEFAULT_LAMBDA,
         params.containsKey("gamma") ? (double) params.get("gamma") : DEFAULT_GAMMA,
-        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis());
+        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis(),
+        FactorStorage.of(
+            params.containsKey("floatFactors") && (boolean) params.get("floatFactors"),
+            params.containsKey("offHeapFactors") && (boolean) params.get("offHeapFactors")));
   }
 
   /**
@@ -126,6 +133,59 @@ public class PMF extends Recommender {
    */
   public PMF(
       DataModel datamodel, int numFactors, int numIters, double lambda, double gamma, long seed) {
+    this(datamodel, numFactors, numIters, lambda, gamma, seed, false);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of factors
+   * @param numIters Number of iterations
+   * @param lambda Regularization parameter
+   * @param gamma Learning rate parameter
+   * @param seed Seed for random numbers generation
+   * @param floatFactors true to store the latent factors in float precision, which halves the
+   *     memory used by the model. false to store them in double precision
+   */
+  public PMF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double lambda,
+      double gamma,
+      long seed,
+      boolean floatFactors) {
+    this(
+        datamodel,
+        numFactors,
+        numIters,
+        lambda,
+        gamma,
+        seed,
+        floatFactors ? FactorStorage.FLOAT : FactorStorage.DOUBLE);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of factors
+   * @param numIters Number of iterations
+   * @param lambda Regularization parameter
+   * @param gamma Learning rate parameter
+   * @param seed Seed for random numbers generation
+   * @param factorStorage Storage of the latent factors: their precision and whether they are
+   *     stored in the heap or off heap
+   */
+  public PMF(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double lambda,
+      double gamma,
+      long seed,
+      FactorStorage factorStorage) {
     super(datamodel);
 
     this.numFactors = numFactors;
@@ -136,18 +196,18 @@ public class PMF extends Recommender {
     Random rand = new Random(seed);
 
     // Users initialization
-    this.p = new double[datamodel.getNumberOfUsers()][numFactors];
+    this.p = FactorMatrix.create(datamodel.getNumberOfUsers(), numFactors, factorStorage);
     for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
       for (int k = 0; k < numFactors; k++) {
-        this.p[u][k] = rand.nextDouble() * 2 - 1;
+        this.p.set(u, k, rand.nextDouble() * 2 - 1);
       }
     }
 
     // Items initialization
-    this.q = new double[datamodel.getNumberOfItems()][numFactors];
+    this.q = FactorMatrix.create(datamodel.getNumberOfItems(), numFactors, factorStorage);
     for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
       for (int k = 0; k < numFactors; k++) {
-        this.q[i][k] = rand.nextDouble() * 2 - 1;
+        this.q.set(i, k, rand.nextDouble() * 2 - 1);
       }
     }
   }
@@ -188,6 +248,25 @@ public class PMF extends Recommender {
     return this.gamma;
   }
 
+  /**
+   * Check if the latent factors are stored in float precision
+   *
+   * @return true if the latent factors are stored as floats, false if they are stored as doubles
+   */
+  public boolean isFloatFactors() {
+    return this.p.isFloatPrecision();
+  }
+
+  /**
+   * Check if the latent factors are stored off heap
+   *
+   * @return true if the latent factors are stored in direct buffers, false if they are stored in
+   *     the heap
+   */
+  public boolean isOffHeapFactors() {
+    return this.p.isOffHeap();
+  }
+
   /**
    * Get the latent factors vector of a user (pu)
    *
@@ -195,7 +274,7 @@ public class PMF extends Recommender {
    * @return Latent factors vector
    */
   public double[] getUserFactors(int userIndex) {
-    return this.p[userIndex];
+    return this.p.getRow(userIndex);
   }
 
   /**
@@ -205,7 +284,17 @@ public class PMF extends Recommender {
    * @return Latent factors vector
    */
   public double[] getItemFactors(int itemIndex) {
-    return this.q[itemIndex];
+    return this.q.getRow(itemIndex);
+  }
+
+  @Override
+  public double[] getUserEmbedding(int userIndex) {
+    return this.getUserFactors(userIndex);
+  }
+
+  @Override
+  public double[] getItemEmbedding(int itemIndex) {
+    return this.getItemFactors(itemIndex);
   }
 
   @Override
@@ -223,7 +312,7 @@ public class PMF extends Recommender {
 
   @Override
   public double predict(int userIndex, int itemIndex) {
-    return Maths.dotProduct(this.p[userIndex], this.q[itemIndex]);
+    return this.p.dotProduct(userIndex, this.q, itemIndex);
   }
 
   @Override
@@ -252,9 +341,7 @@ public class PMF extends Recommender {
       for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
         int itemIndex = user.getItemAt(pos);
         double error = user.getRatingAt(pos) - predict(userIndex, itemIndex);
-        for (int k = 0; k < numFactors; k++) {
-          p[userIndex][k] += gamma * (error * q[itemIndex][k] - lambda * p[userIndex][k]);
-        }
+        p.gradientStep(userIndex, q, itemIndex, error, gamma, lambda);
       }
     }
 
@@ -274,9 +361,7 @@ public class PMF extends Recommender {
       for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
         int userIndex = item.getUserAt(pos);
         double error = item.getRatingAt(pos) - predict(userIndex, itemIndex);
-        for (int k = 0; k < numFactors; k++) {
-          q[itemIndex][k] += gamma * (error * p[userIndex][k] - lambda * q[itemIndex][k]);
-        }
+        q.gradientStep(itemIndex, p, userIndex, error, gamma, lambda);
       }
     }
 
@@ -1,9 +1,14 @@
 package es.upm.etsisi.cf4j.recommender.matrixFactorization;
 
 import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.data.TestItem;
+import es.upm.etsisi.cf4j.data.TestUser;
 import es.upm.etsisi.cf4j.data.User;
 import es.upm.etsisi.cf4j.recommender.Recommender;
-import es.upm.etsisi.cf4j.util.Maths;
+import es.upm.etsisi.cf4j.util.process.ContextPartible;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+import es.upm.etsisi.cf4j.util.process.Partible;
 
 import java.util.Arrays;
 import java.util.Map;
@@ -38,13 +43,23 @@ public class SVDPlusPlus extends Recommender {
   protected final double[] bi;
 
   /** p parameter */
-  protected final double[][] p;
+  protected final FactorMatrix p;
 
   /** q parameter */
-  protected final double[][] q;
+  protected final FactorMatrix q;
 
   /** y parameter */
-  protected final double[][] y;
+  protected final FactorMatrix y;
+
+  /** Indicates if the model is fitted in parallel */
+  protected final boolean parallel;
+
+  /**
+   * Effective factors of the users, p_u + |N(u)|^-1/2 * sum(y_j), computed once the model has been
+   * fitted. It is null before fitting the model. It is stored with the same precision as the latent
+   * factors.
+   */
+  protected FactorMatrix userFactors;
 
   /**
    * Model constructor from a Map containing the model's hyper-parameters values. Map object must
@@ -59,6 +74,12 @@ public class SVDPlusPlus extends Recommender {
    *       If missing, it is set to 0.05.
    *   <li><b><em>seed</em></b> (optional): random seed for random numbers generation. If missing,
    *       random value is used.
+   *   <li><b><em>floatFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored in float precision. If missing, it is set to false.
+   *   <li><b><em>parallel</em></b> (optional): boolean value that indicates if the model is fitted
+   *       in parallel. If missing, it is set to false.
+   *   <li><b><em>offHeapFactors</em></b> (optional): boolean value that indicates if the latent
+   *       factors are stored off heap. If missing, it is set to false.
    * </ul>
    *
    * @param datamodel DataModel instance
@@ -71,7 +92,11 @@ public class SVDPlusPlus extends Recommender {
         (int) params.get("numIters"),
         params.containsKey("gamma") ? (double) params.get("gamma") : DEFAULT_GAMMA,
         params.containsKey("lambda") ? (double) params.get("lambda") : DEFAULT_LAMBDA,
-        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis());
+        params.containsKey("seed") ? (long) params.get("seed") : System.currentTimeMillis(),
+        FactorStorage.of(
+            params.containsKey("floatFactors") && (boolean) params.get("floatFactors"),
+            params.containsKey("offHeapFactors") && (boolean) params.get("offHeapFactors")),
+        params.containsKey("parallel") && (boolean) params.get("parallel"));
   }
 
   /**
@@ -123,12 +148,96 @@ public class SVDPlusPlus extends Recommender {
    */
   public SVDPlusPlus(
       DataModel datamodel, int numFactors, int numIters, double gamma, double lambda, long seed) {
+    this(datamodel, numFactors, numIters, gamma, lambda, seed, false);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of latent factors
+   * @param numIters Number of iterations
+   * @param gamma Learning rate hyper-parameter
+   * @param lambda Regularization hyper-parameter
+   * @param seed Seed for random numbers generation
+   * @param floatFactors true to store the latent factors in float precision, which halves the
+   *     memory used by the model. false to store them in double precision
+   */
+  public SVDPlusPlus(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double gamma,
+      double lambda,
+      long seed,
+      boolean floatFactors) {
+    this(datamodel, numFactors, numIters, gamma, lambda, seed, floatFactors, false);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of latent factors
+   * @param numIters Number of iterations
+   * @param gamma Learning rate hyper-parameter
+   * @param lambda Regularization hyper-parameter
+   * @param seed Seed for random numbers generation
+   * @param floatFactors true to store the latent factors in float precision, which halves the
+   *     memory used by the model. false to store them in double precision
+   * @param parallel true to fit the model in parallel, alternating the update of the users and the
+   *     update of the items. false to fit the model sequentially, rating by rating
+   */
+  public SVDPlusPlus(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double gamma,
+      double lambda,
+      long seed,
+      boolean floatFactors,
+      boolean parallel) {
+    this(
+        datamodel,
+        numFactors,
+        numIters,
+        gamma,
+        lambda,
+        seed,
+        floatFactors ? FactorStorage.FLOAT : FactorStorage.DOUBLE,
+        parallel);
+  }
+
+  /**
+   * Model constructor
+   *
+   * @param datamodel DataModel instance
+   * @param numFactors Number of latent factors
+   * @param numIters Number of iterations
+   * @param gamma Learning rate hyper-parameter
+   * @param lambda Regularization hyper-parameter
+   * @param seed Seed for random numbers generation
+   * @param factorStorage Storage of the latent factors: their precision and whether they are
+   *     stored in the heap or off heap
+   * @param parallel true to fit the model in parallel, alternating the update of the users and the
+   *     update of the items. false to fit the model sequentially, rating by rating
+   */
+  public SVDPlusPlus(
+      DataModel datamodel,
+      int numFactors,
+      int numIters,
+      double gamma,
+      double lambda,
+      long seed,
+      FactorStorage factorStorage,
+      boolean parallel) {
     super(datamodel);
 
     this.numFactors = numFactors;
     this.numIters = numIters;
     this.gamma = gamma;
     this.lambda = lambda;
+    this.parallel = parallel;
 
     int numUsers = datamodel.getNumberOfUsers();
     int numItems = datamodel.getNumberOfItems();
@@ -136,22 +245,22 @@ public class SVDPlusPlus extends Recommender {
     Random generator = new Random(seed);
 
     this.bu = new double[numUsers];
-    this.p = new double[numUsers][numFactors];
+    this.p = FactorMatrix.create(numUsers, numFactors, factorStorage);
     for (int u = 0; u < numUsers; u++) {
       this.bu[u] = generator.nextDouble();
       for (int k = 0; k < numFactors; k++) {
-        this.p[u][k] = generator.nextDouble();
+        this.p.set(u, k, generator.nextDouble());
       }
     }
 
     this.bi = new double[numItems];
-    this.q = new double[numItems][numFactors];
-    this.y = new double[numItems][numFactors];
+    this.q = FactorMatrix.create(numItems, numFactors, factorStorage);
+    this.y = FactorMatrix.create(numItems, numFactors, factorStorage);
     for (int i = 0; i < numItems; i++) {
       this.bi[i] = generator.nextDouble();
       for (int k = 0; k < numFactors; k++) {
-        this.q[i][k] = generator.nextDouble();
-        this.y[i][k] = generator.nextDouble();
+        this.q.set(i, k, generator.nextDouble());
+        this.y.set(i, k, generator.nextDouble());
       }
     }
   }
@@ -160,6 +269,30 @@ public class SVDPlusPlus extends Recommender {
   public void fit() {
     System.out.println("\nFitting " + this.toString());
 
+    // effective factors of the users are not valid during the fit
+    this.userFactors = null;
+
+    if (this.parallel) {
+      this.parallelFit();
+    } else {
+      this.sequentialFit();
+    }
+
+    FactorMatrix userFactors =
+        FactorMatrix.create(
+            this.datamodel.getNumberOfUsers(), this.numFactors, this.p.getStorage());
+    Parallelizer.exec(this.datamodel.getUsers(), new UpdateUsersEffectiveFactors(userFactors));
+    this.userFactors = userFactors;
+  }
+
+  /** Fits the model sequentially, rating by rating */
+  private void sequentialFit() {
+    // buffers reused by all the ratings to avoid allocations in the inner loop
+    double[] pu = new double[this.numFactors];
+    double[] updatedP = new double[this.numFactors];
+    double[] updatedQ = new double[this.numFactors];
+    double[] updatedY = new double[this.numFactors];
+
     for (int iter = 1; iter <= this.numIters; iter++) {
 
       for (int userIndex = 0; userIndex < datamodel.getNumberOfUsers(); userIndex++) {
@@ -171,36 +304,39 @@ public class SVDPlusPlus extends Recommender {
           int itemIndex = user.getItemAt(pos);
 
           double rating = user.getRatingAt(pos);
-          double prediction = this.predict(userIndex, itemIndex);
+          double prediction = this.predict(userIndex, itemIndex, pu);
 
           double error = rating - prediction;
 
           this.bu[userIndex] += this.gamma * (error - this.lambda * this.bu[userIndex]);
           this.bi[itemIndex] += this.gamma * (error - this.lambda * this.bi[itemIndex]);
 
-          double[] updatedP = this.p[userIndex].clone();
-          double[] updatedQ = this.q[itemIndex].clone();
-          double[] updatedY = this.y[itemIndex].clone();
+          this.p.getRow(userIndex, updatedP);
+          this.q.getRow(itemIndex, updatedQ);
+          this.y.getRow(itemIndex, updatedY);
 
           for (int k = 0; k < this.numFactors; k++) {
 
             for (int pos2 = 0; pos2 < user.getNumberOfRatings(); pos2++) {
               int itemIndex2 = user.getItemAt(pos2);
-              updatedQ[k] += this.gamma * error * N * this.y[itemIndex2][k];
+              updatedQ[k] += this.gamma * error * N * this.y.get(itemIndex2, k);
             }
 
             updatedQ[k] +=
-                this.gamma * (error * this.p[userIndex][k] - this.lambda * this.q[itemIndex][k]);
+                this.gamma
+                    * (error * this.p.get(userIndex, k) - this.lambda * this.q.get(itemIndex, k));
             updatedY[k] +=
                 this.gamma
-                    * (error * N * this.q[itemIndex][k] - this.lambda * this.y[itemIndex][k]);
+                    * (error * N * this.q.get(itemIndex, k)
+                        - this.lambda * this.y.get(itemIndex, k));
             updatedP[k] +=
-                this.gamma * (error * this.q[itemIndex][k] - this.lambda * this.p[userIndex][k]);
+                this.gamma
+                    * (error * this.q.get(itemIndex, k) - this.lambda * this.p.get(userIndex, k));
           }
 
-          this.p[userIndex] = updatedP;
-          this.q[itemIndex] = updatedQ;
-          this.y[itemIndex] = updatedY;
+          this.p.setRow(userIndex, updatedP);
+          this.q.setRow(itemIndex, updatedQ);
+          this.y.setRow(itemIndex, updatedY);
         }
       }
 
@@ -209,24 +345,109 @@ public class SVDPlusPlus extends Recommender {
     }
   }
 
+  /**
+   * Fits the model in parallel. Each iteration updates the users and then the items, like the
+   * other matrix factorization models. The users pass caches the implicit feedback of each user,
+   * |N(u)|^-1/2 * sum(y_j), so it is computed once per user and iteration instead of once per
+   * rating. The items pass updates y using the cached implicit feedback, so the updates of y are
+   * applied to the implicit feedback of the users in the next iteration. The result does not
+   * depend on the number of threads.
+   */
+  private void parallelFit() {
+    FactorMatrix implicit =
+        FactorMatrix.create(
+            this.datamodel.getNumberOfUsers(), this.numFactors, this.p.getStorage());
+
+    for (int iter = 1; iter <= this.numIters; iter++) {
+      Parallelizer.exec(this.datamodel.getUsers(), new UpdateUsersFactors(implicit));
+      Parallelizer.exec(this.datamodel.getItems(), new UpdateItemsFactors(implicit));
+
+      if ((iter % 10) == 0) System.out.print(".");
+      if ((iter % 100) == 0) System.out.println(iter + " iterations");
+    }
+  }
+
   @Override
   public double predict(int userIndex, int itemIndex) {
+    if (this.userFactors == null) {
+      return this.predict(userIndex, itemIndex, new double[this.numFactors]);
+    }
+
+    double dot = this.q.dotProduct(itemIndex, this.userFactors, userIndex);
+    return super.datamodel.getRatingAverage() + this.bi[itemIndex] + this.bu[userIndex] + dot;
+  }
+
+  /**
+   * Computes the rating predictions of a user for several items. The effective factors of the user
+   * are retrieved once and reused for all the items.
+   *
+   * @param userIndex Index of the user in the array of Users of the DataModel instance
+   * @param itemIndexes Indexes of the items in the array of Items of the DataModel instance
+   * @return Predictions. Positions of this array overlaps with itemIndexes
+   */
+  public double[] predict(int userIndex, int[] itemIndexes) {
+    double[] pu = new double[this.numFactors];
+    if (this.userFactors == null) {
+      this.effectiveFactors(userIndex, pu);
+    } else {
+      this.userFactors.getRow(userIndex, pu);
+    }
+
+    double[] predictions = new double[itemIndexes.length];
+    for (int i = 0; i < itemIndexes.length; i++) {
+      int itemIndex = itemIndexes[i];
+      double dot = this.q.dotProduct(itemIndex, pu);
+      predictions[i] =
+          super.datamodel.getRatingAverage() + this.bi[itemIndex] + this.bu[userIndex] + dot;
+    }
+    return predictions;
+  }
+
+  @Override
+  public double[] predict(TestUser testUser) {
+    int[] itemIndexes = new int[testUser.getNumberOfTestRatings()];
+    for (int i = 0; i < itemIndexes.length; i++) {
+      int testItemIndex = testUser.getTestItemAt(i);
+      TestItem testItem = this.datamodel.getTestItem(testItemIndex);
+      itemIndexes[i] = testItem.getItemIndex();
+    }
+    return this.predict(testUser.getUserIndex(), itemIndexes);
+  }
+
+  /**
+   * Computes a prediction using an existing array to store the implicit user factors
+   *
+   * @param userIndex Index of the user in the array of Users of the DataModel instance
+   * @param itemIndex Index of the item in the array of Items of the DataModel instance
+   * @param pu Array of numFactors length that is overwritten
+   * @return Prediction
+   */
+  private double predict(int userIndex, int itemIndex, double[] pu) {
+    this.effectiveFactors(userIndex, pu);
+
+    double dot = this.q.dotProduct(itemIndex, pu);
+
+    return super.datamodel.getRatingAverage() + this.bi[itemIndex] + this.bu[userIndex] + dot;
+  }
+
+  /**
+   * Computes the effective factors of a user, p_u + |N(u)|^-1/2 * sum(y_j), from the current
+   * parameters of the model
+   *
+   * @param userIndex Index of the user in the array of Users of the DataModel instance
+   * @param pu Array of numFactors length where the factors are stored
+   */
+  private void effectiveFactors(int userIndex, double[] pu) {
     User user = super.datamodel.getUser(userIndex);
     double N = 1.0 / Math.sqrt(user.getNumberOfRatings());
 
-    double[] pu = this.p[userIndex].clone();
+    this.p.getRow(userIndex, pu);
     for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
       int index = user.getItemAt(pos);
       for (int k = 0; k < this.numFactors; k++) {
-        pu[k] += N * this.y[index][k];
+        pu[k] += N * this.y.get(index, k);
       }
     }
-
-    double[] qi = this.q[itemIndex];
-
-    double dot = Maths.dotProduct(pu, qi);
-
-    return super.datamodel.getRatingAverage() + this.bi[itemIndex] + this.bu[userIndex] + dot;
   }
 
   @Override
@@ -278,4 +499,158 @@ public class SVDPlusPlus extends Recommender {
   public double getLambda() {
     return lambda;
   }
+
+  /**
+   * Check if the model is fitted in parallel
+   *
+   * @return true if the model is fitted in parallel, false if it is fitted sequentially
+   */
+  public boolean isParallel() {
+    return this.parallel;
+  }
+
+  /**
+   * Check if the latent factors are stored in float precision
+   *
+   * @return true if the latent factors are stored as floats, false if they are stored as doubles
+   */
+  public boolean isFloatFactors() {
+    return this.p.isFloatPrecision();
+  }
+
+  /**
+   * Check if the latent factors are stored off heap
+   *
+   * @return true if the latent factors are stored in direct buffers, false if they are stored in
+   *     the heap
+   */
+  public boolean isOffHeapFactors() {
+    return this.p.isOffHeap();
+  }
+
+  /** Auxiliary inner class to parallelize user factors computation */
+  private class UpdateUsersFactors implements ContextPartible<User, double[]> {
+
+    /** Implicit feedback of each user */
+    private final FactorMatrix implicit;
+
+    public UpdateUsersFactors(FactorMatrix implicit) {
+      this.implicit = implicit;
+    }
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public double[] createContext() {
+      return new double[numFactors];
+    }
+
+    @Override
+    public void run(User user, double[] yu) {
+      int userIndex = user.getUserIndex();
+      double N = 1.0 / Math.sqrt(user.getNumberOfRatings());
+
+      Arrays.fill(yu, 0);
+      for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
+        int itemIndex = user.getItemAt(pos);
+        for (int k = 0; k < numFactors; k++) {
+          yu[k] += N * y.get(itemIndex, k);
+        }
+      }
+      this.implicit.setRow(userIndex, yu);
+
+      for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
+        int itemIndex = user.getItemAt(pos);
+
+        double dot = 0;
+        for (int k = 0; k < numFactors; k++) {
+          dot += q.get(itemIndex, k) * (p.get(userIndex, k) + yu[k]);
+        }
+
+        double prediction = datamodel.getRatingAverage() + bi[itemIndex] + bu[userIndex] + dot;
+        double error = user.getRatingAt(pos) - prediction;
+
+        bu[userIndex] += gamma * (error - lambda * bu[userIndex]);
+
+        for (int k = 0; k < numFactors; k++) {
+          p.add(userIndex, k, gamma * (error * q.get(itemIndex, k) - lambda * p.get(userIndex, k)));
+        }
+      }
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+
+  /** Auxiliary inner class to parallelize item factors computation */
+  private class UpdateItemsFactors implements Partible<Item> {
+
+    /** Implicit feedback of each user */
+    private final FactorMatrix implicit;
+
+    public UpdateItemsFactors(FactorMatrix implicit) {
+      this.implicit = implicit;
+    }
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(Item item) {
+      int itemIndex = item.getItemIndex();
+
+      for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
+        int userIndex = item.getUserAt(pos);
+        double N = 1.0 / Math.sqrt(datamodel.getUser(userIndex).getNumberOfRatings());
+
+        double dot = 0;
+        for (int k = 0; k < numFactors; k++) {
+          dot += q.get(itemIndex, k) * (p.get(userIndex, k) + this.implicit.get(userIndex, k));
+        }
+
+        double prediction = datamodel.getRatingAverage() + bi[itemIndex] + bu[userIndex] + dot;
+        double error = item.getRatingAt(pos) - prediction;
+
+        bi[itemIndex] += gamma * (error - lambda * bi[itemIndex]);
+
+        for (int k = 0; k < numFactors; k++) {
+          double qik = q.get(itemIndex, k);
+          double pu = p.get(userIndex, k) + this.implicit.get(userIndex, k);
+          q.add(itemIndex, k, gamma * (error * pu - lambda * qik));
+          y.add(itemIndex, k, gamma * (error * N * qik - lambda * y.get(itemIndex, k)));
+        }
+      }
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+
+  /** Auxiliary inner class to parallelize the computation of the effective factors of the users */
+  private class UpdateUsersEffectiveFactors implements ContextPartible<User, double[]> {
+
+    private final FactorMatrix userFactors;
+
+    public UpdateUsersEffectiveFactors(FactorMatrix userFactors) {
+      this.userFactors = userFactors;
+    }
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public double[] createContext() {
+      return new double[numFactors];
+    }
+
+    @Override
+    public void run(User user, double[] pu) {
+      effectiveFactors(user.getUserIndex(), pu);
+      this.userFactors.setRow(user.getUserIndex(), pu);
+    }
+
+    @Override
+    public void afterRun() {}
+  }
 }
@@ -0,0 +1,689 @@
+package es.upm.etsisi.cf4j.recommender.matrixFactorization.index;
+
+import es.upm.etsisi.cf4j.util.process.IntPartible;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Implements Malkov, Y. A., &amp; Yashunin, D. A. (2018). Efficient and robust approximate nearest
+ * neighbor search using hierarchical navigable small world graphs. IEEE transactions on pattern
+ * analysis and machine intelligence, 42(4), 824-836.
+ *
+ * <p>This index stores the item embeddings of an InnerProductModel in a hierarchical navigable
+ * small world (HNSW) graph, so that the top-N items of a user, i.e. the items with the greatest
+ * inner product with the user embedding, are retrieved visiting a small fraction of the items. The
+ * search is approximate: the parameter ef controls the trade-off between the recall and the time of
+ * each search.
+ *
+ * <p>The graph is built using the inner product as the similarity between two items, as proposed
+ * by Morozov, S., &amp; Babenko, A. (2018). Non-metric similarity graphs for maximum inner product
+ * search. In Advances in Neural Information Processing Systems (pp. 4721-4730). The items with
+ * greater norms become hubs of the graph, which leads the searches towards the items with the
+ * greatest inner products.
+ *
+ * <p>The method fit() must be called after fitting the recommender, and again if the recommender
+ * is fitted again. The items are inserted in parallel, so the graph depends on the number of
+ * threads. Once the index is fitted, the graph is read only: searches are thread safe and do not
+ * take any lock.
+ */
+public class HNSWIndex {
+
+  protected static final int DEFAULT_M = 16;
+  protected static final int DEFAULT_EF_CONSTRUCTION = 200;
+  protected static final int DEFAULT_EF = 50;
+
+  /** Number of locks that protect the neighbors lists of the items while the graph is built */
+  private static final int NUM_LOCKS = 1024;
+
+  /** Recommender whose items are indexed */
+  private final InnerProductModel model;
+
+  /** Number of neighbors of each item in the upper layers */
+  private final int m;
+
+  /** Number of neighbors of each item in the bottom layer */
+  private final int maxM0;
+
+  /** Number of candidates explored when an item is inserted */
+  private final int efConstruction;
+
+  /** Number of candidates explored by each search */
+  private int ef;
+
+  /** Seed for random numbers generation */
+  private final long seed;
+
+  /** Length of the embeddings */
+  private int dimension;
+
+  /** Embedding of each item: vectors[itemIndex * dimension + k] */
+  private double[] vectors;
+
+  /** Top layer of each item */
+  private int[] levels;
+
+  /** Neighbors of each item in the bottom layer. The first value of each list is its length */
+  private int[] links0;
+
+  /** Neighbors of each item in the layers above the bottom one */
+  private int[][] upperLinks;
+
+  /** Item from which each search starts */
+  private int entryPoint;
+
+  /** Top layer of the graph */
+  private int maxLevel;
+
+  /** Locks of the neighbors lists of the items */
+  private final Object[] locks;
+
+  /** Per thread structures used by the searches */
+  private ThreadLocal<SearchContext> contexts;
+
+  /**
+   * HNSWIndex constructor. The graph is built using the default parameters: m = 16 and
+   * efConstruction = 200.
+   *
+   * @param model Recommender whose items are indexed
+   */
+  public HNSWIndex(InnerProductModel model) {
+    this(model, DEFAULT_M, DEFAULT_EF_CONSTRUCTION);
+  }
+
+  /**
+   * HNSWIndex constructor
+   *
+   * @param model Recommender whose items are indexed
+   * @param m Number of neighbors of each item in the upper layers of the graph. The bottom layer
+   *     contains 2 * m neighbors of each item
+   * @param efConstruction Number of candidates explored to find the neighbors of each item
+   */
+  public HNSWIndex(InnerProductModel model, int m, int efConstruction) {
+    this(model, m, efConstruction, System.currentTimeMillis());
+  }
+
+  /**
+   * HNSWIndex constructor
+   *
+   * @param model Recommender whose items are indexed
+   * @param m Number of neighbors of each item in the upper layers of the graph. The bottom layer
+   *     contains 2 * m neighbors of each item
+   * @param efConstruction Number of candidates explored to find the neighbors of each item
+   * @param seed Seed for random numbers generation
+   */
+  public HNSWIndex(InnerProductModel model, int m, int efConstruction, long seed) {
+    if (m <= 1) throw new IllegalArgumentException("m must be greater than 1");
+    if (efConstruction <= 0)
+      throw new IllegalArgumentException("efConstruction must be greater than 0");
+
+    this.model = model;
+    this.m = m;
+    this.maxM0 = 2 * m;
+    this.efConstruction = efConstruction;
+    this.ef = DEFAULT_EF;
+    this.seed = seed;
+
+    this.locks = new Object[NUM_LOCKS];
+    for (int i = 0; i < NUM_LOCKS; i++) {
+      this.locks[i] = new Object();
+    }
+  }
+
+  /** Builds the graph from the item embeddings of the recommender */
+  public void fit() {
+    int numItems = this.model.getDataModel().getNumberOfItems();
+
+    this.dimension = this.model.getItemEmbedding(0).length;
+    this.vectors = new double[numItems * this.dimension];
+    for (int itemIndex = 0; itemIndex < numItems; itemIndex++) {
+      double[] embedding = this.model.getItemEmbedding(itemIndex);
+      if (embedding.length != this.dimension)
+        throw new IllegalArgumentException("All the item embeddings must have the same length");
+      System.arraycopy(embedding, 0, this.vectors, itemIndex * this.dimension, this.dimension);
+    }
+
+    // The top layer of each item follows an exponentially decaying distribution
+    Random rand = new Random(this.seed);
+    double levelMultiplier = 1.0 / Math.log(this.m);
+    this.levels = new int[numItems];
+    this.upperLinks = new int[numItems][];
+    for (int itemIndex = 0; itemIndex < numItems; itemIndex++) {
+      int level = (int) (-Math.log(1.0 - rand.nextDouble()) * levelMultiplier);
+      this.levels[itemIndex] = level;
+      if (level > 0) this.upperLinks[itemIndex] = new int[level * (this.m + 1)];
+    }
+    this.links0 = new int[numItems * (this.maxM0 + 1)];
+    this.contexts = ThreadLocal.withInitial(() -> new SearchContext(numItems));
+
+    this.entryPoint = 0;
+    this.maxLevel = this.levels[0];
+
+    Parallelizer.exec(1, numItems, new InsertItems());
+  }
+
+  /**
+   * Returns the top-N items of a user, i.e. the items whose embeddings have the greatest inner
+   * product with the user embedding. The items already rated by the user are not excluded.
+   *
+   * @param userIndex Index of the user
+   * @param n Number of items to be retrieved
+   * @return Indexes of the items sorted from the greatest to the lowest inner product. If there are
+   *     less than n items, the array is completed with -1
+   */
+  public int[] recommend(int userIndex, int n) {
+    return this.search(this.model.getUserEmbedding(userIndex), n);
+  }
+
+  /**
+   * Returns the items whose embeddings have the greatest inner product with a query vector
+   *
+   * @param query Vector with the same length as the item embeddings
+   * @param n Number of items to be retrieved
+   * @return Indexes of the items sorted from the greatest to the lowest inner product. If there are
+   *     less than n items, the array is completed with -1
+   */
+  public int[] search(double[] query, int n) {
+    if (this.vectors == null)
+      throw new IllegalStateException("HNSWIndex must be fitted before searching");
+    if (query.length != this.dimension)
+      throw new IllegalArgumentException("The query must have the same length as the embeddings");
+
+    SearchContext context = this.contexts.get();
+    int current = this.searchGreedy(query, 0, this.entryPoint, this.maxLevel, 0, context, false);
+    this.searchLayer(query, 0, current, Math.max(this.ef, n), 0, context, false);
+
+    Heap results = context.results;
+    while (results.size() > n) results.pop();
+
+    int[] indexes = new int[n];
+    Arrays.fill(indexes, -1);
+    for (int i = results.size() - 1; i >= 0; i--) {
+      indexes[i] = results.topValue();
+      results.pop();
+    }
+    return indexes;
+  }
+
+  /**
+   * Sets the number of candidates explored by each search. The greater it is, the greater the
+   * recall and the time of each search. It is never lower than the number of items to be retrieved.
+   *
+   * @param ef Number of candidates explored by each search
+   */
+  public void setEf(int ef) {
+    if (ef <= 0) throw new IllegalArgumentException("ef must be greater than 0");
+    this.ef = ef;
+  }
+
+  /**
+   * Returns the number of candidates explored by each search
+   *
+   * @return Number of candidates explored by each search
+   */
+  public int getEf() {
+    return this.ef;
+  }
+
+  /**
+   * Returns the number of neighbors of each item in the upper layers of the graph
+   *
+   * @return m
+   */
+  public int getM() {
+    return this.m;
+  }
+
+  /**
+   * Returns the number of candidates explored to find the neighbors of each item
+   *
+   * @return efConstruction
+   */
+  public int getEfConstruction() {
+    return this.efConstruction;
+  }
+
+  /**
+   * Inserts an item in the graph
+   *
+   * @param itemIndex Index of the item
+   * @param context Search structures of the current thread
+   */
+  private void insert(int itemIndex, SearchContext context) {
+    int level = this.levels[itemIndex];
+    int offset = itemIndex * this.dimension;
+
+    int current;
+    int top;
+    synchronized (this) {
+      current = this.entryPoint;
+      top = this.maxLevel;
+    }
+
+    current = this.searchGreedy(this.vectors, offset, current, top, level, context, true);
+
+    for (int layer = Math.min(level, top); layer >= 0; layer--) {
+      this.searchLayer(
+          this.vectors, offset, current, this.efConstruction, layer, context, true);
+
+      // Results are popped from the farthest to the closest one
+      Heap results = context.results;
+      int size = results.size();
+      for (int i = size - 1; i >= 0; i--) {
+        context.ids[i] = results.topValue();
+        context.distances[i] = -results.topKey();
+        results.pop();
+      }
+      current = context.ids[0];
+
+      int count = this.selectNeighbors(context.ids, context.distances, size, this.m, context);
+
+      int[] links = this.getLinks(itemIndex, layer);
+      int linksOffset = this.getLinksOffset(itemIndex, layer);
+      synchronized (this.getLock(itemIndex)) {
+        links[linksOffset] = count;
+        System.arraycopy(context.selected, 0, links, linksOffset + 1, count);
+      }
+
+      for (int i = 0; i < count; i++) {
+        this.connect(context.selected[i], itemIndex, layer, context);
+      }
+    }
+
+    if (level > top) {
+      synchronized (this) {
+        if (level > this.maxLevel) {
+          this.maxLevel = level;
+          this.entryPoint = itemIndex;
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds an item to the neighbors of other item. If the neighbors list is full, the list is
+   * shrunk selecting the neighbors again.
+   *
+   * @param itemIndex Index of the item whose neighbors list is modified
+   * @param neighbor Index of the new neighbor
+   * @param layer Layer of the graph
+   * @param context Search structures of the current thread
+   */
+  private void connect(int itemIndex, int neighbor, int layer, SearchContext context) {
+    int maxM = (layer == 0) ? this.maxM0 : this.m;
+    int[] links = this.getLinks(itemIndex, layer);
+    int linksOffset = this.getLinksOffset(itemIndex, layer);
+    int offset = itemIndex * this.dimension;
+
+    synchronized (this.getLock(itemIndex)) {
+      int count = links[linksOffset];
+      if (count < maxM) {
+        links[linksOffset + 1 + count] = neighbor;
+        links[linksOffset] = count + 1;
+        return;
+      }
+
+      // Sort the current neighbors and the new one by their distance to the item
+      int[] ids = context.shrinkIds;
+      double[] distances = context.shrinkDistances;
+      for (int i = 0; i <= count; i++) {
+        int id = (i < count) ? links[linksOffset + 1 + i] : neighbor;
+        double distance = this.distance(id, this.vectors, offset);
+        int pos = i;
+        while (pos > 0 && distances[pos - 1] > distance) {
+          ids[pos] = ids[pos - 1];
+          distances[pos] = distances[pos - 1];
+          pos--;
+        }
+        ids[pos] = id;
+        distances[pos] = distance;
+      }
+
+      count = this.selectNeighbors(ids, distances, count + 1, maxM, context);
+      links[linksOffset] = count;
+      System.arraycopy(context.selected, 0, links, linksOffset + 1, count);
+    }
+  }
+
+  /**
+   * Selects the neighbors of an item among the candidates using the heuristic of the HNSW paper: a
+   * candidate is selected if it is closer to the item than to any selected neighbor, so that the
+   * neighbors point towards different regions of the space. The selected neighbors are stored in
+   * context.selected.
+   *
+   * @param ids Candidates sorted from the closest to the farthest one
+   * @param distances Distance of each candidate to the item
+   * @param size Number of candidates
+   * @param max Maximum number of neighbors
+   * @param context Search structures of the current thread
+   * @return Number of selected neighbors
+   */
+  private int selectNeighbors(
+      int[] ids, double[] distances, int size, int max, SearchContext context) {
+    int[] selected = context.selected;
+    int count = 0;
+    for (int i = 0; i < size && count < max; i++) {
+      int candidate = ids[i];
+      int offset = candidate * this.dimension;
+      boolean good = true;
+      for (int j = 0; j < count && good; j++) {
+        good = this.distance(selected[j], this.vectors, offset) >= distances[i];
+      }
+      if (good) selected[count++] = candidate;
+    }
+    return count;
+  }
+
+  /**
+   * Descends the layers of the graph from the top one to the layer above the bottom one, moving at
+   * each layer to the closest item to the query
+   *
+   * @param query Array that contains the query
+   * @param offset Position of the query in the array
+   * @param entry Item from which the search starts
+   * @param top Top layer of the search
+   * @param bottom Layer at which the search stops
+   * @param context Search structures of the current thread
+   * @param building true if the graph is being built, so the neighbors lists must be locked
+   * @return Closest item to the query found at the bottom layer
+   */
+  private int searchGreedy(
+      double[] query,
+      int offset,
+      int entry,
+      int top,
+      int bottom,
+      SearchContext context,
+      boolean building) {
+    int current = entry;
+    double currentDistance = this.distance(current, query, offset);
+    for (int layer = top; layer > bottom; layer--) {
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        int count = this.copyNeighbors(current, layer, context.neighbors, building);
+        for (int i = 0; i < count; i++) {
+          int neighbor = context.neighbors[i];
+          double distance = this.distance(neighbor, query, offset);
+          if (distance < currentDistance) {
+            currentDistance = distance;
+            current = neighbor;
+            changed = true;
+          }
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Searches the ef closest items to the query in a layer of the graph. The results are stored in
+   * context.results as a max-heap of the distances (the keys are the negated distances).
+   *
+   * @param query Array that contains the query
+   * @param offset Position of the query in the array
+   * @param entry Item from which the search starts
+   * @param ef Number of closest items to be found
+   * @param layer Layer of the graph
+   * @param context Search structures of the current thread
+   * @param building true if the graph is being built, so the neighbors lists must be locked
+   */
+  private void searchLayer(
+      double[] query,
+      int offset,
+      int entry,
+      int ef,
+      int layer,
+      SearchContext context,
+      boolean building) {
+    int mark = context.nextMark();
+    int[] visited = context.visited;
+    Heap candidates = context.candidates;
+    Heap results = context.results;
+    candidates.clear();
+    results.clear();
+
+    double distance = this.distance(entry, query, offset);
+    visited[entry] = mark;
+    candidates.push(distance, entry);
+    results.push(-distance, entry);
+
+    while (candidates.size() > 0) {
+      if (candidates.topKey() > -results.topKey() && results.size() >= ef) break;
+
+      int current = candidates.topValue();
+      candidates.pop();
+
+      int count = this.copyNeighbors(current, layer, context.neighbors, building);
+      for (int i = 0; i < count; i++) {
+        int neighbor = context.neighbors[i];
+        if (visited[neighbor] == mark) continue;
+        visited[neighbor] = mark;
+
+        distance = this.distance(neighbor, query, offset);
+        if (results.size() < ef || distance < -results.topKey()) {
+          candidates.push(distance, neighbor);
+          results.push(-distance, neighbor);
+          if (results.size() > ef) results.pop();
+        }
+      }
+    }
+  }
+
+  /**
+   * Copies the neighbors of an item in a layer of the graph. While the graph is being built, the
+   * list is copied holding the lock of the item, since other threads may be modifying it. Once
+   * fit() returns, the lists are no longer modified and are safely published by Parallelizer, so
+   * the searches read them without locks.
+   *
+   * @param itemIndex Index of the item
+   * @param layer Layer of the graph
+   * @param neighbors Array to store the neighbors
+   * @param building true if the graph is being built
+   * @return Number of neighbors
+   */
+  private int copyNeighbors(int itemIndex, int layer, int[] neighbors, boolean building) {
+    int[] links = this.getLinks(itemIndex, layer);
+    int linksOffset = this.getLinksOffset(itemIndex, layer);
+    if (!building) {
+      int count = links[linksOffset];
+      System.arraycopy(links, linksOffset + 1, neighbors, 0, count);
+      return count;
+    }
+
+    synchronized (this.getLock(itemIndex)) {
+      int count = links[linksOffset];
+      System.arraycopy(links, linksOffset + 1, neighbors, 0, count);
+      return count;
+    }
+  }
+
+  /**
+   * Returns the array that contains the neighbors list of an item in a layer
+   *
+   * @param itemIndex Index of the item
+   * @param layer Layer of the graph
+   * @return Array that contains the neighbors list
+   */
+  private int[] getLinks(int itemIndex, int layer) {
+    return (layer == 0) ? this.links0 : this.upperLinks[itemIndex];
+  }
+
+  /**
+   * Returns the position of the neighbors list of an item in a layer
+   *
+   * @param itemIndex Index of the item
+   * @param layer Layer of the graph
+   * @return Position of the neighbors list in the array returned by getLinks(itemIndex, layer)
+   */
+  private int getLinksOffset(int itemIndex, int layer) {
+    return (layer == 0) ? itemIndex * (this.maxM0 + 1) : (layer - 1) * (this.m + 1);
+  }
+
+  /**
+   * Returns the lock of the neighbors lists of an item
+   *
+   * @param itemIndex Index of the item
+   * @return Lock of the item
+   */
+  private Object getLock(int itemIndex) {
+    return this.locks[itemIndex % NUM_LOCKS];
+  }
+
+  /**
+   * Computes the distance between an item and a vector as their negated inner product, so that the
+   * closest items are the ones with the greatest inner product.
+   *
+   * @param itemIndex Index of the item
+   * @param vector Array that contains the vector
+   * @param offset Position of the vector in the array
+   * @return Distance between the item and the vector
+   */
+  private double distance(int itemIndex, double[] vector, int offset) {
+    int itemOffset = itemIndex * this.dimension;
+    double dot = 0;
+    for (int k = 0; k < this.dimension; k++) {
+      dot += this.vectors[itemOffset + k] * vector[offset + k];
+    }
+    return -dot;
+  }
+
+  @Override
+  public String toString() {
+    return "HNSWIndex(m="
+        + this.m
+        + "; efConstruction="
+        + this.efConstruction
+        + "; ef="
+        + this.ef
+        + ")";
+  }
+
+  /** Auxiliary inner class to insert the items in the graph in parallel */
+  private class InsertItems implements IntPartible {
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public void run(int from, int to) {
+      SearchContext context = contexts.get();
+      for (int itemIndex = from; itemIndex < to; itemIndex++) {
+        insert(itemIndex, context);
+      }
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+
+  /** Auxiliary inner class that contains the structures used by the searches of a thread */
+  private class SearchContext {
+
+    /** Mark of the items visited by each search */
+    private final int[] visited;
+
+    /** Mark of the current search */
+    private int mark = 0;
+
+    /** Items to be explored, sorted by their distance to the query */
+    private final Heap candidates = new Heap();
+
+    /** Closest items found, sorted by their negated distance to the query */
+    private final Heap results = new Heap();
+
+    /** Buffer to copy the neighbors of an item */
+    private final int[] neighbors = new int[maxM0];
+
+    /** Buffers to sort the candidates to be neighbors of an inserted item */
+    private final int[] ids = new int[Math.max(efConstruction, maxM0 + 1)];
+    private final double[] distances = new double[Math.max(efConstruction, maxM0 + 1)];
+
+    /** Buffers to sort the neighbors of an item when its neighbors list is full */
+    private final int[] shrinkIds = new int[maxM0 + 1];
+    private final double[] shrinkDistances = new double[maxM0 + 1];
+
+    /** Neighbors selected by selectNeighbors */
+    private final int[] selected = new int[maxM0 + 1];
+
+    private SearchContext(int numItems) {
+      this.visited = new int[numItems];
+    }
+
+    /**
+     * Returns a new mark for a search, so the visited array does not need to be cleared
+     *
+     * @return Mark of the search
+     */
+    private int nextMark() {
+      this.mark++;
+      if (this.mark == 0) {
+        Arrays.fill(this.visited, 0);
+        this.mark = 1;
+      }
+      return this.mark;
+    }
+  }
+
+  /** Auxiliary inner class that implements a binary min-heap of (key, value) pairs */
+  private static class Heap {
+
+    private double[] keys = new double[64];
+    private int[] values = new int[64];
+    private int size = 0;
+
+    private int size() {
+      return this.size;
+    }
+
+    private void clear() {
+      this.size = 0;
+    }
+
+    private double topKey() {
+      return this.keys[0];
+    }
+
+    private int topValue() {
+      return this.values[0];
+    }
+
+    private void push(double key, int value) {
+      if (this.size == this.keys.length) {
+        this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+        this.values = Arrays.copyOf(this.values, 2 * this.size);
+      }
+
+      int pos = this.size++;
+      while (pos > 0) {
+        int parent = (pos - 1) >>> 1;
+        if (this.keys[parent] <= key) break;
+        this.keys[pos] = this.keys[parent];
+        this.values[pos] = this.values[parent];
+        pos = parent;
+      }
+      this.keys[pos] = key;
+      this.values[pos] = value;
+    }
+
+    private void pop() {
+      this.size--;
+      double key = this.keys[this.size];
+      int value = this.values[this.size];
+
+      int pos = 0;
+      while (true) {
+        int child = 2 * pos + 1;
+        if (child >= this.size) break;
+        if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) child++;
+        if (this.keys[child] >= key) break;
+        this.keys[pos] = this.keys[child];
+        this.values[pos] = this.values[child];
+        pos = child;
+      }
+      this.keys[pos] = key;
+      this.values[pos] = value;
+    }
+  }
+}
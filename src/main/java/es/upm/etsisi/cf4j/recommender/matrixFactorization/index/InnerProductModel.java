@@ -0,0 +1,41 @@
+package es.upm.etsisi.cf4j.recommender.matrixFactorization.index;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+
+/**
+ * This interface must be implemented by the recommenders whose predictions rank the items of a
+ * user as the inner product of an embedding of the user and an embedding of each item, such as
+ * most of the matrix factorization models. Any term of the prediction that only depends on the
+ * user can be omitted, and any term that only depends on the item can be appended to the item
+ * embedding (with a 1 appended to the user embedding).
+ *
+ * <p>The items of these recommenders can be indexed by an HNSWIndex to retrieve the top-N items of
+ * a user without computing the prediction of every item.
+ */
+public interface InnerProductModel {
+
+  /**
+   * Returns the DataModel instance
+   *
+   * @return DataModel instance used by the recommender
+   */
+  DataModel getDataModel();
+
+  /**
+   * Returns the embedding of a user. The items of the user must be ranked by the inner product of
+   * this embedding and the item embeddings.
+   *
+   * @param userIndex Index of the user
+   * @return Embedding of the user
+   */
+  double[] getUserEmbedding(int userIndex);
+
+  /**
+   * Returns the embedding of an item. All the item embeddings must have the same length as the
+   * user embeddings.
+   *
+   * @param itemIndex Index of the item
+   * @return Embedding of the item
+   */
+  double[] getItemEmbedding(int itemIndex);
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains indexes of the item embeddings of the matrix factorization based
+ * recommenders, used to retrieve the top-N items of a user without computing the prediction of
+ * every item.
+ */
+package es.upm.etsisi.cf4j.recommender.matrixFactorization.index;
@@ -69,6 +69,20 @@ public class Maths {
     return r;
   }
 
+  /**
+   * Dot product between two vectors of floats. The products and the sum are computed in double
+   * precision.
+   *
+   * @param a Vector A
+   * @param b Vector B
+   * @return dot_product(A, B)
+   */
+  public static double dotProduct(float[] a, float[] b) {
+    double r = 0;
+    for (int i = 0; i < a.length; i++) r += (double) a[i] * b[i];
+    return r;
+  }
+
   /**
    * Returns the log in an specific base
    *
@@ -3,6 +3,9 @@ package es.upm.etsisi.cf4j.util.optimization;
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.qualityMeasure.QualityMeasure;
 import es.upm.etsisi.cf4j.recommender.Recommender;
+import es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric.ItemSimilarityMetric;
+import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.UserSimilarityMetric;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.apache.commons.math3.util.Pair;
 
@@ -13,6 +16,12 @@ import java.lang.reflect.InvocationTargetException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Utility class to performs a random search over a Recommender instance. The Recommender class used
@@ -529,97 +538,256 @@ public class RandomSearch {
 
   /** Performs grid search */
   public void fit() {
+    this.fit(1, Parallelizer.getNumThreads());
+  }
 
+  /**
+   * Performs grid search fitting several Recommenders concurrently. The available threads are
+   * shared equally between the concurrent Recommenders.
+   *
+   * @param numParallelFits Number of Recommenders fitted and evaluated concurrently
+   */
+  public void fit(int numParallelFits) {
+    if (numParallelFits <= 0) {
+      throw new IllegalArgumentException("numParallelFits must be greater than 0");
+    }
+    this.fit(numParallelFits, Math.max(1, Parallelizer.getNumThreads() / numParallelFits));
+  }
+
+  /**
+   * Performs grid search fitting several Recommenders concurrently. Each Recommender is fitted and
+   * evaluated using its own pool of numThreadsPerFit threads, so the search uses up to
+   * numParallelFits x numThreadsPerFit threads. Small datasets do not scale well with the number of
+   * threads, so fitting several Recommenders with a few threads each one increases the throughput
+   * of the search. The Recommenders are assigned to the first free slot, so slow Recommenders do
+   * not delay the remaining ones.
+   *
+   * <p>If numParallelFits is greater than 1, each Recommender receives its own copy of the
+   * similarity metrics of the grid (see UserSimilarityMetric.copy() and
+   * ItemSimilarityMetric.copy()). The rest of the values of the grid are shared, so they must be
+   * immutable: numbers, strings, booleans, characters or enums.
+   *
+   * @param numParallelFits Number of Recommenders fitted and evaluated concurrently
+   * @param numThreadsPerFit Number of threads used to fit and evaluate each Recommender
+   * @throws IllegalArgumentException If numParallelFits is greater than 1 and the grid contains
+   *     values that can not be shared nor copied
+   */
+  public void fit(int numParallelFits, int numThreadsPerFit) {
+    if (numParallelFits <= 0) {
+      throw new IllegalArgumentException("numParallelFits must be greater than 0");
+    }
+    if (numThreadsPerFit <= 0) {
+      throw new IllegalArgumentException("numThreadsPerFit must be greater than 0");
+    }
+
+    List<Map<String, Object>> developmentSet = new ArrayList<>();
     Iterator<Map<String, Object>> iter = grid.getDevelopmentSetIterator(true, seed);
+    while (developmentSet.size() < this.numIters && iter.hasNext()) {
+      developmentSet.add(iter.next());
+    }
 
     long init = System.currentTimeMillis();
+    AtomicInteger counter = new AtomicInteger();
 
-    int i = 0;
-    while (i < this.numIters && iter.hasNext()) {
-      Map<String, Object> params = iter.next();
-      i++;
+    if (numParallelFits == 1) {
+      for (Map<String, Object> params : developmentSet) {
+        this.fit(params, false, counter.incrementAndGet(), init, numThreadsPerFit);
+      }
+      return;
+    }
 
-      System.out.print("\n\n");
+    // Fails before fitting any Recommender if the grid contains values that can not be copied
+    for (Map<String, Object> params : developmentSet) {
+      copyParams(params);
+    }
 
-      if (!this.progressPrefix.isEmpty()) {
-        System.out.print(this.progressPrefix + ". ");
+    ExecutorService executor = Executors.newFixedThreadPool(numParallelFits);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Map<String, Object> params : developmentSet) {
+        futures.add(
+            executor.submit(
+                () -> this.fit(params, true, counter.incrementAndGet(), init, numThreadsPerFit)));
       }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      if (e.getCause() instanceof Error) throw (Error) e.getCause();
+      throw new RuntimeException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Search interrupted");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-      System.out.print("Iter " + i + " of " + this.numIters);
-
-      String completePercent = new DecimalFormat("0.00").format(100.0 * i / this.numIters);
-      System.out.print(" (" + completePercent + "%). ");
+  /**
+   * Fits and evaluates a Recommender using a given number of threads
+   *
+   * @param params Parameters of the Recommender
+   * @param copy True if the Recommender must receive a copy of the parameters
+   * @param i Position of the Recommender in the search
+   * @param init Start time of the search
+   * @param numThreads Number of threads used to fit and evaluate the Recommender
+   */
+  private void fit(Map<String, Object> params, boolean copy, int i, long init, int numThreads) {
+    this.printProgress(i, init);
 
-      long now = System.currentTimeMillis();
-      long elapsedTime = now - init;
-      System.out.print("Elapsed time: " + DurationFormatUtils.formatDurationWords(elapsedTime, true, false));
+    if (numThreads == Parallelizer.getNumThreads()) {
+      this.evaluate(params, copy);
+    } else {
+      Parallelizer.runWithNumThreads(numThreads, () -> this.evaluate(params, copy));
+    }
+  }
 
-      if (i > 1) {
-        long eta = (this.numIters - i + 1) * elapsedTime / (i - 1);
-        System.out.print(". ETA: " + DurationFormatUtils.formatDurationWords(eta, true, false));
+  /**
+   * Copies the parameters of a Recommender, so it can be fitted concurrently with other
+   * Recommenders of the search. Immutable values are shared and similarity metrics are copied.
+   *
+   * @param params Parameters of the Recommender
+   * @return Copy of the parameters
+   * @throws IllegalArgumentException If a value can not be shared nor copied
+   */
+  private static Map<String, Object> copyParams(Map<String, Object> params) {
+    Map<String, Object> copy = new HashMap<>();
+    for (Map.Entry<String, Object> entry : params.entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof UserSimilarityMetric) {
+        value = ((UserSimilarityMetric) value).copy();
+      } else if (value instanceof ItemSimilarityMetric) {
+        value = ((ItemSimilarityMetric) value).copy();
+      } else if (!isImmutable(value)) {
+        throw new IllegalArgumentException(
+            "Parameter "
+                + entry.getKey()
+                + " can not be shared by Recommenders fitted concurrently."
+                + " Use numParallelFits = 1 instead.");
       }
+      copy.put(entry.getKey(), value);
+    }
+    return copy;
+  }
 
-      System.out.println();
+  /**
+   * Checks if a parameter value can be shared by Recommenders fitted concurrently
+   *
+   * @param value Value of the parameter
+   * @return true if the value is null or immutable, false otherwise
+   */
+  private static boolean isImmutable(Object value) {
+    return value == null
+        || value instanceof String
+        || value instanceof Boolean
+        || value instanceof Character
+        || value instanceof Enum
+        || value instanceof Integer
+        || value instanceof Long
+        || value instanceof Double
+        || value instanceof Float
+        || value instanceof Short
+        || value instanceof Byte;
+  }
+
+  /**
+   * Prints the progress of the search
+   *
+   * @param i Position of the Recommender in the search
+   * @param init Start time of the search
+   */
+  private synchronized void printProgress(int i, long init) {
+    System.out.print("\n\n");
+
+    if (!this.progressPrefix.isEmpty()) {
+      System.out.print(this.progressPrefix + ". ");
+    }
+
+    System.out.print("Iter " + i + " of " + this.numIters);
 
-      Recommender recommender = null;
+    String completePercent = new DecimalFormat("0.00").format(100.0 * i / this.numIters);
+    System.out.print(" (" + completePercent + "%). ");
+
+    long now = System.currentTimeMillis();
+    long elapsedTime = now - init;
+    System.out.print("Elapsed time: " + DurationFormatUtils.formatDurationWords(elapsedTime, true, false));
+
+    if (i > 1) {
+      long eta = (this.numIters - i + 1) * elapsedTime / (i - 1);
+      System.out.print(". ETA: " + DurationFormatUtils.formatDurationWords(eta, true, false));
+    }
+
+    System.out.println();
+  }
+
+  /**
+   * Fits a Recommender and computes its scores
+   *
+   * @param params Parameters of the Recommender
+   * @param copy True if the Recommender must receive a copy of the parameters
+   */
+  private void evaluate(Map<String, Object> params, boolean copy) {
+    Recommender recommender = null;
+
+    try {
+      recommender =
+          this.recommenderClass
+              .getConstructor(DataModel.class, Map.class)
+              .newInstance(this.datamodel, copy ? copyParams(params) : params);
+    } catch (NoSuchMethodException e) {
+      System.err.println(
+          this.recommenderClass.getCanonicalName()
+              + " does not seem to contain a constructor to be used in a grid search.");
+      e.printStackTrace();
+    } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
+      System.err.println(
+          "A problem has occurred during the "
+              + this.recommenderClass.getCanonicalName()
+              + " instantiation.");
+      e.printStackTrace();
+    }
+
+    if (recommender != null) {
+      recommender.fit();
+    }
+
+    Double[] scores = new Double[this.qualityMeasuresClasses.length];
+
+    for (int q = 0; q < this.qualityMeasuresClasses.length; q++) {
+      QualityMeasure qm = null;
+
+      Class<? extends QualityMeasure> qualityMeasureClass = this.qualityMeasuresClasses[q];
+      Map<String, Object> qualityMeasureParams =
+          this.qualityMeasuresParams == null ? null : this.qualityMeasuresParams[q];
 
       try {
-        recommender =
-            this.recommenderClass
-                .getConstructor(DataModel.class, Map.class)
-                .newInstance(this.datamodel, params);
+        if (qualityMeasureParams == null || qualityMeasureParams.isEmpty()) {
+          qm = qualityMeasureClass.getConstructor(Recommender.class).newInstance(recommender);
+        } else {
+          qm =
+              qualityMeasureClass
+                  .getConstructor(Recommender.class, Map.class)
+                  .newInstance(recommender, qualityMeasureParams);
+        }
       } catch (NoSuchMethodException e) {
         System.err.println(
-            this.recommenderClass.getCanonicalName()
+            qualityMeasureClass.getCanonicalName()
                 + " does not seem to contain a constructor to be used in a grid search.");
         e.printStackTrace();
       } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
         System.err.println(
             "A problem has occurred during the "
-                + this.recommenderClass.getCanonicalName()
+                + qualityMeasureClass.getCanonicalName()
                 + " instantiation.");
         e.printStackTrace();
       }
 
-      if (recommender != null) {
-        recommender.fit();
-      }
-
-      Double[] scores = new Double[this.qualityMeasuresClasses.length];
-
-      for (int q = 0; q < this.qualityMeasuresClasses.length; q++) {
-        QualityMeasure qm = null;
-
-        Class<? extends QualityMeasure> qualityMeasureClass = this.qualityMeasuresClasses[q];
-        Map<String, Object> qualityMeasureParams =
-            this.qualityMeasuresParams == null ? null : this.qualityMeasuresParams[q];
-
-        try {
-          if (qualityMeasureParams == null || qualityMeasureParams.isEmpty()) {
-            qm = qualityMeasureClass.getConstructor(Recommender.class).newInstance(recommender);
-          } else {
-            qm =
-                qualityMeasureClass
-                    .getConstructor(Recommender.class, Map.class)
-                    .newInstance(recommender, qualityMeasureParams);
-          }
-        } catch (NoSuchMethodException e) {
-          System.err.println(
-              qualityMeasureClass.getCanonicalName()
-                  + " does not seem to contain a constructor to be used in a grid search.");
-          e.printStackTrace();
-        } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
-          System.err.println(
-              "A problem has occurred during the "
-                  + qualityMeasureClass.getCanonicalName()
-                  + " instantiation.");
-          e.printStackTrace();
-        }
-
-        scores[q] = qm != null ? qm.getScore() : null;
-      }
+      scores[q] = qm != null ? qm.getScore() : null;
+    }
 
-      results.put(params, scores);
+    synchronized (this.results) {
+      this.results.put(params, scores);
     }
   }
 
@@ -5,6 +5,7 @@ import es.upm.etsisi.cf4j.data.types.DataSetEntry;
 import es.upm.etsisi.cf4j.qualityMeasure.QualityMeasure;
 import es.upm.etsisi.cf4j.recommender.Recommender;
 import es.upm.etsisi.cf4j.util.Maths;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import org.apache.commons.math3.util.Pair;
 
 import java.io.File;
@@ -543,6 +544,29 @@ public class RandomSearchCV {
 
   /** Performs the search */
   public void fit() {
+    this.fit(1, Parallelizer.getNumThreads());
+  }
+
+  /**
+   * Performs the search fitting several Recommenders concurrently. The available threads are
+   * shared equally between the concurrent Recommenders.
+   *
+   * @param numParallelFits Number of Recommenders fitted and evaluated concurrently
+   */
+  public void fit(int numParallelFits) {
+    if (numParallelFits <= 0) {
+      throw new IllegalArgumentException("numParallelFits must be greater than 0");
+    }
+    this.fit(numParallelFits, Math.max(1, Parallelizer.getNumThreads() / numParallelFits));
+  }
+
+  /**
+   * Performs the search fitting several Recommenders concurrently. See RandomSearch.fit(int, int)
+   *
+   * @param numParallelFits Number of Recommenders fitted and evaluated concurrently
+   * @param numThreadsPerFit Number of threads used to fit and evaluate each Recommender
+   */
+  public void fit(int numParallelFits, int numThreadsPerFit) {
     List<DataSetEntry> ratings = new ArrayList<>();
 
     for (User user : datamodel.getUsers()) {
@@ -590,7 +614,7 @@ public class RandomSearchCV {
               numIters,
               seed,
               "Fold " + (fold+1) + " of " + this.cv);
-      randomSearch.fit();
+      randomSearch.fit(numParallelFits, numThreadsPerFit);
 
       Map<Map<String, Object>, Double[]> randomSearchResults = randomSearch.getResults();
       for (Map<String, Object> params : randomSearchResults.keySet()) {
@@ -0,0 +1,41 @@
+package es.upm.etsisi.cf4j.util.process;
+
+/**
+ * Partible whose executions receive a per-thread context. When a ContextPartible is executed
+ * through Parallelizer class, each thread creates its own context once using createContext() and
+ * reuses it for all the objects that it runs. The context is never shared between threads, so it
+ * can hold scratch buffers that avoid allocations inside run(T object, C context).
+ *
+ * @param <T> Type of the objects to be run
+ * @param <C> Type of the per-thread context
+ */
+public interface ContextPartible<T, C> extends Partible<T> {
+
+  /**
+   * Is executed once per thread before the thread runs its first object. It must not return null.
+   *
+   * @return New context for a thread
+   */
+  C createContext();
+
+  /**
+   * Is executed once for each object in the array of objects passed as parameter in the exec method
+   * of the Parallelizer class. These executions are performed in a parallel way. The context is
+   * only used by the current thread, but race conditions between objects must be handle by the
+   * developer.
+   *
+   * @param object Object to be run
+   * @param context Context of the current thread
+   */
+  void run(T object, C context);
+
+  /**
+   * Runs an object with a new context. Parallelizer class never calls this method.
+   *
+   * @param object Object to be run
+   */
+  @Override
+  default void run(T object) {
+    this.run(object, this.createContext());
+  }
+}
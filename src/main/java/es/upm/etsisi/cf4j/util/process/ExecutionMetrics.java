@@ -0,0 +1,99 @@
+package es.upm.etsisi.cf4j.util.process;
+
+import java.util.Arrays;
+
+/**
+ * Metrics of an execution of Parallelizer. They contain the time that each thread has spent
+ * running the Partible, so that the balance of the workload between the threads can be checked.
+ */
+public class ExecutionMetrics {
+
+  /** Number of threads requested for the execution */
+  private final int numThreads;
+
+  /** Elapsed time of the execution in nanoseconds */
+  private final long elapsedTime;
+
+  /** Time in nanoseconds that each thread has spent running the Partible */
+  private final long[] busyTimes;
+
+  /**
+   * ExecutionMetrics constructor
+   *
+   * @param numThreads Number of threads requested for the execution
+   * @param elapsedTime Elapsed time of the execution in nanoseconds
+   * @param busyTimes Time in nanoseconds that each thread has spent running the Partible
+   */
+  public ExecutionMetrics(int numThreads, long elapsedTime, long[] busyTimes) {
+    this.numThreads = numThreads;
+    this.elapsedTime = elapsedTime;
+    this.busyTimes = busyTimes;
+  }
+
+  /**
+   * Gets the number of threads requested for the execution
+   *
+   * @return Number of threads
+   */
+  public int getNumThreads() {
+    return this.numThreads;
+  }
+
+  /**
+   * Gets the elapsed time of the execution, including beforeRun() and afterRun()
+   *
+   * @return Elapsed time in nanoseconds
+   */
+  public long getElapsedTime() {
+    return this.elapsedTime;
+  }
+
+  /**
+   * Gets the time that each thread has spent running the Partible. Threads that have not run any
+   * object are not included.
+   *
+   * @return Busy time of each thread in nanoseconds
+   */
+  public long[] getBusyTimes() {
+    return this.busyTimes.clone();
+  }
+
+  /**
+   * Gets the imbalance of the workload between the threads, computed as the ratio between the
+   * maximum and the average busy time of the numThreads threads. 1 means a perfect balance, while
+   * numThreads means that a single thread has done all the work.
+   *
+   * @return Imbalance of the workload
+   */
+  public double getImbalance() {
+    long max = 0;
+    long sum = 0;
+    for (long busyTime : this.busyTimes) {
+      max = Math.max(max, busyTime);
+      sum += busyTime;
+    }
+    return (sum == 0) ? 1.0 : (double) max * this.numThreads / sum;
+  }
+
+  @Override
+  public String toString() {
+    long[] busyTimes = this.busyTimes.clone();
+    Arrays.sort(busyTimes);
+
+    StringBuilder str =
+        new StringBuilder("ExecutionMetrics(")
+            .append("numThreads=")
+            .append(this.numThreads)
+            .append("; ")
+            .append("elapsedTime=")
+            .append(String.format("%.3f", this.elapsedTime / 1e6))
+            .append(" ms; ")
+            .append("busyTimes=[");
+    for (int i = busyTimes.length - 1; i >= 0; i--) {
+      str.append(String.format("%.3f", busyTimes[i] / 1e6));
+      if (i > 0) str.append(", ");
+    }
+    str.append("] ms; ").append("imbalance=").append(String.format("%.2f", this.getImbalance()));
+    return str.append(")").toString();
+  }
+}
@@ -0,0 +1,37 @@
+package es.upm.etsisi.cf4j.util.process;
+
+/**
+ * This interface handles the parallel execution of an interval of indexes thorough Parallelizer
+ * class. Unlike Partible, each execution receives a contiguous range of indexes, so that the loop
+ * over the range is written by the developer and can iterate flat arrays directly. Each execution
+ * of an IntPartible consists in three methods:
+ *
+ * <ol>
+ *   <li>beforeRun(): is executed once before the execution of all the ranges
+ *   <li>run(int from, int to): is executed once per each range of indexes in which the interval
+ *       passed as parameter in the exec method of the Parallelizer class is split. These executions
+ *       are performed in a parallel way
+ *   <li>afterRun(): is executed once after the execution of all the ranges
+ * </ol>
+ */
+public interface IntPartible {
+
+  /** Is executed once before execute the method 'exec'. It can be used to initialize resources. */
+  void beforeRun();
+
+  /**
+   * Is executed once for each range of indexes. The ranges do not overlap and cover the whole
+   * interval passed as parameter in the exec method of the Parallelizer class. These executions are
+   * performed in a parallel way. Race conditions must be handle by the developer.
+   *
+   * @param from Initial index of the range (inclusive)
+   * @param to Final index of the range (exclusive)
+   */
+  void run(int from, int to);
+
+  /**
+   * Is executed once after execute the method exec. It can be used to close resources. It is not
+   * executed if run(int from, int to) throws an exception or the execution is cancelled.
+   */
+  void afterRun();
+}
@@ -1,11 +1,143 @@
 package es.upm.etsisi.cf4j.util.process;
 
-/** This class is used to simplify the parallelization of collaborative filtering algorithms */
+import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.data.User;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class is used to simplify the parallelization of collaborative filtering algorithms.
+ *
+ * <p>Executions are run by a pool of worker threads that is created once and reused by all the
+ * executions, so iterative algorithms that call exec(...) several times per iteration do not pay
+ * the cost of creating new threads on each call. The array of objects is split into ranges of
+ * indexes that are processed by the workers. Idle workers steal ranges from busy ones, so the
+ * execution is balanced even if some objects are much more expensive than others.
+ *
+ * <p>The ranges can be built using a cost hint of each object, so that all the ranges require a
+ * similar amount of work. By default, the number of ratings is used as cost hint of the Users and
+ * Items, whose number of ratings usually follows a power law. Other objects are considered to have
+ * the same cost. The execWithMetrics(...) methods also return an ExecutionMetrics instance with
+ * the time that each thread has been busy.
+ *
+ * <p>If the Partible is a ContextPartible, each thread that takes part in an execution creates its
+ * own context once, and reuses it for all the objects that it runs.
+ *
+ * <p>Intervals of indexes can also be run without building an array of objects using an
+ * IntPartible, that receives contiguous ranges of indexes. It allows to iterate flat arrays
+ * directly in the body of the loop.
+ *
+ * <p>If the Partible throws an exception, the execution is cancelled: the ranges that have not
+ * been started are skipped, the threads stop before running their next object, and the first
+ * exception is thrown by exec(...) once all the threads have stopped. afterRun() is not executed
+ * in that case. Executions can also be cancelled by interrupting the calling thread or by a
+ * deadline, throwing a CancellationException.
+ *
+ * <p>By default, all the available processors are used. The number of threads can be changed
+ * globally using setNumThreads(int numThreads), or for the executions launched by a task using
+ * runWithNumThreads(int numThreads, Runnable task). The latter allows to run several tasks that use
+ * Parallelizer concurrently, e.g. to fit several Recommenders at the same time, each one with its
+ * own share of the available processors.
+ */
 public class Parallelizer {
 
+  /** Number of ranges of indexes per thread in which the objects are split */
+  private static final int RANGES_PER_THREAD = 8;
+
+  /** Number of threads used by default */
+  private static int numThreads = Runtime.getRuntime().availableProcessors();
+
+  /** Pool of worker threads shared by all the executions that use the default number of threads */
+  private static ForkJoinPool pool;
+
+  /** Number of threads and pool of the executions launched by runWithNumThreads(...) tasks */
+  private static final ThreadLocal<LocalPool> localPool = new ThreadLocal<>();
+
+  /**
+   * Sets the number of threads used by default. The pool of worker threads is recreated the next
+   * time it is required.
+   *
+   * @param numThreads Number of threads. If it is lower than or equal to 0, all the available
+   *     processors are used
+   */
+  public static synchronized void setNumThreads(int numThreads) {
+    if (numThreads <= 0) numThreads = Runtime.getRuntime().availableProcessors();
+    if (numThreads != Parallelizer.numThreads && pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+    Parallelizer.numThreads = numThreads;
+  }
+
+  /**
+   * Gets the number of threads used by default. Inside a task run by runWithNumThreads(...), it is
+   * the number of threads of that task.
+   *
+   * @return Number of threads
+   */
+  public static int getNumThreads() {
+    LocalPool local = localPool.get();
+    return (local != null) ? local.numThreads : getGlobalNumThreads();
+  }
+
+  /**
+   * Gets the number of threads used by default outside runWithNumThreads(...) tasks
+   *
+   * @return Number of threads
+   */
+  private static synchronized int getGlobalNumThreads() {
+    return numThreads;
+  }
+
+  /**
+   * Runs a task in the current thread using a given number of threads as default for the
+   * executions of Parallelizer launched by the task. The task gets its own pool of worker threads,
+   * so several tasks can be run concurrently from different threads without sharing the threads.
+   *
+   * @param numThreads Number of threads used by default by the executions of the task
+   * @param task Task to be run
+   */
+  public static void runWithNumThreads(int numThreads, Runnable task) {
+    if (numThreads <= 0) {
+      throw new IllegalArgumentException("numThreads must be greater than 0");
+    }
+
+    LocalPool previous = localPool.get();
+    LocalPool local = new LocalPool(numThreads);
+    localPool.set(local);
+    try {
+      task.run();
+    } finally {
+      if (previous == null) {
+        localPool.remove();
+      } else {
+        localPool.set(previous);
+      }
+      local.shutdown();
+    }
+  }
+
+  /**
+   * Gets the pool of worker threads shared by all the executions, creating it if required
+   *
+   * @return Shared pool
+   */
+  private static synchronized ForkJoinPool getPool() {
+    if (pool == null) pool = new ForkJoinPool(numThreads);
+    return pool;
+  }
+
   /**
    * Execs Partible for each object contained in the objects array. Each execution is run in
-   * parallel way. All available threads of the CPU will be used.
+   * parallel way. The default number of threads will be used.
    *
    * @param objects Array of objects to be executed in parallel
    * @param partible Partible to be executed for each object of the array
@@ -20,64 +152,515 @@ public class Parallelizer {
    *
    * @param objects Array of objects to be executed in parallel
    * @param partible Partible to be executed for each object of the array
-   * @param numThreads Number of threads to be launched in parallel
+   * @param numThreads Number of threads to be used in parallel. If it is lower than or equal to 0,
+   *     the default number of threads will be used
    */
   public static void exec(Object[] objects, Partible partible, int numThreads) {
+    exec(objects, partible, numThreads, defaultCost(objects));
+  }
 
-    // use all processors if required
-    if (numThreads <= 0) numThreads = Runtime.getRuntime().availableProcessors();
+  /**
+   * Execs Partible for each object contained in the objects array. Each execution is run in
+   * parallel way. The objects are split into ranges that require a similar cost.
+   *
+   * @param objects Array of objects to be executed in parallel
+   * @param partible Partible to be executed for each object of the array
+   * @param numThreads Number of threads to be used in parallel. If it is lower than or equal to 0,
+   *     the default number of threads will be used
+   * @param cost Function that returns a hint of the cost of running the Partible for an object. If
+   *     it is null, all the objects are considered to have the same cost
+   */
+  public static void exec(
+      Object[] objects, Partible<?> partible, int numThreads, ToLongFunction<Object> cost) {
+    execute(objects, partible, numThreads, cost, Workers.NO_DEADLINE);
+  }
+
+  /**
+   * Execs Partible for each object contained in the objects array as exec(Object[] objects,
+   * Partible partible, int numThreads, ToLongFunction cost) does, and returns the metrics of the
+   * execution.
+   *
+   * @param objects Array of objects to be executed in parallel
+   * @param partible Partible to be executed for each object of the array
+   * @param numThreads Number of threads to be used in parallel. If it is lower than or equal to 0,
+   *     the default number of threads will be used
+   * @param cost Function that returns a hint of the cost of running the Partible for an object. If
+   *     it is null, all the objects are considered to have the same cost
+   * @return Metrics of the execution
+   */
+  public static ExecutionMetrics execWithMetrics(
+      Object[] objects, Partible<?> partible, int numThreads, ToLongFunction<Object> cost) {
+    return execute(objects, partible, numThreads, cost, Workers.NO_DEADLINE);
+  }
+
+  /**
+   * Execs Partible for each object contained in the objects array. Each execution is run in
+   * parallel way. The execution is cancelled if it does not finish before the timeout.
+   *
+   * @param objects Array of objects to be executed in parallel
+   * @param partible Partible to be executed for each object of the array
+   * @param numThreads Number of threads to be used in parallel. If it is lower than or equal to 0,
+   *     the default number of threads will be used
+   * @param timeout Maximum time to wait for the execution. It must be greater than 0
+   * @param unit Time unit of the timeout
+   * @throws CancellationException If the timeout expires before all the objects have been run
+   */
+  public static void exec(
+      Object[] objects, Partible<?> partible, int numThreads, long timeout, TimeUnit unit) {
+    execute(objects, partible, numThreads, defaultCost(objects), deadline(timeout, unit));
+  }
+
+  /**
+   * Execs Partible for each object contained in the objects array
+   *
+   * @param objects Array of objects to be executed in parallel
+   * @param partible Partible to be executed for each object of the array
+   * @param numThreads Number of threads to be used in parallel
+   * @param cost Function that returns a hint of the cost of an object or null
+   * @param deadline Value of System.nanoTime() at which the execution is cancelled
+   * @return Metrics of the execution
+   */
+  private static ExecutionMetrics execute(
+      Object[] objects,
+      Partible<?> partible,
+      int numThreads,
+      ToLongFunction<Object> cost,
+      long deadline) {
+
+    // use the default number of threads if required
+    if (numThreads <= 0) numThreads = getNumThreads();
+
+    long start = System.nanoTime();
+    Workers workers = new Workers(objects, partible, deadline);
 
     // execute beforeRun method once
     partible.beforeRun();
 
-    // create and launch threads
-    PartibleThread[] pt = new PartibleThread[numThreads];
-    for (int i = 0; i < pt.length; i++) {
-      pt[i] = new PartibleThread(i, partible, objects, numThreads);
+    long[] cumulativeCosts = null;
+    if (numThreads > 1 && cost != null) {
+      cumulativeCosts = new long[objects.length + 1];
+      for (int i = 0; i < objects.length; i++) {
+        cumulativeCosts[i + 1] = cumulativeCosts[i] + Math.max(1, cost.applyAsLong(objects[i]));
+      }
     }
 
-    // wait until all threads end
-    try {
-      for (PartibleThread partibleThread : pt) {
-        partibleThread.getThread().join();
+    run(workers, objects.length, cumulativeCosts, numThreads);
+    workers.checkCompleted();
+
+    // execute afterRun method once
+    partible.afterRun();
+
+    return new ExecutionMetrics(numThreads, System.nanoTime() - start, workers.getBusyTimes());
+  }
+
+  /**
+   * Execs IntPartible for the interval of indexes [from, to). The interval is split into contiguous
+   * ranges of indexes that are run in parallel way. The default number of threads will be used.
+   *
+   * @param from Initial index of the interval (inclusive)
+   * @param to Final index of the interval (exclusive)
+   * @param intPartible IntPartible to be executed for each range of indexes
+   */
+  public static void exec(int from, int to, IntPartible intPartible) {
+    exec(from, to, intPartible, -1);
+  }
+
+  /**
+   * Execs IntPartible for the interval of indexes [from, to). The interval is split into contiguous
+   * ranges of indexes that are run in parallel way.
+   *
+   * @param from Initial index of the interval (inclusive)
+   * @param to Final index of the interval (exclusive)
+   * @param intPartible IntPartible to be executed for each range of indexes
+   * @param numThreads Number of threads to be used in parallel. If it is lower than or equal to 0,
+   *     the default number of threads will be used
+   */
+  public static void exec(int from, int to, IntPartible intPartible, int numThreads) {
+    execute(from, to, intPartible, numThreads, Workers.NO_DEADLINE);
+  }
+
+  /**
+   * Execs IntPartible for the interval of indexes [from, to) as exec(int from, int to, IntPartible
+   * intPartible, int numThreads) does, and returns the metrics of the execution.
+   *
+   * @param from Initial index of the interval (inclusive)
+   * @param to Final index of the interval (exclusive)
+   * @param intPartible IntPartible to be executed for each range of indexes
+   * @param numThreads Number of threads to be used in parallel. If it is lower than or equal to 0,
+   *     the default number of threads will be used
+   * @return Metrics of the execution
+   */
+  public static ExecutionMetrics execWithMetrics(
+      int from, int to, IntPartible intPartible, int numThreads) {
+    return execute(from, to, intPartible, numThreads, Workers.NO_DEADLINE);
+  }
+
+  /**
+   * Execs IntPartible for the interval of indexes [from, to). The interval is split into contiguous
+   * ranges of indexes that are run in parallel way. The execution is cancelled if it does not
+   * finish before the timeout. The ranges that have been started are not interrupted.
+   *
+   * @param from Initial index of the interval (inclusive)
+   * @param to Final index of the interval (exclusive)
+   * @param intPartible IntPartible to be executed for each range of indexes
+   * @param numThreads Number of threads to be used in parallel. If it is lower than or equal to 0,
+   *     the default number of threads will be used
+   * @param timeout Maximum time to wait for the execution. It must be greater than 0
+   * @param unit Time unit of the timeout
+   * @throws CancellationException If the timeout expires before all the ranges have been run
+   */
+  public static void exec(
+      int from, int to, IntPartible intPartible, int numThreads, long timeout, TimeUnit unit) {
+    execute(from, to, intPartible, numThreads, deadline(timeout, unit));
+  }
+
+  /**
+   * Execs IntPartible for the interval of indexes [from, to)
+   *
+   * @param from Initial index of the interval (inclusive)
+   * @param to Final index of the interval (exclusive)
+   * @param intPartible IntPartible to be executed for each range of indexes
+   * @param numThreads Number of threads to be used in parallel
+   * @param deadline Value of System.nanoTime() at which the execution is cancelled
+   * @return Metrics of the execution
+   */
+  private static ExecutionMetrics execute(
+      int from, int to, IntPartible intPartible, int numThreads, long deadline) {
+    if (from > to) {
+      throw new IllegalArgumentException("from index can not be greater than to index");
+    }
+
+    // use the default number of threads if required
+    if (numThreads <= 0) numThreads = getNumThreads();
+
+    long start = System.nanoTime();
+    Workers workers = new Workers(from, intPartible, deadline);
+
+    // execute beforeRun method once
+    intPartible.beforeRun();
+
+    run(workers, to - from, null, numThreads);
+    workers.checkCompleted();
+
+    // execute afterRun method once
+    intPartible.afterRun();
+
+    return new ExecutionMetrics(numThreads, System.nanoTime() - start, workers.getBusyTimes());
+  }
+
+  /**
+   * Computes the deadline of an execution that starts now
+   *
+   * @param timeout Maximum time to wait for the execution
+   * @param unit Time unit of the timeout
+   * @return Value of System.nanoTime() at which the execution is cancelled
+   */
+  private static long deadline(long timeout, TimeUnit unit) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("timeout must be greater than 0");
+    }
+    return System.nanoTime() + unit.toNanos(timeout);
+  }
+
+  /**
+   * Runs the workers for the ranges [0, length) using the given number of threads
+   *
+   * @param workers Workers of the execution
+   * @param length Number of indexes
+   * @param cumulativeCosts Cumulative cost of the indexes, or null if all of them have the same
+   *     cost
+   * @param numThreads Number of threads
+   */
+  private static void run(Workers workers, int length, long[] cumulativeCosts, int numThreads) {
+    if (length == 0) {
+      // nothing to run
+      return;
+    } else if (numThreads == 1) {
+      // a single thread does not require workers
+      workers.run(0, length);
+      return;
+    }
+
+    long totalCost = (cumulativeCosts == null) ? length : cumulativeCosts[length];
+    long rangeCost = Math.max(1, totalCost / (numThreads * RANGES_PER_THREAD));
+    PartibleTask task = new PartibleTask(workers, cumulativeCosts, 0, length, rangeCost);
+
+    LocalPool local = localPool.get();
+    if (local != null && numThreads == local.numThreads) {
+      invoke(local.getPool(), task, workers);
+    } else if (numThreads == getGlobalNumThreads()) {
+      invoke(getPool(), task, workers);
+    } else {
+      ForkJoinPool customPool = new ForkJoinPool(numThreads);
+      try {
+        invoke(customPool, task, workers);
+      } finally {
+        customPool.shutdown();
       }
+    }
+  }
+
+  /**
+   * Runs a task in a pool and waits for it. If the calling thread is interrupted while waiting, the
+   * execution is cancelled and the method returns once all the threads have stopped.
+   *
+   * @param pool Pool in which the task is run
+   * @param task Task to be run
+   * @param workers Workers of the execution
+   */
+  private static void invoke(ForkJoinPool pool, PartibleTask task, Workers workers) {
+    pool.execute(task);
+    try {
+      task.get();
     } catch (InterruptedException ie) {
-      System.err.println("ERROR: " + ie);
+      workers.cancel();
+      task.quietlyJoin();
       Thread.currentThread().interrupt();
+    } catch (ExecutionException ee) {
+      workers.fail(ee.getCause());
     }
+  }
 
-    // execute afterRun method once
-    partible.afterRun();
+  /**
+   * Gets the default cost hint of the objects of an array
+   *
+   * @param objects Array of objects
+   * @return Number of ratings for Users and Items, null for other objects
+   */
+  private static ToLongFunction<Object> defaultCost(Object[] objects) {
+    if (objects instanceof User[]) {
+      return object -> ((User) object).getNumberOfRatings();
+    } else if (objects instanceof Item[]) {
+      return object -> ((Item) object).getNumberOfRatings();
+    } else {
+      return null;
+    }
   }
 
-  /** Inner class used to handle parallel execution of the objects in the array */
-  private static class PartibleThread implements Runnable {
+  /** Inner class with the pool of worker threads of a runWithNumThreads(...) task */
+  private static class LocalPool {
 
-    private final Thread thread;
-    private final int threadIndex;
     private final int numThreads;
+
+    /** Pool of worker threads, created the first time it is required */
+    private ForkJoinPool pool;
+
+    public LocalPool(int numThreads) {
+      this.numThreads = numThreads;
+    }
+
+    public ForkJoinPool getPool() {
+      if (this.pool == null) this.pool = new ForkJoinPool(this.numThreads);
+      return this.pool;
+    }
+
+    public void shutdown() {
+      if (this.pool != null) this.pool.shutdown();
+    }
+  }
+
+  /** Inner class that keeps the state of each thread that takes part in an execution */
+  private static class Workers {
+
+    /** Deadline of the executions without timeout */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** Objects to be run, or null if an interval of indexes is run */
     private final Object[] objects;
-    private final Partible partible;
 
-    public PartibleThread(int threadIndex, Partible partible, Object[] objects, int numThreads) {
-      this.threadIndex = threadIndex;
-      this.partible = partible;
+    private final Partible<Object> partible;
+
+    /** Partible casted to ContextPartible, or null if it does not require a context */
+    private final ContextPartible<Object, Object> contextPartible;
+
+    /** First index of the interval run by the IntPartible */
+    private final int offset;
+
+    private final IntPartible intPartible;
+
+    private final Map<Thread, Worker> workers = new ConcurrentHashMap<>();
+
+    /** Thread that has called exec(...). The execution is cancelled if it is interrupted */
+    private final Thread caller = Thread.currentThread();
+
+    /** Value of System.nanoTime() at which the execution is cancelled */
+    private final long deadline;
+
+    /** First exception thrown by the Partible */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private volatile boolean cancelled;
+
+    // The Partible receives the elements of objects, so it accepts any Object passed to it
+    @SuppressWarnings("unchecked")
+    public Workers(Object[] objects, Partible<?> partible, long deadline) {
       this.objects = objects;
-      this.numThreads = numThreads;
+      this.partible = (Partible<Object>) partible;
+      this.contextPartible =
+          (partible instanceof ContextPartible)
+              ? (ContextPartible<Object, Object>) partible
+              : null;
+      this.offset = 0;
+      this.intPartible = null;
+      this.deadline = deadline;
+    }
+
+    public Workers(int offset, IntPartible intPartible, long deadline) {
+      this.objects = null;
+      this.partible = null;
+      this.contextPartible = null;
+      this.offset = offset;
+      this.intPartible = intPartible;
+      this.deadline = deadline;
+    }
+
+    /** Runs a range of indexes in the current thread */
+    @SuppressWarnings("unchecked")
+    public void run(int from, int to) {
+      if (this.isCancelled()) return;
+
+      Worker worker = this.workers.computeIfAbsent(Thread.currentThread(), this::createWorker);
+      long start = System.nanoTime();
+      try {
+        if (this.intPartible != null) {
+          this.intPartible.run(this.offset + from, this.offset + to);
+        } else if (this.contextPartible != null) {
+          for (int i = from; i < to && !this.isCancelled(); i++) {
+            this.contextPartible.run(this.objects[i], worker.context);
+          }
+        } else {
+          for (int i = from; i < to && !this.isCancelled(); i++) {
+            this.partible.run(this.objects[i]);
+          }
+        }
+      } catch (Throwable t) {
+        this.fail(t);
+      } finally {
+        worker.busyTime += System.nanoTime() - start;
+      }
+    }
+
+    /** Checks if the execution has been cancelled, cancelling it if the deadline has expired */
+    public boolean isCancelled() {
+      if (!this.cancelled
+          && (this.caller.isInterrupted()
+              || (this.deadline != NO_DEADLINE && System.nanoTime() - this.deadline > 0))) {
+        this.cancelled = true;
+      }
+      return this.cancelled;
+    }
 
-      this.thread = new Thread(this, String.valueOf(threadIndex));
-      this.thread.start();
+    /** Cancels the execution */
+    public void cancel() {
+      this.cancelled = true;
     }
 
-    public Thread getThread() {
-      return this.thread;
+    /** Records an exception thrown by the Partible and cancels the execution */
+    public void fail(Throwable t) {
+      if (!this.failure.compareAndSet(null, t) && this.failure.get() != t) {
+        this.failure.get().addSuppressed(t);
+      }
+      this.cancelled = true;
+    }
+
+    /** Throws the first exception of the Partible, or a CancellationException if cancelled */
+    public void checkCompleted() {
+      Throwable t = this.failure.get();
+      if (t instanceof RuntimeException) {
+        throw (RuntimeException) t;
+      } else if (t instanceof Error) {
+        throw (Error) t;
+      } else if (t != null) {
+        throw new RuntimeException(t);
+      } else if (this.cancelled) {
+        if (this.caller.isInterrupted()) {
+          throw new CancellationException("Parallel execution interrupted");
+        } else {
+          throw new CancellationException("Parallel execution exceeded its deadline");
+        }
+      }
+    }
+
+    private Worker createWorker(Thread thread) {
+      Worker worker = new Worker();
+      if (this.contextPartible != null) worker.context = this.contextPartible.createContext();
+      return worker;
+    }
+
+    /** Time in nanoseconds that each thread has been busy */
+    public long[] getBusyTimes() {
+      return this.workers.values().stream().mapToLong(worker -> worker.busyTime).toArray();
+    }
+  }
+
+  /** Inner class with the state of a thread. It is only modified by its own thread */
+  private static class Worker {
+    private Object context;
+    private long busyTime;
+  }
+
+  /** Inner class used to handle parallel execution of a range of indexes */
+  private static class PartibleTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 20200314L;
+
+    private final Workers workers;
+
+    /** Cumulative cost of the indexes, or null if all the indexes have the same cost */
+    private final long[] cumulativeCosts;
+
+    private final int from;
+    private final int to;
+
+    /** Maximum cost of the ranges that are not split */
+    private final long rangeCost;
+
+    public PartibleTask(Workers workers, long[] cumulativeCosts, int from, int to, long rangeCost) {
+      this.workers = workers;
+      this.cumulativeCosts = cumulativeCosts;
+      this.from = from;
+      this.to = to;
+      this.rangeCost = rangeCost;
+    }
+
+    /** Cumulative cost of the indexes before the index */
+    private long cumulativeCost(int index) {
+      return (this.cumulativeCosts == null) ? index : this.cumulativeCosts[index];
     }
 
     @Override
-    public void run() {
-      for (int i = this.threadIndex; i < this.objects.length; i += this.numThreads) {
-        partible.run(this.objects[i]);
+    protected void compute() {
+      if (this.workers.isCancelled()) {
+        // skip the ranges of a cancelled execution
+        return;
+      } else if (this.to - this.from <= 1
+          || this.cumulativeCost(this.to) - this.cumulativeCost(this.from) <= this.rangeCost) {
+        this.workers.run(this.from, this.to);
+      } else {
+        int middle = this.middle();
+        invokeAll(this.range(this.from, middle), this.range(middle, this.to));
+      }
+    }
+
+    /** Index that splits the range into two ranges with a similar cost */
+    private int middle() {
+      long half = (this.cumulativeCost(this.from) + this.cumulativeCost(this.to)) / 2;
+      int low = this.from + 1;
+      int high = this.to - 1;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (this.cumulativeCost(middle) < half) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
       }
+      return low;
+    }
+
+    /** Task that runs a subrange of the indexes */
+    private PartibleTask range(int from, int to) {
+      return new PartibleTask(this.workers, this.cumulativeCosts, from, to, this.rangeCost);
     }
   }
 }
@@ -26,6 +26,9 @@ public interface Partible<T> {
    */
   void run(T object);
 
-  /** Is executed once after execute the method exec. It can be used to close resources. */
+  /**
+   * Is executed once after execute the method exec. It can be used to close resources. It is not
+   * executed if run(T object) throws an exception or the execution is cancelled.
+   */
   void afterRun();
 }
@@ -3,6 +3,7 @@ package es.upm.etsisi.cf4j.data;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -103,4 +104,146 @@ class DataModelTest {
     DataModel auxDataModel = DataModel.load(serializedFilename);
     assertEquals(auxDataModel.toString(), serializedResultString);
   }
+
+  @Test
+  void compact() {
+    DataModel compactDataModel = new DataModel(new MockDataSet());
+    compactDataModel.compact();
+
+    for (int userIndex = 0; userIndex < dataModel.getNumberOfUsers(); userIndex++) {
+      User user = dataModel.getUser(userIndex);
+      User compactUser = compactDataModel.getUser(userIndex);
+      assertEquals(user.getNumberOfRatings(), compactUser.getNumberOfRatings());
+      for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
+        assertEquals(user.getItemAt(pos), compactUser.getItemAt(pos));
+        assertEquals(user.getRatingAt(pos), compactUser.getRatingAt(pos));
+        assertEquals(pos, compactUser.findItem(user.getItemAt(pos)));
+      }
+    }
+
+    for (int itemIndex = 0; itemIndex < dataModel.getNumberOfItems(); itemIndex++) {
+      Item item = dataModel.getItem(itemIndex);
+      Item compactItem = compactDataModel.getItem(itemIndex);
+      assertEquals(item.getNumberOfRatings(), compactItem.getNumberOfRatings());
+      for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
+        assertEquals(item.getUserAt(pos), compactItem.getUserAt(pos));
+        assertEquals(item.getRatingAt(pos), compactItem.getRatingAt(pos));
+        assertEquals(pos, compactItem.findUser(item.getUserAt(pos)));
+      }
+    }
+
+    TestUser testUser = compactDataModel.getTestUser(0);
+    assertEquals(2, testUser.getNumberOfTestRatings());
+    assertEquals(1.0, testUser.getTestRatingAt(testUser.findTestItem(0)));
+    assertEquals(-1, compactDataModel.getUser(3).findItem(42));
+
+    // Positions out of the ratings of a user or item are not read from the next one
+    User user = compactDataModel.getUser(0);
+    Item item = compactDataModel.getItem(0);
+    assertThrows(IndexOutOfBoundsException.class, () -> user.getItemAt(user.getNumberOfRatings()));
+    assertThrows(IndexOutOfBoundsException.class, () -> user.getRatingAt(-1));
+    assertThrows(IndexOutOfBoundsException.class, () -> item.getUserAt(item.getNumberOfRatings()));
+    assertThrows(
+        IndexOutOfBoundsException.class,
+        () -> testUser.getTestItemAt(testUser.getNumberOfTestRatings()));
+
+    // Adding ratings after compacting
+    int kim = compactDataModel.findUserIndex("Kim");
+    int milk = compactDataModel.findItemIndex("Milk");
+    compactDataModel.addRating(kim, milk, 2.0);
+    assertEquals(3, compactDataModel.getUser(kim).getNumberOfRatings());
+    assertEquals(2.0, compactDataModel.getUser(kim).getRatingAt(0));
+    assertEquals(3, compactDataModel.getItem(milk).getNumberOfRatings());
+    assertEquals(12, compactDataModel.getNumberOfRatings());
+  }
+
+  @Test
+  void bulkCompact() {
+    DataModel bulkDataModel = new DataModel(new MockDataSet(), true);
+    assertSameRatings(dataModel, bulkDataModel);
+  }
+
+  @Test
+  void binary() throws IOException, ClassNotFoundException {
+    // Mapped files must not be overwritten while they are in use
+    File binaryFile = File.createTempFile("dataset", ".bin");
+    File floatBinaryFile = File.createTempFile("dataset", ".bin");
+    binaryFile.deleteOnExit();
+    floatBinaryFile.deleteOnExit();
+
+    dataModel.saveBinary(binaryFile.getPath());
+    DataModel binaryDataModel = DataModel.loadBinary(binaryFile.getPath());
+    assertEquals(serializedResultString, binaryDataModel.toString());
+    assertSameRatings(dataModel, binaryDataModel);
+    assertEquals(dataModel.findUserIndex("Kim"), binaryDataModel.findUserIndex("Kim"));
+    assertEquals(dataModel.findTestItemIndex("Milk"), binaryDataModel.findTestItemIndex("Milk"));
+    assertEquals(-1, binaryDataModel.findItemIndex("Bread"));
+
+    // Mapped ratings are serialized as heap copies
+    binaryDataModel.save(serializedFilename);
+    assertSameRatings(dataModel, DataModel.load(serializedFilename));
+
+    DataModel floatDataModel = new DataModel(new MockDataSet());
+    floatDataModel.compact(true);
+    floatDataModel.saveBinary(floatBinaryFile.getPath());
+    DataModel floatBinaryDataModel = DataModel.loadBinary(floatBinaryFile.getPath());
+    assertTrue(floatBinaryDataModel.getUser(0).compactItemsRatings.isFloatPrecision());
+    assertSameRatings(dataModel, floatBinaryDataModel);
+  }
+
+  private static void assertSameRatings(DataModel dataModel, DataModel otherDataModel) {
+    assertEquals(dataModel.toString(), otherDataModel.toString());
+
+    for (int userIndex = 0; userIndex < dataModel.getNumberOfUsers(); userIndex++) {
+      User user = dataModel.getUser(userIndex);
+      User otherUser = otherDataModel.getUser(userIndex);
+      assertEquals(user.getId(), otherUser.getId());
+      assertEquals(user.getMinRating(), otherUser.getMinRating());
+      assertEquals(user.getMaxRating(), otherUser.getMaxRating());
+      assertEquals(user.getRatingAverage(), otherUser.getRatingAverage());
+      assertEquals(user.getNumberOfRatings(), otherUser.getNumberOfRatings());
+      for (int pos = 0; pos < user.getNumberOfRatings(); pos++) {
+        assertEquals(user.getItemAt(pos), otherUser.getItemAt(pos));
+        assertEquals(user.getRatingAt(pos), otherUser.getRatingAt(pos));
+      }
+    }
+
+    for (int itemIndex = 0; itemIndex < dataModel.getNumberOfItems(); itemIndex++) {
+      Item item = dataModel.getItem(itemIndex);
+      Item otherItem = otherDataModel.getItem(itemIndex);
+      assertEquals(item.getId(), otherItem.getId());
+      assertEquals(item.getMinRating(), otherItem.getMinRating());
+      assertEquals(item.getMaxRating(), otherItem.getMaxRating());
+      assertEquals(item.getRatingAverage(), otherItem.getRatingAverage());
+      assertEquals(item.getNumberOfRatings(), otherItem.getNumberOfRatings());
+      for (int pos = 0; pos < item.getNumberOfRatings(); pos++) {
+        assertEquals(item.getUserAt(pos), otherItem.getUserAt(pos));
+        assertEquals(item.getRatingAt(pos), otherItem.getRatingAt(pos));
+      }
+    }
+
+    for (int testUserIndex = 0; testUserIndex < dataModel.getNumberOfTestUsers(); testUserIndex++) {
+      TestUser testUser = dataModel.getTestUser(testUserIndex);
+      TestUser otherTestUser = otherDataModel.getTestUser(testUserIndex);
+      assertEquals(testUser.getUserIndex(), otherTestUser.getUserIndex());
+      assertEquals(testUser.getTestRatingAverage(), otherTestUser.getTestRatingAverage());
+      assertEquals(testUser.getNumberOfTestRatings(), otherTestUser.getNumberOfTestRatings());
+      for (int pos = 0; pos < testUser.getNumberOfTestRatings(); pos++) {
+        assertEquals(testUser.getTestItemAt(pos), otherTestUser.getTestItemAt(pos));
+        assertEquals(testUser.getTestRatingAt(pos), otherTestUser.getTestRatingAt(pos));
+      }
+    }
+
+    for (int testItemIndex = 0; testItemIndex < dataModel.getNumberOfTestItems(); testItemIndex++) {
+      TestItem testItem = dataModel.getTestItem(testItemIndex);
+      TestItem otherTestItem = otherDataModel.getTestItem(testItemIndex);
+      assertEquals(testItem.getItemIndex(), otherTestItem.getItemIndex());
+      assertEquals(testItem.getTestRatingAverage(), otherTestItem.getTestRatingAverage());
+      assertEquals(testItem.getNumberOfTestRatings(), otherTestItem.getNumberOfTestRatings());
+      for (int pos = 0; pos < testItem.getNumberOfTestRatings(); pos++) {
+        assertEquals(testItem.getTestUserAt(pos), otherTestItem.getTestUserAt(pos));
+        assertEquals(testItem.getTestRatingAt(pos), otherTestItem.getTestRatingAt(pos));
+      }
+    }
+  }
 }
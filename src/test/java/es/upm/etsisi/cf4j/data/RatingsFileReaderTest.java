@@ -0,0 +1,159 @@
+package es.upm.etsisi.cf4j.data;
+
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class RatingsFileReaderTest {
+
+  private static final String filename = "src/test/resources/trainingPartDataset.data";
+
+  @Test
+  void read() throws IOException {
+    List<DataSetEntry> entries = RatingsFileReader.read(filename, ";");
+    assertEquals(11, entries.size());
+    assertEquals(new DataSetEntry("Laurie", "Potatoad", 3.1), entries.get(0));
+    assertEquals(new DataSetEntry("Laurie", "Yeah,IsWired", 3.2), entries.get(1));
+  }
+
+  @Test
+  void readChunks() throws IOException {
+    List<DataSetEntry> expected = RatingsFileReader.read(filename, ";");
+    for (int chunkSize = 1; chunkSize <= 64; chunkSize++) {
+      assertEquals(expected, RatingsFileReader.read(filename, ";", chunkSize));
+    }
+
+    // Lines longer than the buffer used to find the line breaks and last line without line break
+    File file = File.createTempFile("ratings", ".data");
+    file.deleteOnExit();
+    StringBuilder longId = new StringBuilder();
+    for (int i = 0; i < 10000; i++) longId.append('u');
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("1;10;4.5\n" + longId + ";20;3\n2;30;1\n3;40;2");
+    }
+
+    expected = RatingsFileReader.read(file.getPath(), ";");
+    assertEquals(4, expected.size());
+    assertEquals(new DataSetEntry(longId.toString(), "20", 3.0), expected.get(1));
+    for (int chunkSize : new int[] {1, 3, 9, 10, 100, 5000}) {
+      assertEquals(expected, RatingsFileReader.read(file.getPath(), ";", chunkSize));
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> RatingsFileReader.read(filename, ";", 0));
+  }
+
+  @Test
+  void readSeparators() throws IOException {
+    File file = File.createTempFile("ratings", ".data");
+    file.deleteOnExit();
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("1::10::4.5\r\n2::20::-3\r\n");
+    }
+
+    List<DataSetEntry> entries = RatingsFileReader.read(file.getPath(), "::");
+    assertEquals(new DataSetEntry("1", "10", 4.5), entries.get(0));
+    assertEquals(new DataSetEntry("2", "20", -3.0), entries.get(1));
+
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("1  10 4.5\n2 20    1e2\n");
+    }
+
+    entries = RatingsFileReader.read(file.getPath(), "\\s+");
+    assertEquals(new DataSetEntry("1", "10", 4.5), entries.get(0));
+    assertEquals(new DataSetEntry("2", "20", 100.0), entries.get(1));
+
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("1;10\n");
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> RatingsFileReader.read(file.getPath(), ";"));
+  }
+
+  @Test
+  void iterator() throws IOException {
+    File file = File.createTempFile("ratings", ".data");
+    file.deleteOnExit();
+
+    // Lines longer than the buffer of the iterator and last line without line break
+    StringBuilder longId = new StringBuilder();
+    for (int i = 0; i < 100000; i++) longId.append('u');
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("1;10;4.5\n" + longId + ";20;3\n2;30;1");
+    }
+
+    Iterator<DataSetEntry> it = RatingsFileReader.iterator(file.getPath(), ";");
+    assertEquals(new DataSetEntry("1", "10", 4.5), it.next());
+    assertEquals(new DataSetEntry(longId.toString(), "20", 3.0), it.next());
+    assertEquals(new DataSetEntry("2", "30", 1.0), it.next());
+    assertFalse(it.hasNext());
+
+    it = RatingsFileReader.iterator(filename, ";");
+    for (DataSetEntry entry : RatingsFileReader.read(filename, ";")) {
+      assertEquals(entry, it.next());
+    }
+    assertFalse(it.hasNext());
+  }
+
+  @Test
+  void iteratorClose() throws IOException {
+    File fds = new File("/proc/self/fd");
+    assumeTrue(fds.isDirectory());
+    int numFds = fds.list().length;
+
+    // Iterators abandoned before their end are closed by the caller
+    RatingsFileReader.CloseableIterator<DataSetEntry> it =
+        RatingsFileReader.iterator(filename, ";");
+    assertTrue(it.hasNext());
+    it.next();
+    it.close();
+    it.close();
+    assertFalse(it.hasNext());
+    assertThrows(NoSuchElementException.class, it::next);
+    assertEquals(numFds, fds.list().length);
+
+    // Iterators that fail are closed by themselves
+    File file = File.createTempFile("ratings", ".data");
+    file.deleteOnExit();
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("1;10;4.5\n2;20\n3;30;1");
+    }
+
+    Iterator<DataSetEntry> invalid = RatingsFileReader.iterator(file.getPath(), ";");
+    assertThrows(IllegalArgumentException.class, invalid::next);
+    assertEquals(numFds, fds.list().length);
+  }
+
+  @Test
+  void parseDouble() {
+    Random rand = new Random(43);
+    for (int i = 0; i < 100000; i++) {
+      String number = String.valueOf(rand.nextInt(100000) / Math.pow(10, rand.nextInt(6)));
+      if (rand.nextBoolean()) number = "-" + number;
+      assertParseDouble(number);
+    }
+
+    String[] numbers = {"5", "+5", "5.", ".5", "0.1", "-0", "0.30000000000000004", "1e3", " 4 "};
+    for (String number : numbers) {
+      assertParseDouble(number);
+    }
+
+    byte[] bytes = "abc".getBytes(StandardCharsets.US_ASCII);
+    assertThrows(NumberFormatException.class, () -> RatingsFileReader.parseDouble(bytes, 0, 3));
+  }
+
+  private static void assertParseDouble(String number) {
+    byte[] bytes = number.getBytes(StandardCharsets.US_ASCII);
+    assertEquals(Double.parseDouble(number), RatingsFileReader.parseDouble(bytes, 0, bytes.length));
+  }
+}
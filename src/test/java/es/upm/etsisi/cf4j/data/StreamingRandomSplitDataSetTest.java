@@ -0,0 +1,53 @@
+package es.upm.etsisi.cf4j.data;
+
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingRandomSplitDataSetTest {
+
+  private static final String filename = "src/test/resources/mockDataset.data";
+  private static final long seed = 246;
+  private static final double testUsersPercentage = 0.5;
+  private static final double testItemsPercentage = 0.5;
+
+  private static DataSet dataSet;
+  private static DataSet streamingDataSet;
+
+  @BeforeAll
+  static void initAll() throws IOException {
+    dataSet = new RandomSplitDataSet(filename, testUsersPercentage, testItemsPercentage, seed);
+    streamingDataSet =
+        new StreamingRandomSplitDataSet(filename, testUsersPercentage, testItemsPercentage, seed);
+  }
+
+  @Test
+  void numRatings() {
+    assertEquals(dataSet.getNumberOfRatings(), streamingDataSet.getNumberOfRatings());
+    assertEquals(dataSet.getNumberOfTestRatings(), streamingDataSet.getNumberOfTestRatings());
+  }
+
+  @Test
+  void iterators() {
+    // Iterators can be requested several times
+    for (int i = 0; i < 2; i++) {
+      assertSameEntries(dataSet.getRatingsIterator(), streamingDataSet.getRatingsIterator());
+      assertSameEntries(
+          dataSet.getTestRatingsIterator(), streamingDataSet.getTestRatingsIterator());
+    }
+  }
+
+  private static void assertSameEntries(
+      Iterator<DataSetEntry> expected, Iterator<DataSetEntry> actual) {
+    while (expected.hasNext()) {
+      assertTrue(actual.hasNext());
+      assertEquals(expected.next(), actual.next());
+    }
+    assertFalse(actual.hasNext());
+  }
+}
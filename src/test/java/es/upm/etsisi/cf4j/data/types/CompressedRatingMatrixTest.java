@@ -0,0 +1,69 @@
+package es.upm.etsisi.cf4j.data.types;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedRatingMatrixTest {
+
+  private static final int[] offsets = {0, 3, 3, 5};
+  private static final int[] indexes = {1, 4, 7, 0, 7};
+  private static final double[] ratings = {1.5, 2.0, 3.0, 4.5, 5.0};
+
+  @Test
+  void rows() {
+    CompressedRatingMatrix matrix = new CompressedRatingMatrix(offsets, indexes, ratings);
+
+    assertEquals(3, matrix.getNumberOfRows());
+    assertEquals(5, matrix.getNumberOfRatings());
+    assertFalse(matrix.isFloatPrecision());
+
+    assertEquals(0, matrix.getRowOffset(0));
+    assertEquals(3, matrix.getRowLength(0));
+    assertEquals(0, matrix.getRowLength(1));
+    assertEquals(3, matrix.getRowOffset(2));
+    assertEquals(2, matrix.getRowLength(2));
+
+    assertEquals(7, matrix.getIndex(2));
+    assertEquals(3.0, matrix.getRating(2));
+    assertEquals(0, matrix.getIndex(3));
+    assertEquals(4.5, matrix.getRating(3));
+  }
+
+  @Test
+  void find() {
+    CompressedRatingMatrix matrix = new CompressedRatingMatrix(offsets, indexes, ratings);
+
+    assertEquals(0, matrix.find(0, 3, 1));
+    assertEquals(1, matrix.find(0, 3, 4));
+    assertEquals(2, matrix.find(0, 3, 7));
+    assertEquals(-1, matrix.find(0, 3, 0));
+    assertEquals(-1, matrix.find(3, 0, 7));
+    assertEquals(1, matrix.find(3, 2, 7));
+    assertEquals(-1, matrix.find(3, 2, 4));
+  }
+
+  @Test
+  void floatPrecision() {
+    float[] floatRatings = {1.5f, 2.0f, 3.0f, 4.5f, 5.0f};
+    CompressedRatingMatrix matrix = new CompressedRatingMatrix(offsets, indexes, floatRatings);
+
+    assertTrue(matrix.isFloatPrecision());
+    assertEquals(4.5, matrix.getRating(3));
+
+    SortedRatingList list = matrix.toSortedRatingList(3, 2);
+    assertEquals(2, list.size());
+    assertEquals(0, list.get(0).getIndex());
+    assertEquals(5.0, list.get(1).getRating());
+  }
+
+  @Test
+  void invalidArrays() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new CompressedRatingMatrix(new int[] {0, 2}, indexes, ratings));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new CompressedRatingMatrix(offsets, new int[] {1, 2}, ratings));
+  }
+}
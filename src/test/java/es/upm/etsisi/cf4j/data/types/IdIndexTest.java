@@ -0,0 +1,48 @@
+package es.upm.etsisi.cf4j.data.types;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdIndexTest {
+
+  private static final String[] ids = {"Tim", "Kim", "Laurie", "Mike", "Aa", "BB"};
+
+  @Test
+  void get() {
+    IdIndex index = new IdIndex(ids);
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(i, index.get(ids[i]));
+    }
+    assertEquals(-1, index.get("Bob"));
+    assertEquals(-1, new IdIndex(new String[0]).get("Bob"));
+  }
+
+  @Test
+  void restore() {
+    IdIndex index = new IdIndex(ids);
+    assertEquals(16, index.getSlots().length);
+
+    IdIndex restored = new IdIndex(ids, index.getSlots().clone());
+    assertEquals(3, restored.get("Mike"));
+    assertThrows(IllegalArgumentException.class, () -> new IdIndex(ids, new int[8]));
+  }
+
+  @Test
+  void repeatedId() {
+    assertThrows(IllegalArgumentException.class, () -> new IdIndex(new String[] {"Aa", "Aa"}));
+  }
+
+  @Test
+  void add() {
+    IdIndex index = new IdIndex();
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(i, index.add(ids[i]));
+    }
+    assertEquals(2, index.add("Laurie"));
+    assertEquals(ids.length, index.size());
+    assertEquals(IdIndex.capacity(ids.length), index.getSlots().length);
+    assertEquals(3, new IdIndex(ids, index.getSlots().clone()).get("Mike"));
+    assertEquals(-1, index.get("Bob"));
+  }
+}
@@ -2,10 +2,14 @@ package es.upm.etsisi.cf4j.recommender.knn;
 
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.data.TestUser;
+import es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric.Cosine;
 import es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric.ItemSimilarityMetricMock;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class ItemKNNTest {
@@ -51,4 +55,28 @@ public class ItemKNNTest {
         iKNN.predict(testUserId, testItemId),
         iKNN.predict(datamodel.getTestUser(testUserId))[testItemId]);
   }
+
+  @Test
+  void topKSimilaritiesTest() {
+    for (ItemKNN.AggregationApproach approach : ItemKNN.AggregationApproach.values()) {
+      ItemKNN dense = new ItemKNN(datamodel, numberOfNeighbors, new Cosine(), approach);
+      dense.fit();
+
+      ItemKNN topK = new ItemKNN(datamodel, numberOfNeighbors, new Cosine(), approach, true);
+      topK.fit();
+
+      for (TestUser testUser : datamodel.getTestUsers()) {
+        assertArrayEquals(dense.predict(testUser), topK.predict(testUser));
+      }
+    }
+
+    // Similarities lower than the threshold are not stored
+    Cosine metric = new Cosine();
+    metric.setDatamodel(datamodel, numberOfNeighbors, 1.1);
+    Parallelizer.exec(datamodel.getItems(), metric);
+    for (int itemIndex = 0; itemIndex < datamodel.getNumberOfItems(); itemIndex++) {
+      assertArrayEquals(new int[] {-1, -1}, metric.getNeighbors(itemIndex));
+      assertEquals(Double.NEGATIVE_INFINITY, metric.getSimilarity(itemIndex, 0));
+    }
+  }
 }
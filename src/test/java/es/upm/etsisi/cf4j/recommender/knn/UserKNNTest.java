@@ -2,10 +2,16 @@ package es.upm.etsisi.cf4j.recommender.knn;
 
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.data.TestUser;
+import es.upm.etsisi.cf4j.recommender.knn.lsh.MinHashLSH;
+import es.upm.etsisi.cf4j.recommender.knn.lsh.SimHashLSH;
+import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.Cosine;
+import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.Jaccard;
 import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.UserSimilarityMetricMock;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class UserKNNTest {
@@ -64,4 +70,50 @@ public class UserKNNTest {
         uKNN.predict(testUserId, testItemId),
         uKNN.predict(datamodel.getTestUser(testUserId))[testItemId]);
   }
+
+  @Test
+  void topKSimilaritiesTest() {
+    for (UserKNN.AggregationApproach approach : UserKNN.AggregationApproach.values()) {
+      UserKNN dense = new UserKNN(datamodel, numberOfNeighbors, new Cosine(), approach);
+      dense.fit();
+
+      Cosine metric = new Cosine();
+      UserKNN topK = new UserKNN(datamodel, numberOfNeighbors, metric, approach, true);
+      topK.fit();
+
+      assertEquals(numberOfNeighbors, metric.getNumberOfNeighbors());
+      assertEquals(numberOfNeighbors, metric.getNeighbors(testUserId).length);
+      for (TestUser testUser : datamodel.getTestUsers()) {
+        assertArrayEquals(dense.predict(testUser), topK.predict(testUser));
+      }
+    }
+  }
+
+  @Test
+  void lshTest() {
+    for (UserKNN.AggregationApproach approach : UserKNN.AggregationApproach.values()) {
+      UserKNN exact = new UserKNN(datamodel, numberOfNeighbors, new Jaccard(), approach, true);
+      exact.fit();
+
+      MinHashLSH minHash = new MinHashLSH(datamodel, 50, 1, 43);
+      UserKNN approximate =
+          new UserKNN(datamodel, numberOfNeighbors, new Jaccard(), approach, minHash);
+      approximate.fit();
+
+      for (TestUser testUser : datamodel.getTestUsers()) {
+        assertArrayEquals(exact.predict(testUser), approximate.predict(testUser));
+      }
+
+      exact = new UserKNN(datamodel, numberOfNeighbors, new Cosine(), approach, true);
+      exact.fit();
+
+      SimHashLSH simHash = new SimHashLSH(datamodel, 50, 1, false, 43);
+      approximate = new UserKNN(datamodel, numberOfNeighbors, new Cosine(), approach, simHash);
+      approximate.fit();
+
+      for (TestUser testUser : datamodel.getTestUsers()) {
+        assertArrayEquals(exact.predict(testUser), approximate.predict(testUser));
+      }
+    }
+  }
 }
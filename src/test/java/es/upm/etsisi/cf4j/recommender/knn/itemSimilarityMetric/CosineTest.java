@@ -3,10 +3,13 @@ package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.Item;
 import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class CosineTest {
 
@@ -31,4 +34,56 @@ class CosineTest {
     assertEquals(1.0, sim.similarity(item0, item2));
     sim.afterRun();
   }
+
+  @Test
+  void symmetricSimilarities() {
+    Cosine sim = new Cosine();
+    sim.setDatamodel(datamodel);
+    assertTrue(sim.isSymmetric());
+
+    Parallelizer.exec(datamodel.getItems(), sim, 2, sim.getCostHint());
+
+    int numItems = datamodel.getNumberOfItems();
+    for (int i = 0; i < numItems; i++) {
+      assertEquals(Double.NEGATIVE_INFINITY, sim.getSimilarity(i, i));
+      for (int j = 0; j < numItems; j++) {
+        if (i != j) {
+          Item item = datamodel.getItem(i);
+          Item otherItem = datamodel.getItem(j);
+          assertEquals(sim.similarity(item, otherItem), sim.getSimilarity(i, j));
+        }
+      }
+    }
+  }
+
+  @Test
+  void invertedIndex() {
+    Cosine sim = new Cosine();
+    sim.setDatamodel(datamodel);
+    Parallelizer.exec(datamodel.getItems(), sim);
+
+    Cosine invertedSim = new Cosine();
+    invertedSim.setDatamodel(datamodel);
+    invertedSim.setInvertedIndex(true);
+    Parallelizer.exec(datamodel.getItems(), invertedSim, 2, invertedSim.getCostHint());
+
+    for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
+      assertArrayEquals(sim.getSimilarities(i), invertedSim.getSimilarities(i));
+    }
+
+    Cosine topKSim = new Cosine();
+    topKSim.setDatamodel(datamodel, 2);
+    Parallelizer.exec(datamodel.getItems(), topKSim);
+
+    Cosine invertedTopKSim = new Cosine();
+    invertedTopKSim.setDatamodel(datamodel, 2);
+    invertedTopKSim.setInvertedIndex(true);
+    Parallelizer.exec(datamodel.getItems(), invertedTopKSim, 2, null);
+
+    for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
+      assertArrayEquals(topKSim.getNeighbors(i), invertedTopKSim.getNeighbors(i));
+      assertArrayEquals(
+          topKSim.getNeighborSimilarities(i), invertedTopKSim.getNeighborSimilarities(i));
+    }
+  }
 }
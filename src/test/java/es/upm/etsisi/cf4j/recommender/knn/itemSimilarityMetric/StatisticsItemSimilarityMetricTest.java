@@ -0,0 +1,78 @@
+package es.upm.etsisi.cf4j.recommender.knn.itemSimilarityMetric;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.data.Item;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatisticsItemSimilarityMetricTest {
+
+  private static DataModel datamodel;
+
+  @BeforeAll
+  static void initAll() {
+    datamodel = new DataModel(new MockDataSet());
+  }
+
+  @Test
+  void customMetric() {
+    StatisticsItemSimilarityMetric sim = new MeanProduct();
+    sim.setDatamodel(datamodel);
+    Parallelizer.exec(datamodel.getItems(), sim);
+
+    StatisticsItemSimilarityMetric invertedSim = new MeanProduct();
+    invertedSim.setDatamodel(datamodel);
+    invertedSim.setInvertedIndex(true);
+    Parallelizer.exec(datamodel.getItems(), invertedSim);
+
+    for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
+      assertArrayEquals(sim.getSimilarities(i), invertedSim.getSimilarities(i));
+    }
+  }
+
+  @Test
+  void coRatingsBasedMetrics() {
+    ItemSimilarityMetric[] metrics = {
+      new Correlation(),
+      new CorrelationConstrained(3),
+      new Cosine(),
+      new Jaccard(),
+      new JMSD(),
+      new MSD(),
+      new SpearmanRank()
+    };
+
+    for (ItemSimilarityMetric metric : metrics) {
+      assertTrue(metric instanceof StatisticsItemSimilarityMetric);
+      metric.setDatamodel(datamodel);
+      metric.setInvertedIndex(true);
+      Parallelizer.exec(datamodel.getItems(), metric);
+
+      for (int i = 0; i < datamodel.getNumberOfItems(); i++) {
+        for (int j = 0; j < datamodel.getNumberOfItems(); j++) {
+          if (i != j) {
+            Item item = datamodel.getItem(i);
+            Item otherItem = datamodel.getItem(j);
+            assertEquals(metric.similarity(item, otherItem), metric.getSimilarity(i, j), 1e-12);
+          }
+        }
+      }
+    }
+  }
+
+  /** Mean of the products of the co-ratings */
+  private static class MeanProduct extends StatisticsItemSimilarityMetric {
+
+    @Override
+    public double similarity(Item item, Item otherItem, PairStatistics statistics) {
+      return statistics.getSumXY() / statistics.getCount();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package es.upm.etsisi.cf4j.recommender.knn.lsh;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.MockDataSet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LSHTest {
+
+  private static DataModel datamodel;
+
+  @BeforeAll
+  static void initAll() {
+    datamodel = new DataModel(new MockDataSet());
+  }
+
+  @Test
+  void candidates() {
+    LSH[] lshs = {
+      new MinHashLSH(datamodel, 10, 2, 43),
+      new SimHashLSH(datamodel, 10, 2, false, 43),
+      new SimHashLSH(datamodel, 10, 2, true, 43)
+    };
+
+    for (LSH lsh : lshs) {
+      assertThrows(IllegalStateException.class, () -> lsh.getCandidates(0));
+      lsh.fit();
+
+      for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
+        int[] candidates = lsh.getCandidates(u);
+
+        int[] sorted = candidates.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(sorted, candidates);
+
+        for (int c = 0; c < candidates.length; c++) {
+          assertTrue(candidates[c] != u);
+          assertTrue(c == 0 || candidates[c] != candidates[c - 1]);
+          assertTrue(Arrays.binarySearch(lsh.getCandidates(candidates[c]), u) >= 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  void sameSeed() {
+    MinHashLSH lsh = new MinHashLSH(datamodel, 4, 3, 43);
+    lsh.fit();
+    MinHashLSH otherLsh = new MinHashLSH(datamodel, 4, 3, 43);
+    otherLsh.fit();
+
+    assertEquals(4, lsh.getNumBands());
+    assertEquals(3, lsh.getNumRows());
+    for (int u = 0; u < datamodel.getNumberOfUsers(); u++) {
+      assertArrayEquals(lsh.getCandidates(u), otherLsh.getCandidates(u));
+    }
+  }
+
+  @Test
+  void invalidParameters() {
+    assertThrows(IllegalArgumentException.class, () -> new MinHashLSH(datamodel, 0, 1, 43));
+    assertThrows(IllegalArgumentException.class, () -> new SimHashLSH(datamodel, 1, 0, false, 43));
+  }
+}
@@ -7,6 +7,8 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class CJMSDTest {
@@ -36,4 +38,11 @@ class CJMSDTest {
     assertTrue(sim.similarity(user1, user2) < sim.similarity(user0, user2));
     sim.afterRun();
   }
+
+  @Test
+  void notSymmetric() {
+    CJMSD sim = new CJMSD();
+    assertFalse(sim.isSymmetric());
+    assertThrows(IllegalArgumentException.class, () -> sim.setInvertedIndex(true));
+  }
 }
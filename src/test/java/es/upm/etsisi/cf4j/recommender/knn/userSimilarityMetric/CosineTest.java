@@ -3,9 +3,11 @@ package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.MockDataSet;
 import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -36,4 +38,56 @@ class CosineTest {
     assertTrue(sim.similarity(user1, user2) < sim.similarity(user0, user2));
     sim.afterRun();
   }
+
+  @Test
+  void symmetricSimilarities() {
+    Cosine sim = new Cosine();
+    sim.setDatamodel(datamodel);
+    assertTrue(sim.isSymmetric());
+
+    Parallelizer.exec(datamodel.getUsers(), sim, 2, sim.getCostHint());
+
+    int numUsers = datamodel.getNumberOfUsers();
+    for (int i = 0; i < numUsers; i++) {
+      assertEquals(Double.NEGATIVE_INFINITY, sim.getSimilarity(i, i));
+      for (int j = 0; j < numUsers; j++) {
+        if (i != j) {
+          User user = datamodel.getUser(i);
+          User otherUser = datamodel.getUser(j);
+          assertEquals(sim.similarity(user, otherUser), sim.getSimilarity(i, j));
+        }
+      }
+    }
+  }
+
+  @Test
+  void invertedIndex() {
+    Cosine sim = new Cosine();
+    sim.setDatamodel(datamodel);
+    Parallelizer.exec(datamodel.getUsers(), sim);
+
+    Cosine invertedSim = new Cosine();
+    invertedSim.setDatamodel(datamodel);
+    invertedSim.setInvertedIndex(true);
+    Parallelizer.exec(datamodel.getUsers(), invertedSim, 2, invertedSim.getCostHint());
+
+    for (int i = 0; i < datamodel.getNumberOfUsers(); i++) {
+      assertArrayEquals(sim.getSimilarities(i), invertedSim.getSimilarities(i));
+    }
+
+    Cosine topKSim = new Cosine();
+    topKSim.setDatamodel(datamodel, 2);
+    Parallelizer.exec(datamodel.getUsers(), topKSim);
+
+    Cosine invertedTopKSim = new Cosine();
+    invertedTopKSim.setDatamodel(datamodel, 2);
+    invertedTopKSim.setInvertedIndex(true);
+    Parallelizer.exec(datamodel.getUsers(), invertedTopKSim, 2, null);
+
+    for (int i = 0; i < datamodel.getNumberOfUsers(); i++) {
+      assertArrayEquals(topKSim.getNeighbors(i), invertedTopKSim.getNeighbors(i));
+      assertArrayEquals(
+          topKSim.getNeighborSimilarities(i), invertedTopKSim.getNeighborSimilarities(i));
+    }
+  }
 }
@@ -0,0 +1,78 @@
+package es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.data.User;
+import es.upm.etsisi.cf4j.recommender.knn.PairStatistics;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatisticsUserSimilarityMetricTest {
+
+  private static DataModel datamodel;
+
+  @BeforeAll
+  static void initAll() {
+    datamodel = new DataModel(new MockDataSet());
+  }
+
+  @Test
+  void customMetric() {
+    StatisticsUserSimilarityMetric sim = new MeanProduct();
+    sim.setDatamodel(datamodel);
+    Parallelizer.exec(datamodel.getUsers(), sim);
+
+    StatisticsUserSimilarityMetric invertedSim = new MeanProduct();
+    invertedSim.setDatamodel(datamodel);
+    invertedSim.setInvertedIndex(true);
+    Parallelizer.exec(datamodel.getUsers(), invertedSim);
+
+    for (int i = 0; i < datamodel.getNumberOfUsers(); i++) {
+      assertArrayEquals(sim.getSimilarities(i), invertedSim.getSimilarities(i));
+    }
+  }
+
+  @Test
+  void coRatingsBasedMetrics() {
+    UserSimilarityMetric[] metrics = {
+      new Correlation(),
+      new CorrelationConstrained(3),
+      new Cosine(),
+      new Jaccard(),
+      new JMSD(),
+      new MSD(),
+      new SpearmanRank()
+    };
+
+    for (UserSimilarityMetric metric : metrics) {
+      assertTrue(metric instanceof StatisticsUserSimilarityMetric);
+      metric.setDatamodel(datamodel);
+      metric.setInvertedIndex(true);
+      Parallelizer.exec(datamodel.getUsers(), metric);
+
+      for (int i = 0; i < datamodel.getNumberOfUsers(); i++) {
+        for (int j = 0; j < datamodel.getNumberOfUsers(); j++) {
+          if (i != j) {
+            User user = datamodel.getUser(i);
+            User otherUser = datamodel.getUser(j);
+            assertEquals(metric.similarity(user, otherUser), metric.getSimilarity(i, j), 1e-12);
+          }
+        }
+      }
+    }
+  }
+
+  /** Mean of the products of the co-ratings */
+  private static class MeanProduct extends StatisticsUserSimilarityMetric {
+
+    @Override
+    public double similarity(User user, User otherUser, PairStatistics statistics) {
+      return statistics.getSumXY() / statistics.getCount();
+    }
+  }
+}
@@ -2,9 +2,11 @@ package es.upm.etsisi.cf4j.recommender.matrixFactorization;
 
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class BNMFTest {
@@ -52,4 +54,21 @@ class BNMFTest {
     double[] expectedItemFactors = {0.48860235364345367, 0.19972002360203053};
     Util.checkDoubleArray(expectedItemFactors, bnmf.getItemFactors(1));
   }
+
+  @Test
+  void multiThreadedBnmfTest() {
+    BNMF bnmf = new BNMF(datamodel, numFactors, numIters, 0.2, 1, seed);
+    bnmf.fit();
+
+    BNMF multiThreaded = new BNMF(datamodel, numFactors, numIters, 0.2, 1, seed);
+    Parallelizer.runWithNumThreads(4, multiThreaded::fit);
+
+    for (int userIndex = 0; userIndex < datamodel.getNumberOfUsers(); userIndex++) {
+      assertArrayEquals(bnmf.getGamma(userIndex), multiThreaded.getGamma(userIndex), 1e-9);
+    }
+    for (int itemIndex = 0; itemIndex < datamodel.getNumberOfItems(); itemIndex++) {
+      assertArrayEquals(
+          bnmf.getEpsilonPlus(itemIndex), multiThreaded.getEpsilonPlus(itemIndex), 1e-9);
+    }
+  }
 }
@@ -0,0 +1,267 @@
+package es.upm.etsisi.cf4j.recommender.matrixFactorization;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.data.TrainTestFilesDataSet;
+import es.upm.etsisi.cf4j.qualityMeasure.prediction.MAE;
+import es.upm.etsisi.cf4j.recommender.Recommender;
+import es.upm.etsisi.cf4j.util.Maths;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FactorMatrixTest {
+
+  private static final int seed = 43;
+  private static final int numFactors = 4;
+  private static final int numIters = 10;
+  private static final double[] ratings = {1, 2, 3, 4, 5};
+
+  @Test
+  void doublePrecision() {
+    FactorMatrix matrix = FactorMatrix.create(3, 4, false);
+    double[][] expected = new double[3][4];
+
+    assertEquals(3, matrix.getNumberOfRows());
+    assertEquals(4, matrix.getNumberOfColumns());
+    assertFalse(matrix.isFloatPrecision());
+
+    Random rand = new Random(seed);
+    for (int row = 0; row < 3; row++) {
+      for (int k = 0; k < 4; k++) {
+        double value = rand.nextDouble();
+        expected[row][k] = value;
+        matrix.set(row, k, value);
+        expected[row][k] += 0.1;
+        matrix.add(row, k, 0.1);
+      }
+    }
+
+    for (int row = 0; row < 3; row++) {
+      assertArrayEquals(expected[row], matrix.getRow(row));
+      assertEquals(Maths.dotProduct(expected[row], expected[0]), matrix.dotProduct(row, matrix, 0));
+      assertEquals(
+          Maths.dotProduct(expected[row], expected[1]), matrix.dotProduct(row, expected[1]));
+    }
+
+    // Rows are copies
+    matrix.getRow(0)[0] = -1;
+    assertEquals(expected[0][0], matrix.get(0, 0));
+
+    matrix.setRow(2, new double[] {1, 2, 3, 4});
+    assertArrayEquals(new double[] {1, 2, 3, 4}, matrix.getRow(2));
+
+    matrix.gradientStep(0, matrix, 2, 0.5, 0.01, 0.1);
+    for (int k = 0; k < 4; k++) {
+      expected[0][k] += 0.01 * (0.5 * (k + 1) - 0.1 * expected[0][k]);
+    }
+    assertArrayEquals(expected[0], matrix.getRow(0));
+
+    matrix.fill(0.5);
+    assertArrayEquals(new double[] {0.5, 0.5, 0.5, 0.5}, matrix.getRow(1));
+  }
+
+  @Test
+  void floatPrecision() {
+    FactorMatrix matrix = FactorMatrix.create(2, 3, true);
+    FactorMatrix doubleMatrix = FactorMatrix.create(2, 3, false);
+
+    assertTrue(matrix.isFloatPrecision());
+
+    matrix.set(0, 0, 0.1);
+    assertEquals((float) 0.1, matrix.get(0, 0));
+    matrix.add(0, 0, 0.2);
+    assertEquals((float) ((float) 0.1 + 0.2), matrix.get(0, 0));
+
+    matrix.setRow(1, new double[] {0.3, 0.6, 0.9});
+    assertArrayEquals(new double[] {(float) 0.3, (float) 0.6, (float) 0.9}, matrix.getRow(1));
+
+    doubleMatrix.setRow(1, matrix.getRow(1));
+    double expected = Maths.dotProduct(matrix.getRow(1), matrix.getRow(1));
+    assertEquals(expected, matrix.dotProduct(1, matrix, 1));
+    assertEquals(expected, matrix.dotProduct(1, doubleMatrix, 1));
+    assertEquals(expected, doubleMatrix.dotProduct(1, matrix, 1));
+
+    matrix.fill(0.5);
+    assertArrayEquals(new double[] {0.5, 0.5, 0.5}, matrix.getRow(0));
+  }
+
+  @Test
+  void storage() {
+    for (FactorStorage storage : FactorStorage.values()) {
+      assertEquals(storage, FactorStorage.of(storage.isFloatPrecision(), storage.isOffHeap()));
+
+      FactorMatrix matrix = FactorMatrix.create(3, 4, storage);
+      assertEquals(storage, matrix.getStorage());
+      assertEquals(storage.isFloatPrecision(), matrix.isFloatPrecision());
+      assertEquals(storage.isOffHeap(), matrix.isOffHeap());
+    }
+  }
+
+  @Test
+  void offHeap() throws IOException, ClassNotFoundException {
+    for (boolean floatPrecision : new boolean[] {false, true}) {
+      FactorMatrix matrix = FactorMatrix.createOffHeap(3, 4, floatPrecision);
+      FactorMatrix heapMatrix = FactorMatrix.create(3, 4, floatPrecision);
+
+      assertEquals(3, matrix.getNumberOfRows());
+      assertEquals(4, matrix.getNumberOfColumns());
+      assertEquals(floatPrecision, matrix.isFloatPrecision());
+
+      Random rand = new Random(seed);
+      for (int row = 0; row < 3; row++) {
+        for (int k = 0; k < 4; k++) {
+          double value = rand.nextDouble();
+          matrix.set(row, k, value);
+          heapMatrix.set(row, k, value);
+        }
+      }
+
+      matrix.add(1, 2, 0.1);
+      heapMatrix.add(1, 2, 0.1);
+      matrix.gradientStep(0, matrix, 2, 0.5, 0.01, 0.1);
+      heapMatrix.gradientStep(0, heapMatrix, 2, 0.5, 0.01, 0.1);
+
+      for (int row = 0; row < 3; row++) {
+        assertArrayEquals(heapMatrix.getRow(row), matrix.getRow(row), 1e-6);
+        assertEquals(
+            heapMatrix.dotProduct(row, heapMatrix, 1), matrix.dotProduct(row, heapMatrix, 1), 1e-6);
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+        out.writeObject(matrix);
+      }
+      try (ObjectInputStream in =
+          new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+        FactorMatrix copy = (FactorMatrix) in.readObject();
+        for (int row = 0; row < 3; row++) {
+          assertArrayEquals(matrix.getRow(row), copy.getRow(row));
+        }
+      }
+
+      matrix.fill(0.5);
+      assertArrayEquals(new double[] {0.5, 0.5, 0.5, 0.5}, matrix.getRow(2));
+    }
+  }
+
+  @Test
+  void floatFactorsAccuracy() throws IOException {
+    DataModel[] datamodels = {
+      new DataModel(new MockDataSet()),
+      new DataModel(
+          new TrainTestFilesDataSet(
+              "src/test/resources/trainingPartDataset.data",
+              "src/test/resources/testPartDataset.data"))
+    };
+
+    for (DataModel datamodel : datamodels) {
+      assertSimilarAccuracy(
+          datamodel,
+          floatFactors -> new PMF(datamodel, numFactors, numIters, 0.05, 0.01, seed, floatFactors));
+      assertSimilarAccuracy(
+          datamodel,
+          floatFactors ->
+              new BiasedMF(datamodel, numFactors, numIters, 0.1, 0.01, seed, floatFactors));
+      assertSimilarAccuracy(
+          datamodel, floatFactors -> new NMF(datamodel, numFactors, numIters, seed, floatFactors));
+      assertSimilarAccuracy(
+          datamodel,
+          floatFactors ->
+              new SVDPlusPlus(datamodel, numFactors, numIters, 0.001, 0.01, seed, floatFactors));
+      assertSimilarAccuracy(
+          datamodel,
+          floatFactors ->
+              new BNMF(datamodel, numFactors, numIters, 0.8, 5, 4, seed, floatFactors));
+      assertSimilarAccuracy(
+          datamodel,
+          floatFactors ->
+              new HPF(
+                  datamodel, numFactors, numIters, 0.3, 0.3, 1, 0.3, 0.3, 1, seed, floatFactors));
+      assertSimilarAccuracy(
+          datamodel,
+          floatFactors ->
+              new BeMF(datamodel, numFactors, numIters, 0.01, 0.08, ratings, seed, floatFactors));
+      assertSimilarAccuracy(
+          datamodel,
+          floatFactors ->
+              new DirMF(datamodel, numFactors, numIters, 0.01, 0.08, ratings, seed, floatFactors));
+    }
+  }
+
+  @Test
+  void offHeapFactors() {
+    DataModel datamodel = new DataModel(new MockDataSet());
+
+    assertSameAccuracy(
+        storage -> new PMF(datamodel, numFactors, numIters, 0.05, 0.01, seed, storage));
+    assertSameAccuracy(
+        storage -> new BiasedMF(datamodel, numFactors, numIters, 0.1, 0.01, seed, storage));
+    assertSameAccuracy(storage -> new NMF(datamodel, numFactors, numIters, seed, storage));
+    assertSameAccuracy(
+        storage ->
+            new SVDPlusPlus(datamodel, numFactors, numIters, 0.001, 0.01, seed, storage, true));
+    assertSameAccuracy(
+        storage -> new BNMF(datamodel, numFactors, numIters, 0.8, 5, 4, seed, storage));
+    assertSameAccuracy(
+        storage ->
+            new HPF(datamodel, numFactors, numIters, 0.3, 0.3, 1, 0.3, 0.3, 1, seed, storage));
+    assertSameAccuracy(
+        storage -> new BeMF(datamodel, numFactors, numIters, 0.01, 0.08, ratings, seed, storage));
+    assertSameAccuracy(
+        storage -> new DirMF(datamodel, numFactors, numIters, 0.01, 0.08, ratings, seed, storage));
+
+    Map<String, Object> params = new HashMap<>();
+    params.put("numFactors", numFactors);
+    params.put("numIters", numIters);
+    params.put("offHeapFactors", true);
+    PMF pmf = new PMF(datamodel, params);
+    assertTrue(pmf.isOffHeapFactors());
+    assertFalse(pmf.isFloatFactors());
+  }
+
+  /**
+   * Checks that a model whose factors are stored off heap returns the same MAE as the same model
+   * whose factors are stored in the heap.
+   */
+  private static void assertSameAccuracy(Function<FactorStorage, Recommender> factory) {
+    Recommender heapRecommender = factory.apply(FactorStorage.DOUBLE);
+    heapRecommender.fit();
+    double heapMae = new MAE(heapRecommender).getScore();
+
+    Recommender offHeapRecommender = factory.apply(FactorStorage.DOUBLE_OFF_HEAP);
+    offHeapRecommender.fit();
+    double offHeapMae = new MAE(offHeapRecommender).getScore();
+
+    assertFalse(Double.isNaN(heapMae));
+    assertEquals(heapMae, offHeapMae, 1e-9, offHeapRecommender.toString());
+  }
+
+  /**
+   * Checks that the MAE of a model whose factors are stored as floats is close to the MAE of the
+   * same model whose factors are stored as doubles.
+   */
+  private static void assertSimilarAccuracy(
+      DataModel datamodel, Function<Boolean, Recommender> factory) {
+    Recommender doubleRecommender = factory.apply(false);
+    doubleRecommender.fit();
+    double doubleMae = new MAE(doubleRecommender).getScore();
+
+    Recommender floatRecommender = factory.apply(true);
+    floatRecommender.fit();
+    double floatMae = new MAE(floatRecommender).getScore();
+
+    assertFalse(Double.isNaN(doubleMae));
+    assertEquals(doubleMae, floatMae, 1e-3, floatRecommender.toString());
+  }
+}
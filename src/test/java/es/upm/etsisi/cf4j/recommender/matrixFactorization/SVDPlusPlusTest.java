@@ -2,10 +2,12 @@ package es.upm.etsisi.cf4j.recommender.matrixFactorization;
 
 import es.upm.etsisi.cf4j.data.DataModel;
 import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.util.process.Parallelizer;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SVDPlusPlusTest {
 
@@ -33,10 +35,35 @@ class SVDPlusPlusTest {
         svdPlusPlus.predict(testUserId, testItemId),
         svdPlusPlus.predict(datamodel.getTestUser(testUserId))[testItemId]);
 
+    double[] predictions = svdPlusPlus.predict(testUserId, new int[] {testItemId, 0});
+    assertEquals(svdPlusPlus.predict(testUserId, testItemId), predictions[0]);
+    assertEquals(svdPlusPlus.predict(testUserId, 0), predictions[1]);
+
     assertEquals(numFactors, svdPlusPlus.getNumFactors());
     assertEquals(numIters, svdPlusPlus.getNumIters());
 
     assertEquals(0.001, svdPlusPlus.getGamma());
     assertEquals(0.01, svdPlusPlus.getLambda());
   }
+
+  @Test
+  void parallelSvdPlusPlusTest() {
+    SVDPlusPlus svdPlusPlus =
+        new SVDPlusPlus(datamodel, numFactors, numIters, 0.001, 0.01, seed, false, true);
+    svdPlusPlus.fit();
+
+    assertTrue(svdPlusPlus.isParallel());
+    assertEquals(4.382766805212244, svdPlusPlus.predict(testUserId, testItemId));
+    assertEquals(
+        svdPlusPlus.predict(testUserId, testItemId),
+        svdPlusPlus.predict(datamodel.getTestUser(testUserId))[testItemId]);
+
+    // the result does not depend on the number of threads
+    SVDPlusPlus multiThreaded =
+        new SVDPlusPlus(datamodel, numFactors, numIters, 0.001, 0.01, seed, false, true);
+    Parallelizer.runWithNumThreads(4, multiThreaded::fit);
+    assertEquals(
+        svdPlusPlus.predict(testUserId, testItemId),
+        multiThreaded.predict(testUserId, testItemId));
+  }
 }
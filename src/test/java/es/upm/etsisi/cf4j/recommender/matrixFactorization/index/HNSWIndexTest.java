@@ -0,0 +1,156 @@
+package es.upm.etsisi.cf4j.recommender.matrixFactorization.index;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.ManualDataSet;
+import es.upm.etsisi.cf4j.data.MockDataSet;
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import es.upm.etsisi.cf4j.recommender.Recommender;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.BiasedMF;
+import es.upm.etsisi.cf4j.recommender.matrixFactorization.PMF;
+import es.upm.etsisi.cf4j.util.Search;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HNSWIndexTest {
+
+  private static final int seed = 43;
+  private static final int numFactors = 2;
+  private static final int numIterations = 1;
+
+  private static DataModel datamodel;
+
+  @BeforeAll
+  static void initAll() {
+    datamodel = new DataModel(new MockDataSet());
+  }
+
+  @Test
+  void pmfRecommend() {
+    PMF pmf = new PMF(datamodel, numFactors, numIterations, seed);
+    pmf.fit();
+
+    HNSWIndex index = new HNSWIndex(pmf, 4, 10, seed);
+    index.fit();
+
+    checkRecommendations(pmf, index);
+  }
+
+  @Test
+  void biasedMFRecommend() {
+    BiasedMF biasedMF = new BiasedMF(datamodel, numFactors, numIterations, seed);
+    biasedMF.fit();
+
+    HNSWIndex index = new HNSWIndex(biasedMF, 4, 10, seed);
+    index.fit();
+
+    checkRecommendations(biasedMF, index);
+  }
+
+  @Test
+  void recall() {
+    int numItems = 2000;
+    int dimension = 8;
+    int n = 10;
+
+    List<DataSetEntry> ratings = new ArrayList<>();
+    for (int item = 0; item < numItems; item++) {
+      ratings.add(new DataSetEntry("user", "item" + item, 1.0));
+    }
+    DataModel dm = new DataModel(new ManualDataSet(ratings, new ArrayList<>()));
+
+    // Embeddings with different norms, so the inner product does not rank as the cosine
+    Random rand = new Random(seed);
+    double[][] embeddings = new double[numItems][dimension];
+    for (double[] embedding : embeddings) {
+      double norm = 0.5 + rand.nextDouble();
+      for (int k = 0; k < dimension; k++) embedding[k] = norm * rand.nextGaussian();
+    }
+    double[] query = new double[dimension];
+
+    HNSWIndex index = new HNSWIndex(new MockModel(dm, embeddings, query), 8, 100, seed);
+    index.fit();
+    index.setEf(100);
+
+    int hits = 0;
+    int numQueries = 50;
+    for (int q = 0; q < numQueries; q++) {
+      for (int k = 0; k < dimension; k++) query[k] = rand.nextGaussian();
+
+      double[] scores = new double[numItems];
+      for (int item = 0; item < numItems; item++) {
+        for (int k = 0; k < dimension; k++) scores[item] += query[k] * embeddings[item][k];
+      }
+
+      Set<Integer> exact = new HashSet<>();
+      for (int item : Search.findTopN(scores, n)) exact.add(item);
+      for (int item : index.recommend(0, n)) if (exact.contains(item)) hits++;
+    }
+
+    assertTrue((double) hits / (numQueries * n) >= 0.9);
+  }
+
+  @Test
+  void invalidParameters() {
+    PMF pmf = new PMF(datamodel, numFactors, numIterations, seed);
+    assertThrows(IllegalArgumentException.class, () -> new HNSWIndex(pmf, 1, 10, seed));
+    assertThrows(IllegalArgumentException.class, () -> new HNSWIndex(pmf, 4, 0, seed));
+
+    HNSWIndex index = new HNSWIndex(pmf, 4, 10, seed);
+    assertThrows(IllegalArgumentException.class, () -> index.setEf(0));
+    assertThrows(IllegalStateException.class, () -> index.recommend(0, 1));
+  }
+
+  private static void checkRecommendations(Recommender recommender, HNSWIndex index) {
+    int numItems = datamodel.getNumberOfItems();
+    for (int userIndex = 0; userIndex < datamodel.getNumberOfUsers(); userIndex++) {
+      double[] predictions = new double[numItems];
+      for (int itemIndex = 0; itemIndex < numItems; itemIndex++) {
+        predictions[itemIndex] = recommender.predict(userIndex, itemIndex);
+      }
+
+      int[] expected = Search.findTopN(predictions, numItems + 2);
+      assertArrayEquals(expected, index.recommend(userIndex, numItems + 2));
+      assertEquals(-1, expected[numItems]);
+    }
+  }
+
+  /** InnerProductModel whose user embedding is a query vector that can be modified */
+  private static class MockModel implements InnerProductModel {
+
+    private final DataModel datamodel;
+    private final double[][] itemEmbeddings;
+    private final double[] query;
+
+    private MockModel(DataModel datamodel, double[][] itemEmbeddings, double[] query) {
+      this.datamodel = datamodel;
+      this.itemEmbeddings = itemEmbeddings;
+      this.query = query;
+    }
+
+    @Override
+    public DataModel getDataModel() {
+      return this.datamodel;
+    }
+
+    @Override
+    public double[] getUserEmbedding(int userIndex) {
+      return this.query;
+    }
+
+    @Override
+    public double[] getItemEmbedding(int itemIndex) {
+      return this.itemEmbeddings[itemIndex];
+    }
+  }
+}
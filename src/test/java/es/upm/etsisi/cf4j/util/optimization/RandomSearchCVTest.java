@@ -0,0 +1,60 @@
+package es.upm.etsisi.cf4j.util.optimization;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.qualityMeasure.prediction.MAE;
+import es.upm.etsisi.cf4j.recommender.knn.UserKNN;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomSearchCVTest {
+
+  private static final int cv = 3;
+  private static final long seed = 43;
+
+  private static DataModel datamodel;
+
+  @BeforeAll
+  static void initAll() {
+    datamodel = new DataModel(RandomSearchTest.randomDataSet());
+  }
+
+  @Test
+  void parallelFits() throws IOException {
+    ParamsGrid grid = RandomSearchTest.userKNNGrid();
+
+    RandomSearchCV sequential =
+        new RandomSearchCV(datamodel, grid, UserKNN.class, MAE.class, cv, 1.0, seed);
+    sequential.fit();
+
+    RandomSearchCV parallel =
+        new RandomSearchCV(datamodel, grid, UserKNN.class, MAE.class, cv, 1.0, seed);
+    parallel.fit(3, 2);
+
+    assertEquals(sequential.getBestParams(), parallel.getBestParams());
+    assertEquals(sequential.getBestScore(), parallel.getBestScore());
+    assertEquals(sequential.getBestParams(false), parallel.getBestParams(false));
+    assertEquals(sequential.getBestScore(false), parallel.getBestScore(false));
+
+    List<String> expected = exportedResults(sequential);
+    List<String> actual = exportedResults(parallel);
+    assertEquals(grid.getDevelopmentSetSize(), expected.size());
+    assertEquals(expected, actual);
+  }
+
+  /** Results exported by a search, sorted to not depend on the order of the results map */
+  private static List<String> exportedResults(RandomSearchCV randomSearch) throws IOException {
+    File file = File.createTempFile("results", ".csv");
+    file.deleteOnExit();
+    randomSearch.exportResults(file.getPath(), false);
+    List<String> lines = Files.readAllLines(file.toPath());
+    lines.sort(null);
+    return lines;
+  }
+}
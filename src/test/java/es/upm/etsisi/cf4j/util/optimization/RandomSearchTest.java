@@ -0,0 +1,100 @@
+package es.upm.etsisi.cf4j.util.optimization;
+
+import es.upm.etsisi.cf4j.data.DataModel;
+import es.upm.etsisi.cf4j.data.ManualDataSet;
+import es.upm.etsisi.cf4j.data.types.DataSetEntry;
+import es.upm.etsisi.cf4j.qualityMeasure.prediction.MAE;
+import es.upm.etsisi.cf4j.qualityMeasure.prediction.RMSE;
+import es.upm.etsisi.cf4j.recommender.knn.UserKNN;
+import es.upm.etsisi.cf4j.recommender.knn.userSimilarityMetric.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomSearchTest {
+
+  private static final int numUsers = 200;
+  private static final int numItems = 100;
+  private static final long seed = 43;
+
+  private static DataModel datamodel;
+
+  @BeforeAll
+  static void initAll() {
+    datamodel = new DataModel(randomDataSet());
+  }
+
+  /** Random ratings of numUsers users to numItems items. Some of them are of test */
+  static ManualDataSet randomDataSet() {
+    Random rand = new Random(seed);
+    List<DataSetEntry> ratings = new ArrayList<>();
+    List<DataSetEntry> testRatings = new ArrayList<>();
+    for (int u = 0; u < numUsers; u++) {
+      for (int i = 0; i < numItems; i++) {
+        if (rand.nextFloat() < 0.2) {
+          DataSetEntry entry = new DataSetEntry("u" + u, "i" + i, 1 + rand.nextInt(5));
+          if (u % 5 == 0 && rand.nextFloat() < 0.3) {
+            testRatings.add(entry);
+          } else {
+            ratings.add(entry);
+          }
+        }
+      }
+    }
+    return new ManualDataSet(ratings, testRatings);
+  }
+
+  /** Grid whose similarity metrics are shared by every numberOfNeighbors value */
+  static ParamsGrid userKNNGrid() {
+    ParamsGrid grid = new ParamsGrid();
+    grid.addParam("numberOfNeighbors", new int[] {5, 10, 20, 40});
+    grid.addParam(
+        "metric",
+        new UserSimilarityMetric[] {
+          new Correlation(), new Cosine(), new JMSD(), new MSD(), new Jaccard()
+        });
+    grid.addFixedParam("aggregationApproach", UserKNN.AggregationApproach.DEVIATION_FROM_MEAN);
+    return grid;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static RandomSearch randomSearch(ParamsGrid grid) {
+    return new RandomSearch(
+        datamodel, grid, UserKNN.class, new Class[] {MAE.class, RMSE.class}, 1.0, seed);
+  }
+
+  @Test
+  void parallelFits() {
+    ParamsGrid grid = userKNNGrid();
+
+    RandomSearch sequential = randomSearch(grid);
+    sequential.fit();
+
+    RandomSearch parallel = randomSearch(grid);
+    parallel.fit(3, 2);
+
+    Map<Map<String, Object>, Double[]> expected = sequential.getResults();
+    Map<Map<String, Object>, Double[]> actual = parallel.getResults();
+    assertEquals(grid.getDevelopmentSetSize(), expected.size());
+    assertEquals(expected.keySet(), actual.keySet());
+    for (Map<String, Object> params : expected.keySet()) {
+      assertArrayEquals(expected.get(params), actual.get(params), params.toString());
+    }
+  }
+
+  @Test
+  void parallelFitsRejectSharedParams() {
+    ParamsGrid grid = userKNNGrid();
+    grid.addFixedParam("ignoredItems", new ArrayList<String>());
+
+    RandomSearch randomSearch = randomSearch(grid);
+    assertThrows(IllegalArgumentException.class, () -> randomSearch.fit(2, 1));
+    assertTrue(randomSearch.getResults().isEmpty());
+  }
+}
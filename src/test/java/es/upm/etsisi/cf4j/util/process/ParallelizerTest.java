@@ -0,0 +1,355 @@
+package es.upm.etsisi.cf4j.util.process;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelizerTest {
+
+  private static final int numObjects = 1000;
+
+  @AfterEach
+  void restoreNumThreads() {
+    Parallelizer.setNumThreads(-1);
+  }
+
+  @Test
+  void execRunsEachObjectOnce() {
+    Integer[] objects = new Integer[numObjects];
+    for (int i = 0; i < numObjects; i++) objects[i] = i;
+
+    for (int numThreads : new int[] {1, 3, 8}) {
+      Counter counter = new Counter();
+      Parallelizer.exec(objects, counter, numThreads);
+
+      assertEquals(1, counter.before);
+      assertEquals(1, counter.after);
+      for (int i = 0; i < numObjects; i++) {
+        assertEquals(1, counter.runs.get(i));
+      }
+    }
+  }
+
+  @Test
+  void numThreads() {
+    Parallelizer.setNumThreads(4);
+    assertEquals(4, Parallelizer.getNumThreads());
+
+    Integer[] objects = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+    for (int i = 0; i < 3; i++) {
+      Counter counter = new Counter();
+      Parallelizer.exec(objects, counter);
+      for (int j = 0; j < objects.length; j++) {
+        assertEquals(1, counter.runs.get(j));
+      }
+    }
+
+    Parallelizer.setNumThreads(0);
+    assertEquals(Runtime.getRuntime().availableProcessors(), Parallelizer.getNumThreads());
+  }
+
+  @Test
+  void execWithCostHints() {
+    Integer[] objects = new Integer[numObjects];
+    for (int i = 0; i < numObjects; i++) objects[i] = i;
+
+    // Power law costs with a few heavy objects at the beginning of the array
+    Counter counter = new Counter();
+    ExecutionMetrics metrics =
+        Parallelizer.execWithMetrics(
+            objects, counter, 4, object -> (long) (1e6 / Math.pow((Integer) object + 1, 1.5)));
+
+    for (int i = 0; i < numObjects; i++) {
+      assertEquals(1, counter.runs.get(i));
+    }
+    assertEquals(4, metrics.getNumThreads());
+    assertTrue(metrics.getBusyTimes().length >= 1);
+    assertTrue(metrics.getBusyTimes().length <= 4);
+    assertTrue(metrics.getElapsedTime() > 0);
+  }
+
+  @Test
+  void imbalance() {
+    assertEquals(1.0, new ExecutionMetrics(4, 100, new long[] {10, 10, 10, 10}).getImbalance());
+    assertEquals(4.0, new ExecutionMetrics(4, 100, new long[] {40}).getImbalance());
+    assertEquals(2.0, new ExecutionMetrics(2, 100, new long[] {30, 0, 0}).getImbalance(), 1e-9);
+    assertEquals(1.0, new ExecutionMetrics(2, 100, new long[0]).getImbalance());
+  }
+
+  @Test
+  void execEmptyArray() {
+    Counter counter = new Counter();
+    Parallelizer.exec(new Integer[0], counter, 4);
+    assertEquals(1, counter.before);
+    assertEquals(1, counter.after);
+  }
+
+  @Test
+  void execWithContexts() {
+    Integer[] objects = new Integer[numObjects];
+    for (int i = 0; i < numObjects; i++) objects[i] = i;
+
+    for (int numThreads : new int[] {1, 4}) {
+      ContextCounter counter = new ContextCounter();
+      Parallelizer.exec(objects, counter, numThreads);
+
+      // each thread creates a single context and only uses its own one
+      assertTrue(counter.contexts.get() >= 1);
+      assertTrue(counter.contexts.get() <= numThreads);
+      for (int i = 0; i < numObjects; i++) {
+        assertEquals(1, counter.runs.get(i));
+      }
+    }
+  }
+
+  @Test
+  void execInterval() {
+    int from = 5;
+    int to = from + numObjects;
+
+    for (int numThreads : new int[] {1, 3, 8}) {
+      AtomicIntegerArray runs = new AtomicIntegerArray(to);
+      RangeCounter counter = new RangeCounter(runs);
+      ExecutionMetrics metrics = Parallelizer.execWithMetrics(from, to, counter, numThreads);
+
+      assertEquals(1, counter.before);
+      assertEquals(1, counter.after);
+      assertEquals(numThreads, metrics.getNumThreads());
+      for (int i = 0; i < to; i++) {
+        assertEquals(i < from ? 0 : 1, runs.get(i));
+      }
+    }
+
+    RangeCounter counter = new RangeCounter(new AtomicIntegerArray(0));
+    Parallelizer.exec(3, 3, counter, 4);
+    assertEquals(1, counter.before);
+    assertEquals(1, counter.after);
+
+    assertThrows(IllegalArgumentException.class, () -> Parallelizer.exec(2, 1, counter));
+  }
+
+  @Test
+  void execPropagatesFirstException() {
+    Integer[] objects = new Integer[numObjects];
+    for (int i = 0; i < numObjects; i++) objects[i] = i;
+
+    for (int numThreads : new int[] {1, 4}) {
+      IllegalStateException exception = new IllegalStateException("failure");
+      Counter counter =
+          new Counter() {
+            @Override
+            public void run(Integer object) {
+              super.run(object);
+              if (object == 10) throw exception;
+            }
+          };
+
+      IllegalStateException thrown =
+          assertThrows(
+              IllegalStateException.class,
+              () -> Parallelizer.exec(objects, counter, numThreads));
+      assertSame(exception, thrown);
+      assertEquals(1, counter.before);
+      assertEquals(0, counter.after);
+    }
+
+    // a single thread stops after the failing object
+    Counter counter =
+        new Counter() {
+          @Override
+          public void run(Integer object) {
+            super.run(object);
+            if (object == 10) throw new IllegalStateException();
+          }
+        };
+    assertThrows(IllegalStateException.class, () -> Parallelizer.exec(objects, counter, 1));
+    for (int i = 0; i < numObjects; i++) {
+      assertEquals(i <= 10 ? 1 : 0, counter.runs.get(i));
+    }
+  }
+
+  @Test
+  void execWithDeadline() {
+    Integer[] objects = new Integer[numObjects];
+    for (int i = 0; i < numObjects; i++) objects[i] = i;
+
+    for (int numThreads : new int[] {1, 4}) {
+      Counter counter =
+          new Counter() {
+            @Override
+            public void run(Integer object) {
+              super.run(object);
+              try {
+                Thread.sleep(5);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          };
+
+      assertThrows(
+          CancellationException.class,
+          () -> Parallelizer.exec(objects, counter, numThreads, 50, TimeUnit.MILLISECONDS));
+      int runs = 0;
+      for (int i = 0; i < numObjects; i++) runs += counter.runs.get(i);
+      assertTrue(runs < numObjects);
+      assertEquals(0, counter.after);
+    }
+
+    Counter counter = new Counter();
+    Parallelizer.exec(objects, counter, 4, 1, TimeUnit.MINUTES);
+    assertEquals(1, counter.after);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> Parallelizer.exec(objects, new Counter(), 4, 0, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void execInterrupted() {
+    Integer[] objects = new Integer[numObjects];
+    for (int i = 0; i < numObjects; i++) objects[i] = i;
+
+    for (int numThreads : new int[] {1, 4}) {
+      Counter counter = new Counter();
+      Thread.currentThread().interrupt();
+      try {
+        assertThrows(
+            CancellationException.class, () -> Parallelizer.exec(objects, counter, numThreads));
+        assertTrue(Thread.currentThread().isInterrupted());
+        assertEquals(0, counter.after);
+      } finally {
+        Thread.interrupted();
+      }
+    }
+  }
+
+  @Test
+  void runWithNumThreads() throws InterruptedException {
+    Integer[] objects = new Integer[numObjects];
+    for (int i = 0; i < numObjects; i++) objects[i] = i;
+
+    Parallelizer.setNumThreads(3);
+
+    int[] numThreads = new int[2];
+    Thread[] threads = new Thread[2];
+    for (int t = 0; t < threads.length; t++) {
+      int index = t;
+      threads[t] =
+          new Thread(
+              () ->
+                  Parallelizer.runWithNumThreads(
+                      index + 1,
+                      () -> {
+                        Counter counter = new Counter();
+                        numThreads[index] =
+                            Parallelizer.execWithMetrics(objects, counter, -1, null)
+                                .getNumThreads();
+                        for (int i = 0; i < numObjects; i++) {
+                          assertEquals(1, counter.runs.get(i));
+                        }
+                      }));
+      threads[t].start();
+    }
+    for (Thread thread : threads) thread.join();
+
+    assertEquals(1, numThreads[0]);
+    assertEquals(2, numThreads[1]);
+    assertEquals(3, Parallelizer.getNumThreads());
+
+    Parallelizer.runWithNumThreads(
+        2,
+        () -> {
+          assertEquals(2, Parallelizer.getNumThreads());
+          Parallelizer.runWithNumThreads(4, () -> assertEquals(4, Parallelizer.getNumThreads()));
+          assertEquals(2, Parallelizer.getNumThreads());
+        });
+    assertEquals(3, Parallelizer.getNumThreads());
+
+    assertThrows(IllegalArgumentException.class, () -> Parallelizer.runWithNumThreads(0, () -> {}));
+  }
+
+  /** IntPartible that counts how many times each index is executed */
+  private static class RangeCounter implements IntPartible {
+
+    private final AtomicIntegerArray runs;
+    private int before;
+    private int after;
+
+    private RangeCounter(AtomicIntegerArray runs) {
+      this.runs = runs;
+    }
+
+    @Override
+    public void beforeRun() {
+      this.before++;
+    }
+
+    @Override
+    public void run(int from, int to) {
+      assertTrue(from < to);
+      for (int i = from; i < to; i++) {
+        this.runs.incrementAndGet(i);
+      }
+    }
+
+    @Override
+    public void afterRun() {
+      this.after++;
+    }
+  }
+
+  /** ContextPartible that checks that each context is only used by the thread that created it */
+  private static class ContextCounter implements ContextPartible<Integer, Thread> {
+
+    private final AtomicIntegerArray runs = new AtomicIntegerArray(numObjects);
+    private final AtomicInteger contexts = new AtomicInteger();
+
+    @Override
+    public void beforeRun() {}
+
+    @Override
+    public Thread createContext() {
+      this.contexts.incrementAndGet();
+      return Thread.currentThread();
+    }
+
+    @Override
+    public void run(Integer object, Thread context) {
+      assertSame(Thread.currentThread(), context);
+      this.runs.incrementAndGet(object);
+    }
+
+    @Override
+    public void afterRun() {}
+  }
+
+  /** Partible that counts how many times each method is executed */
+  private static class Counter implements Partible<Integer> {
+
+    private final AtomicIntegerArray runs = new AtomicIntegerArray(numObjects);
+    private int before;
+    private int after;
+
+    @Override
+    public void beforeRun() {
+      this.before++;
+    }
+
+    @Override
+    public void run(Integer object) {
+      this.runs.incrementAndGet(object);
+    }
+
+    @Override
+    public void afterRun() {
+      this.after++;
+    }
+  }
+}